@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.benchmark;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.EventPayload;
+import com.pronoia.splunk.eventcollector.client.SimpleEventCollectorClient;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks of SimpleEventCollectorClient.sendEvent against an in-process HTTP Event Collector stub.
+ *
+ * <p>The stub reads the request body and returns a canned success response, so the results are dominated by the
+ * client and the loopback HTTP exchange.
+ *
+ * <p>The stub is the JDK HttpServer, which writes the response headers and body separately - without TCP_NODELAY each
+ * response waits for the delayed ACK of the headers (~40ms), which hides the client cost entirely.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@State(Scope.Benchmark)
+public class SendEventBenchmark {
+    static final byte[] SUCCESS_RESPONSE = "{\"text\":\"Success\",\"code\":0}".getBytes(StandardCharsets.UTF_8);
+    static final int PAYLOAD_EVENT_COUNT = 100;
+
+    @Param({"256", "4096"})
+    int eventSize;
+
+    @Param({"false", "true"})
+    boolean gzipEnabled;
+
+    HttpServer server;
+    ExecutorService serverExecutor;
+    SimpleEventCollectorClient client;
+
+    String event;
+    byte[] eventBytes;
+    EventPayload payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        serverExecutor = Executors.newFixedThreadPool(4);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/services/collector", exchange -> {
+            try (InputStream requestBody = exchange.getRequestBody()) {
+                byte[] buffer = new byte[8192];
+                while (requestBody.read(buffer) >= 0) {
+                    // Discard the request body
+                }
+            }
+            exchange.sendResponseHeaders(200, SUCCESS_RESPONSE.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(SUCCESS_RESPONSE);
+            }
+        });
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        client = new SimpleEventCollectorClient();
+        client.setHost("localhost");
+        client.setPort(server.getAddress().getPort());
+        client.setUseSSL(false);
+        client.setAuthorizationToken("benchmark-token");
+        client.setGzipEnabled(gzipEnabled);
+        client.start();
+
+        StringBuilder builder = new StringBuilder("{\"event\":\"");
+        while (builder.length() < eventSize - 2) {
+            builder.append('x');
+        }
+        event = builder.append("\"}").toString();
+        eventBytes = event.getBytes(StandardCharsets.UTF_8);
+
+        payload = new EventPayload();
+        for (int i = 0; i < PAYLOAD_EVENT_COUNT; ++i) {
+            payload.append(eventBytes, 0, eventBytes.length);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.stop();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public void sendEventString() throws EventDeliveryException {
+        client.sendEvent(event);
+    }
+
+    @Benchmark
+    public void sendEventBytes() throws EventDeliveryException {
+        client.sendEvent(eventBytes, 0, eventBytes.length);
+    }
+
+    /**
+     * Sends PAYLOAD_EVENT_COUNT events per operation.
+     *
+     * @throws EventDeliveryException if the payload is not delivered
+     */
+    @Benchmark
+    public void sendEventsPayload() throws EventDeliveryException {
+        client.sendEvents(payload);
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.eventbuilder;
+
+import com.pronoia.splunk.eventcollector.EventBuilder;
+import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.eventcollector.client.SimpleEventCollectorClient;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks of the EventBuilder build path.
+ *
+ * <p>The benchmark is in the eventbuilder package so it can call JacksonEventBuilderSupport.convertMapToJson directly.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EventBuilderBenchmark {
+    @Param({"0", "4", "16"})
+    int fieldCount;
+
+    @Param({"64", "1024", "16384"})
+    int bodySize;
+
+    EventCollectorClient client;
+
+    StringEventBuilder stringEventBuilder;
+    ObjectEventBuilder objectEventBuilder;
+
+    String[] fieldNames;
+    String[] fieldValues;
+
+    String stringBody;
+    Map<String, Object> mapBody;
+    Map<String, Object> eventMap;
+
+    @Setup
+    public void setUp() {
+        SimpleEventCollectorClient simpleClient = new SimpleEventCollectorClient();
+        simpleClient.setHost("localhost");
+        simpleClient.setAuthorizationToken("benchmark-token");
+        simpleClient.setEventIndex("benchmark-index");
+        simpleClient.addConstantField("environment", "benchmark");
+        client = simpleClient;
+
+        stringEventBuilder = new StringEventBuilder();
+        objectEventBuilder = new ObjectEventBuilder();
+        for (EventBuilderSupport<?> eventBuilder : new EventBuilderSupport<?>[] {stringEventBuilder, objectEventBuilder}) {
+            eventBuilder.setDefaultHost("benchmark-host");
+            eventBuilder.setDefaultSource("benchmark-source");
+            eventBuilder.setDefaultSourcetype("benchmark-sourcetype");
+            eventBuilder.addConstantField("application", "splunk-httpec");
+        }
+
+        fieldNames = new String[fieldCount];
+        fieldValues = new String[fieldCount];
+        for (int i = 0; i < fieldCount; ++i) {
+            fieldNames[i] = "field" + i;
+            fieldValues[i] = "value-" + i;
+        }
+
+        stringBody = createText(bodySize);
+
+        // Split the body across a few entries, so the Map body is roughly the same size as the String body
+        mapBody = new LinkedHashMap<>();
+        mapBody.put("timestamp", "2018-01-01T00:00:00.000Z");
+        mapBody.put("level", "INFO");
+        mapBody.put("count", 42);
+        mapBody.put("message", createText(bodySize));
+
+        eventMap = new LinkedHashMap<>();
+        eventMap.put("host", "benchmark-host");
+        eventMap.put("index", "benchmark-index");
+        eventMap.put("time", "1514764800.000");
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (int i = 0; i < fieldCount; ++i) {
+            fields.put(fieldNames[i], fieldValues[i]);
+        }
+        if (!fields.isEmpty()) {
+            eventMap.put("fields", fields);
+        }
+        eventMap.put("event", mapBody);
+    }
+
+    @Benchmark
+    public String buildString() {
+        return addFields(stringEventBuilder).eventBody(stringBody).build(client);
+    }
+
+    @Benchmark
+    public String buildObject() {
+        return addFields(objectEventBuilder).eventBody(mapBody).build(client);
+    }
+
+    @Benchmark
+    public String convertMapToJson() {
+        return stringEventBuilder.convertMapToJson(eventMap);
+    }
+
+    <E> EventBuilder<E> addFields(EventBuilder<E> eventBuilder) {
+        for (int i = 0; i < fieldCount; ++i) {
+            eventBuilder.field(fieldNames[i], fieldValues[i]);
+        }
+        return eventBuilder;
+    }
+
+    static String createText(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append("The quick brown fox jumps over the \"lazy\" dog. ");
+        }
+        builder.setLength(length);
+        return builder.toString();
+    }
+}
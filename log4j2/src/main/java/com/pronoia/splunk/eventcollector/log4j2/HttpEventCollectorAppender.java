@@ -0,0 +1,472 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.log4j2;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.EventPayload;
+import com.pronoia.splunk.eventcollector.client.SimpleEventCollectorClient;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.Core;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.Layout;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.apache.logging.log4j.core.config.plugins.validation.constraints.Required;
+import org.apache.logging.log4j.core.layout.ByteBufferDestination;
+
+
+/**
+ * Garbage-free Log4j2 appender that delivers logging events to a Splunk HTTP Event Collector in batches.
+ *
+ * <p>The layout (an HttpEventCollectorJsonLayout by default) encodes each event directly into the current batch, which
+ * is one of a fixed pool of reusable EventPayload buffers.  A full batch - one that has reached the batch size or the
+ * maximum batch size in bytes, or whose first event has waited for the linger time - is handed to a background sender
+ * thread, which posts the buffer without copying it and returns it to the pool.  The logging thread only blocks when
+ * every buffer in the pool is waiting to be delivered, and the event is dropped if no buffer is freed within the block
+ * timeout.  The lock that serializes encoding into the current batch is not held while waiting for a free buffer.
+ *
+ * <p>Events logged by the sender thread itself (i.e. by the HTTP client) are always dropped, so the appender can never
+ * wait on itself.
+ *
+ * <p>Batches that cannot be delivered are dropped and reported to the Log4j2 status logger.
+ */
+@Plugin(name = "SplunkHttpEventCollector", category = Core.CATEGORY_NAME, elementType = Appender.ELEMENT_TYPE, printObject = true)
+public final class HttpEventCollectorAppender extends AbstractAppender implements ByteBufferDestination {
+    static final int DEFAULT_BATCH_SIZE = 100;
+    static final int DEFAULT_MAX_BATCH_BYTES = 512 * 1024;
+    static final long DEFAULT_LINGER_MILLIS = 100;
+    static final int DEFAULT_BUFFER_COUNT = 4;
+    static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 1000;
+    static final int ENCODER_BUFFER_SIZE = 8192;
+
+    final SimpleEventCollectorClient client;
+    final int batchSize;
+    final int maxBatchBytes;
+    final long lingerNanos;
+    final long blockTimeoutMillis;
+
+    final ReentrantLock lock = new ReentrantLock();
+    final ByteBuffer encoderBuffer = ByteBuffer.allocate(ENCODER_BUFFER_SIZE);
+    final BlockingQueue<EventPayload> freeBatches;
+    final BlockingQueue<EventPayload> fullBatches;
+
+    // The following are guarded by the lock
+    EventPayload currentBatch;
+    long batchStartNanos;
+
+    volatile boolean sending;
+    volatile Thread senderThread;
+
+    final LongAdder droppedEventCount = new LongAdder();
+    final LongAdder deliveredEventCount = new LongAdder();
+    final LongAdder failedBatchCount = new LongAdder();
+
+    HttpEventCollectorAppender(String name, Filter filter, Layout<? extends Serializable> layout, boolean ignoreExceptions,
+                               SimpleEventCollectorClient client, int batchSize, int maxBatchBytes, long lingerMillis, int bufferCount, long blockTimeoutMillis) {
+        super(name, filter, layout, ignoreExceptions);
+        this.client = client;
+        this.batchSize = batchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.blockTimeoutMillis = blockTimeoutMillis;
+
+        this.freeBatches = new ArrayBlockingQueue<>(bufferCount);
+        this.fullBatches = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 0; i < bufferCount; ++i) {
+            // Leave room for the event that crosses the limit
+            freeBatches.add(new EventPayload(maxBatchBytes + ENCODER_BUFFER_SIZE));
+        }
+    }
+
+    @PluginBuilderFactory
+    public static <B extends Builder<B>> B newBuilder() {
+        return new Builder<B>().asBuilder();
+    }
+
+    public SimpleEventCollectorClient getClient() {
+        return client;
+    }
+
+    public long getDroppedEventCount() {
+        return droppedEventCount.sum();
+    }
+
+    public long getDeliveredEventCount() {
+        return deliveredEventCount.sum();
+    }
+
+    public long getFailedBatchCount() {
+        return failedBatchCount.sum();
+    }
+
+    @Override
+    public void start() {
+        client.start();
+
+        sending = true;
+        senderThread = new Thread(this::send, getName() + "-sender");
+        senderThread.setDaemon(true);
+        senderThread.start();
+
+        super.start();
+    }
+
+    @Override
+    public boolean stop(long timeout, TimeUnit timeUnit) {
+        setStopping();
+        boolean stopped = super.stop(timeout, timeUnit, false);
+
+        lock.lock();
+        try {
+            handOff();
+        } finally {
+            lock.unlock();
+        }
+
+        sending = false;
+        if (senderThread != null) {
+            try {
+                senderThread.join(timeout > 0 ? timeUnit.toMillis(timeout) : 0);
+            } catch (InterruptedException interruptedEx) {
+                Thread.currentThread().interrupt();
+            }
+            if (senderThread.isAlive()) {
+                LOGGER.warn("Timed-out waiting for appender {} to deliver the buffered events", getName());
+                senderThread.interrupt();
+                stopped = false;
+            }
+            senderThread = null;
+        }
+
+        client.stop();
+        setStopped();
+
+        return stopped;
+    }
+
+    /**
+     * Encode the event into the current batch.
+     *
+     * @param event the logging event
+     */
+    @Override
+    public void append(LogEvent event) {
+        if (Thread.currentThread() == senderThread) {
+            droppedEventCount.increment();
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (!acquireCurrentBatch()) {
+                droppedEventCount.increment();
+                return;
+            }
+
+            final int eventStart = currentBatch.getLength();
+            try {
+                getLayout().encode(event, this);
+                drain(encoderBuffer);
+            } catch (RuntimeException encodeEx) {
+                encoderBuffer.clear();
+                currentBatch.truncate(eventStart);
+                droppedEventCount.increment();
+                error("Failed to encode event - the event will be dropped", event, encodeEx);
+                return;
+            }
+            currentBatch.eventAppended();
+
+            if (currentBatch.getEventCount() == 1) {
+                batchStartNanos = System.nanoTime();
+            }
+            if (currentBatch.getEventCount() >= batchSize || currentBatch.getLength() >= maxBatchBytes) {
+                handOff();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Make sure there is a current batch - the lock must be held by the caller.
+     *
+     * <p>The lock is released while waiting for a free batch, so the other logging threads and the linger hand-off are
+     * not held up.  The lock is held again when this method returns.
+     *
+     * @return true if there is a current batch, false if no batch was freed within the block timeout
+     */
+    boolean acquireCurrentBatch() {
+        if (currentBatch != null) {
+            return true;
+        }
+
+        EventPayload freeBatch = freeBatches.poll();
+        if (freeBatch == null) {
+            lock.unlock();
+            try {
+                freeBatch = takeFreeBatch();
+            } finally {
+                lock.lock();
+            }
+            if (freeBatch == null) {
+                return false;
+            }
+        }
+
+        if (currentBatch == null) {
+            currentBatch = freeBatch;
+        } else {
+            // Another thread installed a batch while the lock was released
+            freeBatches.add(freeBatch);
+        }
+
+        return true;
+    }
+
+    EventPayload takeFreeBatch() {
+        try {
+            return freeBatches.poll(blockTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException interruptedEx) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Hand the current batch to the sender thread - the lock must be held by the caller.
+     */
+    void handOff() {
+        if (currentBatch != null && !currentBatch.isEmpty()) {
+            // There are never more batches than the capacity of the queue
+            fullBatches.add(currentBatch);
+            currentBatch = null;
+        }
+    }
+
+    /**
+     * Deliver the full batches until the appender is stopped, handing off the current batch once it has lingered.
+     */
+    void send() {
+        final long pollMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(lingerNanos));
+
+        while (sending || !fullBatches.isEmpty()) {
+            EventPayload batch;
+            try {
+                batch = fullBatches.poll(pollMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException interruptedEx) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (batch != null) {
+                deliver(batch);
+            } else if (lock.tryLock()) {
+                try {
+                    if (currentBatch != null && !currentBatch.isEmpty() && System.nanoTime() - batchStartNanos >= lingerNanos) {
+                        handOff();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    void deliver(EventPayload batch) {
+        try {
+            client.sendEvents(batch);
+            deliveredEventCount.add(batch.getEventCount());
+        } catch (EventDeliveryException | RuntimeException deliveryEx) {
+            failedBatchCount.increment();
+            droppedEventCount.add(batch.getEventCount());
+            LOGGER.error("Appender {} failed to deliver batch of {} events - the events will be dropped", getName(), batch.getEventCount(), deliveryEx);
+        } finally {
+            batch.reset();
+            freeBatches.add(batch);
+        }
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer() {
+        return encoderBuffer;
+    }
+
+    /**
+     * Move the encoded bytes into the current batch.
+     */
+    @Override
+    public ByteBuffer drain(ByteBuffer buffer) {
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+            currentBatch.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer data) {
+        drain(encoderBuffer);
+        if (data.hasArray()) {
+            currentBatch.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+        } else {
+            while (data.hasRemaining()) {
+                int chunkLength = Math.min(data.remaining(), encoderBuffer.remaining());
+                int limit = data.limit();
+                data.limit(data.position() + chunkLength);
+                encoderBuffer.put(data);
+                data.limit(limit);
+                drain(encoderBuffer);
+            }
+        }
+    }
+
+    @Override
+    public void writeBytes(byte[] data, int offset, int length) {
+        drain(encoderBuffer);
+        currentBatch.write(data, offset, length);
+    }
+
+    public static class Builder<B extends Builder<B>> extends AbstractAppender.Builder<B> implements org.apache.logging.log4j.core.util.Builder<HttpEventCollectorAppender> {
+        @PluginBuilderAttribute
+        @Required(message = "No host provided for the SplunkHttpEventCollector appender")
+        String host;
+
+        @PluginBuilderAttribute
+        int port = 8088;
+
+        @PluginBuilderAttribute(sensitive = true)
+        @Required(message = "No authorization token provided for the SplunkHttpEventCollector appender")
+        String authorizationToken;
+
+        @PluginBuilderAttribute
+        boolean useSSL = true;
+
+        @PluginBuilderAttribute
+        boolean validateCertificates = true;
+
+        @PluginBuilderAttribute
+        boolean gzipEnabled;
+
+        @PluginBuilderAttribute
+        int batchSize = DEFAULT_BATCH_SIZE;
+
+        @PluginBuilderAttribute
+        int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+
+        @PluginBuilderAttribute
+        long lingerMillis = DEFAULT_LINGER_MILLIS;
+
+        @PluginBuilderAttribute
+        int bufferCount = DEFAULT_BUFFER_COUNT;
+
+        @PluginBuilderAttribute
+        long blockTimeoutMillis = DEFAULT_BLOCK_TIMEOUT_MILLIS;
+
+        public B setHost(String host) {
+            this.host = host;
+            return asBuilder();
+        }
+
+        public B setPort(int port) {
+            this.port = port;
+            return asBuilder();
+        }
+
+        public B setAuthorizationToken(String authorizationToken) {
+            this.authorizationToken = authorizationToken;
+            return asBuilder();
+        }
+
+        public B setUseSSL(boolean useSSL) {
+            this.useSSL = useSSL;
+            return asBuilder();
+        }
+
+        public B setValidateCertificates(boolean validateCertificates) {
+            this.validateCertificates = validateCertificates;
+            return asBuilder();
+        }
+
+        public B setGzipEnabled(boolean gzipEnabled) {
+            this.gzipEnabled = gzipEnabled;
+            return asBuilder();
+        }
+
+        public B setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return asBuilder();
+        }
+
+        public B setMaxBatchBytes(int maxBatchBytes) {
+            this.maxBatchBytes = maxBatchBytes;
+            return asBuilder();
+        }
+
+        public B setLingerMillis(long lingerMillis) {
+            this.lingerMillis = lingerMillis;
+            return asBuilder();
+        }
+
+        public B setBufferCount(int bufferCount) {
+            this.bufferCount = bufferCount;
+            return asBuilder();
+        }
+
+        public B setBlockTimeoutMillis(long blockTimeoutMillis) {
+            this.blockTimeoutMillis = blockTimeoutMillis;
+            return asBuilder();
+        }
+
+        @Override
+        public HttpEventCollectorAppender build() {
+            if (batchSize <= 0 || maxBatchBytes <= 0 || bufferCount <= 0) {
+                LOGGER.error("Invalid batching configuration for appender {} - batchSize, maxBatchBytes and bufferCount must be greater than zero", getName());
+                return null;
+            }
+
+            SimpleEventCollectorClient client = new SimpleEventCollectorClient();
+            client.setHost(host);
+            client.setPort(port);
+            client.setAuthorizationToken(authorizationToken);
+            client.setUseSSL(useSSL);
+            client.setValidateCertificates(validateCertificates);
+            client.setGzipEnabled(gzipEnabled);
+
+            Layout<? extends Serializable> layout = getLayout();
+            if (layout == null) {
+                layout = HttpEventCollectorJsonLayout.newBuilder().build();
+            }
+
+            return new HttpEventCollectorAppender(getName(), getFilter(), layout, isIgnoreExceptions(),
+                client, batchSize, maxBatchBytes, lingerMillis, bufferCount, blockTimeoutMillis);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.log4j2;
+
+import com.pronoia.splunk.eventcollector.eventbuilder.TimestampEncoder;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.logging.log4j.core.Layout;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
+import org.apache.logging.log4j.core.layout.AbstractStringLayout;
+import org.apache.logging.log4j.core.layout.ByteBufferDestination;
+import org.apache.logging.log4j.core.layout.Encoder;
+import org.apache.logging.log4j.core.util.Constants;
+import org.apache.logging.log4j.core.util.KeyValuePair;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.util.ReadOnlyStringMap;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+import org.apache.logging.log4j.util.TriConsumer;
+
+
+/**
+ * Garbage-free layout that renders a LogEvent in the JSON envelope of the Splunk HTTP Event Collector.
+ *
+ * <p>The host, index, source, sourcetype and constant fields are rendered once when the layout is created, with the
+ * same defaults as EventBuilderSupport - the host defaults to the name of the local host, and the index, source and
+ * sourcetype are omitted unless they are configured so the defaults of the HEC token apply.  The time, level, logger,
+ * thread, context map and message of each event are rendered into reusable, thread-local StringBuilders and encoded
+ * directly into the ByteBufferDestination, so no Strings are allocated per event when Log4j2 runs in garbage-free mode.
+ *
+ * <p>NOTE:  Rendering the stack trace of a throwable allocates, as it does in every Log4j2 layout.
+ */
+@Plugin(name = "HttpEventCollectorJsonLayout", category = Node.CATEGORY, elementType = Layout.ELEMENT_TYPE, printObject = true)
+public final class HttpEventCollectorJsonLayout extends AbstractStringLayout {
+    static final int DEFAULT_MESSAGE_BUFFER_SIZE = 1024;
+    static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    static final ThreadLocal<StringBuilder> MESSAGE_BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(DEFAULT_MESSAGE_BUFFER_SIZE));
+    static final ThreadLocal<TimestampEncoder> TIMESTAMP_ENCODER = ThreadLocal.withInitial(TimestampEncoder::new);
+
+    static final TriConsumer<String, Object, StringBuilder> WRITE_CONTEXT_ENTRY = (key, value, text) -> {
+        if (value != null) {
+            appendJsonString(text, key);
+            text.append(':');
+            if (value instanceof CharSequence) {
+                appendJsonString(text, (CharSequence) value);
+            } else {
+                appendJsonString(text, String.valueOf(value));
+            }
+            text.append(',');
+        }
+    };
+
+    final String eventPrefix;
+    final String constantFields;
+    final boolean includeContextMap;
+
+    HttpEventCollectorJsonLayout(String host, String index, String source, String sourcetype, KeyValuePair[] constantFields, boolean includeContextMap) {
+        super(StandardCharsets.UTF_8);
+
+        StringBuilder prefix = new StringBuilder("{");
+        appendDefaultField(prefix, "host", host);
+        appendDefaultField(prefix, "index", index);
+        appendDefaultField(prefix, "source", source);
+        appendDefaultField(prefix, "sourcetype", sourcetype);
+        prefix.append("\"time\":\"");
+        this.eventPrefix = prefix.toString();
+
+        StringBuilder fields = new StringBuilder();
+        if (constantFields != null) {
+            for (KeyValuePair constantField : constantFields) {
+                if (constantField.getKey() != null && !constantField.getKey().isEmpty() && constantField.getValue() != null) {
+                    appendJsonString(fields, constantField.getKey());
+                    fields.append(':');
+                    appendJsonString(fields, constantField.getValue());
+                    fields.append(',');
+                }
+            }
+        }
+        this.constantFields = fields.toString();
+        this.includeContextMap = includeContextMap;
+    }
+
+    @PluginBuilderFactory
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/json; charset=UTF-8";
+    }
+
+    @Override
+    public String toSerializable(LogEvent event) {
+        StringBuilder text = getStringBuilder();
+        try {
+            return toText(event, text).toString();
+        } finally {
+            trimToMaxSize(text);
+        }
+    }
+
+    /**
+     * Encode the event into the destination without allocating when thread locals are enabled.
+     */
+    @Override
+    public void encode(LogEvent event, ByteBufferDestination destination) {
+        if (!Constants.ENABLE_THREADLOCALS) {
+            super.encode(event, destination);
+            return;
+        }
+
+        StringBuilder text = getStringBuilder();
+        try {
+            Encoder<StringBuilder> encoder = getStringBuilderEncoder();
+            encoder.encode(toText(event, text), destination);
+        } finally {
+            trimToMaxSize(text);
+        }
+    }
+
+    /**
+     * Render the HEC event.
+     *
+     * @param event the logging event
+     * @param text  the target StringBuilder
+     *
+     * @return the target StringBuilder
+     */
+    StringBuilder toText(LogEvent event, StringBuilder text) {
+        text.append(eventPrefix);
+        TimestampEncoder timestampEncoder = Constants.ENABLE_THREADLOCALS ? TIMESTAMP_ENCODER.get() : new TimestampEncoder();
+        text.append(timestampEncoder.getBuffer(), 0, timestampEncoder.encodeMillis(event.getTimeMillis()));
+
+        text.append("\",\"fields\":{").append(constantFields);
+        if (includeContextMap) {
+            ReadOnlyStringMap contextData = event.getContextData();
+            if (contextData != null && !contextData.isEmpty()) {
+                contextData.forEach(WRITE_CONTEXT_ENTRY, text);
+            }
+        }
+        text.append("\"level\":\"").append(event.getLevel().name()).append("\",\"logger\":");
+        appendJsonString(text, event.getLoggerName() != null ? event.getLoggerName() : "");
+        text.append(",\"thread\":");
+        appendJsonString(text, event.getThreadName() != null ? event.getThreadName() : "");
+        if (event.getThrown() != null) {
+            text.append(",\"exception\":");
+            appendJsonString(text, renderThrowable(event.getThrown()));
+        }
+
+        text.append("},\"event\":");
+        appendJsonString(text, formatMessage(event.getMessage()));
+        return text.append('}');
+    }
+
+    static CharSequence formatMessage(Message message) {
+        if (message == null) {
+            return "";
+        }
+        if (!(message instanceof StringBuilderFormattable)) {
+            return message.getFormattedMessage();
+        }
+
+        StringBuilder messageText = Constants.ENABLE_THREADLOCALS ? MESSAGE_BUILDER.get() : new StringBuilder();
+        messageText.setLength(0);
+        ((StringBuilderFormattable) message).formatTo(messageText);
+        return messageText;
+    }
+
+    static CharSequence renderThrowable(Throwable thrown) {
+        StringBuilder stackTrace = new StringBuilder(DEFAULT_MESSAGE_BUFFER_SIZE);
+        thrown.printStackTrace(new PrintWriter(new StringBuilderWriter(stackTrace)));
+        return stackTrace;
+    }
+
+    static void appendDefaultField(StringBuilder text, String name, String value) {
+        if (value != null && !value.isEmpty()) {
+            text.append('"').append(name).append("\":");
+            appendJsonString(text, value);
+            text.append(',');
+        }
+    }
+
+    /**
+     * Append a quoted and escaped JSON string.
+     *
+     * @param text  the target StringBuilder
+     * @param value the value to append
+     */
+    static void appendJsonString(StringBuilder text, CharSequence value) {
+        text.append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                text.append("\\\"");
+                break;
+            case '\\':
+                text.append("\\\\");
+                break;
+            case '\n':
+                text.append("\\n");
+                break;
+            case '\r':
+                text.append("\\r");
+                break;
+            case '\t':
+                text.append("\\t");
+                break;
+            case '\b':
+                text.append("\\b");
+                break;
+            case '\f':
+                text.append("\\f");
+                break;
+            default:
+                if (c < 0x20) {
+                    text.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+                } else {
+                    text.append(c);
+                }
+            }
+        }
+        text.append('"');
+    }
+
+    /**
+     * Writer that appends to a StringBuilder - used to render stack traces.
+     */
+    static class StringBuilderWriter extends Writer {
+        final StringBuilder target;
+
+        StringBuilderWriter(StringBuilder target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            target.append(buffer, offset, length);
+        }
+
+        @Override
+        public void write(String value, int offset, int length) {
+            target.append(value, offset, offset + length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static class Builder implements org.apache.logging.log4j.core.util.Builder<HttpEventCollectorJsonLayout> {
+        @PluginBuilderAttribute
+        String host;
+
+        @PluginBuilderAttribute
+        String index;
+
+        @PluginBuilderAttribute
+        String source;
+
+        @PluginBuilderAttribute
+        String sourcetype;
+
+        @PluginBuilderAttribute
+        boolean includeContextMap = true;
+
+        @PluginElement("ConstantField")
+        KeyValuePair[] constantFields;
+
+        public Builder setHost(String host) {
+            this.host = host;
+            return this;
+        }
+
+        public Builder setIndex(String index) {
+            this.index = index;
+            return this;
+        }
+
+        public Builder setSource(String source) {
+            this.source = source;
+            return this;
+        }
+
+        public Builder setSourcetype(String sourcetype) {
+            this.sourcetype = sourcetype;
+            return this;
+        }
+
+        public Builder setIncludeContextMap(boolean includeContextMap) {
+            this.includeContextMap = includeContextMap;
+            return this;
+        }
+
+        public Builder setConstantFields(KeyValuePair... constantFields) {
+            this.constantFields = constantFields;
+            return this;
+        }
+
+        @Override
+        public HttpEventCollectorJsonLayout build() {
+            String eventHost = host;
+            if (eventHost == null || eventHost.isEmpty()) {
+                try {
+                    eventHost = InetAddress.getLocalHost().getHostName();
+                } catch (UnknownHostException unknownHostEx) {
+                    eventHost = null;
+                }
+            }
+
+            return new HttpEventCollectorJsonLayout(eventHost, index, source, sourcetype, constantFields, includeContextMap);
+        }
+    }
+}
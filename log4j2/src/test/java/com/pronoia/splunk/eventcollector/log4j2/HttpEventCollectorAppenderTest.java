@@ -0,0 +1,213 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.log4j2;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the HttpEventCollectorAppender.
+ */
+public class HttpEventCollectorAppenderTest {
+    HttpServer server;
+    final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    volatile CountDownLatch requestGate = new CountDownLatch(0);
+
+    HttpEventCollectorAppender.Builder<?> builder;
+    HttpEventCollectorAppender appender;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/services/collector", exchange -> {
+            try {
+                requestGate.await(10, TimeUnit.SECONDS);
+                requestBodies.add(readFully(exchange.getRequestBody()));
+                byte[] response = "{\"text\":\"Success\",\"code\":0}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream responseBody = exchange.getResponseBody()) {
+                    responseBody.write(response);
+                }
+            } catch (InterruptedException interruptedEx) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+
+        builder = HttpEventCollectorAppender.newBuilder()
+            .withName("splunk")
+            .setHost("localhost")
+            .setPort(server.getAddress().getPort())
+            .setUseSSL(false)
+            .setAuthorizationToken("dummy-token")
+            .setLingerMillis(50);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        requestGate = new CountDownLatch(0);
+        if (appender != null && appender.isStarted()) {
+            appender.stop();
+        }
+        server.stop(0);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEventsAreDelivered() throws Exception {
+        appender = builder.build();
+        appender.start();
+
+        for (int i = 0; i < 5; ++i) {
+            appender.append(createEvent("Message " + i));
+        }
+        appender.stop();
+
+        assertEquals(5, appender.getDeliveredEventCount());
+        assertEquals(0, appender.getDroppedEventCount());
+
+        String body = String.join("", requestBodies);
+        assertTrue(body, body.contains("\"event\":\"Message 0\""));
+        assertTrue(body, body.contains("\"event\":\"Message 4\""));
+        assertTrue(body, body.contains("\"logger\":\"test.logger\""));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBatchSize() throws Exception {
+        appender = builder.setBatchSize(2).setLingerMillis(60000).build();
+        appender.start();
+
+        for (int i = 0; i < 4; ++i) {
+            appender.append(createEvent("Message " + i));
+        }
+        appender.stop();
+
+        assertEquals(2, requestBodies.size());
+        assertEquals(4, appender.getDeliveredEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEventsAreDroppedWhenAllBuffersAreInUse() throws Exception {
+        appender = builder.setBatchSize(1).setBufferCount(2).setBlockTimeoutMillis(10).build();
+        requestGate = new CountDownLatch(1);
+        appender.start();
+
+        for (int i = 0; i < 5; ++i) {
+            appender.append(createEvent("Message " + i));
+        }
+        assertEquals(3, appender.getDroppedEventCount());
+
+        requestGate.countDown();
+        appender.stop();
+        assertEquals(2, appender.getDeliveredEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEventsFromTheSenderThreadAreDropped() throws Exception {
+        appender = builder.build();
+        appender.senderThread = Thread.currentThread();
+
+        appender.append(createEvent("Logged by the HTTP client"));
+
+        assertEquals(1, appender.getDroppedEventCount());
+        assertNull("The event should not have been encoded", appender.currentBatch);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testLockIsNotHeldWhileWaitingForAFreeBatch() throws Exception {
+        appender = builder.setBatchSize(1).setBufferCount(1).setBlockTimeoutMillis(10000).build();
+        requestGate = new CountDownLatch(1);
+        appender.start();
+
+        appender.append(createEvent("Message 0"));
+
+        Thread waitingThread = new Thread(() -> appender.append(createEvent("Message 1")));
+        waitingThread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (waitingThread.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue("The lock should not be held while waiting for a free batch", appender.lock.tryLock(1, TimeUnit.SECONDS));
+        appender.lock.unlock();
+
+        requestGate.countDown();
+        waitingThread.join(5000);
+        appender.stop();
+
+        assertEquals(2, appender.getDeliveredEventCount());
+        assertEquals(0, appender.getDroppedEventCount());
+    }
+
+    static LogEvent createEvent(String message) {
+        return Log4jLogEvent.newBuilder()
+            .setLoggerName("test.logger")
+            .setLevel(Level.INFO)
+            .setTimeMillis(System.currentTimeMillis())
+            .setMessage(new SimpleMessage(message))
+            .build();
+    }
+
+    static String readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toString("UTF-8");
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.log4j2;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.core.layout.ByteBufferDestination;
+import org.apache.logging.log4j.core.util.KeyValuePair;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.apache.logging.log4j.util.SortedArrayStringMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the HttpEventCollectorJsonLayout.
+ */
+public class HttpEventCollectorJsonLayoutTest {
+    HttpEventCollectorJsonLayout instance;
+
+    @Before
+    public void setUp() throws Exception {
+        instance = HttpEventCollectorJsonLayout.newBuilder()
+            .setHost("test-host")
+            .setIndex("test-index")
+            .setSourcetype("test-sourcetype")
+            .setConstantFields(new KeyValuePair("environment", "test"))
+            .build();
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testToSerializable() throws Exception {
+        SortedArrayStringMap contextData = new SortedArrayStringMap();
+        contextData.putValue("requestId", "request-1");
+
+        LogEvent event = Log4jLogEvent.newBuilder()
+            .setLoggerName("test.logger")
+            .setLevel(Level.INFO)
+            .setThreadName("test-thread")
+            .setTimeMillis(1505323567566L)
+            .setContextData(contextData)
+            .setMessage(new ParameterizedMessage("Message {}", 1))
+            .build();
+
+        String expected = "{\"host\":\"test-host\",\"index\":\"test-index\",\"sourcetype\":\"test-sourcetype\",\"time\":\"1505323567.566\","
+            + "\"fields\":{\"environment\":\"test\",\"requestId\":\"request-1\",\"level\":\"INFO\",\"logger\":\"test.logger\",\"thread\":\"test-thread\"},"
+            + "\"event\":\"Message 1\"}";
+
+        assertEquals(expected, instance.toSerializable(event));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEncodeMatchesToSerializable() throws Exception {
+        LogEvent event = Log4jLogEvent.newBuilder()
+            .setLoggerName("test.logger")
+            .setLevel(Level.WARN)
+            .setTimeMillis(1505323567566L)
+            .setMessage(new SimpleMessage("Quoted \"text\" \u00e9"))
+            .build();
+
+        CollectingDestination destination = new CollectingDestination(16);
+        instance.encode(event, destination);
+        destination.drain(destination.getByteBuffer());
+
+        assertEquals(instance.toSerializable(event), new String(destination.bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEscaping() throws Exception {
+        LogEvent event = Log4jLogEvent.newBuilder()
+            .setLoggerName("test.logger")
+            .setLevel(Level.ERROR)
+            .setTimeMillis(0)
+            .setMessage(new SimpleMessage("Line 1\nLine 2\t\"quoted\" \\ \u0001"))
+            .setThrown(new IllegalStateException("dummy failure"))
+            .build();
+
+        String text = instance.toSerializable(event);
+
+        assertTrue(text, text.endsWith("\"event\":\"Line 1\\nLine 2\\t\\\"quoted\\\" \\\\ \\u0001\"}"));
+        assertTrue(text, text.contains("\"exception\":\"java.lang.IllegalStateException: dummy failure"));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testContextMapExcluded() throws Exception {
+        instance = HttpEventCollectorJsonLayout.newBuilder().setHost("test-host").setIncludeContextMap(false).build();
+
+        SortedArrayStringMap contextData = new SortedArrayStringMap();
+        contextData.putValue("requestId", "request-1");
+
+        LogEvent event = Log4jLogEvent.newBuilder()
+            .setLevel(Level.INFO)
+            .setContextData(contextData)
+            .setMessage(new SimpleMessage("Message"))
+            .build();
+
+        String text = instance.toSerializable(event);
+
+        assertTrue(text, text.contains("\"fields\":{\"level\":\"INFO\""));
+        assertTrue(text, !text.contains("requestId"));
+    }
+
+    /**
+     * A destination with a deliberately small buffer, so the layout has to drain it while encoding.
+     */
+    static class CollectingDestination implements ByteBufferDestination {
+        final ByteBuffer buffer;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        CollectingDestination(int capacity) {
+            buffer = ByteBuffer.allocate(capacity);
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer() {
+            return buffer;
+        }
+
+        @Override
+        public ByteBuffer drain(ByteBuffer buf) {
+            buf.flip();
+            bytes.write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+            buf.clear();
+            return buf;
+        }
+
+        @Override
+        public void writeBytes(ByteBuffer data) {
+            drain(buffer);
+            while (data.hasRemaining()) {
+                bytes.write(data.get());
+            }
+        }
+
+        @Override
+        public void writeBytes(byte[] data, int offset, int length) {
+            drain(buffer);
+            bytes.write(data, offset, length);
+        }
+    }
+}
@@ -0,0 +1,455 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.EventPayload;
+import com.pronoia.splunk.eventcollector.client.SimpleEventCollectorClient;
+import com.pronoia.splunk.eventcollector.eventbuilder.MdcMode;
+import com.pronoia.splunk.eventcollector.eventbuilder.StringEventBuilder;
+import com.pronoia.splunk.eventcollector.util.NamedThreadFactory;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Logback appender that delivers logging events to a Splunk HTTP Event Collector without blocking the logging thread
+ * on HTTP.
+ *
+ * <p>The logging thread captures the formatted message, MDC and throwable of the event into a preallocated slot of a
+ * lock-free ring buffer.  A background consumer builds the HEC events from the slots with an EventBuilder and delivers
+ * them in batches.  A batch is sent when it reaches the batch size or the maximum batch size in bytes, or when the first
+ * event in the batch has waited for the linger time.  Batches that cannot be delivered are dropped and reported to the
+ * Logback status manager.
+ *
+ * <p>When the ring buffer is full, the full buffer policy determines whether the logging thread blocks, or the event is
+ * dropped.  Events logged by the consumer thread itself (i.e. by the HTTP client) are always dropped, so the appender
+ * can never wait on itself.
+ */
+public class HttpEventCollectorAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+    static final int DEFAULT_BATCH_SIZE = 100;
+    static final int DEFAULT_MAX_BATCH_BYTES = 1024 * 1024;
+    static final long DEFAULT_LINGER_MILLIS = 200;
+    static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 5000;
+    static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    final SimpleEventCollectorClient client = new SimpleEventCollectorClient();
+
+    int bufferSize = DEFAULT_BUFFER_SIZE;
+    int batchSize = DEFAULT_BATCH_SIZE;
+    int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+    long lingerMillis = DEFAULT_LINGER_MILLIS;
+    long shutdownTimeoutMillis = DEFAULT_SHUTDOWN_TIMEOUT_MILLIS;
+    FullBufferPolicy fullBufferPolicy = FullBufferPolicy.BLOCK;
+    Level dropThreshold = Level.WARN;
+    boolean includeMdc = true;
+
+    LoggingEventRingBuffer ringBuffer;
+    StringEventBuilder eventBuilder;
+    volatile Thread consumerThread;
+    volatile boolean consuming;
+
+    final LongAdder droppedEventCount = new LongAdder();
+    final LongAdder deliveredEventCount = new LongAdder();
+    final LongAdder failedBatchCount = new LongAdder();
+
+    public String getHost() {
+        return client.getHost();
+    }
+
+    public void setHost(String host) {
+        client.setHost(host);
+    }
+
+    public Integer getPort() {
+        return client.getPort();
+    }
+
+    public void setPort(int port) {
+        client.setPort(port);
+    }
+
+    public String getAuthorizationToken() {
+        return client.getAuthorizationToken();
+    }
+
+    public void setAuthorizationToken(String authorizationToken) {
+        client.setAuthorizationToken(authorizationToken);
+    }
+
+    public boolean isUseSSL() {
+        return client.isUseSSL();
+    }
+
+    public void setUseSSL(boolean useSSL) {
+        client.setUseSSL(useSSL);
+    }
+
+    public void setValidateCertificates(boolean validateCertificates) {
+        client.setValidateCertificates(validateCertificates);
+    }
+
+    public boolean isGzipEnabled() {
+        return client.isGzipEnabled();
+    }
+
+    public void setGzipEnabled(boolean gzipEnabled) {
+        client.setGzipEnabled(gzipEnabled);
+    }
+
+    public String getEventHost() {
+        return client.getEventHost();
+    }
+
+    public void setEventHost(String eventHost) {
+        client.setEventHost(eventHost);
+    }
+
+    public String getIndex() {
+        return client.getEventIndex();
+    }
+
+    public void setIndex(String index) {
+        client.setEventIndex(index);
+    }
+
+    public String getSource() {
+        return client.getEventSource();
+    }
+
+    public void setSource(String source) {
+        client.setEventSource(source);
+    }
+
+    public String getSourcetype() {
+        return client.getEventSourcetype();
+    }
+
+    public void setSourcetype(String sourcetype) {
+        client.setEventSourcetype(sourcetype);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Set the number of slots in the ring buffer - the value is rounded up to a power of two.
+     *
+     * @param bufferSize the number of slots
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public long getLingerMillis() {
+        return lingerMillis;
+    }
+
+    public void setLingerMillis(long lingerMillis) {
+        this.lingerMillis = lingerMillis;
+    }
+
+    public long getShutdownTimeoutMillis() {
+        return shutdownTimeoutMillis;
+    }
+
+    /**
+     * Set how long stopping the appender waits for the buffered events to be delivered.
+     *
+     * @param shutdownTimeoutMillis the timeout in milliseconds
+     */
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    public String getFullBufferPolicy() {
+        return fullBufferPolicy.name();
+    }
+
+    /**
+     * Set the policy used when the ring buffer is full - one of 'block', 'drop' or 'drop_below_level'.
+     *
+     * @param fullBufferPolicy the name of the policy
+     */
+    public void setFullBufferPolicy(String fullBufferPolicy) {
+        try {
+            this.fullBufferPolicy = FullBufferPolicy.valueOf(fullBufferPolicy.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException invalidPolicyEx) {
+            addError(String.format("Invalid full buffer policy '%s' - using %s", fullBufferPolicy, this.fullBufferPolicy));
+        }
+    }
+
+    public String getDropThreshold() {
+        return dropThreshold.toString();
+    }
+
+    /**
+     * Set the level below which events are dropped when the ring buffer is full and the policy is 'drop_below_level'.
+     *
+     * @param dropThreshold the name of the level
+     */
+    public void setDropThreshold(String dropThreshold) {
+        this.dropThreshold = Level.toLevel(dropThreshold, Level.WARN);
+    }
+
+    public boolean isIncludeMdc() {
+        return includeMdc;
+    }
+
+    public void setIncludeMdc(boolean includeMdc) {
+        this.includeMdc = includeMdc;
+    }
+
+    public SimpleEventCollectorClient getClient() {
+        return client;
+    }
+
+    public long getDroppedEventCount() {
+        return droppedEventCount.sum();
+    }
+
+    public long getDeliveredEventCount() {
+        return deliveredEventCount.sum();
+    }
+
+    public long getFailedBatchCount() {
+        return failedBatchCount.sum();
+    }
+
+    public int getPendingEventCount() {
+        LoggingEventRingBuffer tmpRingBuffer = ringBuffer;
+        return tmpRingBuffer != null ? tmpRingBuffer.size() : 0;
+    }
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+
+        if (client.getHost() == null || client.getHost().isEmpty()) {
+            addError(String.format("No host configured for appender '%s'", getName()));
+            return;
+        }
+        if (client.getAuthorizationToken() == null || client.getAuthorizationToken().isEmpty()) {
+            addError(String.format("No authorization token configured for appender '%s'", getName()));
+            return;
+        }
+
+        try {
+            ringBuffer = new LoggingEventRingBuffer(bufferSize);
+        } catch (IllegalArgumentException invalidBufferSizeEx) {
+            addError(String.format("Invalid buffer size configured for appender '%s'", getName()), invalidBufferSizeEx);
+            return;
+        }
+
+        eventBuilder = new StringEventBuilder();
+        // The MDC of the consumer thread is unrelated to the events
+        eventBuilder.setMdcMode(MdcMode.LAZY);
+
+        client.start();
+
+        consuming = true;
+        Thread tmpConsumerThread = new NamedThreadFactory(getName() != null ? getName() : "splunk-httpec-appender").newThread(this::consume);
+        tmpConsumerThread.setDaemon(true);
+        consumerThread = tmpConsumerThread;
+
+        super.start();
+        tmpConsumerThread.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+
+        // Stop accepting events - blocked logging threads give up
+        super.stop();
+
+        consuming = false;
+        Thread tmpConsumerThread = consumerThread;
+        if (tmpConsumerThread != null) {
+            try {
+                tmpConsumerThread.join(shutdownTimeoutMillis);
+            } catch (InterruptedException interruptedEx) {
+                Thread.currentThread().interrupt();
+            }
+            if (tmpConsumerThread.isAlive()) {
+                addWarn(String.format("Timed-out waiting for appender '%s' to deliver %d buffered events", getName(), getPendingEventCount()));
+                tmpConsumerThread.interrupt();
+            }
+        }
+        consumerThread = null;
+
+        client.stop();
+    }
+
+    /**
+     * Capture the logging event into a slot of the ring buffer.
+     *
+     * @param event the logging event
+     */
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (Thread.currentThread() == consumerThread) {
+            droppedEventCount.increment();
+            return;
+        }
+
+        long sequence = claim(event.getLevel());
+        if (sequence < 0) {
+            droppedEventCount.increment();
+            return;
+        }
+
+        LoggingEventRingBuffer.Slot slot = ringBuffer.get(sequence);
+        slot.timestamp = event.getTimeStamp();
+        slot.level = event.getLevel();
+        slot.loggerName = event.getLoggerName();
+        slot.threadName = event.getThreadName();
+        slot.message = event.getFormattedMessage();
+        slot.throwableProxy = event.getThrowableProxy();
+        slot.mdc = includeMdc ? event.getMDCPropertyMap() : null;
+        ringBuffer.publish(sequence);
+    }
+
+    /**
+     * Claim a slot in the ring buffer, applying the full buffer policy if there is no free slot.
+     *
+     * @param level the level of the event
+     *
+     * @return the sequence of the claimed slot, or -1 if the event should be dropped
+     */
+    long claim(Level level) {
+        long sequence = ringBuffer.tryClaim();
+        if (sequence >= 0 || fullBufferPolicy == FullBufferPolicy.DROP) {
+            return sequence;
+        }
+        if (fullBufferPolicy == FullBufferPolicy.DROP_BELOW_LEVEL && !level.isGreaterOrEqual(dropThreshold)) {
+            return -1;
+        }
+
+        while (isStarted()) {
+            LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+            sequence = ringBuffer.tryClaim();
+            if (sequence >= 0) {
+                return sequence;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Build and deliver the captured events until the appender is stopped and the buffer is drained.
+     */
+    void consume() {
+        final long lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        final EventPayload payload = new EventPayload();
+        long batchStartNanos = 0;
+
+        while ((consuming || ringBuffer.size() > 0) && !Thread.currentThread().isInterrupted()) {
+            LoggingEventRingBuffer.Slot slot = ringBuffer.poll();
+            if (slot != null) {
+                try {
+                    appendEvent(slot, payload);
+                } catch (RuntimeException buildEx) {
+                    droppedEventCount.increment();
+                    addError("Failed to build event - the event will be dropped", buildEx);
+                } finally {
+                    ringBuffer.release(slot);
+                }
+
+                if (payload.getEventCount() == 1) {
+                    batchStartNanos = System.nanoTime();
+                }
+                if (payload.getEventCount() >= batchSize || payload.getLength() >= maxBatchBytes) {
+                    deliver(payload);
+                }
+            } else if (!payload.isEmpty() && (!consuming || System.nanoTime() - batchStartNanos >= lingerNanos)) {
+                deliver(payload);
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+
+        deliver(payload);
+    }
+
+    void appendEvent(LoggingEventRingBuffer.Slot slot, EventPayload payload) {
+        eventBuilder.setEventBody(slot.message);
+        eventBuilder.setTimestamp(slot.timestamp);
+        if (slot.mdc != null) {
+            for (Map.Entry<String, String> entry : slot.mdc.entrySet()) {
+                eventBuilder.setField(entry.getKey(), entry.getValue());
+            }
+        }
+        eventBuilder.setField("level", slot.level.toString());
+        eventBuilder.setField("logger", slot.loggerName);
+        eventBuilder.setField("thread", slot.threadName);
+        if (slot.throwableProxy != null) {
+            eventBuilder.setField("exception", ThrowableProxyUtil.asString(slot.throwableProxy));
+        }
+
+        eventBuilder.appendTo(client, payload);
+    }
+
+    void deliver(EventPayload payload) {
+        if (payload.isEmpty()) {
+            return;
+        }
+
+        try {
+            client.sendEvents(payload);
+            deliveredEventCount.add(payload.getEventCount());
+        } catch (EventDeliveryException | RuntimeException deliveryEx) {
+            failedBatchCount.increment();
+            droppedEventCount.add(payload.getEventCount());
+            addError(String.format("Failed to deliver batch of %d events - the events will be dropped", payload.getEventCount()), deliveryEx);
+        } finally {
+            payload.reset();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Preallocated, lock-free ring buffer of captured logging events for many producers and a single consumer.
+ *
+ * <p>A producer claims a sequence number, fills the slot for the sequence and publishes it.  The consumer takes the
+ * slots in sequence order once they are published, and releases each slot when it is done with it.  A slot is never
+ * claimed until the consumer has released it, so neither side ever allocates or locks.
+ */
+class LoggingEventRingBuffer {
+    final Slot[] slots;
+    final int mask;
+
+    final AtomicLong claimSequence = new AtomicLong();
+    volatile long consumerSequence;
+
+    /**
+     * Create a ring buffer.
+     *
+     * @param capacity the minimum number of slots - the capacity is rounded up to a power of two
+     */
+    LoggingEventRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException(String.format("Invalid ring buffer capacity %d - the value must be between 1 and %d", capacity, 1 << 30));
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        slots = new Slot[size];
+        for (int i = 0; i < size; ++i) {
+            slots[i] = new Slot();
+        }
+        mask = size - 1;
+    }
+
+    int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Get the number of claimed slots that the consumer has not released.
+     *
+     * @return the number of pending events
+     */
+    int size() {
+        return (int) (claimSequence.get() - consumerSequence);
+    }
+
+    /**
+     * Claim the next slot without waiting.
+     *
+     * @return the sequence of the claimed slot, or -1 if the buffer is full
+     */
+    long tryClaim() {
+        for (;;) {
+            long current = claimSequence.get();
+            if (current - consumerSequence >= slots.length) {
+                return -1;
+            }
+            if (claimSequence.compareAndSet(current, current + 1)) {
+                return current;
+            }
+        }
+    }
+
+    Slot get(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * Make a filled slot visible to the consumer.
+     *
+     * @param sequence the sequence of the slot
+     */
+    void publish(long sequence) {
+        get(sequence).publishedSequence = sequence;
+    }
+
+    /**
+     * Get the next published slot - only called by the consumer.
+     *
+     * @return the slot, or null if the next slot has not been published
+     */
+    Slot poll() {
+        Slot slot = get(consumerSequence);
+        return slot.publishedSequence == consumerSequence ? slot : null;
+    }
+
+    /**
+     * Release the slot returned by the last poll so it can be claimed again - only called by the consumer.
+     *
+     * @param slot the slot
+     */
+    void release(Slot slot) {
+        slot.clear();
+        consumerSequence = consumerSequence + 1;
+    }
+
+    /**
+     * A logging event captured on the logging thread.
+     */
+    static class Slot {
+        volatile long publishedSequence = -1;
+
+        long timestamp;
+        Level level;
+        String loggerName;
+        String threadName;
+        String message;
+        IThrowableProxy throwableProxy;
+        Map<String, String> mdc;
+
+        void clear() {
+            level = null;
+            loggerName = null;
+            threadName = null;
+            message = null;
+            throwableProxy = null;
+            mdc = null;
+        }
+    }
+}
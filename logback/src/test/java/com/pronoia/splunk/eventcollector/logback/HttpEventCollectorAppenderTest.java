@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.logback;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the HttpEventCollectorAppender.
+ */
+public class HttpEventCollectorAppenderTest {
+    HttpServer server;
+    final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    volatile CountDownLatch requestGate = new CountDownLatch(0);
+
+    LoggerContext loggerContext;
+    HttpEventCollectorAppender appender;
+    Logger logger;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/services/collector", exchange -> {
+            try {
+                requestGate.await(10, TimeUnit.SECONDS);
+                requestBodies.add(readFully(exchange.getRequestBody()));
+                byte[] response = "{\"text\":\"Success\",\"code\":0}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream responseBody = exchange.getResponseBody()) {
+                    responseBody.write(response);
+                }
+            } catch (InterruptedException interruptedEx) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+
+        loggerContext = new LoggerContext();
+
+        appender = new HttpEventCollectorAppender();
+        appender.setContext(loggerContext);
+        appender.setName("splunk");
+        appender.setHost("localhost");
+        appender.setPort(server.getAddress().getPort());
+        appender.setUseSSL(false);
+        appender.setAuthorizationToken("dummy-token");
+        appender.setLingerMillis(50);
+
+        logger = loggerContext.getLogger("test.logger");
+        logger.setAdditive(false);
+        logger.addAppender(appender);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        requestGate = new CountDownLatch(0);
+        appender.stop();
+        server.stop(0);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEventsAreDeliveredInBatches() throws Exception {
+        appender.start();
+        assertTrue(appender.isStarted());
+
+        MDC.put("requestId", "request-1");
+        try {
+            for (int i = 0; i < 5; ++i) {
+                logger.info("Message {}", i);
+            }
+            logger.error("Failure", new IllegalStateException("dummy failure"));
+        } finally {
+            MDC.remove("requestId");
+        }
+
+        appender.stop();
+
+        assertEquals(6, appender.getDeliveredEventCount());
+        assertEquals(0, appender.getDroppedEventCount());
+
+        String body = String.join("", requestBodies);
+        assertTrue(body, body.contains("\"event\":\"Message 0\""));
+        assertTrue(body, body.contains("\"event\":\"Message 4\""));
+        assertTrue(body, body.contains("\"level\":\"INFO\""));
+        assertTrue(body, body.contains("\"requestId\":\"request-1\""));
+        assertTrue(body, body.contains("\"logger\":\"test.logger\""));
+        assertTrue(body, body.contains("\"thread\":\"" + Thread.currentThread().getName() + "\""));
+        assertTrue(body, body.contains("\"exception\":\"java.lang.IllegalStateException: dummy failure"));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBatchSize() throws Exception {
+        appender.setBatchSize(2);
+        appender.setLingerMillis(60000);
+        appender.start();
+
+        for (int i = 0; i < 4; ++i) {
+            logger.info("Message {}", i);
+        }
+        appender.stop();
+
+        assertEquals(2, requestBodies.size());
+        assertEquals(4, appender.getDeliveredEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testDropPolicy() throws Exception {
+        appender.setFullBufferPolicy("drop");
+        appender.setBufferSize(2);
+        appender.setBatchSize(1);
+        blockRequests();
+
+        for (int i = 0; i < 5; ++i) {
+            logger.info("Message {}", i);
+        }
+
+        assertEquals(3, appender.getDroppedEventCount());
+        requestGate.countDown();
+        appender.stop();
+        assertEquals(3, appender.getDeliveredEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testDropBelowLevelPolicy() throws Exception {
+        appender.setFullBufferPolicy("drop_below_level");
+        appender.setDropThreshold("WARN");
+        appender.setBufferSize(2);
+        appender.setBatchSize(1);
+        blockRequests();
+
+        logger.info("Buffered 1");
+        logger.info("Buffered 2");
+        logger.info("Dropped");
+        assertEquals(1, appender.getDroppedEventCount());
+
+        Thread warningThread = new Thread(() -> logger.warn("Blocked"));
+        warningThread.start();
+        warningThread.join(200);
+        assertTrue("The warning should block until a slot is available", warningThread.isAlive());
+
+        requestGate.countDown();
+        warningThread.join(5000);
+        assertFalse(warningThread.isAlive());
+
+        appender.stop();
+        assertEquals(4, appender.getDeliveredEventCount());
+        assertEquals(1, appender.getDroppedEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testStartWithoutToken() throws Exception {
+        appender.setAuthorizationToken(null);
+        appender.start();
+
+        assertFalse(appender.isStarted());
+    }
+
+    /**
+     * Start the appender and wait until the consumer is blocked delivering the first event.
+     */
+    void blockRequests() throws Exception {
+        requestGate = new CountDownLatch(1);
+        appender.start();
+
+        logger.info("In flight");
+        for (int i = 0; i < 500 && appender.getPendingEventCount() > 0; ++i) {
+            Thread.sleep(10);
+        }
+        assertEquals("The consumer should have taken the first event", 0, appender.getPendingEventCount());
+    }
+
+    static String readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        for (int count = inputStream.read(chunk); count >= 0; count = inputStream.read(chunk)) {
+            buffer.write(chunk, 0, count);
+        }
+        return buffer.toString(StandardCharsets.UTF_8.name());
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.logback;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+
+/**
+ * Test of the LoggingEventRingBuffer.
+ */
+public class LoggingEventRingBufferTest {
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testCapacityIsRoundedUp() throws Exception {
+        assertEquals(1, new LoggingEventRingBuffer(1).getCapacity());
+        assertEquals(8, new LoggingEventRingBuffer(5).getCapacity());
+        assertEquals(8, new LoggingEventRingBuffer(8).getCapacity());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() throws Exception {
+        new LoggingEventRingBuffer(0);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSlotsAreConsumedInSequence() throws Exception {
+        LoggingEventRingBuffer instance = new LoggingEventRingBuffer(4);
+
+        long first = instance.tryClaim();
+        long second = instance.tryClaim();
+        instance.get(first).message = "first";
+        instance.get(second).message = "second";
+
+        instance.publish(second);
+        assertNull("The first slot has not been published", instance.poll());
+
+        instance.publish(first);
+        LoggingEventRingBuffer.Slot slot = instance.poll();
+        assertEquals("first", slot.message);
+        instance.release(slot);
+        assertNull("Released slots should be cleared", slot.message);
+
+        assertEquals("second", instance.poll().message);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testFullBuffer() throws Exception {
+        LoggingEventRingBuffer instance = new LoggingEventRingBuffer(2);
+
+        long first = instance.tryClaim();
+        instance.tryClaim();
+        assertEquals(-1, instance.tryClaim());
+        assertEquals(2, instance.size());
+
+        instance.publish(first);
+        instance.release(instance.poll());
+
+        long third = instance.tryClaim();
+        assertEquals(2, third);
+        assertSame("The released slot should be reused", instance.get(first), instance.get(third));
+    }
+}
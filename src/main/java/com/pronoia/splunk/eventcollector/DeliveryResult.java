@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector;
+
+import java.util.Map;
+
+
+/**
+ * The result of the successful delivery of an event to the Splunk HTTP Event Collector.
+ */
+public class DeliveryResult {
+    final String event;
+    final int httpStatusCode;
+    final String responseBody;
+
+    Map<String, Object> splunkResponse;
+
+    public DeliveryResult(final String event, final int httpStatusCode, final String responseBody) {
+        this.event = event;
+        this.httpStatusCode = httpStatusCode;
+        this.responseBody = responseBody;
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public int getHttpStatusCode() {
+        return httpStatusCode;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    /**
+     * Get the status code returned from Splunk.
+     *
+     * @return the status code extracted from the HTTP response, or -1 if the code could not be extracted.
+     */
+    public int getSplunkStatusCode() {
+        int answer = -1;
+
+        Object codeObj = getSplunkResponse().get("code");
+        if (codeObj != null) {
+            try {
+                answer = Integer.parseInt(codeObj.toString());
+            } catch (NumberFormatException parseEx) {
+                EventDeliveryHttpException.LOG.warn("Failed to parse integer from {} - returning {}", codeObj, answer);
+            }
+        }
+
+        return answer;
+    }
+
+    public String getSplunkStatusMessage() {
+        Object textObj = getSplunkResponse().get("text");
+
+        return textObj != null ? textObj.toString() : "<unknown>";
+    }
+
+    synchronized Map<String, Object> getSplunkResponse() {
+        if (splunkResponse == null) {
+            splunkResponse = EventDeliveryHttpException.parseResponseBody(responseBody != null ? responseBody : "{}");
+        }
+
+        return splunkResponse;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DeliveryResult{httpStatusCode=%d, responseBody=%s}", httpStatusCode, responseBody);
+    }
+}
@@ -18,6 +18,7 @@ package com.pronoia.splunk.eventcollector;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.time.Instant;
 import java.util.Date;
 import java.util.Map;
 
@@ -355,6 +356,38 @@ public interface EventBuilder<E> {
     }
 
 
+    /**
+     * Set the value for the Splunk 'timestamp' default field that will be used on
+     * the next invocation of the build() method.
+     *
+     * <p>This value is typically the time at which the event occurred.  Implementations
+     * may preserve more precision than a double number of seconds can represent.
+     *
+     * @param instant value for the 'timestamp' default field.
+     */
+    default void setTimestamp(Instant instant) {
+        final double nanosecondsPerSecond = 1000000000.0;
+
+        this.setTimestamp(instant.getEpochSecond() + instant.getNano() / nanosecondsPerSecond);
+    }
+
+
+    /**
+     * Set the value for the Splunk 'timestamp' default field that will be used on
+     * the next invocation of the build() method.
+     *
+     * <p>This value is typically the time at which the event occurred.  Implementations
+     * may preserve more precision than a double number of seconds can represent.
+     *
+     * @param epochNanoseconds value for the 'timestamp' default field as the number of nanoseconds since 1/1/1970 GMT.
+     */
+    default void setTimestampNanos(long epochNanoseconds) {
+        final double nanosecondsPerSecond = 1000000000.0;
+
+        this.setTimestamp(epochNanoseconds / nanosecondsPerSecond);
+    }
+
+
     /**
      * Set the value for the Splunk 'timestamp' default field that will be used on
      * the next invocation of the build() method.
@@ -595,6 +628,38 @@ public interface EventBuilder<E> {
     }
 
 
+    /**
+     * Set the value for the Splunk 'timestamp' default field using a builder
+     * pattern.
+     *
+     * <p>See the setTimestamp(Instant) method for details.
+     *
+     * @param instant value for the 'timestamp' default field.
+     *
+     * @return the current EventBuilder
+     */
+    default EventBuilder<E> timestamp(Instant instant) {
+        this.setTimestamp(instant);
+        return this;
+    }
+
+
+    /**
+     * Set the value for the Splunk 'timestamp' default field using a builder
+     * pattern.
+     *
+     * <p>See the setTimestampNanos(long) method for details.
+     *
+     * @param epochNanoseconds value for the 'timestamp' default field as the number of nanoseconds since 1/1/1970 GMT.
+     *
+     * @return the current EventBuilder
+     */
+    default EventBuilder<E> timestampNanos(long epochNanoseconds) {
+        this.setTimestampNanos(epochNanoseconds);
+        return this;
+    }
+
+
     /**
      * Set the value for the Splunk 'timestamp' default field using a builder
      * pattern.
@@ -683,6 +748,58 @@ public interface EventBuilder<E> {
     String build(EventCollectorClient client);
 
 
+    /**
+     * Build the JSON-formatted event and append it to a multi-event payload.
+     *
+     * <p>Like the build() method, the per-event data of the builder is reset after the event is built.
+     *
+     * @param client  the event collector client
+     * @param payload the target payload
+     *
+     * @return the payload
+     */
+    default EventPayload appendTo(EventCollectorClient client, EventPayload payload) {
+        return payload.append(build(client));
+    }
+
+
+    /**
+     * Build one event for each of the event bodies and collect them in a new multi-event payload.
+     *
+     * <p>Each event is built from the configuration of the builder and one of the event bodies - any other per-event
+     * data set before this method is called only applies to the first event.
+     *
+     * @param client      the event collector client
+     * @param eventBodies the event bodies
+     *
+     * @return the new payload
+     */
+    default EventPayload buildBatch(EventCollectorClient client, Iterable<? extends E> eventBodies) {
+        return buildBatch(client, eventBodies, new EventPayload());
+    }
+
+
+    /**
+     * Build one event for each of the event bodies and append them to a multi-event payload.
+     *
+     * <p>See buildBatch(EventCollectorClient, Iterable) for details.
+     *
+     * @param client      the event collector client
+     * @param eventBodies the event bodies
+     * @param payload     the target payload
+     *
+     * @return the payload
+     */
+    default EventPayload buildBatch(EventCollectorClient client, Iterable<? extends E> eventBodies, EventPayload payload) {
+        for (E eventBody : eventBodies) {
+            setEventBody(eventBody);
+            appendTo(client, payload);
+        }
+
+        return payload;
+    }
+
+
     /**
      * Create a duplicate EventBuilder.
      *
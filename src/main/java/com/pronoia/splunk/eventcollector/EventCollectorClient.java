@@ -16,7 +16,15 @@
  */
 package com.pronoia.splunk.eventcollector;
 
+import com.pronoia.splunk.eventcollector.util.ResolvedContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -55,6 +63,42 @@ public interface EventCollectorClient {
     Map<String, String> getIncludedEnvironmentVariables();
     Map<String, String> getIncludedEnvironmentVariables(boolean copy);
 
+    /**
+     * Get the version of the event metadata configuration of the client.
+     *
+     * <p>The version must change whenever the event host, index, source, sourcetype, constant fields, included system
+     * properties or included environment variables change.  EventBuilders use it to decide when metadata derived from the
+     * client must be recalculated.
+     *
+     * @return the configuration version, or -1 if the client does not track configuration changes
+     */
+    default long getConfigurationVersion() {
+        return -1;
+    }
+
+    /**
+     * Get the values of the included system properties, keyed by their Splunk field names.
+     *
+     * <p>Missing or empty system properties are omitted.  The default implementation resolves the values on every call.
+     *
+     * @return a Map of Splunk field names and system property values
+     */
+    default Map<String, String> getResolvedSystemProperties() {
+        return ResolvedContext.shared().resolveSystemProperties(getIncludedSystemProperties(false), new LinkedHashMap<>());
+    }
+
+    /**
+     * Get the values of the included environment variables, keyed by their Splunk field names.
+     *
+     * <p>Missing or empty environment variables are omitted.  The default implementation resolves the values on every
+     * call.
+     *
+     * @return a Map of Splunk field names and environment variable values
+     */
+    default Map<String, String> getResolvedEnvironmentVariables() {
+        return ResolvedContext.shared().resolveEnvironmentVariables(getIncludedEnvironmentVariables(false), new LinkedHashMap<>());
+    }
+
     /**
      * Initialize the client.
      *
@@ -88,4 +132,100 @@ public interface EventCollectorClient {
      *                                indexer.
      */
     void sendEvent(String event) throws EventDeliveryException;
+
+    /**
+     * Send a UTF-8 encoded, JSON-formatted event to the HTTP Event Collector.
+     *
+     * <p>The array must not be modified until this method returns.  The default implementation decodes the event and
+     * passes it to sendEvent(String) - clients that can send the bytes without converting them to a String override this
+     * method.
+     *
+     * @param event  the buffer containing the event
+     * @param offset the offset of the event in the buffer
+     * @param length the length of the event in bytes
+     *
+     * @throws EventDeliveryException in the event the Splunk event could not be delivered to the indexer.
+     */
+    default void sendEvent(byte[] event, int offset, int length) throws EventDeliveryException {
+        sendEvent(new String(event, offset, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send the remaining bytes of a ByteBuffer (heap or direct) containing a UTF-8 encoded, JSON-formatted event to the
+     * HTTP Event Collector.
+     *
+     * <p>The position of the ByteBuffer is not changed.  The default implementation decodes the event and passes it to
+     * sendEvent(String) - clients that can send the bytes without converting them to a String override this method.
+     *
+     * @param event the buffer containing the event
+     *
+     * @throws EventDeliveryException in the event the Splunk event could not be delivered to the indexer.
+     */
+    default void sendEvent(ByteBuffer event) throws EventDeliveryException {
+        sendEvent(StandardCharsets.UTF_8.decode(event.duplicate()).toString());
+    }
+
+    /**
+     * Send an event (or events) written by an EventWriter to the HTTP Event Collector.
+     *
+     * <p>The default implementation invokes the writer once, collects its output and passes it to sendEvent(String) -
+     * clients that can send the output of the writer without converting it to a String override this method.
+     *
+     * @param eventWriter writes the UTF-8 encoded, JSON-formatted event
+     *
+     * @throws EventDeliveryException in the event the Splunk event could not be written or delivered to the indexer.
+     */
+    default void sendEvent(EventWriter eventWriter) throws EventDeliveryException {
+        ByteArrayOutputStream eventBuffer = new ByteArrayOutputStream();
+        try {
+            eventWriter.writeTo(eventBuffer);
+        } catch (IOException writeEx) {
+            throw new EventDeliveryException("<streamed event>", "Failed to write event", writeEx);
+        }
+
+        sendEvent(new String(eventBuffer.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send all the events in a multi-event payload to the HTTP Event Collector.
+     *
+     * <p>The default implementation passes the buffer of the payload to sendEvent(byte[], int, int) - clients that can
+     * send the payload in a single request without copying it, or that count the events in the payload, override this
+     * method.
+     *
+     * @param payload the events to send
+     *
+     * @throws EventDeliveryException if the events could not be delivered
+     */
+    default void sendEvents(EventPayload payload) throws EventDeliveryException {
+        if (payload != null && !payload.isEmpty()) {
+            sendEvent(payload.getBuffer(), 0, payload.getLength());
+        }
+    }
+
+    /**
+     * Send an event to Splunk without blocking the calling thread for the HTTP round trip.
+     *
+     * <p>The returned future is completed with the result of the delivery, or completed exceptionally with an
+     * EventDeliveryException (or EventDeliveryHttpException) if the event could not be delivered.
+     *
+     * <p>NOTE:  The default implementation delivers the event synchronously using sendEvent, so the future is complete
+     * when this method returns.  Clients with a non-blocking transport override this method.
+     *
+     * @param event JSON-formatted Event
+     *
+     * @return a future for the result of the delivery
+     */
+    default CompletableFuture<DeliveryResult> sendEventAsync(String event) {
+        CompletableFuture<DeliveryResult> answer = new CompletableFuture<>();
+
+        try {
+            sendEvent(event);
+            answer.complete(new DeliveryResult(event, 200, null));
+        } catch (EventDeliveryException | RuntimeException deliveryEx) {
+            answer.completeExceptionally(deliveryEx);
+        }
+
+        return answer;
+    }
 }
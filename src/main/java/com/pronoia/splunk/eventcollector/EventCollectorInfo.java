@@ -36,6 +36,9 @@ public final class EventCollectorInfo {
     boolean validateCertificates = true;
 
     String cachedPostUrl;
+    String cachedHealthUrl;
+    String cachedAckUrl;
+    String cachedRawUrl;
     String cachedAuthorizationHeaderValue;
 
     public EventCollectorInfo() {
@@ -47,6 +50,10 @@ public final class EventCollectorInfo {
 
     public void setUseSSL(boolean useSSL) {
         this.useSSL = useSSL;
+        this.cachedPostUrl = null;
+        this.cachedHealthUrl = null;
+        this.cachedAckUrl = null;
+        this.cachedRawUrl = null;
     }
 
     /**
@@ -61,6 +68,9 @@ public final class EventCollectorInfo {
     public void setHost(final String host) {
         this.host = host;
         this.cachedPostUrl = null;
+        this.cachedHealthUrl = null;
+        this.cachedAckUrl = null;
+        this.cachedRawUrl = null;
     }
 
     /**
@@ -75,6 +85,9 @@ public final class EventCollectorInfo {
     public void setPort(final Integer port) {
         this.port = port;
         this.cachedPostUrl = null;
+        this.cachedHealthUrl = null;
+        this.cachedAckUrl = null;
+        this.cachedRawUrl = null;
     }
 
     /**
@@ -148,6 +161,45 @@ public final class EventCollectorInfo {
         return cachedPostUrl;
     }
 
+    /**
+     * Get the URL of the Splunk HTTP Event Collector health endpoint.
+     *
+     * @return HTTP GET URL as a String
+     */
+    public String getHealthUrl() {
+        if (cachedHealthUrl == null) {
+            cachedHealthUrl = String.format("%s://%s:%d/services/collector/health", isUseSSL() ? "https" : "http", getHost(), getPort());
+        }
+
+        return cachedHealthUrl;
+    }
+
+    /**
+     * Get the URL of the Splunk HTTP Event Collector indexer acknowledgement endpoint.
+     *
+     * @return HTTP POST URL as a String
+     */
+    public String getAckUrl() {
+        if (cachedAckUrl == null) {
+            cachedAckUrl = String.format("%s://%s:%d/services/collector/ack", isUseSSL() ? "https" : "http", getHost(), getPort());
+        }
+
+        return cachedAckUrl;
+    }
+
+    /**
+     * Get the URL of the Splunk HTTP Event Collector raw endpoint.
+     *
+     * @return HTTP POST URL as a String
+     */
+    public String getRawUrl() {
+        if (cachedRawUrl == null) {
+            cachedRawUrl = String.format("%s://%s:%d/services/collector/raw", isUseSSL() ? "https" : "http", getHost(), getPort());
+        }
+
+        return cachedRawUrl;
+    }
+
     /**
      * Get the value that will be used for the HTTP Authorization header.
      *
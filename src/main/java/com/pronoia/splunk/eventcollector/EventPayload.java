@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * A reusable, growable buffer of UTF-8 encoded events in the concatenated JSON format accepted by the Splunk HTTP Event
+ * Collector.
+ *
+ * <p>Events are appended by EventBuilders (see EventBuilder.appendTo(...) and EventBuilder.buildBatch(...)), and the
+ * payload is posted with EventCollectorClient.sendEvents(EventPayload).  Clients that support it post the internal
+ * buffer directly, so the events are not copied again.
+ *
+ * <p>NOTE:  This class is not thread-safe.
+ */
+public class EventPayload extends ByteArrayOutputStream {
+    public static final int DEFAULT_INITIAL_SIZE = 8192;
+
+    int eventCount;
+
+    public EventPayload() {
+        this(DEFAULT_INITIAL_SIZE);
+    }
+
+    public EventPayload(int initialSize) {
+        super(initialSize);
+    }
+
+    /**
+     * Get the internal buffer of the payload.  Only the first getLength() bytes of the buffer are valid.
+     *
+     * <p>The buffer is not copied, so it must not be modified while it is in use.
+     *
+     * @return the internal buffer
+     */
+    public byte[] getBuffer() {
+        return buf;
+    }
+
+    public int getLength() {
+        return count;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public boolean isEmpty() {
+        return eventCount == 0;
+    }
+
+    /**
+     * Append a JSON-formatted event to the payload.
+     *
+     * @param event the JSON-formatted event
+     *
+     * @return this payload
+     */
+    public EventPayload append(String event) {
+        write(event.getBytes(StandardCharsets.UTF_8));
+        ++eventCount;
+
+        return this;
+    }
+
+    /**
+     * Append a UTF-8 encoded JSON-formatted event to the payload.
+     *
+     * @param event  the buffer containing the event
+     * @param offset the offset of the event in the buffer
+     * @param length the length of the event in bytes
+     *
+     * @return this payload
+     */
+    public EventPayload append(byte[] event, int offset, int length) {
+        write(event, offset, length);
+        ++eventCount;
+
+        return this;
+    }
+
+    /**
+     * Build the event from the current state of an EventBuilder and append it to the payload.
+     *
+     * @param client       the event collector client
+     * @param eventBuilder the source of the event
+     *
+     * @return this payload
+     */
+    public EventPayload append(EventCollectorClient client, EventBuilder<?> eventBuilder) {
+        return eventBuilder.appendTo(client, this);
+    }
+
+    /**
+     * Record an event that was written directly to the payload using the OutputStream methods.
+     */
+    public void eventAppended() {
+        ++eventCount;
+    }
+
+    /**
+     * Discard the bytes written after the supplied length - used to remove a partially written event.
+     *
+     * @param length the length of the valid content
+     */
+    public void truncate(int length) {
+        if (length < 0 || length > count) {
+            throw new IllegalArgumentException(String.format("truncate(int) - length %d must be between 0 and %d", length, count));
+        }
+        count = length;
+    }
+
+    @Override
+    public void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        eventCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, count, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Writes a UTF-8 encoded, JSON-formatted event (or events) directly to the body of a request to the Splunk HTTP Event
+ * Collector.
+ *
+ * <p>The writer must not close the OutputStream.  A writer is only invoked once unless it declares that it is repeatable -
+ * a repeatable writer may be invoked again if the request is retried, so it must write the same content each time.
+ */
+@FunctionalInterface
+public interface EventWriter {
+    void writeTo(OutputStream outputStream) throws IOException;
+
+    /**
+     * Determine if the writer writes the same content each time it is invoked, so the request can be retried.
+     *
+     * @return true if the writer can be invoked more than once
+     */
+    default boolean isRepeatable() {
+        return false;
+    }
+
+    /**
+     * Declare that an EventWriter writes the same content each time it is invoked.
+     *
+     * @param eventWriter the idempotent writer
+     *
+     * @return a repeatable EventWriter that delegates to the supplied writer
+     */
+    static EventWriter repeatable(final EventWriter eventWriter) {
+        return new EventWriter() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                eventWriter.writeTo(outputStream);
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
+        };
+    }
+}
@@ -42,6 +42,7 @@ public abstract class SplunkMDCHelper implements AutoCloseable {
     protected Logger log = LoggerFactory.getLogger(this.getClass());
 
     protected Map<String, String> contextMap;
+    protected boolean contextMapSaved;
 
     @SuppressWarnings("checkstyle:booleanexpressioncomplexity")
     protected void addEventBuilderValues(EventBuilder<?> eventBuilder) {
@@ -49,7 +50,7 @@ public abstract class SplunkMDCHelper implements AutoCloseable {
             if (eventBuilder.hasHost() || eventBuilder.hasDefaultHost()
                     || eventBuilder.hasIndex() || eventBuilder.hasDefaultIndex()
                     || eventBuilder.hasSource() || eventBuilder.hasDefaultSource()
-                    || eventBuilder.hasDefaultSourcetype() || eventBuilder.hasDefaultSourcetype())  {
+                    || eventBuilder.hasSourcetype() || eventBuilder.hasDefaultSourcetype())  {
 
                 saveContextMap();
 
@@ -86,8 +87,14 @@ public abstract class SplunkMDCHelper implements AutoCloseable {
 
     @Override
     public void close() {
-        if (contextMap != null) {
-            MDC.setContextMap(contextMap);
+        if (contextMapSaved) {
+            if (contextMap != null) {
+                MDC.setContextMap(contextMap);
+            } else {
+                MDC.clear();
+            }
+            contextMap = null;
+            contextMapSaved = false;
         }
     }
 
@@ -97,8 +104,9 @@ public abstract class SplunkMDCHelper implements AutoCloseable {
      * If the MDC context map hasn't been captured, store a copy in the MDC helper.  Otherwise, keep the current copy.
      */
     protected void saveContextMap() {
-        if (contextMap != null) {
+        if (!contextMapSaved) {
             contextMap = MDC.getCopyOfContextMap();
+            contextMapSaved = true;
         }
     }
 
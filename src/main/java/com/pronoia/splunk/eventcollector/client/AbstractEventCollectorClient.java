@@ -19,8 +19,11 @@ package com.pronoia.splunk.eventcollector.client;
 import com.pronoia.splunk.eventcollector.EventCollectorClient;
 import com.pronoia.splunk.eventcollector.EventCollectorInfo;
 import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.util.ResolvedContext;
 
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -29,9 +32,12 @@ import java.security.cert.X509Certificate;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.management.ObjectName;
 import javax.net.ssl.SSLContext;
 
 import org.apache.http.HttpEntity;
@@ -62,6 +68,7 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
     static AtomicInteger clientCounter = new AtomicInteger(1);
 
     String clientId;
+    String channel;
 
     String eventHost;
     String eventIndex;
@@ -72,6 +79,11 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
     Map<String, String> includedSystemProperties = new TreeMap<>();
     Map<String, String> includedEnvironmentVariables = new TreeMap<>();
 
+    final AtomicLong configurationVersion = new AtomicLong();
+    final ResolvedContext resolvedContext = new ResolvedContext();
+
+    ObjectName clientObjectName;
+
     /**
      * Create a new EventCollectorClient.
      */
@@ -90,6 +102,41 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
         this.clientId = clientId;
     }
 
+    /**
+     * Determine if the client has a Splunk HTTP Event Collector channel.
+     *
+     * @return true if a channel has been configured or generated; false otherwise
+     */
+    public boolean hasChannel() {
+        return checkString(channel);
+    }
+
+    /**
+     * Get the Splunk HTTP Event Collector channel identifier sent with each request.
+     *
+     * <p>If a channel has not been configured, a random UUID will be generated and used for the lifetime of the client.
+     *
+     * @return the channel identifier
+     */
+    public String getChannel() {
+        if (channel == null || channel.isEmpty()) {
+            channel = UUID.randomUUID().toString();
+        }
+        return channel;
+    }
+
+    /**
+     * Set the Splunk HTTP Event Collector channel identifier sent with each request.
+     *
+     * <p>The channel is required when indexer acknowledgement is enabled for the token, or when events are sent to the
+     * raw endpoint.  The value must be a GUID.
+     *
+     * @param channel the channel identifier
+     */
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
     public boolean hasEventHost() {
         return checkString(eventHost);
     }
@@ -100,6 +147,7 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
 
     public void setEventHost(String eventHost) {
         this.eventHost = eventHost;
+        configurationChanged();
     }
 
     public boolean hasEventIndex() {
@@ -112,6 +160,7 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
 
     public void setEventIndex(String eventIndex) {
         this.eventIndex = eventIndex;
+        configurationChanged();
     }
 
     public boolean hasEventSource() {
@@ -124,6 +173,7 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
 
     public void setEventSource(String eventSource) {
         this.eventSource = eventSource;
+        configurationChanged();
     }
 
     public boolean hasEventSourcetype() {
@@ -136,6 +186,7 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
 
     public void setEventSourcetype(String eventSourcetype) {
         this.eventSourcetype = eventSourcetype;
+        configurationChanged();
     }
 
     @Override
@@ -183,6 +234,68 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
         return copy ? createCopyOfMap(includedEnvironmentVariables) : includedEnvironmentVariables;
     }
 
+    @Override
+    public long getConfigurationVersion() {
+        return resolvedContext.getVersion(configurationVersion.get());
+    }
+
+    /**
+     * Get the values of the included system properties, keyed by their Splunk field names.
+     *
+     * <p>The values are resolved once and reused until the configuration changes, the context refresh interval elapses or
+     * refreshContext() is called.
+     *
+     * @return an unmodifiable Map of Splunk field names and system property values
+     */
+    @Override
+    public Map<String, String> getResolvedSystemProperties() {
+        return resolvedContext.getSnapshot(includedSystemProperties, includedEnvironmentVariables, getConfigurationVersion()).getSystemProperties();
+    }
+
+    /**
+     * Get the values of the included environment variables, keyed by their Splunk field names.
+     *
+     * <p>The values are resolved once and reused until the configuration changes, the context refresh interval elapses or
+     * refreshContext() is called.
+     *
+     * @return an unmodifiable Map of Splunk field names and environment variable values
+     */
+    @Override
+    public Map<String, String> getResolvedEnvironmentVariables() {
+        return resolvedContext.getSnapshot(includedSystemProperties, includedEnvironmentVariables, getConfigurationVersion()).getEnvironmentVariables();
+    }
+
+    public long getContextRefreshIntervalMillis() {
+        return resolvedContext.getRefreshIntervalMillis();
+    }
+
+    /**
+     * Set the interval at which the values of included system properties and environment variables are resolved again.
+     *
+     * @param contextRefreshIntervalMillis the refresh interval in milliseconds; zero or less to only refresh on demand
+     */
+    public void setContextRefreshIntervalMillis(long contextRefreshIntervalMillis) {
+        resolvedContext.setRefreshIntervalMillis(contextRefreshIntervalMillis);
+    }
+
+    public long getContextResolveCount() {
+        return resolvedContext.getResolveCount();
+    }
+
+    /**
+     * Resolve the values of the included system properties and environment variables again the next time they are used.
+     */
+    public void refreshContext() {
+        configurationChanged();
+    }
+
+    /**
+     * Record a change to the event metadata configuration of the client.
+     */
+    protected void configurationChanged() {
+        configurationVersion.incrementAndGet();
+    }
+
     public boolean isUseSSL() {
         return eventCollectorInfo.isUseSSL();
     }
@@ -254,6 +367,53 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
         return eventCollectorInfo.getPostUrl();
     }
 
+    /**
+     * Get the URL of the Splunk HTTP Event Collector health endpoint.
+     *
+     * @return HTTP GET URL as a String
+     */
+    public String getHealthUrl() {
+        return eventCollectorInfo.getHealthUrl();
+    }
+
+    /**
+     * Get the URL of the Splunk HTTP Event Collector indexer acknowledgement endpoint.
+     *
+     * @return HTTP POST URL as a String
+     */
+    public String getAckUrl() {
+        return eventCollectorInfo.getAckUrl();
+    }
+
+    /**
+     * Get the URL of the Splunk HTTP Event Collector raw endpoint, including the query parameters for the default host,
+     * index, source and sourcetype of the client.
+     *
+     * @return HTTP POST URL as a String
+     */
+    public String getRawUrl() {
+        StringBuilder builder = new StringBuilder(eventCollectorInfo.getRawUrl());
+
+        char separator = '?';
+        if (hasEventHost()) {
+            appendQueryParameter(builder, separator, "host", eventHost);
+            separator = '&';
+        }
+        if (hasEventIndex()) {
+            appendQueryParameter(builder, separator, "index", eventIndex);
+            separator = '&';
+        }
+        if (hasEventSource()) {
+            appendQueryParameter(builder, separator, "source", eventSource);
+            separator = '&';
+        }
+        if (hasEventSourcetype()) {
+            appendQueryParameter(builder, separator, "sourcetype", eventSourcetype);
+        }
+
+        return builder.toString();
+    }
+
     /**
      * Get the value that will be used for the HTTP Authorization header.
      *
@@ -318,6 +478,8 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
      * @param constantFields a Map of Splunk field names and their associated values.
      */
     public void addConstantFields(Map<String, String> constantFields) {
+        configurationChanged();
+
         if (this.constantFields == null) {
             this.constantFields = new TreeMap<>();
         }
@@ -333,6 +495,8 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
      * @param splunkFieldValue  the value for the field
      */
     public void addConstantField(String splunkFieldName, String splunkFieldValue) {
+        configurationChanged();
+
         if (this.constantFields == null) {
             this.constantFields = new TreeMap<>();
         }
@@ -376,6 +540,8 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
      * @param systemProperties a Map of system property keys and their associated Splunk field names.
      */
     public void addIncludedSystemProperties(Map<String, String> systemProperties) {
+        configurationChanged();
+
         if (includedSystemProperties == null) {
             includedSystemProperties = new TreeMap<>();
         }
@@ -390,6 +556,8 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
      * @param systemProperties a List of system property keys
      */
     public void addIncludedSystemProperties(List<String> systemProperties) {
+        configurationChanged();
+
         if (includedSystemProperties == null) {
             includedSystemProperties = new TreeMap<>();
         }
@@ -407,6 +575,8 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
      * @param splunkFieldName the Splunk field name for the system property
      */
     public void includeSystemProperty(String systemProperty, String splunkFieldName) {
+        configurationChanged();
+
         if (includedSystemProperties == null) {
             includedSystemProperties = new TreeMap<>();
         }
@@ -424,6 +594,8 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
      * @param systemProperty a system property key
      */
     public void includeSystemProperty(String systemProperty) {
+        configurationChanged();
+
         if (includedSystemProperties == null) {
             includedSystemProperties = new TreeMap<>();
         }
@@ -467,6 +639,8 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
      * @param environmentVariables a Map of environment variables and their associated Splunk field names.
      */
     public void addIncludedEnvironmentVariables(Map<String, String> environmentVariables) {
+        configurationChanged();
+
         if (includedEnvironmentVariables == null) {
             includedEnvironmentVariables = new TreeMap<>();
         }
@@ -481,6 +655,8 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
      * @param environmentVariables a List of environment variables
      */
     public void addIncludedEnvironmentVariables(List<String> environmentVariables) {
+        configurationChanged();
+
         if (includedEnvironmentVariables == null) {
             includedEnvironmentVariables = new TreeMap<>();
         }
@@ -498,6 +674,8 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
      * @param splunkFieldName the Splunk field name for the environment variable
      */
     public void includeEnvironmentVariable(String environmentVariable, String splunkFieldName) {
+        configurationChanged();
+
         if (includedEnvironmentVariables == null) {
             includedEnvironmentVariables = new TreeMap<>();
         }
@@ -515,6 +693,8 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
      * @param environmentVariable an environment variable
      */
     public void includeEnvironmentVariable(String environmentVariable) {
+        configurationChanged();
+
         if (includedEnvironmentVariables == null) {
             includedEnvironmentVariables = new TreeMap<>();
         }
@@ -522,11 +702,28 @@ public abstract class AbstractEventCollectorClient implements EventCollectorClie
         includedEnvironmentVariables.put(environmentVariable, null);
     }
 
+    void registerMBean() {
+        clientObjectName = ClientMBeanSupport.registerMBean(this, getClientId(), log);
+    }
+
+    void unregisterMBean() {
+        ClientMBeanSupport.unregisterMBean(clientObjectName, log);
+        clientObjectName = null;
+    }
+
+    static void appendQueryParameter(StringBuilder builder, char separator, String name, String value) {
+        try {
+            builder.append(separator).append(name).append('=').append(URLEncoder.encode(value, "UTF-8"));
+        } catch (UnsupportedEncodingException encodingEx) {
+            throw new IllegalStateException("UTF-8 encoding is not supported", encodingEx);
+        }
+    }
+
     protected boolean checkString(String str) {
         return str != null && !str.isEmpty();
     }
 
-    protected boolean checkMap(Map map) {
+    protected boolean checkMap(Map<?, ?> map) {
         return map != null && !map.isEmpty();
     }
 
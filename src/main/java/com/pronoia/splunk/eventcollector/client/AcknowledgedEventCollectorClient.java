@@ -0,0 +1,474 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.EventPayload;
+import com.pronoia.splunk.eventcollector.EventWriter;
+import com.pronoia.splunk.eventcollector.util.NamedThreadFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+
+
+/**
+ * Client for sending JSON-formatted events to a single Splunk HTTP Collector with indexer acknowledgement.
+ *
+ * <p>Each request carries the channel identifier of the client, and the ackId returned by the HTTP Event Collector is
+ * recorded with the event.  sendEvent returns as soon as the HTTP Event Collector accepts the event, so many requests
+ * may be awaiting acknowledgement at the same time.  A background task polls the acknowledgement endpoint for all of the
+ * outstanding ackIds in a single request, and events that have not been acknowledged within the acknowledgement timeout
+ * are sent again - providing at-least-once delivery.
+ *
+ * <p>NOTE:  Indexer acknowledgement must be enabled for the HTTP Event Collector token.
+ */
+public class AcknowledgedEventCollectorClient extends SimpleEventCollectorClient implements AcknowledgedEventCollectorClientMBean {
+    static final int DEFAULT_MAX_PENDING_ACKS = 1000;
+    static final long DEFAULT_ACK_POLL_INTERVAL_MILLIS = 1000;
+    static final long DEFAULT_ACK_TIMEOUT_MILLIS = 60000;
+    static final long DEFAULT_PENDING_ACK_WAIT_MILLIS = 30000;
+    static final int DEFAULT_MAX_RESEND_COUNT = 3;
+
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    int maxPendingAcks = DEFAULT_MAX_PENDING_ACKS;
+    long ackPollIntervalMillis = DEFAULT_ACK_POLL_INTERVAL_MILLIS;
+    long ackTimeoutMillis = DEFAULT_ACK_TIMEOUT_MILLIS;
+    long pendingAckWaitMillis = DEFAULT_PENDING_ACK_WAIT_MILLIS;
+    int maxResendCount = DEFAULT_MAX_RESEND_COUNT;
+
+    final Map<Long, PendingEvent> pendingEvents = new ConcurrentHashMap<>();
+    Semaphore pendingAckPermits;
+    ScheduledExecutorService ackPollExecutor;
+
+    final AtomicLong ackPollCount = new AtomicLong();
+    final AtomicLong acknowledgedEventCount = new AtomicLong();
+    final AtomicLong resentEventCount = new AtomicLong();
+    final AtomicLong failedEventCount = new AtomicLong();
+
+    /**
+     * Create a new AcknowledgedEventCollectorClient.
+     */
+    public AcknowledgedEventCollectorClient() {
+    }
+
+    @Override
+    public boolean isInitialized() {
+        return ackPollExecutor != null && super.isInitialized();
+    }
+
+    @Override
+    public int getMaxPendingAcks() {
+        return maxPendingAcks;
+    }
+
+    /**
+     * Set the maximum number of events that can be awaiting acknowledgement.
+     *
+     * <p>When the limit is reached, sendEvent will block until acknowledgements are received.  The new value will take
+     * effect the next time the client is started.
+     *
+     * @param maxPendingAcks the maximum number of unacknowledged events
+     */
+    public void setMaxPendingAcks(int maxPendingAcks) {
+        this.maxPendingAcks = maxPendingAcks;
+    }
+
+    @Override
+    public long getAckPollIntervalMillis() {
+        return ackPollIntervalMillis;
+    }
+
+    /**
+     * Set the interval (in milliseconds) between polls of the acknowledgement endpoint.
+     *
+     * <p>The new value will take effect the next time the client is started.
+     *
+     * @param ackPollIntervalMillis the poll interval in milliseconds
+     */
+    public void setAckPollIntervalMillis(long ackPollIntervalMillis) {
+        this.ackPollIntervalMillis = ackPollIntervalMillis;
+    }
+
+    @Override
+    public long getAckTimeoutMillis() {
+        return ackTimeoutMillis;
+    }
+
+    /**
+     * Set the time (in milliseconds) to wait for an acknowledgement before an event is sent again.
+     *
+     * @param ackTimeoutMillis the acknowledgement timeout in milliseconds
+     */
+    public void setAckTimeoutMillis(long ackTimeoutMillis) {
+        this.ackTimeoutMillis = ackTimeoutMillis;
+    }
+
+    public long getPendingAckWaitMillis() {
+        return pendingAckWaitMillis;
+    }
+
+    /**
+     * Set the time (in milliseconds) sendEvent will wait when the maximum number of events are awaiting acknowledgement.
+     *
+     * @param pendingAckWaitMillis the wait time in milliseconds
+     */
+    public void setPendingAckWaitMillis(long pendingAckWaitMillis) {
+        this.pendingAckWaitMillis = pendingAckWaitMillis;
+    }
+
+    @Override
+    public int getMaxResendCount() {
+        return maxResendCount;
+    }
+
+    /**
+     * Set the number of times an unacknowledged event will be sent again before it is abandoned.
+     *
+     * @param maxResendCount the maximum number of times an event will be resent
+     */
+    public void setMaxResendCount(int maxResendCount) {
+        this.maxResendCount = maxResendCount;
+    }
+
+    @Override
+    public int getPendingAckCount() {
+        return pendingEvents.size();
+    }
+
+    @Override
+    public long getAckPollCount() {
+        return ackPollCount.get();
+    }
+
+    @Override
+    public long getAcknowledgedEventCount() {
+        return acknowledgedEventCount.get();
+    }
+
+    @Override
+    public long getResentEventCount() {
+        return resentEventCount.get();
+    }
+
+    @Override
+    public long getFailedEventCount() {
+        return failedEventCount.get();
+    }
+
+    /**
+     * Start the HTTP Event Collector client instance and the background acknowledgement poller.
+     */
+    @Override
+    public synchronized void start() {
+        if (ackPollExecutor == null) {
+            // Make sure the channel is established before the first request
+            getChannel();
+            super.start();
+
+            pendingAckPermits = new Semaphore(maxPendingAcks);
+            ackPollExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(getClientId() + "-ack"));
+            ackPollExecutor.scheduleWithFixedDelay(this::pollAcks, ackPollIntervalMillis, ackPollIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            log.warn("{} already initialized - ignoring 'initialize()' call", this.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Stop the background acknowledgement poller and the HTTP Event Collector client instance.
+     *
+     * <p>A final poll is made for the outstanding acknowledgements before the client is stopped.
+     */
+    @Override
+    public synchronized void stop() {
+        if (ackPollExecutor != null) {
+            ackPollExecutor.shutdownNow();
+            try {
+                ackPollExecutor.awaitTermination(ackPollIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException interruptedEx) {
+                Thread.currentThread().interrupt();
+            }
+            ackPollExecutor = null;
+
+            if (!pendingEvents.isEmpty() && super.isInitialized()) {
+                pollAcks();
+            }
+            if (!pendingEvents.isEmpty()) {
+                log.warn("Stopping with {} unacknowledged events - delivery of these events is not guaranteed", pendingEvents.size());
+                pendingEvents.clear();
+            }
+        }
+
+        super.stop();
+    }
+
+    /**
+     * Send an event to the HTTP Event Collector and record the ackId for the event.
+     *
+     * <p>The method returns once the HTTP Event Collector has accepted the event - it does not wait for the
+     * acknowledgement.  If the maximum number of events are awaiting acknowledgement, the method blocks until an
+     * acknowledgement is received.
+     *
+     * @param event JSON-formatted Event
+     *
+     * @throws EventDeliveryException in the event the event could not be delivered to the indexer.
+     */
+    @Override
+    public void sendEvent(final String event) throws EventDeliveryException {
+        send(new PendingEvent(event));
+    }
+
+    /**
+     * Send all the events in a multi-event payload to the HTTP Event Collector in a single request, tracking the
+     * acknowledgement of the request.
+     *
+     * <p>The content of the payload is copied so it can be resent, and the payload may be reused as soon as this method
+     * returns.  The payload occupies a single pending acknowledgement, but all of its events are counted.
+     */
+    @Override
+    public void sendEvents(final EventPayload payload) throws EventDeliveryException {
+        if (payload != null && !payload.isEmpty()) {
+            send(new PendingEvent(Arrays.copyOf(payload.getBuffer(), payload.getLength()), payload.getLength(), payload.getEventCount()));
+        }
+    }
+
+    /**
+     * Send a UTF-8 encoded event - the event is copied so it can be resent, and it is never converted to a String.
+     */
+    @Override
+    public void sendEvent(final byte[] event, final int offset, final int length) throws EventDeliveryException {
+        send(new PendingEvent(Arrays.copyOfRange(event, offset, offset + length), length, 1));
+    }
+
+    /**
+     * Send a UTF-8 encoded event - the event is copied so it can be resent, and it is never converted to a String.  The
+     * position of the ByteBuffer is not changed.
+     */
+    @Override
+    public void sendEvent(final ByteBuffer event) throws EventDeliveryException {
+        byte[] eventBytes = new byte[event.remaining()];
+        event.duplicate().get(eventBytes);
+        send(new PendingEvent(eventBytes, eventBytes.length, 1));
+    }
+
+    /**
+     * Send an event written by an EventWriter - the writer is invoked once, and its output is held as bytes so the event
+     * can be resent.
+     */
+    @Override
+    public void sendEvent(final EventWriter eventWriter) throws EventDeliveryException {
+        EventPayload eventBuffer = new EventPayload();
+        try {
+            eventWriter.writeTo(eventBuffer);
+        } catch (IOException writeEx) {
+            throw new EventDeliveryException("<streamed event>", "Failed to write event", writeEx);
+        }
+
+        send(new PendingEvent(eventBuffer.getBuffer(), eventBuffer.getLength(), 1));
+    }
+
+    /**
+     * Wait for a pending acknowledgement permit and post the event.
+     *
+     * @param pendingEvent the event
+     *
+     * @throws EventDeliveryException in the event the event could not be delivered to the indexer.
+     */
+    void send(PendingEvent pendingEvent) throws EventDeliveryException {
+        if (ackPollExecutor == null) {
+            start();
+        }
+
+        try {
+            if (!pendingAckPermits.tryAcquire(pendingAckWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new EventDeliveryException(pendingEvent.describe(), String.format("Timed-out waiting for acknowledgements - %d events are awaiting acknowledgement", getPendingAckCount()));
+            }
+        } catch (InterruptedException interruptedEx) {
+            Thread.currentThread().interrupt();
+            throw new EventDeliveryException(pendingEvent.describe(), "Interrupted while waiting for acknowledgements", interruptedEx);
+        }
+
+        try {
+            post(pendingEvent);
+            statistics.recordEvents(pendingEvent.eventCount);
+        } catch (EventDeliveryException | RuntimeException sendEx) {
+            pendingAckPermits.release();
+            throw sendEx;
+        }
+    }
+
+    /**
+     * Poll the acknowledgement endpoint for all of the outstanding ackIds, and resend events that have not been
+     * acknowledged within the acknowledgement timeout.
+     */
+    @Override
+    public void pollAcks() {
+        if (pendingEvents.isEmpty()) {
+            return;
+        }
+
+        List<Long> ackIds = new ArrayList<>(pendingEvents.keySet());
+
+        ObjectNode request = OBJECT_MAPPER.createObjectNode();
+        ArrayNode acks = request.putArray("acks");
+        for (Long ackId : ackIds) {
+            acks.add(ackId);
+        }
+
+        try {
+            String requestBody = OBJECT_MAPPER.writeValueAsString(request);
+            String responseBody = doPost(getAckUrl(), new StringEntity(requestBody, ContentType.APPLICATION_JSON), requestBody);
+            ackPollCount.incrementAndGet();
+
+            JsonNode ackStatus = OBJECT_MAPPER.readTree(responseBody).path("acks");
+            for (Long ackId : ackIds) {
+                if (ackStatus.path(ackId.toString()).asBoolean(false)) {
+                    acknowledge(ackId);
+                }
+            }
+        } catch (EventDeliveryException | IOException pollEx) {
+            log.warn("Failed to poll for acknowledgement of {} events - will retry", ackIds.size(), pollEx);
+        }
+
+        resendExpiredEvents();
+    }
+
+    void acknowledge(Long ackId) {
+        PendingEvent pendingEvent = pendingEvents.remove(ackId);
+        if (pendingEvent != null) {
+            acknowledgedEventCount.addAndGet(pendingEvent.eventCount);
+            pendingAckPermits.release();
+        }
+    }
+
+    void resendExpiredEvents() {
+        final long now = System.currentTimeMillis();
+
+        Iterator<PendingEvent> pendingIterator = pendingEvents.values().iterator();
+        while (pendingIterator.hasNext()) {
+            PendingEvent pendingEvent = pendingIterator.next();
+            if (now - pendingEvent.sendTime >= ackTimeoutMillis) {
+                pendingIterator.remove();
+
+                if (pendingEvent.sendCount > maxResendCount) {
+                    log.error("Event was not acknowledged after {} attempts - abandoning event: {}", pendingEvent.sendCount, pendingEvent.describe());
+                    failedEventCount.addAndGet(pendingEvent.eventCount);
+                    pendingAckPermits.release();
+                    continue;
+                }
+
+                try {
+                    log.warn("Event with ackId {} was not acknowledged within {} milliseconds - resending", pendingEvent.ackId, ackTimeoutMillis);
+                    post(pendingEvent);
+                    resentEventCount.addAndGet(pendingEvent.eventCount);
+                } catch (EventDeliveryException resendEx) {
+                    log.error("Failed to resend unacknowledged event - abandoning event: {}", pendingEvent.describe(), resendEx);
+                    failedEventCount.addAndGet(pendingEvent.eventCount);
+                    pendingAckPermits.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Post an event and record the ackId returned by the HTTP Event Collector.
+     *
+     * @param pendingEvent the event
+     *
+     * @throws EventDeliveryException in the event the event could not be delivered to the indexer.
+     */
+    void post(PendingEvent pendingEvent) throws EventDeliveryException {
+        final String description = pendingEvent.describe();
+        HttpEntity entity = pendingEvent.payload != null
+            ? createEntity(pendingEvent.payload, 0, pendingEvent.payloadLength) : createEntity(pendingEvent.event);
+        String responseBody = doPost(entity, description);
+
+        long ackId;
+        try {
+            JsonNode ackIdNode = OBJECT_MAPPER.readTree(responseBody).get("ackId");
+            if (ackIdNode == null || !ackIdNode.canConvertToLong()) {
+                throw new EventDeliveryException(description,
+                    String.format("HTTP Event Collector response did not contain an ackId - verify indexer acknowledgement is enabled for the token: %s", responseBody));
+            }
+            ackId = ackIdNode.asLong();
+        } catch (IOException parseEx) {
+            throw new EventDeliveryException(description, String.format("Failed to parse ackId from HTTP Event Collector response: %s", responseBody), parseEx);
+        }
+
+        pendingEvent.ackId = ackId;
+        pendingEvent.sendTime = System.currentTimeMillis();
+        ++pendingEvent.sendCount;
+        pendingEvents.put(ackId, pendingEvent);
+    }
+
+    /**
+     * An event (or a multi-event payload) awaiting acknowledgement.
+     *
+     * <p>Events sent as Strings are held as Strings - all other events are held as UTF-8 encoded bytes, so they are
+     * never converted to a String to be resent.
+     */
+    static class PendingEvent {
+        final String event;
+        final byte[] payload;
+        final int payloadLength;
+        final int eventCount;
+        volatile long ackId;
+        volatile long sendTime;
+        volatile int sendCount;
+
+        PendingEvent(String event) {
+            this.event = event;
+            this.payload = null;
+            this.payloadLength = 0;
+            this.eventCount = 1;
+        }
+
+        PendingEvent(byte[] payload, int payloadLength, int eventCount) {
+            this.event = null;
+            this.payload = payload;
+            this.payloadLength = payloadLength;
+            this.eventCount = eventCount;
+        }
+
+        String describe() {
+            if (event != null) {
+                return event;
+            }
+
+            return eventCount == 1 ? describePayload(payloadLength) : String.format("<payload of %d events>", eventCount);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Limits the number of in-flight requests to a Splunk HTTP Event Collector, adjusting the limit from the observed
+ * round-trip times and overload responses.
+ *
+ * <p>The limit is adjusted using additive-increase/multiplicative-decrease (AIMD).  Each successful request whose
+ * round-trip time is within the tolerance of the minimum observed round-trip time increases the limit by 1/limit (i.e.
+ * by one per round of requests) while the limit is being used.  A round-trip time beyond the tolerance - a sign that
+ * requests are queueing in the HTTP Event Collector - or an overload response (HTTP 503 or 429) decreases the limit by
+ * the backoff ratio.  The limit is decreased at most once per round trip - requests that were already in flight when the
+ * limit was decreased were sent under the old limit, so their round-trip times and overload responses are ignored.
+ *
+ * <p>Requests beyond the limit wait up to the acquire timeout for an in-flight request to complete, and are then shed.
+ */
+public class AdaptiveConcurrencyLimiter {
+    static final int DEFAULT_INITIAL_LIMIT = 10;
+    static final int DEFAULT_MIN_LIMIT = 1;
+    static final int DEFAULT_MAX_LIMIT = 200;
+    static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    static final double DEFAULT_RTT_TOLERANCE = 2.0;
+    static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 1000;
+    static final int DEFAULT_MIN_RTT_RESET_SAMPLES = 1000;
+    static final double RTT_SMOOTHING_FACTOR = 0.1;
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    int minLimit = DEFAULT_MIN_LIMIT;
+    int maxLimit = DEFAULT_MAX_LIMIT;
+    double backoffRatio = DEFAULT_BACKOFF_RATIO;
+    double rttTolerance = DEFAULT_RTT_TOLERANCE;
+    long acquireTimeoutMillis = DEFAULT_ACQUIRE_TIMEOUT_MILLIS;
+    int minRttResetSamples = DEFAULT_MIN_RTT_RESET_SAMPLES;
+
+    final ReentrantLock lock = new ReentrantLock();
+    final Condition permitAvailable = lock.newCondition();
+
+    // The following are guarded by the lock
+    double estimatedLimit = DEFAULT_INITIAL_LIMIT;
+    volatile int limit = DEFAULT_INITIAL_LIMIT;
+    volatile int inFlight;
+    volatile long minRttNanos;
+    volatile double smoothedRttNanos;
+    volatile long lastRttNanos;
+    int minRttSampleCount;
+    boolean decreased;
+    long lastDecreaseNanos;
+
+    volatile long limitChangeCount;
+    volatile long shedCount;
+    volatile long overloadCount;
+
+    /**
+     * Set the initial concurrency limit.
+     *
+     * @param initialLimit the initial limit
+     */
+    public void setInitialLimit(int initialLimit) {
+        lock.lock();
+        try {
+            estimatedLimit = initialLimit;
+            limit = initialLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Set the maximum concurrency limit.
+     *
+     * <p>NOTE:  The number of in-flight requests is also limited by the maximum number of pooled connections per route.
+     *
+     * @param maxLimit the maximum limit
+     */
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * Set the factor applied to the limit when a request is slow or overloaded.
+     *
+     * @param backoffRatio the backoff ratio (between 0.0 and 1.0)
+     */
+    public void setBackoffRatio(double backoffRatio) {
+        if (backoffRatio <= 0.0 || backoffRatio >= 1.0) {
+            throw new IllegalArgumentException(String.format("Invalid backoff ratio %f - the value must be between 0.0 and 1.0", backoffRatio));
+        }
+        this.backoffRatio = backoffRatio;
+    }
+
+    public double getRttTolerance() {
+        return rttTolerance;
+    }
+
+    /**
+     * Set the multiple of the minimum round-trip time beyond which a request is considered slow.
+     *
+     * @param rttTolerance the round-trip time tolerance
+     */
+    public void setRttTolerance(double rttTolerance) {
+        this.rttTolerance = rttTolerance;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    /**
+     * Set the time (in milliseconds) a request will wait when the limit is reached before it is shed.
+     *
+     * @param acquireTimeoutMillis the wait time in milliseconds
+     */
+    public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    public int getMinRttResetSamples() {
+        return minRttResetSamples;
+    }
+
+    /**
+     * Set the number of samples after which the minimum round-trip time is re-established.
+     *
+     * <p>Periodically resetting the minimum round-trip time allows the limiter to adapt when the network path or the
+     * HTTP Event Collector changes.
+     *
+     * @param minRttResetSamples the number of samples
+     */
+    public void setMinRttResetSamples(int minRttResetSamples) {
+        this.minRttResetSamples = minRttResetSamples;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public double getMinRttMillis() {
+        return minRttNanos / 1000000.0;
+    }
+
+    public double getSmoothedRttMillis() {
+        return smoothedRttNanos / 1000000.0;
+    }
+
+    public double getLastRttMillis() {
+        return lastRttNanos / 1000000.0;
+    }
+
+    public long getLimitChangeCount() {
+        return limitChangeCount;
+    }
+
+    public long getShedCount() {
+        return shedCount;
+    }
+
+    public long getOverloadCount() {
+        return overloadCount;
+    }
+
+    /**
+     * Acquire a permit for a request, waiting up to the acquire timeout if the limit has been reached.
+     *
+     * <p>If this method returns true, the permit must be released using onSuccess, onOverload or onIgnore.
+     *
+     * @return true if a permit was acquired; false if the request should be shed
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting for a permit
+     */
+    public boolean acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+            while (inFlight >= limit) {
+                if (remainingNanos <= 0) {
+                    ++shedCount;
+                    return false;
+                }
+                remainingNanos = permitAvailable.awaitNanos(remainingNanos);
+            }
+            ++inFlight;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a permit after a successful request, adjusting the limit from the round-trip time.
+     *
+     * @param rttNanos the round-trip time of the request in nanoseconds
+     */
+    public void onSuccess(long rttNanos) {
+        lock.lock();
+        try {
+            final int currentInFlight = inFlight;
+            release();
+
+            lastRttNanos = rttNanos;
+            smoothedRttNanos = smoothedRttNanos == 0 ? rttNanos : smoothedRttNanos + RTT_SMOOTHING_FACTOR * (rttNanos - smoothedRttNanos);
+            if (++minRttSampleCount >= minRttResetSamples) {
+                minRttNanos = (long) smoothedRttNanos;
+                minRttSampleCount = 0;
+            }
+            if (minRttNanos == 0 || rttNanos < minRttNanos) {
+                minRttNanos = rttNanos;
+            }
+
+            if (rttNanos > minRttNanos * rttTolerance) {
+                decrease(rttNanos);
+            } else if (currentInFlight * 2 >= limit) {
+                // Only grow the limit while it is being used
+                updateLimit(estimatedLimit + 1.0 / limit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a permit after the HTTP Event Collector reported that it is overloaded, decreasing the limit.
+     *
+     * @param rttNanos the round-trip time of the request in nanoseconds
+     */
+    public void onOverload(long rttNanos) {
+        lock.lock();
+        try {
+            release();
+            ++overloadCount;
+            decrease(rttNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a permit without adjusting the limit (e.g. after a request failed for reasons unrelated to load).
+     */
+    public void onIgnore() {
+        lock.lock();
+        try {
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        --inFlight;
+        permitAvailable.signal();
+    }
+
+    /**
+     * Decrease the limit, unless the request was sent before the last decrease.
+     *
+     * @param rttNanos the round-trip time of the request in nanoseconds
+     */
+    void decrease(long rttNanos) {
+        final long now = System.nanoTime();
+        if (decreased && now - rttNanos - lastDecreaseNanos < 0) {
+            return;
+        }
+
+        decreased = true;
+        lastDecreaseNanos = now;
+        updateLimit(estimatedLimit * backoffRatio);
+    }
+
+    void updateLimit(double newEstimatedLimit) {
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newEstimatedLimit));
+
+        int newLimit = (int) estimatedLimit;
+        if (newLimit != limit) {
+            log.debug("Concurrency limit changed from {} to {} - smoothed RTT {} ms, minimum RTT {} ms",
+                limit, newLimit, getSmoothedRttMillis(), getMinRttMillis());
+            if (newLimit > limit) {
+                permitAvailable.signalAll();
+            }
+            limit = newLimit;
+            ++limitChangeCount;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AdaptiveConcurrencyLimiter{limit=%d, inFlight=%d, smoothedRttMillis=%.3f, minRttMillis=%.3f}",
+            limit, inFlight, getSmoothedRttMillis(), getMinRttMillis());
+    }
+}
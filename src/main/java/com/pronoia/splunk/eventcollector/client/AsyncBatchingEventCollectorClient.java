@@ -0,0 +1,602 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.EventPayload;
+import com.pronoia.splunk.eventcollector.EventWriter;
+import com.pronoia.splunk.eventcollector.util.NamedThreadFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.entity.ContentType;
+
+
+/**
+ * Client for sending JSON-formatted events to a single Splunk HTTP Collector in batches.
+ *
+ * <p>Events passed to sendEvent are placed on a bounded queue and the calling thread returns immediately.  Background
+ * sender threads remove the events from the queue and concatenate them into a single multi-event HTTP Event Collector
+ * POST body.  A batch is delivered when it reaches the maximum size (in bytes), the maximum number of events, or when
+ * the linger time has elapsed since the first event was added to the batch - whichever comes first.
+ *
+ * <p>NOTE:  Since delivery is asynchronous, failures to deliver a batch are logged and counted, but cannot be reported to
+ * the caller of sendEvent.  An EventDeliveryException is only thrown from sendEvent when the event cannot be queued.
+ *
+ * <p>The client is started by the first event if it has not been started.  Once the client has been stopped, events are
+ * rejected until it is explicitly started again.
+ */
+public class AsyncBatchingEventCollectorClient extends SimpleEventCollectorClient implements AsyncBatchingEventCollectorClientMBean {
+    public static final String FLUSH_REASON_SIZE = "size";
+    public static final String FLUSH_REASON_COUNT = "count";
+    public static final String FLUSH_REASON_LINGER = "linger";
+
+    static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    static final int DEFAULT_SENDER_COUNT = 1;
+    static final int DEFAULT_MAX_BATCH_EVENT_COUNT = 100;
+    static final int DEFAULT_MAX_BATCH_SIZE = 512 * 1024;
+    static final long DEFAULT_LINGER_MILLIS = 100;
+    static final long DEFAULT_OFFER_TIMEOUT_MILLIS = 0;
+    static final long DEFAULT_STOP_TIMEOUT_MILLIS = 30000;
+    static final long RUNNING_CHECK_INTERVAL_MILLIS = 100;
+    static final long RUNNING_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(RUNNING_CHECK_INTERVAL_MILLIS);
+
+    int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    int senderCount = DEFAULT_SENDER_COUNT;
+    int maxBatchEventCount = DEFAULT_MAX_BATCH_EVENT_COUNT;
+    int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    long lingerMillis = DEFAULT_LINGER_MILLIS;
+    volatile boolean rawMode;
+    long offerTimeoutMillis = DEFAULT_OFFER_TIMEOUT_MILLIS;
+    long stopTimeoutMillis = DEFAULT_STOP_TIMEOUT_MILLIS;
+
+    volatile BlockingQueue<QueuedEvents> eventQueue;
+    volatile ExecutorService senderExecutor;
+    volatile boolean running;
+    // Guarded by the monitor - true once the client has been stopped, until it is explicitly started again
+    boolean stopped;
+
+    final AtomicLong queuedEventCount = new AtomicLong();
+    final AtomicLong droppedEventCount = new AtomicLong();
+    final AtomicLong batchCount = new AtomicLong();
+    final AtomicLong failedBatchCount = new AtomicLong();
+    final AtomicLong sizeFlushCount = new AtomicLong();
+    final AtomicLong countFlushCount = new AtomicLong();
+    final AtomicLong lingerFlushCount = new AtomicLong();
+
+    volatile int lastBatchEventCount;
+    volatile int lastBatchSize;
+    volatile String lastFlushReason;
+
+    /**
+     * Create a new AsyncBatchingEventCollectorClient.
+     */
+    public AsyncBatchingEventCollectorClient() {
+    }
+
+    @Override
+    public boolean isInitialized() {
+        return senderExecutor != null && super.isInitialized();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Set the maximum number of events that can be queued for delivery.
+     *
+     * <p>A multi-event payload passed to sendEvents occupies a single entry in the queue.  The new value will take effect
+     * the next time the client is started.
+     *
+     * @param queueCapacity the maximum number of queued events
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return eventQueue != null ? eventQueue.size() : 0;
+    }
+
+    @Override
+    public int getSenderCount() {
+        return senderCount;
+    }
+
+    /**
+     * Set the number of background threads used to deliver batches.
+     *
+     * <p>The new value will take effect the next time the client is started.
+     *
+     * @param senderCount the number of sender threads
+     */
+    public void setSenderCount(int senderCount) {
+        this.senderCount = senderCount;
+    }
+
+    @Override
+    public int getMaxBatchEventCount() {
+        return maxBatchEventCount;
+    }
+
+    /**
+     * Set the maximum number of events delivered in a single batch.
+     *
+     * @param maxBatchEventCount the maximum number of events in a batch
+     */
+    public void setMaxBatchEventCount(int maxBatchEventCount) {
+        this.maxBatchEventCount = maxBatchEventCount;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Set the size (in bytes) at which a batch will be delivered.
+     *
+     * <p>The batch is delivered as soon as the size is reached, so a batch may exceed this size by at most one event.
+     *
+     * @param maxBatchSize the maximum batch size in bytes
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public long getLingerMillis() {
+        return lingerMillis;
+    }
+
+    /**
+     * Set the maximum time (in milliseconds) a batch will wait for additional events before it is delivered.
+     *
+     * @param lingerMillis the linger time in milliseconds
+     */
+    public void setLingerMillis(long lingerMillis) {
+        this.lingerMillis = lingerMillis;
+    }
+
+    @Override
+    public boolean isRawMode() {
+        return rawMode;
+    }
+
+    /**
+     * Enable/Disable raw mode.
+     *
+     * <p>In raw mode, the events passed to sendEvent are lines of text rather than JSON-formatted events.  Each batch is
+     * delivered to the raw endpoint of the HTTP Event Collector as a newline-delimited request body, with the default
+     * host, index, source and sourcetype of the client sent as query parameters.
+     *
+     * @param rawMode if true, events will be delivered to the raw endpoint
+     */
+    public void setRawMode(boolean rawMode) {
+        this.rawMode = rawMode;
+    }
+
+    public long getOfferTimeoutMillis() {
+        return offerTimeoutMillis;
+    }
+
+    /**
+     * Set the time (in milliseconds) sendEvent will wait for space in a full queue before the event is rejected.
+     *
+     * @param offerTimeoutMillis the offer timeout in milliseconds - zero rejects immediately
+     */
+    public void setOfferTimeoutMillis(long offerTimeoutMillis) {
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    public long getStopTimeoutMillis() {
+        return stopTimeoutMillis;
+    }
+
+    /**
+     * Set the time (in milliseconds) stop() will wait for the queued events to be delivered.
+     *
+     * @param stopTimeoutMillis the stop timeout in milliseconds
+     */
+    public void setStopTimeoutMillis(long stopTimeoutMillis) {
+        this.stopTimeoutMillis = stopTimeoutMillis;
+    }
+
+    @Override
+    public long getQueuedEventCount() {
+        return queuedEventCount.get();
+    }
+
+    @Override
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    @Override
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    @Override
+    public long getFailedBatchCount() {
+        return failedBatchCount.get();
+    }
+
+    @Override
+    public int getLastBatchEventCount() {
+        return lastBatchEventCount;
+    }
+
+    @Override
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    @Override
+    public String getLastFlushReason() {
+        return lastFlushReason;
+    }
+
+    @Override
+    public long getSizeFlushCount() {
+        return sizeFlushCount.get();
+    }
+
+    @Override
+    public long getCountFlushCount() {
+        return countFlushCount.get();
+    }
+
+    @Override
+    public long getLingerFlushCount() {
+        return lingerFlushCount.get();
+    }
+
+    /**
+     * Start the HTTP Event Collector client instance and the background senders.
+     */
+    @Override
+    public synchronized void start() {
+        if (senderExecutor == null) {
+            if (rawMode) {
+                // The raw endpoint requires a channel
+                getChannel();
+            }
+            super.start();
+            stopped = false;
+
+            if (eventQueue == null) {
+                eventQueue = new LinkedBlockingQueue<>(queueCapacity);
+            }
+
+            running = true;
+            senderExecutor = Executors.newFixedThreadPool(senderCount, new NamedThreadFactory(getClientId()));
+            for (int i = 0; i < senderCount; ++i) {
+                senderExecutor.execute(new BatchSender(eventQueue));
+            }
+        } else {
+            log.warn("{} already initialized - ignoring 'initialize()' call", this.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Stop the background senders and the HTTP Event Collector client instance.
+     *
+     * <p>The senders will attempt to deliver any queued events before the client is stopped.
+     */
+    @Override
+    public synchronized void stop() {
+        if (senderExecutor != null) {
+            running = false;
+            stopped = true;
+            senderExecutor.shutdown();
+            try {
+                if (!senderExecutor.awaitTermination(stopTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    log.warn("Senders did not complete within {} milliseconds - {} queued events will not be delivered", stopTimeoutMillis, getQueueDepth());
+                    senderExecutor.shutdownNow();
+                }
+            } catch (InterruptedException interruptedEx) {
+                log.warn("Stop was interrupted - {} queued events may not be delivered", getQueueDepth(), interruptedEx);
+                senderExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            } finally {
+                senderExecutor = null;
+            }
+        }
+
+        super.stop();
+
+        if (eventQueue != null && eventQueue.isEmpty()) {
+            eventQueue = null;
+        }
+    }
+
+    /**
+     * Queue an event for delivery to the HTTP Event Collector.
+     *
+     * @param event JSON-formatted Event
+     *
+     * @throws EventDeliveryException if the event could not be queued
+     */
+    @Override
+    public void sendEvent(final String event) throws EventDeliveryException {
+        queue(new QueuedEvents(event), event);
+    }
+
+    /**
+     * Queue all the events in a multi-event payload for delivery to the HTTP Event Collector.
+     *
+     * <p>The content of the payload is copied onto the queue, and the payload may be reused as soon as this method
+     * returns.  The payload occupies a single entry in the queue, but all of its events are counted and are added to
+     * the same batch.
+     */
+    @Override
+    public void sendEvents(final EventPayload payload) throws EventDeliveryException {
+        if (payload != null && !payload.isEmpty()) {
+            queue(new QueuedEvents(Arrays.copyOf(payload.getBuffer(), payload.getLength()), payload.getLength(), payload.getEventCount()),
+                String.format("<payload of %d events>", payload.getEventCount()));
+        }
+    }
+
+    void queue(QueuedEvents events, String description) throws EventDeliveryException {
+        // start() publishes the queue before it sets running, and stop() clears running before it releases the queue
+        BlockingQueue<QueuedEvents> tmpEventQueue = running ? eventQueue : null;
+        if (tmpEventQueue == null) {
+            tmpEventQueue = startIfNeverStarted();
+            if (tmpEventQueue == null) {
+                droppedEventCount.addAndGet(events.eventCount);
+                throw new EventDeliveryException(description, String.format("%s has been stopped - the event cannot be queued", getClientId()));
+            }
+        }
+
+        boolean queued;
+        try {
+            if (offerTimeoutMillis > 0) {
+                queued = tmpEventQueue.offer(events, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } else {
+                queued = tmpEventQueue.offer(events);
+            }
+        } catch (InterruptedException interruptedEx) {
+            Thread.currentThread().interrupt();
+            droppedEventCount.addAndGet(events.eventCount);
+            throw new EventDeliveryException(description, "Interrupted while queuing event", interruptedEx);
+        }
+
+        if (!queued) {
+            droppedEventCount.addAndGet(events.eventCount);
+            throw new EventDeliveryException(description, String.format("Event queue is full - %d events are queued", getQueueDepth()));
+        }
+
+        queuedEventCount.addAndGet(events.eventCount);
+    }
+
+    /**
+     * Queue a UTF-8 encoded event - the event is copied onto the queue and added to the batch without converting it to a
+     * String.
+     */
+    @Override
+    public void sendEvent(final byte[] event, final int offset, final int length) throws EventDeliveryException {
+        queue(new QueuedEvents(Arrays.copyOfRange(event, offset, offset + length), length, 1), describePayload(length));
+    }
+
+    /**
+     * Queue a UTF-8 encoded event - the event is copied onto the queue and added to the batch without converting it to a
+     * String.  The position of the ByteBuffer is not changed.
+     */
+    @Override
+    public void sendEvent(final ByteBuffer event) throws EventDeliveryException {
+        byte[] eventBytes = new byte[event.remaining()];
+        event.duplicate().get(eventBytes);
+        queue(new QueuedEvents(eventBytes, eventBytes.length, 1), describePayload(eventBytes.length));
+    }
+
+    /**
+     * Queue an event written by an EventWriter - the writer is invoked once, on the calling thread, and its output is
+     * added to the batch without converting it to a String.
+     */
+    @Override
+    public void sendEvent(final EventWriter eventWriter) throws EventDeliveryException {
+        EventPayload eventBuffer = new EventPayload();
+        try {
+            eventWriter.writeTo(eventBuffer);
+        } catch (IOException writeEx) {
+            throw new EventDeliveryException("<streamed event>", "Failed to write event", writeEx);
+        }
+
+        queue(new QueuedEvents(eventBuffer.getBuffer(), eventBuffer.getLength(), 1), "<streamed event>");
+    }
+
+    /**
+     * Start the client on the first event, unless the client has been stopped.
+     *
+     * @return the event queue of the running client, or null if the client has been stopped
+     */
+    synchronized BlockingQueue<QueuedEvents> startIfNeverStarted() {
+        if (!running) {
+            if (stopped) {
+                return null;
+            }
+            start();
+        }
+
+        return eventQueue;
+    }
+
+    void deliverBatch(BatchBuffer batch, int batchEventCount, String flushReason) {
+        switch (flushReason) {
+        case FLUSH_REASON_SIZE:
+            sizeFlushCount.incrementAndGet();
+            break;
+        case FLUSH_REASON_COUNT:
+            countFlushCount.incrementAndGet();
+            break;
+        default:
+            lingerFlushCount.incrementAndGet();
+        }
+        lastFlushReason = flushReason;
+        lastBatchEventCount = batchEventCount;
+        lastBatchSize = batch.size();
+
+        final String url = rawMode ? getRawUrl() : getPostUrl();
+        log.debug("Posting batch of {} events ({} bytes) to {} - flush reason: {}", batchEventCount, batch.size(), url, flushReason);
+
+        try {
+            doPost(url, createEntity(batch.getBuffer(), 0, batch.size(), rawMode ? RAW_CONTENT_TYPE : ContentType.APPLICATION_JSON),
+                String.format("<batch of %d events>", batchEventCount));
+            batchCount.incrementAndGet();
+            statistics.recordEvents(batchEventCount);
+        } catch (EventDeliveryException deliveryEx) {
+            failedBatchCount.incrementAndGet();
+            log.error("Failed to deliver batch of {} events ({} bytes) - events will be dropped", batchEventCount, batch.size(), deliveryEx);
+        }
+    }
+
+    /**
+     * Background task that assembles batches from the event queue and delivers them.
+     */
+    class BatchSender implements Runnable {
+        final BlockingQueue<QueuedEvents> queue;
+        final BatchBuffer batch = new BatchBuffer(maxBatchSize);
+
+        BatchSender(BlockingQueue<QueuedEvents> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                try {
+                    QueuedEvents events = queue.poll(Math.min(lingerMillis, RUNNING_CHECK_INTERVAL_MILLIS), TimeUnit.MILLISECONDS);
+                    if (events != null) {
+                        fillAndDeliver(events);
+                    }
+                } catch (InterruptedException interruptedEx) {
+                    log.warn("Sender was interrupted - {} queued events will not be delivered", queue.size());
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException unexpectedEx) {
+                    log.error("Unexpected exception encountered in sender - continuing", unexpectedEx);
+                }
+            }
+        }
+
+        void fillAndDeliver(QueuedEvents firstEvents) throws InterruptedException {
+            final long lingerDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+
+            batch.reset();
+            final boolean raw = rawMode;
+            firstEvents.writeTo(batch, raw);
+            int batchEventCount = firstEvents.eventCount;
+
+            String flushReason;
+            while (true) {
+                if (batch.size() >= maxBatchSize) {
+                    flushReason = FLUSH_REASON_SIZE;
+                    break;
+                }
+                if (batchEventCount >= maxBatchEventCount) {
+                    flushReason = FLUSH_REASON_COUNT;
+                    break;
+                }
+
+                // Don't linger for more events once the client is stopping
+                long remainingNanos = running ? lingerDeadline - System.nanoTime() : 0;
+                QueuedEvents events = remainingNanos > 0
+                    ? queue.poll(Math.min(remainingNanos, RUNNING_CHECK_INTERVAL_NANOS), TimeUnit.NANOSECONDS) : queue.poll();
+                if (events == null) {
+                    if (remainingNanos > RUNNING_CHECK_INTERVAL_NANOS) {
+                        continue;
+                    }
+                    flushReason = FLUSH_REASON_LINGER;
+                    break;
+                }
+
+                events.writeTo(batch, raw);
+                batchEventCount += events.eventCount;
+            }
+
+            deliverBatch(batch, batchEventCount, flushReason);
+        }
+    }
+
+    /**
+     * A reusable byte buffer that exposes its internal array to avoid copying the batch when it is posted.
+     */
+    static class BatchBuffer extends ByteArrayOutputStream {
+        BatchBuffer(int initialSize) {
+            super(initialSize);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        @Override
+        public void write(byte[] bytes) {
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * An entry in the event queue - either a single event held as a String, or UTF-8 encoded event content that is
+     * copied into the batch without being converted to a String.
+     */
+    static class QueuedEvents {
+        final String event;
+        final byte[] payload;
+        final int payloadLength;
+        final int eventCount;
+
+        QueuedEvents(String event) {
+            this.event = event;
+            this.payload = null;
+            this.payloadLength = 0;
+            this.eventCount = 1;
+        }
+
+        QueuedEvents(byte[] payload, int payloadLength, int eventCount) {
+            this.event = null;
+            this.payload = payload;
+            this.payloadLength = payloadLength;
+            this.eventCount = eventCount;
+        }
+
+        void writeTo(BatchBuffer batch, boolean raw) {
+            if (event != null) {
+                batch.write(event.getBytes(StandardCharsets.UTF_8));
+            } else {
+                batch.write(payload, 0, payloadLength);
+            }
+            if (raw) {
+                batch.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,484 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryHttpException;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Circuit breaker for the requests sent to a Splunk HTTP Event Collector.
+ *
+ * <p>The outcomes of the most recent requests are recorded in a sliding window.  When the failure rate in the window
+ * reaches the failure rate threshold, or the HTTP Event Collector reports that it is busy (HTTP 503 with Splunk status
+ * code 9), the breaker opens and requests are rejected without contacting the HTTP Event Collector.  After the backoff
+ * time has elapsed, the breaker is half-open and a limited number of probe requests are allowed.  A successful probe
+ * closes the breaker; a failed probe opens it again with an exponentially increasing, jittered backoff time.
+ *
+ * <p>Each admitted request is given a permit identifying the state of the breaker it was admitted in, and its outcome
+ * is only recorded if the breaker has not changed state since.  A request admitted while the breaker was closed that
+ * completes after the breaker opened (e.g. a slow success) therefore cannot close the breaker - only a probe can.
+ *
+ * <p>Failures are classified by HTTP and Splunk status code.  Connection failures, HTTP 429 and HTTP 5xx responses are
+ * counted as failures.  Other HTTP errors (e.g. an invalid token or a malformed event) indicate a problem with the
+ * request rather than the HTTP Event Collector, so they are not counted.
+ */
+public class CircuitBreaker {
+    public static final int SPLUNK_SERVER_BUSY_CODE = 9;
+    public static final long NO_PERMIT = -1;
+
+    static final int DEFAULT_WINDOW_SIZE = 20;
+    static final int DEFAULT_MINIMUM_CALLS = 10;
+    static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+    static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 1000;
+    static final long DEFAULT_MAX_BACKOFF_MILLIS = 60000;
+    static final double DEFAULT_BACKOFF_MULTIPLIER = 2.0;
+    static final double DEFAULT_JITTER = 0.2;
+    static final int DEFAULT_HALF_OPEN_MAX_CALLS = 1;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public enum FailureType {
+        /**
+         * The failure indicates a problem with the request - it is not counted.
+         */
+        IGNORED,
+        /**
+         * The failure indicates a problem with the HTTP Event Collector - it is counted.
+         */
+        FAILURE,
+        /**
+         * The HTTP Event Collector reported that it is busy - the breaker opens immediately.
+         */
+        SERVER_BUSY
+    }
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    int windowSize = DEFAULT_WINDOW_SIZE;
+    int minimumCalls = DEFAULT_MINIMUM_CALLS;
+    double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    long initialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+    long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+    double backoffMultiplier = DEFAULT_BACKOFF_MULTIPLIER;
+    double jitter = DEFAULT_JITTER;
+    int halfOpenMaxCalls = DEFAULT_HALF_OPEN_MAX_CALLS;
+    boolean openOnServerBusy = true;
+
+    // The following are guarded by the instance monitor
+    State state = State.CLOSED;
+    boolean[] window = new boolean[DEFAULT_WINDOW_SIZE];
+    int windowIndex;
+    int windowCount;
+    int windowFailureCount;
+    int consecutiveOpenCount;
+    int halfOpenCallCount;
+    long openUntilMillis;
+    long generation;
+
+    long transitionCount;
+    long openCount;
+    long rejectedCount;
+    Date lastTransitionTime;
+    String lastTransitionReason;
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Set the number of recent requests used to calculate the failure rate.
+     *
+     * @param windowSize the number of requests in the sliding window
+     */
+    public synchronized void setWindowSize(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid window size %d - the value must be greater than 0", windowSize));
+        }
+        this.windowSize = windowSize;
+        this.window = new boolean[windowSize];
+        resetWindow();
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    /**
+     * Set the minimum number of requests in the window before the failure rate can open the breaker.
+     *
+     * @param minimumCalls the minimum number of requests
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    /**
+     * Set the failure rate (between 0.0 and 1.0) at which the breaker opens.
+     *
+     * @param failureRateThreshold the failure rate threshold
+     */
+    public void setFailureRateThreshold(double failureRateThreshold) {
+        if (failureRateThreshold <= 0.0 || failureRateThreshold > 1.0) {
+            throw new IllegalArgumentException(String.format("Invalid failure rate threshold %f - the value must be greater than 0.0 and less than or equal to 1.0", failureRateThreshold));
+        }
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    /**
+     * Set the time (in milliseconds) the breaker stays open the first time it opens.
+     *
+     * @param initialBackoffMillis the initial backoff time in milliseconds
+     */
+    public void setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * Set the maximum time (in milliseconds) the breaker stays open.
+     *
+     * @param maxBackoffMillis the maximum backoff time in milliseconds
+     */
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    /**
+     * Set the factor applied to the backoff time each time a probe fails.
+     *
+     * @param backoffMultiplier the backoff multiplier
+     */
+    public void setBackoffMultiplier(double backoffMultiplier) {
+        this.backoffMultiplier = backoffMultiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Set the random variation applied to the backoff time, as a fraction of the backoff time.
+     *
+     * <p>Jitter prevents many clients from probing an HTTP Event Collector at the same moment.
+     *
+     * @param jitter the jitter (between 0.0 and 1.0)
+     */
+    public void setJitter(double jitter) {
+        this.jitter = jitter;
+    }
+
+    public int getHalfOpenMaxCalls() {
+        return halfOpenMaxCalls;
+    }
+
+    /**
+     * Set the number of concurrent probe requests allowed while the breaker is half-open.
+     *
+     * @param halfOpenMaxCalls the number of probe requests
+     */
+    public void setHalfOpenMaxCalls(int halfOpenMaxCalls) {
+        this.halfOpenMaxCalls = halfOpenMaxCalls;
+    }
+
+    public boolean isOpenOnServerBusy() {
+        return openOnServerBusy;
+    }
+
+    /**
+     * Enable/Disable opening the breaker as soon as the HTTP Event Collector reports that it is busy.
+     *
+     * <p>When disabled, server busy responses are counted like any other failure.
+     *
+     * @param openOnServerBusy if true, a server busy response opens the breaker
+     */
+    public void setOpenOnServerBusy(boolean openOnServerBusy) {
+        this.openOnServerBusy = openOnServerBusy;
+    }
+
+    /**
+     * Get the current state of the breaker.
+     *
+     * <p>NOTE:  An open breaker whose backoff time has elapsed is reported as half-open.
+     *
+     * @return the state of the breaker
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntilMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * Get the failure rate of the requests in the sliding window.
+     *
+     * @return the failure rate (between 0.0 and 1.0)
+     */
+    public synchronized double getFailureRate() {
+        return windowCount > 0 ? (double) windowFailureCount / windowCount : 0.0;
+    }
+
+    /**
+     * Get the time remaining (in milliseconds) before the breaker will allow a probe request.
+     *
+     * @return the remaining backoff time in milliseconds, or 0 if requests are allowed
+     */
+    public synchronized long getRetryAfterMillis() {
+        return state == State.OPEN ? Math.max(0, openUntilMillis - System.currentTimeMillis()) : 0;
+    }
+
+    public synchronized long getTransitionCount() {
+        return transitionCount;
+    }
+
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public synchronized Date getLastTransitionTime() {
+        return lastTransitionTime;
+    }
+
+    public synchronized String getLastTransitionReason() {
+        return lastTransitionReason;
+    }
+
+    /**
+     * Determine if a request may be sent.
+     *
+     * <p>If a permit is returned, the outcome of the request must be reported with the permit using onSuccess or
+     * onFailure (or the permit returned using release if the request was not sent).
+     *
+     * @return the permit for the request; NO_PERMIT if the request should be rejected
+     */
+    public synchronized long tryAcquire() {
+        switch (state) {
+        case CLOSED:
+            return generation;
+        case OPEN:
+            if (System.currentTimeMillis() < openUntilMillis) {
+                ++rejectedCount;
+                return NO_PERMIT;
+            }
+            transition(State.HALF_OPEN, "backoff time elapsed");
+            return tryAcquireHalfOpen();
+        default:
+            return tryAcquireHalfOpen();
+        }
+    }
+
+    /**
+     * Admit a probe request while the circuit is half-open - the caller must hold the monitor.
+     *
+     * @return the permit for the probe; NO_PERMIT if the maximum number of probes are already in progress
+     */
+    long tryAcquireHalfOpen() {
+        if (halfOpenCallCount < halfOpenMaxCalls) {
+            ++halfOpenCallCount;
+            return generation;
+        }
+        ++rejectedCount;
+        return NO_PERMIT;
+    }
+
+    /**
+     * Record a successful request.
+     *
+     * @param permit the permit the request was admitted with
+     */
+    public synchronized void onSuccess(long permit) {
+        if (permit != generation) {
+            // Admitted before the last transition - the outcome does not describe the current state
+            return;
+        }
+
+        if (state == State.HALF_OPEN) {
+            consecutiveOpenCount = 0;
+            transition(State.CLOSED, "probe request succeeded");
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * Record a failed request.
+     *
+     * @param permit  the permit the request was admitted with
+     * @param failure the cause of the failure
+     */
+    public synchronized void onFailure(long permit, Throwable failure) {
+        FailureType failureType = classify(failure);
+
+        if (failureType == FailureType.IGNORED) {
+            // The HTTP Event Collector responded, so it is available
+            onSuccess(permit);
+            return;
+        }
+
+        if (permit != generation) {
+            return;
+        }
+
+        if (state == State.HALF_OPEN) {
+            open(String.format("probe request failed - %s", describe(failure)));
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (failureType == FailureType.SERVER_BUSY && openOnServerBusy) {
+                open("HTTP Event Collector is busy");
+            } else if (windowCount >= minimumCalls && getFailureRate() >= failureRateThreshold) {
+                open(String.format("failure rate %.2f reached threshold %.2f - %s", getFailureRate(), failureRateThreshold, describe(failure)));
+            }
+        }
+    }
+
+    /**
+     * Release a permit acquired with tryAcquire without recording an outcome (e.g. when the request was not sent).
+     *
+     * @param permit the permit to release
+     */
+    public synchronized void release(long permit) {
+        if (permit == generation && state == State.HALF_OPEN && halfOpenCallCount > 0) {
+            --halfOpenCallCount;
+        }
+    }
+
+    /**
+     * Classify a delivery failure.
+     *
+     * @param failure the cause of the failure
+     *
+     * @return the classification of the failure
+     */
+    public FailureType classify(Throwable failure) {
+        if (failure instanceof EventDeliveryHttpException) {
+            EventDeliveryHttpException httpEx = (EventDeliveryHttpException) failure;
+            int httpStatusCode = httpEx.getHttpStatusCode();
+            if (httpStatusCode == 503 && httpEx.getSplunkStatusCode() == SPLUNK_SERVER_BUSY_CODE) {
+                return FailureType.SERVER_BUSY;
+            }
+            if (httpStatusCode >= 500 || httpStatusCode == 429) {
+                return FailureType.FAILURE;
+            }
+            return FailureType.IGNORED;
+        }
+
+        return FailureType.FAILURE;
+    }
+
+    /**
+     * Close the breaker and clear the recorded requests.
+     */
+    public synchronized void reset() {
+        consecutiveOpenCount = 0;
+        resetWindow();
+        if (state != State.CLOSED) {
+            transition(State.CLOSED, "reset");
+        }
+    }
+
+    void open(String reason) {
+        ++consecutiveOpenCount;
+        ++openCount;
+        openUntilMillis = System.currentTimeMillis() + calculateBackoffMillis();
+        transition(State.OPEN, reason);
+    }
+
+    long calculateBackoffMillis() {
+        double backoff = initialBackoffMillis * Math.pow(backoffMultiplier, consecutiveOpenCount - 1);
+        backoff = Math.min(backoff, maxBackoffMillis);
+        if (jitter > 0) {
+            backoff *= 1.0 + jitter * (ThreadLocalRandom.current().nextDouble() * 2.0 - 1.0);
+        }
+        return Math.max(0, (long) backoff);
+    }
+
+    void transition(State newState, String reason) {
+        log.info("Circuit breaker transition from {} to {}: {}", state, newState, reason);
+
+        state = newState;
+        ++generation;
+        halfOpenCallCount = 0;
+        if (newState == State.CLOSED) {
+            resetWindow();
+        }
+        ++transitionCount;
+        lastTransitionTime = new Date();
+        lastTransitionReason = reason;
+    }
+
+    void record(boolean failed) {
+        if (windowCount == windowSize) {
+            if (window[windowIndex]) {
+                --windowFailureCount;
+            }
+        } else {
+            ++windowCount;
+        }
+
+        window[windowIndex] = failed;
+        if (failed) {
+            ++windowFailureCount;
+        }
+        windowIndex = (windowIndex + 1) % windowSize;
+    }
+
+    void resetWindow() {
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailureCount = 0;
+    }
+
+    static String describe(Throwable failure) {
+        if (failure instanceof EventDeliveryHttpException) {
+            EventDeliveryHttpException httpEx = (EventDeliveryHttpException) failure;
+            return String.format("HTTP %d, Splunk code %d", httpEx.getHttpStatusCode(), httpEx.getSplunkStatusCode());
+        }
+        return failure.getCause() != null ? failure.getCause().toString() : failure.toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("CircuitBreaker{state=%s, failureRate=%.2f, retryAfterMillis=%d}", getState(), getFailureRate(), getRetryAfterMillis());
+    }
+}
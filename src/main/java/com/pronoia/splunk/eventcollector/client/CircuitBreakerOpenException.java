@@ -0,0 +1,38 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+
+
+/**
+ * Exception that is thrown when an event is rejected because the circuit breaker of the client is open.
+ */
+public class CircuitBreakerOpenException extends EventDeliveryException {
+    private static final long serialVersionUID = 1L;
+
+    final long retryAfterMillis;
+
+    public CircuitBreakerOpenException(final String event, final long retryAfterMillis) {
+        super(event, String.format("Circuit breaker is open - retry after %d milliseconds", retryAfterMillis));
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
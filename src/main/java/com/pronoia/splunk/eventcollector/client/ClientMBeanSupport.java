@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+
+
+/**
+ * Registers and unregisters the client MBeans with the platform MBean server.
+ */
+final class ClientMBeanSupport {
+    private ClientMBeanSupport() {
+    }
+
+    /**
+     * Register a client MBean using the simple name of its class and the client ID.
+     *
+     * <p>Registration failures are logged, and do not prevent the client from being used.
+     *
+     * @param client   the client MBean
+     * @param clientId the ID of the client
+     * @param log      the logger of the client
+     *
+     * @return the ObjectName of the MBean, or null if a valid ObjectName could not be created
+     */
+    static ObjectName registerMBean(Object client, String clientId, Logger log) {
+        String clientObjectNameString = String.format("com.pronoia.splunk.httpec:type=%s,id=%s", client.getClass().getSimpleName(), clientId);
+
+        ObjectName clientObjectName;
+        try {
+            clientObjectName = new ObjectName(clientObjectNameString);
+        } catch (MalformedObjectNameException malformedNameEx) {
+            log.warn("Failed to create ObjectName for string {} - MBean will not be registered", clientObjectNameString, malformedNameEx);
+            return null;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(client, clientObjectName);
+        } catch (InstanceAlreadyExistsException allreadyExistsEx) {
+            log.warn("MBean already registered for name {}", clientObjectName, allreadyExistsEx);
+        } catch (MBeanRegistrationException registrationEx) {
+            log.warn("MBean registration failure for name {}", clientObjectName, registrationEx);
+        } catch (NotCompliantMBeanException nonCompliantMBeanEx) {
+            log.warn("Invalid MBean for name {}", clientObjectName, nonCompliantMBeanEx);
+        }
+
+        return clientObjectName;
+    }
+
+    /**
+     * Unregister a client MBean.
+     *
+     * @param clientObjectName the ObjectName of the MBean - ignored if null
+     * @param log              the logger of the client
+     */
+    static void unregisterMBean(ObjectName clientObjectName, Logger log) {
+        if (clientObjectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(clientObjectName);
+            } catch (InstanceNotFoundException | MBeanRegistrationException unregisterEx) {
+                log.warn("Failed to unregister consumer MBean {}", clientObjectName.getCanonicalName(), unregisterEx);
+            }
+        }
+    }
+}
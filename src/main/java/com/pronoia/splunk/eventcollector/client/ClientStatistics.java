@@ -0,0 +1,280 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryHttpException;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+
+/**
+ * Lock-free delivery statistics of an HTTP Event Collector client.
+ *
+ * <p>Totals are kept in striped counters, and rates and latency percentiles are calculated over a sliding window, so
+ * sender threads never contend on a lock when recording statistics.
+ */
+public class ClientStatistics {
+    static final String[] ITEM_NAMES = {
+        "eventCount", "requestCount", "failedRequestCount", "retryCount", "payloadBytes", "wireBytes",
+        "eventRate", "byteRate", "failureRate",
+        "sendLatencyMeanMillis", "sendLatencyP50Millis", "sendLatencyP99Millis", "sendLatencyP999Millis", "sendLatencyMaxMillis",
+        "serializationLatencyP50Millis", "serializationLatencyP99Millis", "serializationLatencyP999Millis",
+        "windowMillis"
+    };
+
+    static final CompositeType COMPOSITE_TYPE = createCompositeType();
+
+    final LongAdder eventCount = new LongAdder();
+    final LongAdder requestCount = new LongAdder();
+    final LongAdder failedRequestCount = new LongAdder();
+    final LongAdder retryCount = new LongAdder();
+    final LongAdder payloadBytes = new LongAdder();
+    final LongAdder wireBytes = new LongAdder();
+    final LongAdder compressedRequestCount = new LongAdder();
+    final LongAdder compressionCpuTimeNanos = new LongAdder();
+
+    final ConcurrentMap<Integer, LongAdder> httpStatusFailureCounts = new ConcurrentHashMap<>();
+    final ConcurrentMap<Integer, LongAdder> splunkStatusFailureCounts = new ConcurrentHashMap<>();
+
+    final SlidingWindowCounter eventRate = new SlidingWindowCounter();
+    final SlidingWindowCounter byteRate = new SlidingWindowCounter();
+    final SlidingWindowCounter failureRate = new SlidingWindowCounter();
+
+    final LatencyHistogram sendLatency = new LatencyHistogram();
+    final LatencyHistogram serializationLatency = new LatencyHistogram();
+
+    volatile long lastEventTimeMillis;
+
+    /**
+     * Record events that were delivered to the HTTP Event Collector.
+     *
+     * @param count the number of events
+     */
+    public void recordEvents(long count) {
+        eventCount.add(count);
+        eventRate.add(count);
+        lastEventTimeMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Record the size of a request body.
+     *
+     * @param payload the size of the uncompressed body
+     * @param wire    the size of the body sent to the HTTP Event Collector
+     */
+    public void recordPayload(long payload, long wire) {
+        payloadBytes.add(payload);
+        wireBytes.add(wire);
+        byteRate.add(wire);
+    }
+
+    public void recordCompression(long cpuTimeNanos) {
+        compressedRequestCount.increment();
+        compressionCpuTimeNanos.add(cpuTimeNanos);
+    }
+
+    public void recordSerialization(long latencyNanos) {
+        serializationLatency.record(latencyNanos);
+    }
+
+    /**
+     * Record a successful request.
+     *
+     * @param latencyNanos the round-trip time of the request in nanoseconds
+     */
+    public void recordRequest(long latencyNanos) {
+        requestCount.increment();
+        sendLatency.record(latencyNanos);
+    }
+
+    /**
+     * Record a failed request.  HTTP errors are also counted by HTTP and Splunk status code.
+     *
+     * @param latencyNanos the time until the request failed in nanoseconds
+     * @param failure      the cause of the failure
+     */
+    public void recordFailure(long latencyNanos, Throwable failure) {
+        requestCount.increment();
+        failedRequestCount.increment();
+        failureRate.increment();
+        sendLatency.record(latencyNanos);
+
+        if (failure instanceof EventDeliveryHttpException) {
+            EventDeliveryHttpException httpEx = (EventDeliveryHttpException) failure;
+            httpStatusFailureCounts.computeIfAbsent(httpEx.getHttpStatusCode(), code -> new LongAdder()).increment();
+            splunkStatusFailureCounts.computeIfAbsent(httpEx.getSplunkStatusCode(), code -> new LongAdder()).increment();
+        }
+    }
+
+    public void recordRetry() {
+        retryCount.increment();
+    }
+
+    public long getEventCount() {
+        return eventCount.sum();
+    }
+
+    public Date getLastEventTime() {
+        long tmpLastEventTimeMillis = lastEventTimeMillis;
+        return tmpLastEventTimeMillis > 0 ? new Date(tmpLastEventTimeMillis) : null;
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public long getFailedRequestCount() {
+        return failedRequestCount.sum();
+    }
+
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    public long getPayloadBytes() {
+        return payloadBytes.sum();
+    }
+
+    public long getWireBytes() {
+        return wireBytes.sum();
+    }
+
+    public long getCompressedRequestCount() {
+        return compressedRequestCount.sum();
+    }
+
+    public long getCompressionCpuTimeNanos() {
+        return compressionCpuTimeNanos.sum();
+    }
+
+    public Map<String, Long> getHttpStatusFailureCounts() {
+        return toMap(httpStatusFailureCounts);
+    }
+
+    /**
+     * Get the number of failed requests by Splunk status code - the code is -1 when the response did not contain one.
+     *
+     * @return the number of failed requests by Splunk status code
+     */
+    public Map<String, Long> getSplunkStatusFailureCounts() {
+        return toMap(splunkStatusFailureCounts);
+    }
+
+    public double getEventRate() {
+        return eventRate.getRatePerSecond();
+    }
+
+    public double getByteRate() {
+        return byteRate.getRatePerSecond();
+    }
+
+    public double getFailureRate() {
+        return failureRate.getRatePerSecond();
+    }
+
+    public LatencyHistogram.Snapshot getSendLatency() {
+        return sendLatency.snapshot();
+    }
+
+    public LatencyHistogram.Snapshot getSerializationLatency() {
+        return serializationLatency.snapshot();
+    }
+
+    public long getWindowMillis() {
+        return sendLatency.getWindowMillis();
+    }
+
+    /**
+     * Get the statistics as CompositeData for JMX clients.
+     *
+     * @return the statistics
+     */
+    public CompositeData toCompositeData() {
+        LatencyHistogram.Snapshot send = sendLatency.snapshot();
+        LatencyHistogram.Snapshot serialization = serializationLatency.snapshot();
+
+        Object[] values = {
+            getEventCount(), getRequestCount(), getFailedRequestCount(), getRetryCount(), getPayloadBytes(), getWireBytes(),
+            getEventRate(), getByteRate(), getFailureRate(),
+            send.getMeanMillis(), send.getPercentileMillis(50.0), send.getPercentileMillis(99.0), send.getPercentileMillis(99.9), send.getMaxMillis(),
+            serialization.getPercentileMillis(50.0), serialization.getPercentileMillis(99.0), serialization.getPercentileMillis(99.9),
+            getWindowMillis()
+        };
+
+        try {
+            return new CompositeDataSupport(COMPOSITE_TYPE, ITEM_NAMES, values);
+        } catch (OpenDataException openDataEx) {
+            throw new IllegalStateException("Failed to create CompositeData for the client statistics", openDataEx);
+        }
+    }
+
+    /**
+     * Reset all the statistics.
+     */
+    public void reset() {
+        eventCount.reset();
+        requestCount.reset();
+        failedRequestCount.reset();
+        retryCount.reset();
+        payloadBytes.reset();
+        wireBytes.reset();
+        compressedRequestCount.reset();
+        compressionCpuTimeNanos.reset();
+        httpStatusFailureCounts.clear();
+        splunkStatusFailureCounts.clear();
+        eventRate.reset();
+        byteRate.reset();
+        failureRate.reset();
+        sendLatency.reset();
+        serializationLatency.reset();
+        lastEventTimeMillis = 0;
+    }
+
+    static Map<String, Long> toMap(Map<Integer, LongAdder> counts) {
+        Map<String, Long> answer = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : counts.entrySet()) {
+            answer.put(entry.getKey().toString(), entry.getValue().sum());
+        }
+
+        return answer;
+    }
+
+    static CompositeType createCompositeType() {
+        OpenType<?>[] itemTypes = new OpenType<?>[ITEM_NAMES.length];
+        for (int i = 0; i < ITEM_NAMES.length; ++i) {
+            itemTypes[i] = (i < 6 || i == ITEM_NAMES.length - 1) ? SimpleType.LONG : SimpleType.DOUBLE;
+        }
+
+        try {
+            return new CompositeType("ClientStatistics", "HTTP Event Collector client statistics", ITEM_NAMES, ITEM_NAMES, itemTypes);
+        } catch (OpenDataException openDataEx) {
+            throw new IllegalStateException("Failed to create the CompositeType for the client statistics", openDataEx);
+        }
+    }
+}
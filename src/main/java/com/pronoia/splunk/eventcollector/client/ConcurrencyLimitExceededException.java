@@ -0,0 +1,38 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+
+
+/**
+ * Exception that is thrown when an event is shed because the concurrency limit of the client has been reached.
+ */
+public class ConcurrencyLimitExceededException extends EventDeliveryException {
+    private static final long serialVersionUID = 1L;
+
+    final int limit;
+
+    public ConcurrencyLimitExceededException(final String event, final int limit) {
+        super(event, String.format("Concurrency limit of %d in-flight requests exceeded", limit));
+        this.limit = limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
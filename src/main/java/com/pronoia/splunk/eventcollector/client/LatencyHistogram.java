@@ -0,0 +1,219 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Lock-free histogram of the latencies recorded over a sliding time window.
+ *
+ * <p>Latencies are recorded in microseconds into log-linear buckets - each power of two is divided into eight
+ * sub-buckets, so a reported percentile is within 12.5% of the recorded value.  The window is divided into slices which
+ * are recycled as the window slides, so recording a latency never allocates and never blocks.  A few samples recorded
+ * while a slice is being recycled may be lost, which is acceptable for monitoring.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    static final long DEFAULT_WINDOW_MILLIS = 60000;
+    static final int DEFAULT_SLICE_COUNT = 12;
+
+    final long sliceNanos;
+    final Slice[] slices;
+
+    LongSupplier nanoClock = System::nanoTime;
+
+    /**
+     * Create a histogram with a one minute window.
+     */
+    public LatencyHistogram() {
+        this(DEFAULT_WINDOW_MILLIS, DEFAULT_SLICE_COUNT);
+    }
+
+    /**
+     * Create a histogram.
+     *
+     * @param windowMillis the length of the sliding window in milliseconds
+     * @param sliceCount   the number of slices the window is divided into
+     */
+    public LatencyHistogram(long windowMillis, int sliceCount) {
+        if (windowMillis <= 0 || sliceCount <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid window %d ms with %d slices - both values must be greater than zero", windowMillis, sliceCount));
+        }
+        this.sliceNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(windowMillis) / sliceCount);
+        this.slices = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; ++i) {
+            slices[i] = new Slice();
+        }
+    }
+
+    public long getWindowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(sliceNanos * slices.length);
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param latencyNanos the latency in nanoseconds
+     */
+    public void record(long latencyNanos) {
+        long value = Math.max(0, TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+
+        Slice slice = currentSlice(nanoClock.getAsLong() / sliceNanos);
+        slice.counts.incrementAndGet(bucketIndex(value));
+        slice.total.add(value);
+        slice.max.accumulate(value);
+    }
+
+    /**
+     * Get the latencies recorded in the current window.
+     *
+     * @return a snapshot of the histogram
+     */
+    public Snapshot snapshot() {
+        long currentSliceNumber = nanoClock.getAsLong() / sliceNanos;
+        Snapshot answer = new Snapshot();
+        for (Slice slice : slices) {
+            if (slice.sliceNumber.get() > currentSliceNumber - slices.length) {
+                for (int i = 0; i < BUCKET_COUNT; ++i) {
+                    long count = slice.counts.get(i);
+                    answer.counts[i] += count;
+                    answer.count += count;
+                }
+                answer.total += slice.total.sum();
+                answer.max = Math.max(answer.max, slice.max.get());
+            }
+        }
+
+        return answer;
+    }
+
+    /**
+     * Discard all the recorded latencies.
+     */
+    public void reset() {
+        for (Slice slice : slices) {
+            slice.sliceNumber.set(Long.MIN_VALUE);
+            slice.clear();
+        }
+    }
+
+    Slice currentSlice(long sliceNumber) {
+        Slice slice = slices[(int) Math.floorMod(sliceNumber, (long) slices.length)];
+        long recordedSliceNumber = slice.sliceNumber.get();
+        if (recordedSliceNumber != sliceNumber && slice.sliceNumber.compareAndSet(recordedSliceNumber, sliceNumber)) {
+            slice.clear();
+        }
+
+        return slice;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * Get the highest value that is recorded in a bucket.
+     *
+     * @param index the index of the bucket
+     *
+     * @return the highest value of the bucket
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    static class Slice {
+        final AtomicLong sliceNumber = new AtomicLong(Long.MIN_VALUE);
+        final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        final LongAdder total = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void clear() {
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                counts.set(i, 0);
+            }
+            total.reset();
+            max.reset();
+        }
+    }
+
+    /**
+     * The latencies recorded in a window.
+     */
+    public static class Snapshot {
+        final long[] counts = new long[BUCKET_COUNT];
+        long count;
+        long total;
+        long max;
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMillis() {
+            return count > 0 ? total / (count * 1000.0) : 0.0;
+        }
+
+        public double getMaxMillis() {
+            return max / 1000.0;
+        }
+
+        /**
+         * Get a percentile of the recorded latencies.
+         *
+         * @param percentile the percentile (between 0.0 and 100.0)
+         *
+         * @return the latency in milliseconds, or 0.0 if no latencies were recorded
+         */
+        public double getPercentileMillis(double percentile) {
+            if (count == 0) {
+                return 0.0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(count * Math.min(Math.max(percentile, 0.0), 100.0) / 100.0));
+            long cumulativeCount = 0;
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                cumulativeCount += counts[i];
+                if (cumulativeCount >= rank) {
+                    return Math.min(bucketUpperBound(i), max) / 1000.0;
+                }
+            }
+
+            return getMaxMillis();
+        }
+    }
+}
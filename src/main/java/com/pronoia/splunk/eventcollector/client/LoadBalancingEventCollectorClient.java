@@ -16,136 +16,679 @@
  */
 package com.pronoia.splunk.eventcollector.client;
 
-import java.util.Deque;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-
-import com.pronoia.splunk.eventcollector.EventCollectorClient;
 import com.pronoia.splunk.eventcollector.EventCollectorInfo;
 import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.EventDeliveryHttpException;
+import com.pronoia.splunk.eventcollector.EventPayload;
+import com.pronoia.splunk.eventcollector.EventWriter;
+import com.pronoia.splunk.eventcollector.util.NamedThreadFactory;
 
-import org.apache.http.client.HttpClient;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 
 /**
  * Client for sending JSON-formatted events to a multiple Splunk HTTP Collectors.
  *
- * <p>TODO:  Implement this class
+ * <p>Each Splunk HTTP Event Collector is served by its own SimpleEventCollectorClient (and therefore its own HTTP
+ * connection pool).  Events are distributed across the available collectors using either a round-robin or a weighted
+ * round-robin selection policy.  When delivery to a collector fails with a connection error or a server error (HTTP
+ * 5xx), the event is retried on the next available collector, and the failed collector is evicted once it reaches the
+ * failure threshold.  Evicted collectors are probed in the background using the HTTP Event Collector health endpoint,
+ * and are re-admitted once a probe succeeds.
+ *
+ * <p>The authorization token, SSL and certificate validation settings configured on this client are used as the
+ * defaults for collectors added using addEventCollector(String, Integer).  The remaining delivery settings (e.g. gzip
+ * compression, connection pool sizing, the circuit breaker and the concurrency limiter) are configured on the client for
+ * each collector, which is created by the endpoint client factory.
  */
-public class LoadBalancingEventCollectorClient implements EventCollectorClient {
-    Logger log = LoggerFactory.getLogger(this.getClass());
-    List<EventCollectorInfo> eventCollectorInfoSet = new LinkedList<>();
-    Deque<HttpClient> httpClients;
+public class LoadBalancingEventCollectorClient extends AbstractEventCollectorClient implements LoadBalancingEventCollectorClientMBean {
+    static final long DEFAULT_EVICTION_MILLIS = 30000;
+    static final long DEFAULT_PROBE_INTERVAL_MILLIS = 5000;
+    static final int DEFAULT_FAILURE_THRESHOLD = 1;
+    static final int DEFAULT_WEIGHT = 1;
+
+    /**
+     * The policy used to select the Splunk HTTP Event Collector for an event.
+     */
+    public enum SelectionPolicy {
+        /**
+         * Select the available collectors in turn, ignoring their weights.
+         */
+        ROUND_ROBIN,
+        /**
+         * Select the available collectors in proportion to their weights (smooth weighted round-robin).
+         */
+        WEIGHTED
+    }
+
+    final List<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+    final Object selectionLock = new Object();
+    final AtomicInteger roundRobinIndex = new AtomicInteger();
 
+    SelectionPolicy selectionPolicy = SelectionPolicy.ROUND_ROBIN;
+    long evictionMillis = DEFAULT_EVICTION_MILLIS;
+    long probeIntervalMillis = DEFAULT_PROBE_INTERVAL_MILLIS;
+    int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    Supplier<? extends SimpleEventCollectorClient> endpointClientFactory = SimpleEventCollectorClient::new;
+
+    ScheduledExecutorService probeExecutor;
+
+    Date startTime;
+    Date stopTime;
+    volatile long lastEventTimeMillis;
+
+    final LongAdder eventCount = new LongAdder();
+    final AtomicLong failoverCount = new AtomicLong();
+    final AtomicLong evictionCount = new AtomicLong();
+    final AtomicLong readmissionCount = new AtomicLong();
+
+    /**
+     * Create a new LoadBalancingEventCollectorClient.
+     */
     public LoadBalancingEventCollectorClient() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    }
+
+    /**
+     * Determine if the instance has been intialized.
+     *
+     * @return true if the instance has been intialized; false otherwise
+     */
+    public boolean isInitialized() {
+        return probeExecutor != null;
+    }
+
+    /**
+     * Add a Splunk HTTP Event Collector with the default weight.
+     *
+     * @param eventCollectorInfo the Splunk HTTP Event Collector
+     */
+    public void addEventCollector(EventCollectorInfo eventCollectorInfo) {
+        addEventCollector(eventCollectorInfo, DEFAULT_WEIGHT);
+    }
+
+    /**
+     * Add a Splunk HTTP Event Collector.
+     *
+     * @param eventCollectorInfo the Splunk HTTP Event Collector
+     * @param weight             the relative weight of the collector used by the WEIGHTED selection policy
+     */
+    public synchronized void addEventCollector(EventCollectorInfo eventCollectorInfo, int weight) {
+        if (eventCollectorInfo == null) {
+            throw new IllegalArgumentException("addEventCollector(EventCollectorInfo, int) - EventCollectorInfo argument cannot be null");
+        }
+        if (weight < 1) {
+            throw new IllegalArgumentException(String.format("addEventCollector(EventCollectorInfo, int) - weight must be greater than zero: %d", weight));
+        }
+
+        Endpoint endpoint = new Endpoint(eventCollectorInfo, weight, createEndpointClient(eventCollectorInfo, endpoints.size() + 1));
+        endpoints.add(endpoint);
+
+        if (isInitialized()) {
+            endpoint.client.start();
+        }
+    }
+
+    /**
+     * Add a Splunk HTTP Event Collector with the default weight, using the authorization token and SSL settings of this
+     * client.
+     *
+     * @param host hostname or IP of the collector
+     * @param port port of the collector
+     */
+    public void addEventCollector(String host, Integer port) {
+        addEventCollector(host, port, DEFAULT_WEIGHT);
+    }
+
+    /**
+     * Add a Splunk HTTP Event Collector, using the authorization token and SSL settings of this client.
+     *
+     * @param host   hostname or IP of the collector
+     * @param port   port of the collector
+     * @param weight the relative weight of the collector used by the WEIGHTED selection policy
+     */
+    public void addEventCollector(String host, Integer port, int weight) {
+        EventCollectorInfo collectorInfo = new EventCollectorInfo();
+
+        collectorInfo.setHost(host);
+        collectorInfo.setPort(port);
+        collectorInfo.setAuthorizationToken(getAuthorizationToken());
+        collectorInfo.setUseSSL(isUseSSL());
+        collectorInfo.setValidateCertificates(isCertificateValidationEnabled());
+
+        addEventCollector(collectorInfo, weight);
+    }
+
+    /**
+     * Replace the configured Splunk HTTP Event Collectors.
+     *
+     * @param eventCollectors the Splunk HTTP Event Collectors - each with the default weight
+     */
+    public synchronized void setEventCollectors(List<EventCollectorInfo> eventCollectors) {
+        if (isInitialized()) {
+            throw new IllegalStateException("Event collectors cannot be replaced while the client is started");
+        }
+
+        endpoints.clear();
+        if (eventCollectors != null) {
+            for (EventCollectorInfo eventCollectorInfo : eventCollectors) {
+                addEventCollector(eventCollectorInfo);
+            }
+        }
+    }
+
+    /**
+     * Get the configured Splunk HTTP Event Collectors.
+     *
+     * @return the list of Splunk HTTP Event Collectors
+     */
+    public List<EventCollectorInfo> getEventCollectors() {
+        List<EventCollectorInfo> answer = new ArrayList<>(endpoints.size());
+
+        for (Endpoint endpoint : endpoints) {
+            answer.add(endpoint.info);
+        }
+
+        return answer;
+    }
+
+    public Supplier<? extends SimpleEventCollectorClient> getEndpointClientFactory() {
+        return endpointClientFactory;
+    }
+
+    /**
+     * Set the factory used to create the client for each Splunk HTTP Event Collector.
+     *
+     * <p>The factory must return a new, unstarted client each time it is called.  Use it to configure the delivery settings
+     * of the collector clients - e.g. gzip compression, connection pool sizing, timeouts, the circuit breaker or the
+     * concurrency limiter.  The host, port, token and SSL settings of the client are replaced by those of the collector.
+     *
+     * @param endpointClientFactory the factory - if null, a default SimpleEventCollectorClient is used for each collector
+     */
+    public synchronized void setEndpointClientFactory(Supplier<? extends SimpleEventCollectorClient> endpointClientFactory) {
+        if (isInitialized()) {
+            throw new IllegalStateException("The endpoint client factory cannot be replaced while the client is started");
+        }
+
+        this.endpointClientFactory = (endpointClientFactory != null) ? endpointClientFactory : SimpleEventCollectorClient::new;
+
+        List<Endpoint> replacements = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            replacements.add(new Endpoint(endpoint.info, endpoint.weight, createEndpointClient(endpoint.info, replacements.size() + 1)));
+        }
+        endpoints.clear();
+        endpoints.addAll(replacements);
     }
 
     @Override
-    public String getClientId() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public String getSelectionPolicy() {
+        return selectionPolicy.name();
+    }
+
+    public void setSelectionPolicy(SelectionPolicy selectionPolicy) {
+        this.selectionPolicy = (selectionPolicy != null) ? selectionPolicy : SelectionPolicy.ROUND_ROBIN;
+    }
+
+    public void setSelectionPolicy(String selectionPolicy) {
+        setSelectionPolicy(SelectionPolicy.valueOf(selectionPolicy.trim().toUpperCase().replace('-', '_')));
     }
 
     @Override
-    public boolean hasEventHost() {
-        return false;
+    public long getEvictionMillis() {
+        return evictionMillis;
+    }
+
+    /**
+     * Set the minimum time (in milliseconds) a failed collector will remain evicted before it is probed.
+     *
+     * @param evictionMillis the eviction time in milliseconds
+     */
+    public void setEvictionMillis(long evictionMillis) {
+        this.evictionMillis = evictionMillis;
     }
 
     @Override
-    public String getEventHost() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public long getProbeIntervalMillis() {
+        return probeIntervalMillis;
+    }
+
+    /**
+     * Set the interval (in milliseconds) between probes of evicted collectors.
+     *
+     * <p>The new value will take effect the next time the client is started.
+     *
+     * @param probeIntervalMillis the probe interval in milliseconds
+     */
+    public void setProbeIntervalMillis(long probeIntervalMillis) {
+        this.probeIntervalMillis = probeIntervalMillis;
     }
 
     @Override
-    public boolean hasEventIndex() {
-        return false;
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Set the number of consecutive failures that will cause a collector to be evicted.
+     *
+     * @param failureThreshold the number of consecutive failures
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
     }
 
     @Override
-    public String getEventIndex() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public int getEventCollectorCount() {
+        return endpoints.size();
     }
 
     @Override
-    public boolean hasEventSource() {
-        return false;
+    public int getAvailableEventCollectorCount() {
+        int answer = 0;
+
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.available.get()) {
+                ++answer;
+            }
+        }
+
+        return answer;
     }
 
     @Override
-    public String getEventSource() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public String[] getEventCollectorStatus() {
+        List<String> answer = new ArrayList<>(endpoints.size());
+
+        for (Endpoint endpoint : endpoints) {
+            answer.add(endpoint.toString());
+        }
+
+        return answer.toArray(new String[answer.size()]);
     }
 
     @Override
-    public boolean hasEventSourcetype() {
-        return false;
+    public Date getStartTime() {
+        return startTime;
     }
 
     @Override
-    public String getEventSourcetype() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public Date getLastEventTime() {
+        long tmpLastEventTimeMillis = lastEventTimeMillis;
+        return tmpLastEventTimeMillis > 0 ? new Date(tmpLastEventTimeMillis) : null;
     }
 
     @Override
-    public boolean hasConstantFields() {
-        return false;
+    public long getEventCount() {
+        return eventCount.sum();
     }
 
     @Override
-    public Map<String, String> getConstantFields() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public long getFailoverCount() {
+        return failoverCount.get();
     }
 
     @Override
-    public Map<String, String> getConstantFields(boolean copy) {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public long getEvictionCount() {
+        return evictionCount.get();
     }
 
     @Override
-    public boolean hasIncludedSystemProperties() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public long getReadmissionCount() {
+        return readmissionCount.get();
     }
 
     @Override
-    public Map<String, String> getIncludedSystemProperties() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public Date getStopTime() {
+        return stopTime;
     }
 
+    public synchronized void initialize() {
+        registerMBean();
+        start();
+    }
+
+    public synchronized void destroy() {
+        stop();
+        unregisterMBean();
+    }
+
+    /**
+     * Start the clients for each of the Splunk HTTP Event Collectors and the background probe of evicted collectors.
+     */
     @Override
-    public Map<String, String> getIncludedSystemProperties(boolean copy) {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public synchronized void start() {
+        if (probeExecutor == null) {
+            if (endpoints.isEmpty()) {
+                log.warn("{} has no Splunk HTTP Event Collectors configured", this.getClass().getSimpleName());
+            }
+
+            for (Endpoint endpoint : endpoints) {
+                endpoint.client.start();
+            }
+
+            probeExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(getClientId() + "-probe"));
+            probeExecutor.scheduleWithFixedDelay(this::probeEvictedEventCollectors, probeIntervalMillis, probeIntervalMillis, TimeUnit.MILLISECONDS);
+            startTime = new Date();
+        } else {
+            log.warn("{} already initialized - ignoring 'initialize()' call", this.getClass().getSimpleName());
+        }
     }
 
+    /**
+     * Stop the background probe and the clients for each of the Splunk HTTP Event Collectors.
+     */
     @Override
-    public boolean hasIncludedEnvironmentVariables() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public synchronized void stop() {
+        if (probeExecutor != null) {
+            probeExecutor.shutdownNow();
+            probeExecutor = null;
+
+            for (Endpoint endpoint : endpoints) {
+                endpoint.client.stop();
+            }
+            stopTime = new Date();
+        } else {
+            log.warn("{} is not initialized - ignoring 'destroy()' call", this.getClass().getSimpleName());
+        }
     }
 
+    /**
+     * Send an event to one of the available Splunk HTTP Event Collectors.
+     *
+     * <p>If delivery fails with a connection error or a server error, the event is retried on the next available
+     * collector.  Client errors (e.g. an invalid index or token) are not retried.
+     *
+     * @param event JSON-formatted Event
+     *
+     * @throws EventDeliveryException if the event could not be delivered to any of the collectors
+     */
     @Override
-    public Map<String, String> getIncludedEnvironmentVariables() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public void sendEvent(String event) throws EventDeliveryException {
+        deliver(endpointClient -> endpointClient.sendEvent(event), 1, event);
     }
 
+    /**
+     * Send a UTF-8 encoded event to the next available Splunk HTTP Event Collector, failing over as sendEvent(String) does.
+     */
     @Override
-    public Map<String, String> getIncludedEnvironmentVariables(boolean copy) {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public void sendEvent(byte[] event, int offset, int length) throws EventDeliveryException {
+        deliver(endpointClient -> endpointClient.sendEvent(event, offset, length), 1, SimpleEventCollectorClient.describePayload(length));
     }
 
+    /**
+     * Send a UTF-8 encoded event to the next available Splunk HTTP Event Collector, failing over as sendEvent(String) does.
+     */
     @Override
-    public synchronized void start() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public void sendEvent(ByteBuffer event) throws EventDeliveryException {
+        deliver(endpointClient -> endpointClient.sendEvent(event), 1, SimpleEventCollectorClient.describePayload(event.remaining()));
     }
 
+    /**
+     * Stream an event written by an EventWriter to the next available Splunk HTTP Event Collector.
+     *
+     * <p>Only repeatable writers are failed over to the next available collector - a writer that is not repeatable is
+     * invoked once, and a failure is reported to the caller.
+     */
     @Override
-    public synchronized void stop() {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public void sendEvent(EventWriter eventWriter) throws EventDeliveryException {
+        deliver(endpointClient -> endpointClient.sendEvent(eventWriter), 1, "<streamed event>", eventWriter.isRepeatable());
     }
 
+    /**
+     * Send all the events in a multi-event payload to the next available Splunk HTTP Event Collector in a single request.
+     *
+     * <p>Failures are retried on the next available collector, as they are by sendEvent(String).
+     *
+     * @param payload the events to send
+     *
+     * @throws EventDeliveryException if the events could not be delivered to any of the collectors
+     */
     @Override
-    public void sendEvent(String event) throws EventDeliveryException {
-        throw new UnsupportedOperationException("This class has not yet been implemented");
+    public void sendEvents(EventPayload payload) throws EventDeliveryException {
+        if (payload != null && !payload.isEmpty()) {
+            deliver(endpointClient -> endpointClient.sendEvents(payload), payload.getEventCount(), String.format("<payload of %d events>", payload.getEventCount()));
+        }
+    }
+
+    /**
+     * Deliver the event (or events) to the next available collector, failing over to the other collectors.
+     *
+     * @param delivery            sends the event (or events) using the client of the selected collector
+     * @param deliveredEventCount the number of events being delivered
+     * @param event               the event (or a description of the events) - used for error reporting
+     *
+     * @throws EventDeliveryException if the event could not be delivered to any of the collectors
+     */
+    void deliver(EndpointDelivery delivery, int deliveredEventCount, String event) throws EventDeliveryException {
+        deliver(delivery, deliveredEventCount, event, true);
+    }
+
+    /**
+     * Deliver the event (or events) to the next available collector.
+     *
+     * @param delivery            sends the event (or events) using the client of the selected collector
+     * @param deliveredEventCount the number of events being delivered
+     * @param event               the event (or a description of the events) - used for error reporting
+     * @param failover            true to fail over to the other collectors, false to make a single attempt
+     *
+     * @throws EventDeliveryException if the event could not be delivered
+     */
+    void deliver(EndpointDelivery delivery, int deliveredEventCount, String event, boolean failover) throws EventDeliveryException {
+        if (probeExecutor == null) {
+            start();
+        }
+
+        EventDeliveryException lastDeliveryException = null;
+
+        final int maxAttempts = failover ? endpoints.size() : 1;
+        for (int attempt = 0; attempt < maxAttempts; ++attempt) {
+            Endpoint endpoint = selectEndpoint();
+            if (endpoint == null) {
+                break;
+            }
+
+            try {
+                delivery.deliver(endpoint.client);
+                endpoint.consecutiveFailures.set(0);
+                endpoint.eventCount.add(deliveredEventCount);
+                eventCount.add(deliveredEventCount);
+                lastEventTimeMillis = System.currentTimeMillis();
+                return;
+            } catch (EventDeliveryException deliveryEx) {
+                if (!isEndpointFailure(deliveryEx)) {
+                    throw deliveryEx;
+                }
+                lastDeliveryException = deliveryEx;
+                if (isLocalRejection(deliveryEx)) {
+                    log.debug("Splunk HTTP Event Collector {} rejected the event locally - trying next collector", endpoint.info.getPostUrl(), deliveryEx);
+                } else {
+                    recordFailure(endpoint, deliveryEx);
+                }
+                failoverCount.incrementAndGet();
+            }
+        }
+
+        if (lastDeliveryException != null) {
+            throw lastDeliveryException;
+        }
+
+        throw new EventDeliveryException(event, String.format("No Splunk HTTP Event Collectors are available - %d of %d collectors are evicted",
+            endpoints.size() - getAvailableEventCollectorCount(), endpoints.size()));
+    }
+
+    /**
+     * Probe the evicted Splunk HTTP Event Collectors, and re-admit the collectors that report they are healthy.
+     */
+    @Override
+    public void probeEvictedEventCollectors() {
+        final long now = System.currentTimeMillis();
+
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.available.get() && now - endpoint.evictionTime >= evictionMillis) {
+                if (endpoint.client.checkHealth()) {
+                    endpoint.consecutiveFailures.set(0);
+                    if (endpoint.available.compareAndSet(false, true)) {
+                        log.info("Re-admitting Splunk HTTP Event Collector {} after successful probe", endpoint.info.getPostUrl());
+                        readmissionCount.incrementAndGet();
+                    }
+                } else {
+                    log.debug("Probe of evicted Splunk HTTP Event Collector {} failed", endpoint.info.getPostUrl());
+                }
+            }
+        }
+    }
+
+    /**
+     * Select an available Splunk HTTP Event Collector using the configured selection policy.
+     *
+     * @return the selected collector, or null if no collectors are available
+     */
+    Endpoint selectEndpoint() {
+        if (selectionPolicy == SelectionPolicy.WEIGHTED) {
+            return selectWeightedEndpoint();
+        }
+
+        final int endpointCount = endpoints.size();
+        final int startIndex = roundRobinIndex.getAndIncrement() & Integer.MAX_VALUE;
+
+        for (int i = 0; i < endpointCount; ++i) {
+            Endpoint endpoint = endpoints.get((startIndex + i) % endpointCount);
+            if (endpoint.available.get()) {
+                return endpoint;
+            }
+        }
+
+        return null;
+    }
+
+    Endpoint selectWeightedEndpoint() {
+        synchronized (selectionLock) {
+            Endpoint answer = null;
+            int totalWeight = 0;
+
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint.available.get()) {
+                    endpoint.currentWeight += endpoint.weight;
+                    totalWeight += endpoint.weight;
+                    if (answer == null || endpoint.currentWeight > answer.currentWeight) {
+                        answer = endpoint;
+                    }
+                }
+            }
+
+            if (answer != null) {
+                answer.currentWeight -= totalWeight;
+            }
+
+            return answer;
+        }
+    }
+
+    void recordFailure(Endpoint endpoint, EventDeliveryException deliveryEx) {
+        int failures = endpoint.consecutiveFailures.incrementAndGet();
+
+        // Only the thread that wins the race to evict the collector records the eviction
+        if (failures >= failureThreshold && endpoint.available.get()) {
+            endpoint.evictionTime = System.currentTimeMillis();
+            if (endpoint.available.compareAndSet(true, false)) {
+                log.warn("Evicting Splunk HTTP Event Collector {} after {} consecutive failures", endpoint.info.getPostUrl(), failures, deliveryEx);
+                evictionCount.incrementAndGet();
+            }
+        } else {
+            log.warn("Failed to deliver event to Splunk HTTP Event Collector {} - trying next collector", endpoint.info.getPostUrl(), deliveryEx);
+        }
+    }
+
+    SimpleEventCollectorClient createEndpointClient(EventCollectorInfo eventCollectorInfo, int endpointNumber) {
+        SimpleEventCollectorClient endpointClient = endpointClientFactory.get();
+        if (endpointClient == null) {
+            throw new IllegalStateException("The endpoint client factory returned null");
+        }
+
+        endpointClient.eventCollectorInfo = eventCollectorInfo;
+        endpointClient.setClientId(String.format("%s-%d", getClientId(), endpointNumber));
+
+        return endpointClient;
+    }
+
+    /**
+     * Determine if a delivery failure indicates a problem with the collector, rather than a problem with the event.
+     *
+     * @param deliveryEx the delivery failure
+     *
+     * @return true if the failure should be retried on another collector; false otherwise
+     */
+    static boolean isEndpointFailure(EventDeliveryException deliveryEx) {
+        if (isLocalRejection(deliveryEx)) {
+            return true;
+        }
+
+        if (deliveryEx instanceof EventDeliveryHttpException) {
+            return ((EventDeliveryHttpException) deliveryEx).getHttpStatusCode() >= 500;
+        }
+
+        return true;
+    }
+
+    /**
+     * Determine if the event was rejected by the client of the collector without being sent to it.
+     *
+     * <p>A concurrency limiter rejection only means the client of the collector is busy, and an open circuit breaker
+     * means the failures that opened it have already been counted (the breaker also rejects calls while its half-open
+     * probe is in flight) - so the event is retried on another collector, but the rejection does not count toward
+     * evicting the collector.
+     *
+     * @param deliveryEx the delivery failure
+     *
+     * @return true if the event was not sent to the collector; false otherwise
+     */
+    static boolean isLocalRejection(EventDeliveryException deliveryEx) {
+        return deliveryEx instanceof ConcurrencyLimitExceededException || deliveryEx instanceof CircuitBreakerOpenException;
+    }
+
+    /**
+     * Delivers the event (or events) using the client of an endpoint.
+     */
+    interface EndpointDelivery {
+        void deliver(SimpleEventCollectorClient endpointClient) throws EventDeliveryException;
+    }
+
+    /**
+     * A Splunk HTTP Event Collector and its client.
+     */
+    static class Endpoint {
+        final EventCollectorInfo info;
+        final int weight;
+        final SimpleEventCollectorClient client;
+
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        final LongAdder eventCount = new LongAdder();
+
+        final AtomicBoolean available = new AtomicBoolean(true);
+        volatile long evictionTime;
+        int currentWeight;
+
+        Endpoint(EventCollectorInfo info, int weight, SimpleEventCollectorClient client) {
+            this.info = info;
+            this.weight = weight;
+            this.client = client;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s weight=%d available=%b events=%d consecutiveFailures=%d",
+                info.getPostUrl(), weight, available.get(), eventCount.sum(), consecutiveFailures.get());
+        }
     }
 }
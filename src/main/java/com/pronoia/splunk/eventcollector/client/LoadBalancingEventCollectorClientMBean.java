@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import java.util.Date;
+import java.util.Map;
+
+
+/**
+ *
+ */
+public interface LoadBalancingEventCollectorClientMBean {
+
+    String getClientId();
+    String getEventHost();
+    String getEventIndex();
+    String getEventSource();
+    String getEventSourcetype();
+
+    boolean hasConstantFields();
+    Map<String, String> getConstantFields();
+
+    boolean hasIncludedSystemProperties();
+    Map<String, String> getIncludedSystemProperties();
+
+    boolean hasIncludedEnvironmentVariables();
+    Map<String, String> getIncludedEnvironmentVariables();
+
+    Map<String, String> getResolvedSystemProperties();
+    Map<String, String> getResolvedEnvironmentVariables();
+    long getContextRefreshIntervalMillis();
+    long getContextResolveCount();
+    void refreshContext();
+
+    String getSelectionPolicy();
+    long getEvictionMillis();
+    long getProbeIntervalMillis();
+    int getFailureThreshold();
+
+    int getEventCollectorCount();
+    int getAvailableEventCollectorCount();
+    String[] getEventCollectorStatus();
+
+    Date getStartTime();
+    Date getLastEventTime();
+    long getEventCount();
+    long getFailoverCount();
+    long getEvictionCount();
+    long getReadmissionCount();
+    Date getStopTime();
+
+    void start();
+    void stop();
+    void probeEvictedEventCollectors();
+}
@@ -16,41 +16,71 @@
  */
 package com.pronoia.splunk.eventcollector.client;
 
+import com.pronoia.splunk.eventcollector.DeliveryResult;
 import com.pronoia.splunk.eventcollector.EventDeliveryException;
 import com.pronoia.splunk.eventcollector.EventDeliveryHttpException;
+import com.pronoia.splunk.eventcollector.EventPayload;
+import com.pronoia.splunk.eventcollector.EventWriter;
+import com.pronoia.splunk.eventcollector.util.NamedThreadFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
-import javax.management.InstanceAlreadyExistsException;
-import javax.management.InstanceNotFoundException;
-import javax.management.MBeanRegistrationException;
-import javax.management.MalformedObjectNameException;
-import javax.management.NotCompliantMBeanException;
-import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
 import javax.net.ssl.SSLContext;
 
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustStrategy;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.util.EntityUtils;
 
@@ -61,156 +91,1184 @@ import org.apache.http.util.EntityUtils;
  */
 public class SimpleEventCollectorClient extends AbstractEventCollectorClient implements SimpleEventCollectorClientMBean {
     static final int RETRY_COUNT = 3;
-    static final long CONNECTION_TIME_TO_LIVE_MILLIS = 500;
+    static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 20;
+    static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+    static final long DEFAULT_KEEP_ALIVE_MILLIS = 30000;
+    static final long DEFAULT_IDLE_CONNECTION_TIMEOUT_MILLIS = 60000;
+    static final int DEFAULT_VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+    static final int DEFAULT_IO_THREAD_COUNT = 2;
+    static final String CHANNEL_HEADER = "X-Splunk-Request-Channel";
+    static final String GZIP_CONTENT_ENCODING = "gzip";
+    static final ContentType RAW_CONTENT_TYPE = ContentType.create("text/plain", StandardCharsets.UTF_8);
+    static final int DEFAULT_GZIP_MINIMUM_SIZE = 1024;
+    static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    static final int TRANSFER_BUFFER_SIZE = 8192;
+    static final ThreadLocal<byte[]> TRANSFER_BUFFER = ThreadLocal.withInitial(() -> new byte[TRANSFER_BUFFER_SIZE]);
 
     CloseableHttpClient httpClient;
+    PoolingHttpClientConnectionManager connectionManager;
+    volatile CloseableHttpAsyncClient asyncHttpClient;
+
+    int ioThreadCount = DEFAULT_IO_THREAD_COUNT;
 
-    ObjectName clientObjectName;
+    CircuitBreaker circuitBreaker;
+    AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    int maxConnectionsTotal = DEFAULT_MAX_CONNECTIONS_TOTAL;
+    int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    long defaultKeepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+    long idleConnectionTimeoutMillis = DEFAULT_IDLE_CONNECTION_TIMEOUT_MILLIS;
+    int validateAfterInactivityMillis = DEFAULT_VALIDATE_AFTER_INACTIVITY_MILLIS;
 
     Date startTime;
-    Date lastEventTime;
     Date stopTime;
 
-    long eventCount;
+    final ClientStatistics statistics = new ClientStatistics();
+
+    boolean gzipEnabled;
+    int gzipMinimumSize = DEFAULT_GZIP_MINIMUM_SIZE;
+    int gzipCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    final AtomicInteger inFlightAsyncEventCount = new AtomicInteger();
+
+    /**
+     * Create a new EventCollectorClient.
+     */
+    public SimpleEventCollectorClient() {
+    }
+
+   /**
+     * Determine if the instance has been intialized.
+     *
+     * @return true if the instance has been intialized; false otherwise
+     */
+    public boolean isInitialized() {
+        return (httpClient == null) ? false : true;
+    }
+
+    @Override
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public Date getLastEventTime() {
+        return statistics.getLastEventTime();
+    }
+
+    @Override
+    public long getEventCount() {
+        return statistics.getEventCount();
+    }
+
+    /**
+     * Get the delivery statistics of the client.
+     *
+     * @return the statistics
+     */
+    public ClientStatistics getClientStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return statistics.getRequestCount();
+    }
+
+    @Override
+    public long getFailedRequestCount() {
+        return statistics.getFailedRequestCount();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return statistics.getRetryCount();
+    }
+
+    @Override
+    public Map<String, Long> getHttpStatusFailureCounts() {
+        return statistics.getHttpStatusFailureCounts();
+    }
+
+    @Override
+    public Map<String, Long> getSplunkStatusFailureCounts() {
+        return statistics.getSplunkStatusFailureCounts();
+    }
+
+    @Override
+    public double getEventRate() {
+        return statistics.getEventRate();
+    }
+
+    @Override
+    public double getByteRate() {
+        return statistics.getByteRate();
+    }
+
+    @Override
+    public double getFailureRate() {
+        return statistics.getFailureRate();
+    }
+
+    @Override
+    public double getSendLatencyP50Millis() {
+        return statistics.getSendLatency().getPercentileMillis(50.0);
+    }
+
+    @Override
+    public double getSendLatencyP99Millis() {
+        return statistics.getSendLatency().getPercentileMillis(99.0);
+    }
+
+    @Override
+    public double getSendLatencyP999Millis() {
+        return statistics.getSendLatency().getPercentileMillis(99.9);
+    }
+
+    @Override
+    public double getSerializationLatencyP50Millis() {
+        return statistics.getSerializationLatency().getPercentileMillis(50.0);
+    }
+
+    @Override
+    public double getSerializationLatencyP99Millis() {
+        return statistics.getSerializationLatency().getPercentileMillis(99.0);
+    }
+
+    @Override
+    public double getSerializationLatencyP999Millis() {
+        return statistics.getSerializationLatency().getPercentileMillis(99.9);
+    }
+
+    @Override
+    public long getStatisticsWindowMillis() {
+        return statistics.getWindowMillis();
+    }
+
+    @Override
+    public CompositeData getStatistics() {
+        return statistics.toCompositeData();
+    }
+
+    @Override
+    public void resetStatistics() {
+        statistics.reset();
+    }
+
+    @Override
+    public Date getStopTime() {
+        return stopTime;
+    }
+
+    @Override
+    public int getIoThreadCount() {
+        return ioThreadCount;
+    }
+
+    /**
+     * Set the number of I/O threads used by the non-blocking transport for sendEventAsync.
+     *
+     * <p>The new value will take effect the next time the client is started.
+     *
+     * @param ioThreadCount the number of I/O threads
+     */
+    public void setIoThreadCount(int ioThreadCount) {
+        this.ioThreadCount = ioThreadCount;
+    }
+
+    @Override
+    public int getInFlightAsyncEventCount() {
+        return inFlightAsyncEventCount.get();
+    }
+
+    /**
+     * Get the circuit breaker used by the client.
+     *
+     * @return the circuit breaker, or null if the circuit breaker is disabled
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Set the circuit breaker used by the client.
+     *
+     * <p>While the circuit breaker is open, requests are rejected with a CircuitBreakerOpenException without contacting
+     * the HTTP Event Collector.  A SpoolingEventCollectorClient wrapping this client will spool the rejected events.
+     *
+     * @param circuitBreaker the circuit breaker, or null to disable the circuit breaker
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public boolean isCircuitBreakerEnabled() {
+        return circuitBreaker != null;
+    }
+
+    /**
+     * Enable/Disable the circuit breaker, using a circuit breaker with the default configuration when enabled.
+     *
+     * @param circuitBreakerEnabled if true, a circuit breaker will be used
+     */
+    public void setCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+        if (!circuitBreakerEnabled) {
+            circuitBreaker = null;
+        } else if (circuitBreaker == null) {
+            circuitBreaker = new CircuitBreaker();
+        }
+    }
+
+    @Override
+    public String getCircuitBreakerState() {
+        CircuitBreaker tmpCircuitBreaker = circuitBreaker;
+        return tmpCircuitBreaker != null ? tmpCircuitBreaker.getState().name() : "DISABLED";
+    }
+
+    @Override
+    public double getCircuitBreakerFailureRate() {
+        CircuitBreaker tmpCircuitBreaker = circuitBreaker;
+        return tmpCircuitBreaker != null ? tmpCircuitBreaker.getFailureRate() : 0.0;
+    }
+
+    @Override
+    public long getCircuitBreakerRetryAfterMillis() {
+        CircuitBreaker tmpCircuitBreaker = circuitBreaker;
+        return tmpCircuitBreaker != null ? tmpCircuitBreaker.getRetryAfterMillis() : 0;
+    }
+
+    @Override
+    public long getCircuitBreakerTransitionCount() {
+        CircuitBreaker tmpCircuitBreaker = circuitBreaker;
+        return tmpCircuitBreaker != null ? tmpCircuitBreaker.getTransitionCount() : 0;
+    }
+
+    @Override
+    public long getCircuitBreakerOpenCount() {
+        CircuitBreaker tmpCircuitBreaker = circuitBreaker;
+        return tmpCircuitBreaker != null ? tmpCircuitBreaker.getOpenCount() : 0;
+    }
+
+    @Override
+    public long getCircuitBreakerRejectedCount() {
+        CircuitBreaker tmpCircuitBreaker = circuitBreaker;
+        return tmpCircuitBreaker != null ? tmpCircuitBreaker.getRejectedCount() : 0;
+    }
+
+    @Override
+    public Date getCircuitBreakerLastTransitionTime() {
+        CircuitBreaker tmpCircuitBreaker = circuitBreaker;
+        return tmpCircuitBreaker != null ? tmpCircuitBreaker.getLastTransitionTime() : null;
+    }
+
+    @Override
+    public String getCircuitBreakerLastTransitionReason() {
+        CircuitBreaker tmpCircuitBreaker = circuitBreaker;
+        return tmpCircuitBreaker != null ? tmpCircuitBreaker.getLastTransitionReason() : null;
+    }
+
+    @Override
+    public void resetCircuitBreaker() {
+        CircuitBreaker tmpCircuitBreaker = circuitBreaker;
+        if (tmpCircuitBreaker != null) {
+            tmpCircuitBreaker.reset();
+        }
+    }
+
+    /**
+     * Get the concurrency limiter used by the client.
+     *
+     * @return the concurrency limiter, or null if adaptive concurrency is disabled
+     */
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Set the concurrency limiter used to limit the number of in-flight requests.
+     *
+     * <p>Requests beyond the limit wait for an in-flight request to complete, and are rejected with a
+     * ConcurrencyLimitExceededException if a permit cannot be acquired within the acquire timeout of the limiter.
+     *
+     * <p>NOTE:  The limiter applies to the blocking send methods - requests sent using sendEventAsync are not limited.
+     *
+     * @param concurrencyLimiter the concurrency limiter, or null to disable adaptive concurrency
+     */
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    @Override
+    public boolean isAdaptiveConcurrencyEnabled() {
+        return concurrencyLimiter != null;
+    }
+
+    /**
+     * Enable/Disable adaptive concurrency, using a limiter with the default configuration when enabled.
+     *
+     * @param adaptiveConcurrencyEnabled if true, the number of in-flight requests will be limited
+     */
+    public void setAdaptiveConcurrencyEnabled(boolean adaptiveConcurrencyEnabled) {
+        if (!adaptiveConcurrencyEnabled) {
+            concurrencyLimiter = null;
+        } else if (concurrencyLimiter == null) {
+            concurrencyLimiter = new AdaptiveConcurrencyLimiter();
+        }
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        AdaptiveConcurrencyLimiter tmpConcurrencyLimiter = concurrencyLimiter;
+        return tmpConcurrencyLimiter != null ? tmpConcurrencyLimiter.getLimit() : -1;
+    }
+
+    @Override
+    public int getInFlightRequestCount() {
+        AdaptiveConcurrencyLimiter tmpConcurrencyLimiter = concurrencyLimiter;
+        return tmpConcurrencyLimiter != null ? tmpConcurrencyLimiter.getInFlight() : 0;
+    }
+
+    @Override
+    public double getObservedRttMillis() {
+        AdaptiveConcurrencyLimiter tmpConcurrencyLimiter = concurrencyLimiter;
+        return tmpConcurrencyLimiter != null ? tmpConcurrencyLimiter.getSmoothedRttMillis() : 0.0;
+    }
+
+    @Override
+    public double getMinRttMillis() {
+        AdaptiveConcurrencyLimiter tmpConcurrencyLimiter = concurrencyLimiter;
+        return tmpConcurrencyLimiter != null ? tmpConcurrencyLimiter.getMinRttMillis() : 0.0;
+    }
+
+    @Override
+    public long getConcurrencyLimitChangeCount() {
+        AdaptiveConcurrencyLimiter tmpConcurrencyLimiter = concurrencyLimiter;
+        return tmpConcurrencyLimiter != null ? tmpConcurrencyLimiter.getLimitChangeCount() : 0;
+    }
+
+    @Override
+    public long getShedRequestCount() {
+        AdaptiveConcurrencyLimiter tmpConcurrencyLimiter = concurrencyLimiter;
+        return tmpConcurrencyLimiter != null ? tmpConcurrencyLimiter.getShedCount() : 0;
+    }
+
+    @Override
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    /**
+     * Set the maximum number of pooled connections.
+     *
+     * <p>The new value will take effect the next time the client is started.
+     *
+     * @param maxConnectionsTotal the maximum number of connections
+     */
+    public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    @Override
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Set the maximum number of pooled connections to a single HTTP Event Collector.
+     *
+     * <p>The new value will take effect the next time the client is started.
+     *
+     * @param maxConnectionsPerRoute the maximum number of connections per route
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    @Override
+    public long getDefaultKeepAliveMillis() {
+        return defaultKeepAliveMillis;
+    }
+
+    /**
+     * Set the time (in milliseconds) an idle connection is kept alive when the server does not send a Keep-Alive header.
+     *
+     * <p>When the server sends a Keep-Alive header with a timeout, the server's value is used.
+     *
+     * @param defaultKeepAliveMillis the keep-alive time in milliseconds
+     */
+    public void setDefaultKeepAliveMillis(long defaultKeepAliveMillis) {
+        this.defaultKeepAliveMillis = defaultKeepAliveMillis;
+    }
+
+    @Override
+    public long getIdleConnectionTimeoutMillis() {
+        return idleConnectionTimeoutMillis;
+    }
+
+    /**
+     * Set the time (in milliseconds) after which idle connections are evicted from the pool.
+     *
+     * <p>The new value will take effect the next time the client is started.
+     *
+     * @param idleConnectionTimeoutMillis the idle time in milliseconds
+     */
+    public void setIdleConnectionTimeoutMillis(long idleConnectionTimeoutMillis) {
+        this.idleConnectionTimeoutMillis = idleConnectionTimeoutMillis;
+    }
+
+    @Override
+    public int getValidateAfterInactivityMillis() {
+        return validateAfterInactivityMillis;
+    }
+
+    /**
+     * Set the period of inactivity (in milliseconds) after which a pooled connection is validated before it is reused.
+     *
+     * <p>The new value will take effect the next time the client is started.
+     *
+     * @param validateAfterInactivityMillis the inactivity period in milliseconds
+     */
+    public void setValidateAfterInactivityMillis(int validateAfterInactivityMillis) {
+        this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+    }
+
+    @Override
+    public int getLeasedConnectionCount() {
+        PoolingHttpClientConnectionManager tmpConnectionManager = connectionManager;
+        return tmpConnectionManager != null ? tmpConnectionManager.getTotalStats().getLeased() : 0;
+    }
+
+    @Override
+    public int getAvailableConnectionCount() {
+        PoolingHttpClientConnectionManager tmpConnectionManager = connectionManager;
+        return tmpConnectionManager != null ? tmpConnectionManager.getTotalStats().getAvailable() : 0;
+    }
+
+    @Override
+    public int getPendingConnectionCount() {
+        PoolingHttpClientConnectionManager tmpConnectionManager = connectionManager;
+        return tmpConnectionManager != null ? tmpConnectionManager.getTotalStats().getPending() : 0;
+    }
+
+    @Override
+    public boolean isGzipEnabled() {
+        return gzipEnabled;
+    }
+
+    /**
+     * Enable/Disable gzip compression of the request body.
+     *
+     * <p>When enabled, request bodies of at least the gzip minimum size are compressed and sent with
+     * Content-Encoding: gzip.
+     *
+     * @param gzipEnabled if true, request bodies will be compressed
+     */
+    public void setGzipEnabled(boolean gzipEnabled) {
+        this.gzipEnabled = gzipEnabled;
+    }
+
+    @Override
+    public int getGzipMinimumSize() {
+        return gzipMinimumSize;
+    }
+
+    /**
+     * Set the minimum size (in bytes) of a request body that will be compressed.
+     *
+     * <p>Smaller request bodies are sent uncompressed, since the gzip overhead outweighs the savings.
+     *
+     * @param gzipMinimumSize the minimum size in bytes
+     */
+    public void setGzipMinimumSize(int gzipMinimumSize) {
+        this.gzipMinimumSize = gzipMinimumSize;
+    }
+
+    @Override
+    public int getGzipCompressionLevel() {
+        return gzipCompressionLevel;
+    }
+
+    /**
+     * Set the gzip compression level.
+     *
+     * @param gzipCompressionLevel the compression level (0-9), or -1 for the default level
+     */
+    public void setGzipCompressionLevel(int gzipCompressionLevel) {
+        if (gzipCompressionLevel < Deflater.DEFAULT_COMPRESSION || gzipCompressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(String.format("Invalid gzip compression level %d - the value must be between %d and %d",
+                gzipCompressionLevel, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION));
+        }
+        this.gzipCompressionLevel = gzipCompressionLevel;
+    }
+
+    @Override
+    public long getPayloadBytes() {
+        return statistics.getPayloadBytes();
+    }
+
+    @Override
+    public long getWireBytes() {
+        return statistics.getWireBytes();
+    }
+
+    @Override
+    public long getCompressedRequestCount() {
+        return statistics.getCompressedRequestCount();
+    }
+
+    @Override
+    public double getCompressionRatio() {
+        long wire = statistics.getWireBytes();
+        return wire > 0 ? (double) statistics.getPayloadBytes() / wire : 1.0;
+    }
+
+    @Override
+    public double getCompressionCpuTimeMillis() {
+        return statistics.getCompressionCpuTimeNanos() / 1000000.0;
+    }
+
+    public synchronized void initialize() {
+        registerMBean();
+        start();
+    }
+
+    public synchronized void destroy() {
+        stop();
+        unregisterMBean();
+    }
+
+    /**
+     * Start the HTTP Event Collector client instance.
+     */
+    @Override
+    public synchronized void start() {
+        if (httpClient == null) {
+            connectionManager = new PoolingHttpClientConnectionManager(createSocketFactoryRegistry());
+            connectionManager.setMaxTotal(maxConnectionsTotal);
+            connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+            connectionManager.setValidateAfterInactivity(validateAfterInactivityMillis);
+
+            HttpClientBuilder clientBuilder = HttpClients.custom();
+            clientBuilder.setConnectionManager(connectionManager)
+                    .setRetryHandler(new CountingRetryHandler())
+                    .setKeepAliveStrategy(this::getKeepAliveDuration)
+                    .evictExpiredConnections()
+                    .evictIdleConnections(idleConnectionTimeoutMillis, TimeUnit.MILLISECONDS);
+
+            httpClient = clientBuilder.build();
+            startTime = new Date();
+        } else {
+            log.warn("{} already initialized - ignoring 'initialize()' call", this.getClass().getSimpleName());
+        }
+
+    }
+
+    /**
+     * Stop the HTTP Event Collector client instance.
+     */
+    @Override
+    public synchronized void stop() {
+        if (httpClient != null) {
+            if (asyncHttpClient != null) {
+                try {
+                    asyncHttpClient.close();
+                } catch (Exception closeEx) {
+                    log.info("Ignoring exception encountered closing the asynchronous HTTP Client", closeEx);
+                } finally {
+                    asyncHttpClient = null;
+                }
+            }
+            try {
+                httpClient.close();
+            } catch (Exception closeEx) {
+                log.info("Ignoring exception encountered closing the HTTP Client", closeEx);
+            } finally {
+                httpClient = null;
+                connectionManager = null;
+                stopTime = new Date();
+            }
+        } else {
+            log.warn("{} is not initialized - ignoring 'destroy()' call", this.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Restart the HTTP Event Collector client instance.
+     */
+    @Override
+    public synchronized void restart() {
+        stop();
+        try {
+            Thread.sleep(5000);
+            start();
+        } catch (InterruptedException interruptedEx) {
+            log.warn("Restart was interrupted - consumer will not be restarted", interruptedEx);
+        }
+    }
+
+    /**
+     * Send and event to the the HTTP Event Collector client.
+     */
+    @Override
+    public void sendEvent(final String event) throws EventDeliveryException {
+        log.debug("Posting payload to {}: {}", getPostUrl(), event);
+
+        if (httpClient == null) {
+            start();
+        }
+
+        doPost(createEntity(event), event);
+
+        statistics.recordEvents(1);
+    }
+
+    /**
+     * Send a UTF-8 encoded event to the HTTP Event Collector without converting it to a String.
+     *
+     * <p>The array is not copied, so it must not be modified until this method returns.
+     */
+    @Override
+    public void sendEvent(final byte[] event, final int offset, final int length) throws EventDeliveryException {
+        log.debug("Posting {} byte payload to {}", length, getPostUrl());
+
+        if (httpClient == null) {
+            start();
+        }
+
+        doPost(createEntity(event, offset, length), describePayload(length));
+
+        statistics.recordEvents(1);
+    }
+
+    /**
+     * Send a UTF-8 encoded event to the HTTP Event Collector without converting it to a String.
+     *
+     * <p>Heap buffers are posted without copying them.  The content of a direct buffer is streamed into the request
+     * through a pooled, per-thread transfer buffer.  The position of the ByteBuffer is not changed.
+     */
+    @Override
+    public void sendEvent(final ByteBuffer event) throws EventDeliveryException {
+        if (event.hasArray()) {
+            sendEvent(event.array(), event.arrayOffset() + event.position(), event.remaining());
+            return;
+        }
+
+        final int length = event.remaining();
+        log.debug("Posting {} byte direct buffer payload to {}", length, getPostUrl());
+
+        if (httpClient == null) {
+            start();
+        }
+
+        boolean compress = gzipEnabled && length >= gzipMinimumSize;
+        doPost(new EventWriterEntity(EventWriter.repeatable(outputStream -> transfer(event.duplicate(), outputStream)), compress ? -1 : length, compress),
+            describePayload(length));
+
+        statistics.recordEvents(1);
+    }
+
+    /**
+     * Stream an event (or events) written by an EventWriter into the body of the request.
+     *
+     * <p>The length of the event is not known in advance, so the request body is chunked, and it is compressed whenever
+     * gzip is enabled.  The request is only retried if the writer is repeatable (see EventWriter.repeatable(...)).
+     */
+    @Override
+    public void sendEvent(final EventWriter eventWriter) throws EventDeliveryException {
+        log.debug("Posting streamed payload to {}", getPostUrl());
+
+        if (httpClient == null) {
+            start();
+        }
+
+        doPost(new EventWriterEntity(eventWriter, -1, gzipEnabled), "<streamed event>");
+
+        statistics.recordEvents(1);
+    }
+
+    static String describePayload(int length) {
+        return "<" + length + " byte event>";
+    }
+
+    /**
+     * Copy the remaining content of a ByteBuffer to an OutputStream using the pooled transfer buffer of the thread.
+     *
+     * @param source       the source buffer - its position is advanced
+     * @param outputStream the target stream
+     *
+     * @throws IOException if the content cannot be written to the stream
+     */
+    static void transfer(ByteBuffer source, OutputStream outputStream) throws IOException {
+        byte[] transferBuffer = TRANSFER_BUFFER.get();
+        while (source.hasRemaining()) {
+            int chunkLength = Math.min(source.remaining(), transferBuffer.length);
+            source.get(transferBuffer, 0, chunkLength);
+            outputStream.write(transferBuffer, 0, chunkLength);
+        }
+    }
+
+    /**
+     * Send all the events in a multi-event payload to the HTTP Event Collector in a single request.
+     *
+     * <p>The buffer of the payload is posted without copying it, so the payload must not be modified until this method
+     * returns.
+     */
+    @Override
+    public void sendEvents(final EventPayload payload) throws EventDeliveryException {
+        if (payload == null || payload.isEmpty()) {
+            return;
+        }
+
+        log.debug("Posting payload of {} events ({} bytes) to {}", payload.getEventCount(), payload.getLength(), getPostUrl());
+
+        if (httpClient == null) {
+            start();
+        }
+
+        doPost(createEntity(payload.getBuffer(), 0, payload.getLength()), String.format("<payload of %d events>", payload.getEventCount()));
+
+        statistics.recordEvents(payload.getEventCount());
+    }
+
+    /**
+     * Create the registry of connection socket factories for the connection pool.
+     *
+     * @return the socket factory registry
+     */
+    Registry<ConnectionSocketFactory> createSocketFactoryRegistry() {
+        SSLConnectionSocketFactory sslSocketFactory;
+        if (eventCollectorInfo.isCertificateValidationEnabled()) {
+            sslSocketFactory = SSLConnectionSocketFactory.getSocketFactory();
+        } else {
+            try {
+                SSLContext sslContext = new SSLContextBuilder()
+                        .loadTrustMaterial(null, new AcceptAllTrustStrategy())
+                        .build();
+                sslSocketFactory = new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
+            } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException ex) {
+                throw new IllegalStateException("Failed to create SSL Context", ex);
+            }
+        }
+
+        return RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+    }
+
+    /**
+     * Determine how long a connection can be kept alive, honoring the Keep-Alive header sent by the server.
+     *
+     * @param response the HTTP response
+     * @param context  the HTTP context
+     *
+     * @return the keep-alive duration in milliseconds
+     */
+    long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        long keepAliveDuration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+
+        return keepAliveDuration > 0 ? keepAliveDuration : defaultKeepAliveMillis;
+    }
 
     /**
-     * Create a new EventCollectorClient.
+     * Send a line of text to the raw endpoint of the HTTP Event Collector.
+     *
+     * @param line the text of the event
+     *
+     * @throws EventDeliveryException if the event could not be delivered
+     *
+     * @see #sendRawEvents(List)
      */
-    public SimpleEventCollectorClient() {
+    public void sendRawEvent(final String line) throws EventDeliveryException {
+        sendRawEvents(Collections.singletonList(line));
     }
 
-   /**
-     * Determine if the instance has been intialized.
+    /**
+     * Send lines of text to the raw endpoint of the HTTP Event Collector in a single request.
      *
-     * @return true if the instance has been intialized; false otherwise
+     * <p>The lines are streamed to the HTTP Event Collector as a newline-delimited request body, without the JSON
+     * envelope used by the event endpoint.  The default host, index, source and sourcetype of the client are sent as
+     * query parameters, and the channel header required by the raw endpoint is always sent.
+     *
+     * <p>NOTE:  If the client has not yet been initialized, the client will be initialized.
+     *
+     * @param lines the text of the events - the lines should not contain newlines
+     *
+     * @throws EventDeliveryException if the events could not be delivered
      */
-    public boolean isInitialized() {
-        return (httpClient == null) ? false : true;
+    public void sendRawEvents(final List<String> lines) throws EventDeliveryException {
+        if (lines == null || lines.isEmpty()) {
+            return;
+        }
+
+        // The raw endpoint requires a channel
+        getChannel();
+
+        final String rawUrl = getRawUrl();
+        log.debug("Posting {} raw events to {}", lines.size(), rawUrl);
+
+        if (httpClient == null) {
+            start();
+        }
+
+        RawEventsEntity entity = new RawEventsEntity(lines, gzipEnabled);
+        doPost(rawUrl, entity, String.format("<%d raw events>", lines.size()));
+
+        statistics.recordEvents(lines.size());
     }
 
+    /**
+     * Send an event to the the HTTP Event Collector without blocking the calling thread.
+     *
+     * <p>The request is executed by the non-blocking transport, which uses a small fixed number of I/O threads
+     * regardless of the number of events in flight.
+     */
     @Override
-    public Date getStartTime() {
-        return startTime;
+    public CompletableFuture<DeliveryResult> sendEventAsync(final String event) {
+        log.debug("Posting payload asynchronously to {}: {}", getPostUrl(), event);
+
+        final CompletableFuture<DeliveryResult> answer = new CompletableFuture<>();
+
+        final CircuitBreaker tmpCircuitBreaker = circuitBreaker;
+        if (tmpCircuitBreaker != null) {
+            final long permit = tmpCircuitBreaker.tryAcquire();
+            if (permit == CircuitBreaker.NO_PERMIT) {
+                answer.completeExceptionally(new CircuitBreakerOpenException(event, tmpCircuitBreaker.getRetryAfterMillis()));
+                return answer;
+            }
+            answer.whenComplete((result, failure) -> {
+                if (failure == null) {
+                    tmpCircuitBreaker.onSuccess(permit);
+                } else {
+                    tmpCircuitBreaker.onFailure(permit, failure);
+                }
+            });
+        }
+
+        final HttpPost httpPost = new HttpPost(getPostUrl());
+        httpPost.setHeader("Authorization", getAuthorizationHeaderValue());
+        if (hasChannel()) {
+            httpPost.setHeader(CHANNEL_HEADER, getChannel());
+        }
+        httpPost.setEntity(createEntity(event));
+
+        inFlightAsyncEventCount.incrementAndGet();
+        final long startNanos = System.nanoTime();
+        try {
+            getAsyncHttpClient().execute(httpPost, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    inFlightAsyncEventCount.decrementAndGet();
+                    try {
+                        int statusCode = response.getStatusLine().getStatusCode();
+                        HttpEntity responseEntity = response.getEntity();
+                        String responseBody = (responseEntity == null ? "<empty>" : EntityUtils.toString(responseEntity));
+                        if (statusCode != 200) {
+                            log.error("Post failed with response {} - {} for payload {}", responseBody, response, event);
+                            EventDeliveryHttpException httpEx = new EventDeliveryHttpException(event, response, responseBody);
+                            statistics.recordFailure(System.nanoTime() - startNanos, httpEx);
+                            answer.completeExceptionally(httpEx);
+                        } else {
+                            statistics.recordRequest(System.nanoTime() - startNanos);
+                            statistics.recordEvents(1);
+                            answer.complete(new DeliveryResult(event, statusCode, responseBody));
+                        }
+                    } catch (IOException | RuntimeException responseEx) {
+                        statistics.recordFailure(System.nanoTime() - startNanos, responseEx);
+                        answer.completeExceptionally(new EventDeliveryException(event, responseEx));
+                    }
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    inFlightAsyncEventCount.decrementAndGet();
+                    statistics.recordFailure(System.nanoTime() - startNanos, ex);
+                    answer.completeExceptionally(new EventDeliveryException(event, ex));
+                }
+
+                @Override
+                public void cancelled() {
+                    inFlightAsyncEventCount.decrementAndGet();
+                    answer.cancel(false);
+                }
+            });
+        } catch (RuntimeException executeEx) {
+            inFlightAsyncEventCount.decrementAndGet();
+            answer.completeExceptionally(new EventDeliveryException(event, executeEx));
+        }
+
+        return answer;
     }
 
-    @Override
-    public Date getLastEventTime() {
-        return lastEventTime;
+    /**
+     * Get the non-blocking HTTP client, creating and starting it if necessary.
+     *
+     * @return the non-blocking HTTP client
+     */
+    CloseableHttpAsyncClient getAsyncHttpClient() {
+        CloseableHttpAsyncClient answer = asyncHttpClient;
+        if (answer == null) {
+            synchronized (this) {
+                if (httpClient == null) {
+                    start();
+                }
+                if (asyncHttpClient == null) {
+                    asyncHttpClient = createAsyncHttpClient();
+                    asyncHttpClient.start();
+                }
+                answer = asyncHttpClient;
+            }
+        }
+
+        return answer;
     }
 
-    @Override
-    public long getEventCount() {
-        return eventCount;
+    CloseableHttpAsyncClient createAsyncHttpClient() {
+        HttpAsyncClientBuilder clientBuilder = HttpAsyncClients.custom();
+        clientBuilder.setDefaultIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(ioThreadCount).build())
+                .setThreadFactory(new NamedThreadFactory(getClientId() + "-io"))
+                .setMaxConnTotal(maxConnectionsTotal)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setKeepAliveStrategy(this::getKeepAliveDuration);
+        if (!eventCollectorInfo.isCertificateValidationEnabled()) {
+            clientBuilder.setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE);
+            try {
+                SSLContext sslContext = new SSLContextBuilder()
+                        .loadTrustMaterial(null, new AcceptAllTrustStrategy())
+                        .build();
+                clientBuilder.setSSLContext(sslContext);
+            } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException ex) {
+                throw new IllegalStateException("Failed to create SSL Context", ex);
+            }
+        }
+
+        return clientBuilder.build();
     }
 
-    @Override
-    public Date getStopTime() {
-        return stopTime;
+    /**
+     * Create the HTTP entity for an event.
+     *
+     * @param event JSON-formatted Event
+     *
+     * @return the HTTP entity, compressed if gzip is enabled and the event is large enough
+     */
+    protected HttpEntity createEntity(final String event) {
+        final long startNanos = System.nanoTime();
+        byte[] payload = event.getBytes(StandardCharsets.UTF_8);
+
+        return createEntity(payload, 0, payload.length, ContentType.APPLICATION_JSON, startNanos);
     }
 
-    public synchronized void initialize() {
-        registerMBean();
-        start();
+    /**
+     * Create the HTTP entity for a UTF-8 encoded payload.
+     *
+     * <p>The payload array is not copied, so it must not be modified until the request has completed.
+     *
+     * @param payload the payload
+     * @param offset  the offset of the payload in the array
+     * @param length  the length of the payload
+     *
+     * @return the HTTP entity, compressed if gzip is enabled and the payload is large enough
+     */
+    protected HttpEntity createEntity(final byte[] payload, final int offset, final int length) {
+        return createEntity(payload, offset, length, ContentType.APPLICATION_JSON);
     }
 
-    public synchronized void destroy() {
-        stop();
-        unregisterMBean();
+    /**
+     * Create the HTTP entity for a payload with the supplied content type.
+     *
+     * <p>The payload array is not copied, so it must not be modified until the request has completed.
+     *
+     * @param payload     the payload
+     * @param offset      the offset of the payload in the array
+     * @param length      the length of the payload
+     * @param contentType the content type of the payload
+     *
+     * @return the HTTP entity, compressed if gzip is enabled and the payload is large enough
+     */
+    protected HttpEntity createEntity(final byte[] payload, final int offset, final int length, final ContentType contentType) {
+        return createEntity(payload, offset, length, contentType, System.nanoTime());
     }
 
     /**
-     * Start the HTTP Event Collector client instance.
+     * Create the HTTP entity for a payload, recording the time taken to prepare the request body since it was started.
      */
-    @Override
-    public synchronized void start() {
-        if (httpClient == null) {
-            HttpClientBuilder clientBuilder = HttpClients.custom();
-            clientBuilder.setRetryHandler(new DefaultHttpRequestRetryHandler(RETRY_COUNT,true))
-                    .setConnectionTimeToLive(CONNECTION_TIME_TO_LIVE_MILLIS, TimeUnit.MILLISECONDS);
-            if (!eventCollectorInfo.isCertificateValidationEnabled()) {
-                clientBuilder.setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE);
-                try {
-                    SSLContext sslContext = new SSLContextBuilder()
-                            .loadTrustMaterial(null, new AcceptAllTrustStrategy())
-                            .build();
-                    clientBuilder.setSSLContext(sslContext);
-                } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException ex) {
-                    throw new IllegalStateException("Failed to create SSL Context", ex);
-                }
+    HttpEntity createEntity(final byte[] payload, final int offset, final int length, final ContentType contentType, final long startNanos) {
+        if (gzipEnabled && length >= gzipMinimumSize) {
+            final long startCpuTime = currentThreadCpuTime();
 
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(length / 4, 64));
+            try (GZIPOutputStream gzipStream = new LeveledGZIPOutputStream(compressed, gzipCompressionLevel)) {
+                gzipStream.write(payload, offset, length);
+            } catch (IOException compressionEx) {
+                log.warn("Failed to compress request body - sending uncompressed body", compressionEx);
+                statistics.recordPayload(length, length);
+                return new ByteArrayEntity(payload, offset, length, contentType);
             }
 
-            httpClient = clientBuilder.build();
-            startTime = new Date();
-        } else {
-            log.warn("{} already initialized - ignoring 'initialize()' call", this.getClass().getSimpleName());
+            statistics.recordCompression(currentThreadCpuTime() - startCpuTime);
+            statistics.recordPayload(length, compressed.size());
+
+            ByteArrayEntity entity = new ByteArrayEntity(compressed.toByteArray(), contentType);
+            entity.setContentEncoding(GZIP_CONTENT_ENCODING);
+            statistics.recordSerialization(System.nanoTime() - startNanos);
+            return entity;
         }
 
+        statistics.recordPayload(length, length);
+        statistics.recordSerialization(System.nanoTime() - startNanos);
+        return new ByteArrayEntity(payload, offset, length, contentType);
     }
 
-    /**
-     * Stop the HTTP Event Collector client instance.
-     */
-    @Override
-    public synchronized void stop() {
-        if (httpClient != null) {
-            try {
-                httpClient.close();
-            } catch (Exception closeEx) {
-                log.info("Ignoring exception encountered closing the HTTP Client", closeEx);
-            } finally {
-                httpClient = null;
-                stopTime = new Date();
-            }
-        } else {
-            log.warn("{} is not initialized - ignoring 'destroy()' call", this.getClass().getSimpleName());
+    static long currentThreadCpuTime() {
+        if (THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()) {
+            return THREAD_MX_BEAN.getCurrentThreadCpuTime();
         }
+        return System.nanoTime();
     }
 
     /**
-     * Restart the HTTP Event Collector client instance.
+     * Check the health of the HTTP Event Collector.
+     *
+     * <p>NOTE:  If the client has not yet been initialized, the client will be initialized.
+     *
+     * @return true if the HTTP Event Collector reports it is healthy; false otherwise
      */
-    @Override
-    public synchronized void restart() {
-        stop();
-        try {
-            Thread.sleep(5000);
+    public boolean checkHealth() {
+        if (httpClient == null) {
             start();
-        } catch (InterruptedException interruptedEx) {
-            log.warn("Restart was interrupted - consumer will not be restarted", interruptedEx);
+        }
+
+        final HttpGet httpGet = new HttpGet(getHealthUrl());
+        httpGet.setHeader("Authorization", getAuthorizationHeaderValue());
+
+        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+            EntityUtils.consume(response.getEntity());
+            return response.getStatusLine().getStatusCode() == 200;
+        } catch (IOException ioEx) {
+            log.debug("Health check failed for {}", getHealthUrl(), ioEx);
+            return false;
         }
     }
 
     /**
-     * Send and event to the the HTTP Event Collector client.
+     * Post an entity to the HTTP Event Collector.
+     *
+     * <p>The client must be started before this method is called.
+     *
+     * @param entity the entity to post
+     * @param event  the event (or events) contained in the entity - used for error reporting
+     *
+     * @return the body of the HTTP response
+     *
+     * @throws EventDeliveryException in the event the entity could not be delivered to the indexer.
      */
-    @Override
-    public void sendEvent(final String event) throws EventDeliveryException {
-        log.debug("Posting payload to {}: {}", getPostUrl(), event);
+    protected String doPost(final HttpEntity entity, final String event) throws EventDeliveryException {
+        return doPost(getPostUrl(), entity, event);
+    }
 
-        if (httpClient == null) {
-            start();
+    /**
+     * Post an entity to an HTTP Event Collector endpoint.
+     *
+     * <p>The client must be started before this method is called.  If the client has a circuit breaker, the outcome
+     * of the request is reported to the breaker, and the request is rejected without contacting the HTTP Event
+     * Collector while the breaker is open.
+     *
+     * @param url    the URL of the endpoint
+     * @param entity the entity to post
+     * @param event  the event (or events) contained in the entity - used for error reporting
+     *
+     * @return the body of the HTTP response
+     *
+     * @throws EventDeliveryException in the event the entity could not be delivered to the indexer.
+     */
+    protected String doPost(final String url, final HttpEntity entity, final String event) throws EventDeliveryException {
+        final CircuitBreaker tmpCircuitBreaker = circuitBreaker;
+        if (tmpCircuitBreaker == null) {
+            return executeLimitedPost(url, entity, event);
+        }
+
+        final long permit = tmpCircuitBreaker.tryAcquire();
+        if (permit == CircuitBreaker.NO_PERMIT) {
+            throw new CircuitBreakerOpenException(event, tmpCircuitBreaker.getRetryAfterMillis());
+        }
+
+        try {
+            String responseBody = executeLimitedPost(url, entity, event);
+            tmpCircuitBreaker.onSuccess(permit);
+            return responseBody;
+        } catch (ConcurrencyLimitExceededException shedEx) {
+            // The request was not sent
+            tmpCircuitBreaker.release(permit);
+            throw shedEx;
+        } catch (EventDeliveryException | RuntimeException postEx) {
+            tmpCircuitBreaker.onFailure(permit, postEx);
+            throw postEx;
+        }
+    }
+
+    String executeLimitedPost(final String url, final HttpEntity entity, final String event) throws EventDeliveryException {
+        final AdaptiveConcurrencyLimiter tmpConcurrencyLimiter = concurrencyLimiter;
+        if (tmpConcurrencyLimiter == null) {
+            return executePost(url, entity, event);
         }
 
+        try {
+            if (!tmpConcurrencyLimiter.acquire()) {
+                throw new ConcurrencyLimitExceededException(event, tmpConcurrencyLimiter.getLimit());
+            }
+        } catch (InterruptedException interruptedEx) {
+            Thread.currentThread().interrupt();
+            throw new EventDeliveryException(event, "Interrupted waiting for the concurrency limit", interruptedEx);
+        }
+
+        final long startNanos = System.nanoTime();
+        try {
+            String responseBody = executePost(url, entity, event);
+            tmpConcurrencyLimiter.onSuccess(System.nanoTime() - startNanos);
+            return responseBody;
+        } catch (EventDeliveryHttpException httpEx) {
+            if (httpEx.getHttpStatusCode() == 503 || httpEx.getHttpStatusCode() == 429) {
+                tmpConcurrencyLimiter.onOverload(System.nanoTime() - startNanos);
+            } else {
+                tmpConcurrencyLimiter.onIgnore();
+            }
+            throw httpEx;
+        } catch (EventDeliveryException | RuntimeException postEx) {
+            tmpConcurrencyLimiter.onIgnore();
+            throw postEx;
+        }
+    }
+
+    String executePost(final String url, final HttpEntity entity, final String event) throws EventDeliveryException {
         CloseableHttpResponse response = null;
-        final HttpPost httpPost = new HttpPost(getPostUrl());
+        final HttpPost httpPost = new HttpPost(url);
 
         httpPost.setHeader("Authorization", getAuthorizationHeaderValue());
-        httpPost.setEntity(new StringEntity(event, ContentType.APPLICATION_JSON));
+        if (hasChannel()) {
+            httpPost.setHeader(CHANNEL_HEADER, getChannel());
+        }
+        httpPost.setEntity(entity);
+        final long startNanos = System.nanoTime();
         try {
             response = httpClient.execute(httpPost);
             StatusLine statusLine = response.getStatusLine();
 
+            HttpEntity responseEntity = response.getEntity();
+            String responseBody = (responseEntity == null ? "<empty>" : EntityUtils.toString(responseEntity));
             if (statusLine.getStatusCode() != 200) {
-                HttpEntity responseEntity = response.getEntity();
-
-                String responseBody = (responseEntity == null ? "<empty>" : EntityUtils.toString(responseEntity));
                 log.error("Post failed with response {} - {} for payload {}", responseBody, response, event);
-                throw new EventDeliveryHttpException(event, response, responseBody);
+                EventDeliveryHttpException httpEx = new EventDeliveryHttpException(event, response, responseBody);
+                statistics.recordFailure(System.nanoTime() - startNanos, httpEx);
+                throw httpEx;
             }
-            lastEventTime = new Date();
-            ++eventCount;
+
+            statistics.recordRequest(System.nanoTime() - startNanos);
+            return responseBody;
         } catch (IOException ioEx) {
+            statistics.recordFailure(System.nanoTime() - startNanos, ioEx);
             throw new EventDeliveryException(event, ioEx);
         } finally {
             if (response != null) {
@@ -228,39 +1286,214 @@ public class SimpleEventCollectorClient extends AbstractEventCollectorClient imp
         }
     }
 
+    /**
+     * Streaming, newline-delimited entity for the raw endpoint.
+     *
+     * <p>The lines are encoded while the request body is written, so the request body is never held in memory.
+     */
+    class RawEventsEntity extends AbstractHttpEntity {
+        final List<String> lines;
+        final boolean compress;
+
+        RawEventsEntity(List<String> lines, boolean compress) {
+            this.lines = lines;
+            this.compress = compress;
+            setContentType(RAW_CONTENT_TYPE.toString());
+            setChunked(true);
+            if (compress) {
+                setContentEncoding(GZIP_CONTENT_ENCODING);
+            }
+        }
 
-    void registerMBean() {
-        String newClientObjectNameString = String.format("com.pronoia.splunk.httpec:type=%s,id=%s",
-            this.getClass().getSimpleName(), getClientId());
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
 
-        try {
-            clientObjectName = new ObjectName(newClientObjectNameString);
-        } catch (MalformedObjectNameException malformedNameEx) {
-            log.warn("Failed to create ObjectName for string {} - MBean will not be registered", newClientObjectNameString, malformedNameEx);
-            return;
+        @Override
+        public long getContentLength() {
+            return -1;
         }
 
-        try {
-            ManagementFactory.getPlatformMBeanServer().registerMBean(this, clientObjectName);
-        } catch (InstanceAlreadyExistsException allreadyExistsEx) {
-            log.warn("MBean already registered for name {}", clientObjectName, allreadyExistsEx);
-        } catch (MBeanRegistrationException registrationEx) {
-            log.warn("MBean registration failure for name {}", clientObjectName, registrationEx);
-        } catch (NotCompliantMBeanException nonCompliantMBeanEx) {
-            log.warn("Invalid MBean for name {}", clientObjectName, nonCompliantMBeanEx);
+        @Override
+        public InputStream getContent() throws IOException {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            writeTo(content);
+            return new ByteArrayInputStream(content.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            CountingOutputStream wireStream = new CountingOutputStream(outputStream);
+            long payloadCount = 0;
+            long startCpuTime = compress ? currentThreadCpuTime() : 0;
+
+            LeveledGZIPOutputStream gzipStream = compress ? new LeveledGZIPOutputStream(wireStream, gzipCompressionLevel) : null;
+            try {
+                OutputStream payloadStream = compress ? gzipStream : wireStream;
+                for (String line : lines) {
+                    byte[] lineBytes = line.getBytes(StandardCharsets.UTF_8);
+                    payloadStream.write(lineBytes);
+                    payloadStream.write('\n');
+                    payloadCount += lineBytes.length + 1;
+                }
+                if (compress) {
+                    gzipStream.finish();
+                    statistics.recordCompression(currentThreadCpuTime() - startCpuTime);
+                }
+                payloadStream.flush();
+            } finally {
+                if (compress) {
+                    gzipStream.end();
+                }
+            }
+
+            statistics.recordPayload(payloadCount, wireStream.count);
         }
 
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
     }
 
-    void unregisterMBean() {
-        if (clientObjectName != null) {
+    /**
+     * Entity that streams the output of an EventWriter into the request body.
+     *
+     * <p>The entity is only repeatable if the EventWriter is repeatable.
+     */
+    class EventWriterEntity extends AbstractHttpEntity {
+        final EventWriter eventWriter;
+        final long contentLength;
+        final boolean compress;
+
+        /**
+         * Create the entity.
+         *
+         * @param eventWriter   writes the payload
+         * @param contentLength the length of the payload, or -1 if it is unknown or the payload is compressed
+         * @param compress      true to compress the payload
+         */
+        EventWriterEntity(EventWriter eventWriter, long contentLength, boolean compress) {
+            this.eventWriter = eventWriter;
+            this.contentLength = contentLength;
+            this.compress = compress;
+            setContentType(ContentType.APPLICATION_JSON.toString());
+            setChunked(contentLength < 0);
+            if (compress) {
+                setContentEncoding(GZIP_CONTENT_ENCODING);
+            }
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return eventWriter.isRepeatable();
+        }
+
+        @Override
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            writeTo(content);
+            return new ByteArrayInputStream(content.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            CountingOutputStream wireStream = new CountingOutputStream(outputStream);
+            long startCpuTime = compress ? currentThreadCpuTime() : 0;
+
+            LeveledGZIPOutputStream gzipStream = compress ? new LeveledGZIPOutputStream(wireStream, gzipCompressionLevel) : null;
+            CountingOutputStream payloadStream = new CountingOutputStream(compress ? gzipStream : wireStream);
             try {
-                ManagementFactory.getPlatformMBeanServer().unregisterMBean(clientObjectName);
-            } catch (InstanceNotFoundException | MBeanRegistrationException unregisterEx) {
-                log.warn("Failed to unregister consumer MBean {}", clientObjectName.getCanonicalName(), unregisterEx);
+                eventWriter.writeTo(payloadStream);
+                if (compress) {
+                    gzipStream.finish();
+                    statistics.recordCompression(currentThreadCpuTime() - startCpuTime);
+                }
+                payloadStream.flush();
             } finally {
-                clientObjectName = null;
+                if (compress) {
+                    gzipStream.end();
+                }
+            }
+
+            statistics.recordPayload(payloadStream.count, wireStream.count);
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+
+    /**
+     * Retry handler that records the retries in the client statistics.
+     */
+    class CountingRetryHandler extends DefaultHttpRequestRetryHandler {
+        CountingRetryHandler() {
+            super(RETRY_COUNT, true);
+        }
+
+        @Override
+        public boolean retryRequest(IOException exception, int executionCount, HttpContext context) {
+            boolean retry = super.retryRequest(exception, executionCount, context);
+            if (retry) {
+                statistics.recordRetry();
             }
+            return retry;
+        }
+    }
+
+    /**
+     * OutputStream that counts the bytes written to the underlying stream.
+     */
+    static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Closing the request stream is the responsibility of HttpClient
+            flush();
+        }
+    }
+
+    /**
+     * GZIPOutputStream that uses a specific compression level.
+     */
+    static class LeveledGZIPOutputStream extends GZIPOutputStream {
+        LeveledGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+
+        /**
+         * Release the native resources of the Deflater without closing the underlying stream.
+         *
+         * <p>Used when the underlying stream belongs to HttpClient - the stream cannot be used after this call.
+         */
+        void end() {
+            def.end();
         }
     }
 
@@ -21,6 +21,8 @@ import com.pronoia.splunk.eventcollector.EventDeliveryException;
 import java.util.Date;
 import java.util.Map;
 
+import javax.management.openmbean.CompositeData;
+
 
 /**
  *
@@ -48,13 +50,80 @@ public interface SimpleEventCollectorClientMBean {
     boolean hasIncludedEnvironmentVariables();
     Map<String, String> getIncludedEnvironmentVariables();
 
+    Map<String, String> getResolvedSystemProperties();
+    Map<String, String> getResolvedEnvironmentVariables();
+    long getContextRefreshIntervalMillis();
+    long getContextResolveCount();
+    void refreshContext();
+
     Date getStartTime();
 
     Date getLastEventTime();
     long getEventCount();
 
+    long getRequestCount();
+    long getFailedRequestCount();
+    long getRetryCount();
+    Map<String, Long> getHttpStatusFailureCounts();
+    Map<String, Long> getSplunkStatusFailureCounts();
+
+    long getStatisticsWindowMillis();
+    double getEventRate();
+    double getByteRate();
+    double getFailureRate();
+    double getSendLatencyP50Millis();
+    double getSendLatencyP99Millis();
+    double getSendLatencyP999Millis();
+    double getSerializationLatencyP50Millis();
+    double getSerializationLatencyP99Millis();
+    double getSerializationLatencyP999Millis();
+    CompositeData getStatistics();
+    void resetStatistics();
+
     Date getStopTime();
 
+    int getIoThreadCount();
+    int getInFlightAsyncEventCount();
+
+    boolean isCircuitBreakerEnabled();
+    String getCircuitBreakerState();
+    double getCircuitBreakerFailureRate();
+    long getCircuitBreakerRetryAfterMillis();
+    long getCircuitBreakerTransitionCount();
+    long getCircuitBreakerOpenCount();
+    long getCircuitBreakerRejectedCount();
+    Date getCircuitBreakerLastTransitionTime();
+    String getCircuitBreakerLastTransitionReason();
+    void resetCircuitBreaker();
+
+    boolean isAdaptiveConcurrencyEnabled();
+    int getConcurrencyLimit();
+    int getInFlightRequestCount();
+    double getObservedRttMillis();
+    double getMinRttMillis();
+    long getConcurrencyLimitChangeCount();
+    long getShedRequestCount();
+
+    int getMaxConnectionsTotal();
+    int getMaxConnectionsPerRoute();
+    long getDefaultKeepAliveMillis();
+    long getIdleConnectionTimeoutMillis();
+    int getValidateAfterInactivityMillis();
+
+    int getLeasedConnectionCount();
+    int getAvailableConnectionCount();
+    int getPendingConnectionCount();
+
+    boolean isGzipEnabled();
+    int getGzipMinimumSize();
+    int getGzipCompressionLevel();
+
+    long getPayloadBytes();
+    long getWireBytes();
+    long getCompressedRequestCount();
+    double getCompressionRatio();
+    double getCompressionCpuTimeMillis();
+
     void start();
     void stop();
     void restart();
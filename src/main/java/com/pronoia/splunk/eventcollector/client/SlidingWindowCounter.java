@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Lock-free counter of the values added over a sliding time window, used to calculate rates.
+ *
+ * <p>The window is divided into slices of striped counters which are recycled as the window slides.
+ */
+public class SlidingWindowCounter {
+    static final long DEFAULT_WINDOW_MILLIS = 60000;
+    static final int DEFAULT_SLICE_COUNT = 12;
+
+    final long sliceNanos;
+    final AtomicLong[] sliceNumbers;
+    final LongAdder[] sliceCounts;
+
+    LongSupplier nanoClock = System::nanoTime;
+
+    /**
+     * Create a counter with a one minute window.
+     */
+    public SlidingWindowCounter() {
+        this(DEFAULT_WINDOW_MILLIS, DEFAULT_SLICE_COUNT);
+    }
+
+    /**
+     * Create a counter.
+     *
+     * @param windowMillis the length of the sliding window in milliseconds
+     * @param sliceCount   the number of slices the window is divided into
+     */
+    public SlidingWindowCounter(long windowMillis, int sliceCount) {
+        if (windowMillis <= 0 || sliceCount <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid window %d ms with %d slices - both values must be greater than zero", windowMillis, sliceCount));
+        }
+        this.sliceNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(windowMillis) / sliceCount);
+        this.sliceNumbers = new AtomicLong[sliceCount];
+        this.sliceCounts = new LongAdder[sliceCount];
+        for (int i = 0; i < sliceCount; ++i) {
+            sliceNumbers[i] = new AtomicLong(Long.MIN_VALUE);
+            sliceCounts[i] = new LongAdder();
+        }
+    }
+
+    public long getWindowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(sliceNanos * sliceCounts.length);
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long value) {
+        long sliceNumber = nanoClock.getAsLong() / sliceNanos;
+        int index = (int) Math.floorMod(sliceNumber, (long) sliceCounts.length);
+
+        long recordedSliceNumber = sliceNumbers[index].get();
+        if (recordedSliceNumber != sliceNumber && sliceNumbers[index].compareAndSet(recordedSliceNumber, sliceNumber)) {
+            sliceCounts[index].reset();
+        }
+        sliceCounts[index].add(value);
+    }
+
+    /**
+     * Get the sum of the values added in the current window.
+     *
+     * @return the sum
+     */
+    public long getSum() {
+        long currentSliceNumber = nanoClock.getAsLong() / sliceNanos;
+        long answer = 0;
+        for (int i = 0; i < sliceCounts.length; ++i) {
+            if (sliceNumbers[i].get() > currentSliceNumber - sliceCounts.length) {
+                answer += sliceCounts[i].sum();
+            }
+        }
+
+        return answer;
+    }
+
+    /**
+     * Get the rate of the values added in the current window.
+     *
+     * @return the average rate per second over the window
+     */
+    public double getRatePerSecond() {
+        return getSum() * 1000.0 / getWindowMillis();
+    }
+
+    /**
+     * Discard all the added values.
+     */
+    public void reset() {
+        for (int i = 0; i < sliceCounts.length; ++i) {
+            sliceNumbers[i].set(Long.MIN_VALUE);
+            sliceCounts[i].reset();
+        }
+    }
+}
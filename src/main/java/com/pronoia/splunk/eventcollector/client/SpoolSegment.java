@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * A memory-mapped, preallocated spool file containing length-prefixed event records.
+ *
+ * <p>The segment starts with a header containing a magic number, the write position and the read position.  Records
+ * are appended at the write position as a four-byte length followed by the UTF-8 bytes of the event, and the header is
+ * updated after the record is written so a partially written record is never visible after a restart.  Records are
+ * consumed by advancing the read position.
+ *
+ * <p>NOTE:  This class is not thread-safe - access is synchronized by the SpoolingEventCollectorClient.
+ */
+class SpoolSegment {
+    static final int MAGIC = 0x53504F4C;
+    static final int HEADER_SIZE = 16;
+    static final int WRITE_POSITION_OFFSET = 4;
+    static final int READ_POSITION_OFFSET = 8;
+    static final int RECORD_OVERHEAD = 4;
+
+    final File file;
+    final long sequence;
+    final int capacity;
+
+    RandomAccessFile randomAccessFile;
+    MappedByteBuffer buffer;
+
+    int writePosition;
+    int readPosition;
+    int recordCount;
+
+    SpoolSegment(File file, long sequence, int capacity) {
+        this.file = file;
+        this.sequence = sequence;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Create and preallocate a new segment file.
+     *
+     * @param file     the segment file
+     * @param sequence the sequence number of the segment
+     * @param capacity the size of the segment file in bytes
+     *
+     * @return the new segment
+     *
+     * @throws IOException if the segment file cannot be created
+     */
+    static SpoolSegment create(File file, long sequence, int capacity) throws IOException {
+        SpoolSegment answer = new SpoolSegment(file, sequence, capacity);
+
+        answer.map(true);
+        answer.buffer.putInt(0, MAGIC);
+        answer.writePosition = HEADER_SIZE;
+        answer.readPosition = HEADER_SIZE;
+        answer.writeHeader();
+
+        return answer;
+    }
+
+    /**
+     * Open an existing segment file, recovering the read and write positions from the header.
+     *
+     * @param file     the segment file
+     * @param sequence the sequence number of the segment
+     *
+     * @return the segment
+     *
+     * @throws IOException if the segment file cannot be opened, or is not a valid segment file or contains a corrupt record
+     */
+    static SpoolSegment open(File file, long sequence) throws IOException {
+        long length = file.length();
+        if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Invalid spool segment file %s - unexpected length %d", file, length));
+        }
+
+        SpoolSegment answer = new SpoolSegment(file, sequence, (int) length);
+        answer.map(false);
+
+        int magic = answer.buffer.getInt(0);
+        int tmpWritePosition = answer.buffer.getInt(WRITE_POSITION_OFFSET);
+        int tmpReadPosition = answer.buffer.getInt(READ_POSITION_OFFSET);
+        if (magic != MAGIC || tmpReadPosition < HEADER_SIZE || tmpReadPosition > tmpWritePosition || tmpWritePosition > answer.capacity) {
+            answer.close();
+            throw new IOException(String.format("Invalid spool segment file %s - corrupt header", file));
+        }
+
+        answer.writePosition = tmpWritePosition;
+        answer.readPosition = tmpReadPosition;
+        for (int position = tmpReadPosition; position < tmpWritePosition; ) {
+            int recordLength = position <= tmpWritePosition - RECORD_OVERHEAD ? answer.buffer.getInt(position) : -1;
+            if (recordLength < 0 || recordLength > tmpWritePosition - position - RECORD_OVERHEAD) {
+                answer.close();
+                throw new IOException(String.format("Invalid spool segment file %s - corrupt record at position %d", file, position));
+            }
+            position += RECORD_OVERHEAD + recordLength;
+            ++answer.recordCount;
+        }
+
+        return answer;
+    }
+
+    /**
+     * Append a record to the segment.
+     *
+     * @param record the record
+     *
+     * @return true if the record was appended; false if there is insufficient space in the segment
+     */
+    boolean append(byte[] record) {
+        if (remaining() < RECORD_OVERHEAD + record.length) {
+            return false;
+        }
+
+        buffer.putInt(writePosition, record.length);
+        buffer.position(writePosition + RECORD_OVERHEAD);
+        buffer.put(record);
+
+        writePosition += RECORD_OVERHEAD + record.length;
+        ++recordCount;
+        writeHeader();
+
+        return true;
+    }
+
+    /**
+     * Read the next unconsumed record without consuming it.
+     *
+     * @return the record, or null if all of the records have been consumed
+     */
+    byte[] peek() {
+        if (readPosition >= writePosition) {
+            return null;
+        }
+
+        byte[] answer = new byte[buffer.getInt(readPosition)];
+        buffer.position(readPosition + RECORD_OVERHEAD);
+        buffer.get(answer);
+
+        return answer;
+    }
+
+    /**
+     * Consume the next record.
+     */
+    void advance() {
+        if (readPosition < writePosition) {
+            readPosition += RECORD_OVERHEAD + buffer.getInt(readPosition);
+            --recordCount;
+            writeHeader();
+        }
+    }
+
+    boolean isConsumed() {
+        return readPosition >= writePosition;
+    }
+
+    int remaining() {
+        return capacity - writePosition;
+    }
+
+    /**
+     * Flush the contents of the segment to the file system.
+     */
+    void force() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    void close() throws IOException {
+        force();
+        buffer = null;
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } finally {
+                randomAccessFile = null;
+            }
+        }
+    }
+
+    /**
+     * Close the segment and delete the segment file.
+     *
+     * @return true if the segment file was deleted; false otherwise
+     *
+     * @throws IOException if the segment could not be closed
+     */
+    boolean delete() throws IOException {
+        close();
+        return file.delete();
+    }
+
+    void map(boolean preallocate) throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            if (preallocate) {
+                randomAccessFile.setLength(capacity);
+            }
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException mapEx) {
+            randomAccessFile.close();
+            randomAccessFile = null;
+            throw mapEx;
+        }
+    }
+
+    void writeHeader() {
+        buffer.putInt(WRITE_POSITION_OFFSET, writePosition);
+        buffer.putInt(READ_POSITION_OFFSET, readPosition);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SpoolSegment{file=%s, capacity=%d, writePosition=%d, readPosition=%d, recordCount=%d}",
+            file, capacity, writePosition, readPosition, recordCount);
+    }
+}
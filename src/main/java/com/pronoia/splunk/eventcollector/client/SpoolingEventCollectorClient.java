@@ -0,0 +1,909 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.EventPayload;
+import com.pronoia.splunk.eventcollector.EventWriter;
+import com.pronoia.splunk.eventcollector.util.NamedThreadFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Client that spools events to disk when they cannot be delivered by another EventCollectorClient.
+ *
+ * <p>sendEvent places events on a bounded in-memory queue, and a background thread delivers them using the wrapped
+ * EventCollectorClient.  When the in-memory queue fills or the wrapped client fails to deliver an event (e.g. the Splunk
+ * HTTP Event Collector is down for maintenance), the queued events and all subsequent events are appended to
+ * memory-mapped, preallocated segment files in the spool directory.  The background thread drains the spool in order
+ * once the collector recovers, and returns to the in-memory queue when the spool is empty.
+ *
+ * <p>Spooled events that have not been delivered when the client is stopped remain in the spool directory and are
+ * replayed when the client is started again.  Delivery is at-least-once - an event that was being delivered when
+ * spooling started may be delivered twice.
+ *
+ * <p>Events are held (and spooled) as UTF-8 encoded bytes, and are delivered using sendEvent(byte[], int, int) of the
+ * wrapped client.  A multi-event payload passed to sendEvents is queued, spooled and counted as a single entry.
+ */
+public class SpoolingEventCollectorClient implements EventCollectorClient, SpoolingEventCollectorClientMBean {
+    static final int DEFAULT_MEMORY_QUEUE_CAPACITY = 1000;
+    static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    static final long DEFAULT_MAX_SPOOL_SIZE = 1024L * 1024 * 1024;
+    static final long DEFAULT_RETRY_INTERVAL_MILLIS = 5000;
+    static final long DEFAULT_STOP_TIMEOUT_MILLIS = 30000;
+    static final long DRAIN_RATE_WINDOW_MILLIS = 1000;
+
+    static final String SEGMENT_FILE_PREFIX = "segment-";
+    static final String SEGMENT_FILE_SUFFIX = ".spool";
+    static final String QUARANTINE_FILE_SUFFIX = ".corrupt";
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    EventCollectorClient eventCollectorClient;
+
+    String spoolDirectory;
+    int memoryQueueCapacity = DEFAULT_MEMORY_QUEUE_CAPACITY;
+    int segmentSize = DEFAULT_SEGMENT_SIZE;
+    long maxSpoolSize = DEFAULT_MAX_SPOOL_SIZE;
+    long retryIntervalMillis = DEFAULT_RETRY_INTERVAL_MILLIS;
+    long stopTimeoutMillis = DEFAULT_STOP_TIMEOUT_MILLIS;
+
+    final ReentrantLock lock = new ReentrantLock();
+    final Condition eventsAvailable = lock.newCondition();
+    final Condition stopping = lock.newCondition();
+
+    // The following are guarded by the lock
+    final Deque<byte[]> memoryQueue = new ArrayDeque<>();
+    final Deque<SpoolSegment> segments = new ArrayDeque<>();
+    byte[] inFlightEvent;
+    long nextSegmentSequence;
+    volatile boolean spooling;
+    volatile long spoolDepth;
+    volatile long spoolDiskUsage;
+
+    volatile boolean running;
+    ExecutorService drainExecutor;
+    ObjectName clientObjectName;
+
+    Date startTime;
+    Date stopTime;
+
+    final AtomicLong deliveredEventCount = new AtomicLong();
+    final AtomicLong spooledEventCount = new AtomicLong();
+    final AtomicLong drainedEventCount = new AtomicLong();
+    final AtomicLong deliveryFailureCount = new AtomicLong();
+    final AtomicLong droppedEventCount = new AtomicLong();
+
+    long drainWindowStart;
+    long drainWindowCount;
+    volatile long lastDrainTime;
+    volatile double drainRate;
+
+    /**
+     * Create a new SpoolingEventCollectorClient.
+     */
+    public SpoolingEventCollectorClient() {
+    }
+
+    /**
+     * Create a new SpoolingEventCollectorClient for the supplied client.
+     *
+     * @param eventCollectorClient the client used to deliver the events
+     */
+    public SpoolingEventCollectorClient(EventCollectorClient eventCollectorClient) {
+        this.eventCollectorClient = eventCollectorClient;
+    }
+
+    public boolean isInitialized() {
+        return drainExecutor != null;
+    }
+
+    public EventCollectorClient getEventCollectorClient() {
+        return eventCollectorClient;
+    }
+
+    public void setEventCollectorClient(EventCollectorClient eventCollectorClient) {
+        this.eventCollectorClient = eventCollectorClient;
+    }
+
+    @Override
+    public String getSpoolDirectory() {
+        if (spoolDirectory == null || spoolDirectory.isEmpty()) {
+            spoolDirectory = new File(new File(System.getProperty("java.io.tmpdir"), "splunk-spool"), getClientId()).getPath();
+        }
+        return spoolDirectory;
+    }
+
+    /**
+     * Set the directory containing the spool segment files.
+     *
+     * <p>The default is the splunk-spool/&lt;client id&gt; directory in java.io.tmpdir.  Each client must use a
+     * different spool directory.  The new value will take effect the next time the client is started.
+     *
+     * @param spoolDirectory the path of the spool directory
+     */
+    public void setSpoolDirectory(String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    @Override
+    public int getMemoryQueueCapacity() {
+        return memoryQueueCapacity;
+    }
+
+    /**
+     * Set the maximum number of events held in memory before events are spooled to disk.
+     *
+     * @param memoryQueueCapacity the capacity of the in-memory queue
+     */
+    public void setMemoryQueueCapacity(int memoryQueueCapacity) {
+        this.memoryQueueCapacity = memoryQueueCapacity;
+    }
+
+    @Override
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Set the size (in bytes) of the preallocated spool segment files.
+     *
+     * @param segmentSize the size of a segment file in bytes
+     */
+    public void setSegmentSize(int segmentSize) {
+        if (segmentSize <= SpoolSegment.HEADER_SIZE + SpoolSegment.RECORD_OVERHEAD) {
+            throw new IllegalArgumentException(String.format("Invalid segment size %d - the value must be greater than %d",
+                segmentSize, SpoolSegment.HEADER_SIZE + SpoolSegment.RECORD_OVERHEAD));
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public long getMaxSpoolSize() {
+        return maxSpoolSize;
+    }
+
+    /**
+     * Set the maximum disk space (in bytes) used by the spool segment files.
+     *
+     * <p>When the limit is reached, sendEvent will throw an EventDeliveryException.
+     *
+     * @param maxSpoolSize the maximum size of the spool in bytes
+     */
+    public void setMaxSpoolSize(long maxSpoolSize) {
+        this.maxSpoolSize = maxSpoolSize;
+    }
+
+    @Override
+    public long getRetryIntervalMillis() {
+        return retryIntervalMillis;
+    }
+
+    /**
+     * Set the time (in milliseconds) to wait before retrying delivery after the wrapped client fails.
+     *
+     * @param retryIntervalMillis the retry interval in milliseconds
+     */
+    public void setRetryIntervalMillis(long retryIntervalMillis) {
+        this.retryIntervalMillis = retryIntervalMillis;
+    }
+
+    public long getStopTimeoutMillis() {
+        return stopTimeoutMillis;
+    }
+
+    /**
+     * Set the time (in milliseconds) stop will wait for an in-progress delivery to complete.
+     *
+     * @param stopTimeoutMillis the stop timeout in milliseconds
+     */
+    public void setStopTimeoutMillis(long stopTimeoutMillis) {
+        this.stopTimeoutMillis = stopTimeoutMillis;
+    }
+
+    @Override
+    public boolean isSpooling() {
+        return spooling;
+    }
+
+    @Override
+    public int getMemoryQueueDepth() {
+        lock.lock();
+        try {
+            return memoryQueue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getSpoolDepth() {
+        return spoolDepth;
+    }
+
+    @Override
+    public int getSpoolSegmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getSpoolDiskUsage() {
+        return spoolDiskUsage;
+    }
+
+    @Override
+    public long getDeliveredEventCount() {
+        return deliveredEventCount.get();
+    }
+
+    @Override
+    public long getSpooledEventCount() {
+        return spooledEventCount.get();
+    }
+
+    @Override
+    public long getDrainedEventCount() {
+        return drainedEventCount.get();
+    }
+
+    @Override
+    public long getDeliveryFailureCount() {
+        return deliveryFailureCount.get();
+    }
+
+    @Override
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    @Override
+    public double getDrainRate() {
+        if (System.currentTimeMillis() - lastDrainTime > 2 * DRAIN_RATE_WINDOW_MILLIS) {
+            return 0.0;
+        }
+        return drainRate;
+    }
+
+    @Override
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public Date getStopTime() {
+        return stopTime;
+    }
+
+    @Override
+    public String getClientId() {
+        return eventCollectorClient.getClientId();
+    }
+
+    @Override
+    public boolean hasEventHost() {
+        return eventCollectorClient.hasEventHost();
+    }
+
+    @Override
+    public String getEventHost() {
+        return eventCollectorClient.getEventHost();
+    }
+
+    @Override
+    public boolean hasEventIndex() {
+        return eventCollectorClient.hasEventIndex();
+    }
+
+    @Override
+    public String getEventIndex() {
+        return eventCollectorClient.getEventIndex();
+    }
+
+    @Override
+    public boolean hasEventSource() {
+        return eventCollectorClient.hasEventSource();
+    }
+
+    @Override
+    public String getEventSource() {
+        return eventCollectorClient.getEventSource();
+    }
+
+    @Override
+    public boolean hasEventSourcetype() {
+        return eventCollectorClient.hasEventSourcetype();
+    }
+
+    @Override
+    public String getEventSourcetype() {
+        return eventCollectorClient.getEventSourcetype();
+    }
+
+    @Override
+    public boolean hasConstantFields() {
+        return eventCollectorClient.hasConstantFields();
+    }
+
+    @Override
+    public Map<String, String> getConstantFields() {
+        return eventCollectorClient.getConstantFields();
+    }
+
+    @Override
+    public Map<String, String> getConstantFields(boolean copy) {
+        return eventCollectorClient.getConstantFields(copy);
+    }
+
+    @Override
+    public boolean hasIncludedSystemProperties() {
+        return eventCollectorClient.hasIncludedSystemProperties();
+    }
+
+    @Override
+    public Map<String, String> getIncludedSystemProperties() {
+        return eventCollectorClient.getIncludedSystemProperties();
+    }
+
+    @Override
+    public Map<String, String> getIncludedSystemProperties(boolean copy) {
+        return eventCollectorClient.getIncludedSystemProperties(copy);
+    }
+
+    @Override
+    public boolean hasIncludedEnvironmentVariables() {
+        return eventCollectorClient.hasIncludedEnvironmentVariables();
+    }
+
+    @Override
+    public Map<String, String> getIncludedEnvironmentVariables() {
+        return eventCollectorClient.getIncludedEnvironmentVariables();
+    }
+
+    @Override
+    public Map<String, String> getIncludedEnvironmentVariables(boolean copy) {
+        return eventCollectorClient.getIncludedEnvironmentVariables(copy);
+    }
+
+    @Override
+    public long getConfigurationVersion() {
+        return eventCollectorClient.getConfigurationVersion();
+    }
+
+    @Override
+    public Map<String, String> getResolvedSystemProperties() {
+        return eventCollectorClient.getResolvedSystemProperties();
+    }
+
+    @Override
+    public Map<String, String> getResolvedEnvironmentVariables() {
+        return eventCollectorClient.getResolvedEnvironmentVariables();
+    }
+
+    public synchronized void initialize() {
+        registerMBean();
+        start();
+    }
+
+    public synchronized void destroy() {
+        stop();
+        unregisterMBean();
+    }
+
+    /**
+     * Start the wrapped client and the background delivery thread, replaying any events remaining in the spool.
+     */
+    @Override
+    public synchronized void start() {
+        if (drainExecutor == null) {
+            if (eventCollectorClient == null) {
+                throw new IllegalStateException("An EventCollectorClient must be specified");
+            }
+
+            File spoolDirectoryFile = new File(getSpoolDirectory());
+            if (!spoolDirectoryFile.isDirectory() && !spoolDirectoryFile.mkdirs()) {
+                throw new IllegalStateException(String.format("Failed to create spool directory %s", spoolDirectoryFile));
+            }
+
+            lock.lock();
+            try {
+                recoverSegments(spoolDirectoryFile);
+                running = true;
+            } finally {
+                lock.unlock();
+            }
+
+            eventCollectorClient.start();
+
+            drainExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory(getClientId() + "-spool"));
+            drainExecutor.execute(this::drain);
+            startTime = new Date();
+        } else {
+            log.warn("{} already initialized - ignoring 'initialize()' call", this.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Stop the background delivery thread and the wrapped client.
+     *
+     * <p>Events that have not been delivered are written to the spool, and will be delivered the next time the client
+     * is started.
+     */
+    @Override
+    public synchronized void stop() {
+        if (drainExecutor != null) {
+            lock.lock();
+            try {
+                running = false;
+                eventsAvailable.signalAll();
+                stopping.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            drainExecutor.shutdown();
+            try {
+                if (!drainExecutor.awaitTermination(stopTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    log.warn("Delivery did not complete within {} milliseconds", stopTimeoutMillis);
+                    drainExecutor.shutdownNow();
+                }
+            } catch (InterruptedException interruptedEx) {
+                log.warn("Stop was interrupted", interruptedEx);
+                drainExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            } finally {
+                drainExecutor = null;
+            }
+
+            lock.lock();
+            try {
+                if (inFlightEvent != null || !memoryQueue.isEmpty()) {
+                    startSpooling();
+                }
+                if (spoolDepth > 0) {
+                    log.info("{} events remain in spool directory {}", spoolDepth, getSpoolDirectory());
+                }
+                closeSegments();
+            } finally {
+                lock.unlock();
+            }
+
+            eventCollectorClient.stop();
+            stopTime = new Date();
+        } else {
+            log.warn("{} is not initialized - ignoring 'destroy()' call", this.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Queue an event for delivery, spooling it to disk if the in-memory queue is full or the collector is unavailable.
+     *
+     * <p>NOTE:  If the client has not yet been initialized, the client will be initialized.
+     *
+     * @param event JSON-formatted Event
+     *
+     * @throws EventDeliveryException if the spool is full or the event could not be written to the spool
+     */
+    @Override
+    public void sendEvent(String event) throws EventDeliveryException {
+        queue(event.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Queue a UTF-8 encoded event for delivery - the event is copied, and it is never converted to a String.
+     */
+    @Override
+    public void sendEvent(byte[] event, int offset, int length) throws EventDeliveryException {
+        queue(Arrays.copyOfRange(event, offset, offset + length));
+    }
+
+    /**
+     * Queue a UTF-8 encoded event for delivery - the event is copied, and it is never converted to a String.  The position
+     * of the ByteBuffer is not changed.
+     */
+    @Override
+    public void sendEvent(ByteBuffer event) throws EventDeliveryException {
+        byte[] eventBytes = new byte[event.remaining()];
+        event.duplicate().get(eventBytes);
+        queue(eventBytes);
+    }
+
+    /**
+     * Queue an event written by an EventWriter for delivery - the writer is invoked once, on the calling thread.
+     */
+    @Override
+    public void sendEvent(EventWriter eventWriter) throws EventDeliveryException {
+        ByteArrayOutputStream eventBuffer = new ByteArrayOutputStream();
+        try {
+            eventWriter.writeTo(eventBuffer);
+        } catch (IOException writeEx) {
+            throw new EventDeliveryException("<streamed event>", "Failed to write event", writeEx);
+        }
+
+        queue(eventBuffer.toByteArray());
+    }
+
+    /**
+     * Queue all the events in a multi-event payload for delivery as a single entry.
+     *
+     * <p>The content of the payload is copied, and the payload may be reused as soon as this method returns.
+     */
+    @Override
+    public void sendEvents(EventPayload payload) throws EventDeliveryException {
+        if (payload != null && !payload.isEmpty()) {
+            queue(Arrays.copyOf(payload.getBuffer(), payload.getLength()));
+        }
+    }
+
+    void queue(byte[] event) throws EventDeliveryException {
+        if (!running) {
+            start();
+        }
+
+        lock.lock();
+        try {
+            if (!spooling && memoryQueue.size() < memoryQueueCapacity) {
+                memoryQueue.addLast(event);
+            } else {
+                if (!spooling) {
+                    log.info("In-memory queue is full - spooling events to {}", getSpoolDirectory());
+                    startSpooling();
+                }
+                appendToSpool(event);
+            }
+            eventsAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deliver events until the client is stopped.
+     */
+    void drain() {
+        while (running) {
+            try {
+                drainNext();
+            } catch (InterruptedException interruptedEx) {
+                log.debug("Delivery thread was interrupted");
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException unexpectedEx) {
+                // This is the only delivery thread, so it must keep running
+                log.error("Unexpected exception encountered delivering events - retrying in {} milliseconds", retryIntervalMillis, unexpectedEx);
+                lock.lock();
+                try {
+                    if (running) {
+                        stopping.await(retryIntervalMillis, TimeUnit.MILLISECONDS);
+                    }
+                } catch (InterruptedException interruptedEx) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deliver the next event, waiting for an event if none are available.
+     *
+     * <p>Spooled events are always delivered before events in the in-memory queue, since they are older.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void drainNext() throws InterruptedException {
+        final byte[] event;
+        final boolean fromSpool;
+
+        lock.lock();
+        try {
+            while (running && spoolDepth == 0 && memoryQueue.isEmpty()) {
+                if (spooling) {
+                    finishSpooling();
+                }
+                eventsAvailable.await();
+            }
+            if (!running) {
+                return;
+            }
+
+            if (spoolDepth > 0) {
+                SpoolSegment head = segments.peekFirst();
+                while (head.isConsumed()) {
+                    deleteSegment(segments.removeFirst());
+                    head = segments.peekFirst();
+                }
+                event = head.peek();
+                fromSpool = true;
+            } else {
+                event = memoryQueue.pollFirst();
+                inFlightEvent = event;
+                fromSpool = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            eventCollectorClient.sendEvent(event, 0, event.length);
+        } catch (EventDeliveryException | RuntimeException deliveryEx) {
+            deliveryFailureCount.incrementAndGet();
+            log.warn("Failed to deliver event - retrying in {} milliseconds", retryIntervalMillis, deliveryEx);
+
+            lock.lock();
+            try {
+                if (!fromSpool && inFlightEvent == event) {
+                    log.info("Collector is unavailable - spooling events to {}", getSpoolDirectory());
+                    startSpooling();
+                }
+                if (running) {
+                    stopping.await(retryIntervalMillis, TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return;
+        }
+
+        deliveredEventCount.incrementAndGet();
+
+        lock.lock();
+        try {
+            if (fromSpool) {
+                SpoolSegment head = segments.peekFirst();
+                if (head != null && head.buffer != null) {
+                    head.advance();
+                    --spoolDepth;
+                    recordDrainedEvent();
+                }
+            } else if (inFlightEvent == event) {
+                inFlightEvent = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Move the in-flight event and the in-memory queue to the spool, and spool all subsequent events.
+     *
+     * <p>NOTE:  Must be called while holding the lock.
+     */
+    void startSpooling() {
+        spooling = true;
+
+        if (inFlightEvent != null) {
+            try {
+                appendToSpool(inFlightEvent);
+                inFlightEvent = null;
+            } catch (EventDeliveryException spoolEx) {
+                log.error("Failed to spool event {}", describe(inFlightEvent), spoolEx);
+            }
+        }
+
+        for (byte[] event = memoryQueue.pollFirst(); event != null; event = memoryQueue.pollFirst()) {
+            try {
+                appendToSpool(event);
+            } catch (EventDeliveryException spoolEx) {
+                log.error("Failed to spool event {}", describe(event), spoolEx);
+            }
+        }
+    }
+
+    /**
+     * Remove the drained segment files and return to the in-memory queue.
+     *
+     * <p>NOTE:  Must be called while holding the lock.
+     */
+    void finishSpooling() {
+        for (SpoolSegment segment = segments.pollFirst(); segment != null; segment = segments.pollFirst()) {
+            deleteSegment(segment);
+        }
+        spooling = false;
+        log.info("Spool has been drained - {} events delivered from the spool", drainedEventCount.get());
+    }
+
+    /**
+     * Append an event to the last spool segment, creating a new segment if necessary.
+     *
+     * <p>NOTE:  Must be called while holding the lock.
+     *
+     * @param record the UTF-8 encoded event
+     *
+     * @throws EventDeliveryException if the spool is full or the event could not be written to the spool
+     */
+    void appendToSpool(byte[] record) throws EventDeliveryException {
+        SpoolSegment tail = segments.peekLast();
+        if (tail == null || !tail.append(record)) {
+            int capacity = Math.max(segmentSize, SpoolSegment.HEADER_SIZE + SpoolSegment.RECORD_OVERHEAD + record.length);
+            if (spoolDiskUsage + capacity > maxSpoolSize) {
+                droppedEventCount.incrementAndGet();
+                throw new EventDeliveryException(describe(record), String.format("Spool is full - %d bytes in use", spoolDiskUsage));
+            }
+
+            File segmentFile = new File(getSpoolDirectory(), String.format("%s%019d%s", SEGMENT_FILE_PREFIX, nextSegmentSequence, SEGMENT_FILE_SUFFIX));
+            try {
+                tail = SpoolSegment.create(segmentFile, nextSegmentSequence++, capacity);
+            } catch (IOException createEx) {
+                droppedEventCount.incrementAndGet();
+                throw new EventDeliveryException(describe(record), String.format("Failed to create spool segment %s", segmentFile), createEx);
+            }
+            segments.addLast(tail);
+            spoolDiskUsage += capacity;
+            tail.append(record);
+        }
+
+        ++spoolDepth;
+        spooledEventCount.incrementAndGet();
+    }
+
+    /**
+     * Open the segment files remaining from a previous run, deleting the segments that have been fully drained.
+     *
+     * <p>NOTE:  Must be called while holding the lock.
+     *
+     * @param spoolDirectoryFile the spool directory
+     */
+    void recoverSegments(File spoolDirectoryFile) {
+        File[] segmentFiles = spoolDirectoryFile.listFiles((dir, name) -> name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX));
+        if (segmentFiles == null || segmentFiles.length == 0) {
+            return;
+        }
+
+        Arrays.sort(segmentFiles);
+        for (File segmentFile : segmentFiles) {
+            String name = segmentFile.getName();
+            long sequence;
+            try {
+                sequence = Long.parseLong(name.substring(SEGMENT_FILE_PREFIX.length(), name.length() - SEGMENT_FILE_SUFFIX.length()));
+            } catch (NumberFormatException parseEx) {
+                log.warn("Ignoring spool file {} - invalid sequence number", segmentFile);
+                continue;
+            }
+            nextSegmentSequence = Math.max(nextSegmentSequence, sequence + 1);
+
+            SpoolSegment segment;
+            try {
+                segment = SpoolSegment.open(segmentFile, sequence);
+            } catch (IOException openEx) {
+                quarantineSegmentFile(segmentFile, openEx);
+                continue;
+            }
+
+            if (segment.isConsumed()) {
+                deleteSegment(segment);
+            } else {
+                segments.addLast(segment);
+                spoolDiskUsage += segment.capacity;
+                spoolDepth += segment.recordCount;
+            }
+        }
+
+        if (spoolDepth > 0) {
+            spooling = true;
+            log.info("Replaying {} spooled events from {}", spoolDepth, spoolDirectoryFile);
+        }
+    }
+
+    /**
+     * Close the spool segments, leaving the segment files in the spool directory.
+     *
+     * <p>NOTE:  Must be called while holding the lock.
+     */
+    void closeSegments() {
+        for (SpoolSegment segment = segments.pollFirst(); segment != null; segment = segments.pollFirst()) {
+            try {
+                segment.close();
+            } catch (IOException closeEx) {
+                log.warn("Ignoring exception encountered closing spool segment {}", segment.file, closeEx);
+            }
+        }
+        spoolDepth = 0;
+        spoolDiskUsage = 0;
+        spooling = false;
+    }
+
+    /**
+     * Rename a spool segment file that cannot be opened, so it is not replayed (or overwritten) when the client restarts.
+     *
+     * @param segmentFile the segment file
+     * @param openEx      the reason the file could not be opened
+     */
+    void quarantineSegmentFile(File segmentFile, IOException openEx) {
+        File quarantineFile = new File(segmentFile.getParentFile(), segmentFile.getName() + QUARANTINE_FILE_SUFFIX);
+        if (segmentFile.renameTo(quarantineFile)) {
+            log.error("Quarantined spool file {} as {} - the file could not be opened", segmentFile, quarantineFile, openEx);
+        } else {
+            log.error("Ignoring spool file {} - the file could not be opened or quarantined", segmentFile, openEx);
+        }
+    }
+
+    /**
+     * Decode a queued event for error reporting.
+     *
+     * @param event the UTF-8 encoded event
+     *
+     * @return the event
+     */
+    static String describe(byte[] event) {
+        return new String(event, StandardCharsets.UTF_8);
+    }
+
+    void deleteSegment(SpoolSegment segment) {
+        spoolDiskUsage -= segment.capacity;
+        try {
+            if (!segment.delete()) {
+                log.warn("Failed to delete spool segment {}", segment.file);
+            }
+        } catch (IOException deleteEx) {
+            log.warn("Ignoring exception encountered deleting spool segment {}", segment.file, deleteEx);
+        }
+    }
+
+    void recordDrainedEvent() {
+        drainedEventCount.incrementAndGet();
+
+        long now = System.currentTimeMillis();
+        long elapsed = now - drainWindowStart;
+        if (elapsed >= DRAIN_RATE_WINDOW_MILLIS) {
+            if (drainWindowStart > 0) {
+                drainRate = drainWindowCount * 1000.0 / elapsed;
+            }
+            drainWindowStart = now;
+            drainWindowCount = 0;
+        }
+        ++drainWindowCount;
+        lastDrainTime = now;
+    }
+
+    void registerMBean() {
+        clientObjectName = ClientMBeanSupport.registerMBean(this, getClientId(), log);
+    }
+
+    void unregisterMBean() {
+        ClientMBeanSupport.unregisterMBean(clientObjectName, log);
+        clientObjectName = null;
+    }
+}
@@ -21,9 +21,34 @@ import com.pronoia.splunk.eventcollector.SplunkMDCHelper;
 
 
 public class EventBuilderMDCHelper extends SplunkMDCHelper {
+    /**
+     * A helper that leaves the MDC untouched.
+     */
+    static final SplunkMDCHelper NO_OP = new SplunkMDCHelper() {
+    };
 
     public EventBuilderMDCHelper(EventBuilder<?> eventBuilder) {
         addEventBuilderValues(eventBuilder);
     }
 
+    /**
+     * The helper for a complete invocation of build() - nested helpers created while it is open leave the MDC untouched.
+     */
+    static class BuildScope extends SplunkMDCHelper {
+        final EventBuilderSupport<?> eventBuilder;
+        final SplunkMDCHelper delegate;
+
+        BuildScope(EventBuilderSupport<?> eventBuilder, SplunkMDCHelper delegate) {
+            this.eventBuilder = eventBuilder;
+            this.delegate = delegate;
+            ++eventBuilder.mdcScopeDepth;
+        }
+
+        @Override
+        public void close() {
+            --eventBuilder.mdcScopeDepth;
+            delegate.close();
+        }
+    }
+
 }
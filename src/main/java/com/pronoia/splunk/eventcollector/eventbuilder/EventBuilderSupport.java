@@ -20,12 +20,16 @@ import com.pronoia.splunk.eventcollector.EventBuilder;
 import com.pronoia.splunk.eventcollector.EventCollectorClient;
 import com.pronoia.splunk.eventcollector.EventCollectorInfo;
 import com.pronoia.splunk.eventcollector.SplunkMDCHelper;
+import com.pronoia.splunk.eventcollector.util.ResolvedContext;
 
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +48,16 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
     String source;
     String sourcetype;
     Double timestamp;
+    boolean preciseTimestamp;
+    long timestampSeconds;
+    long timestampNanos;
+
+    TimestampEncoder.Precision timestampPrecision = TimestampEncoder.Precision.MILLISECONDS;
+    boolean coarseClockEnabled;
+    TimestampEncoder timestampEncoder;
+
+    MdcMode mdcMode = MdcMode.PER_BUILD;
+    int mdcScopeDepth;
 
     Map<String, String> constantFields;
     Map<String, String> includedSystemProperties;
@@ -53,8 +67,16 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
 
     E eventBody;
 
+    final AtomicLong configurationVersion = new AtomicLong();
+    final ResolvedContext resolvedContext = new ResolvedContext();
+
     public EventBuilderSupport() {
         setDefaultHost();
+        resolvedContext.setWarningScope(warning -> {
+            try (SplunkMDCHelper warningHelper = createMdcHelper(true)) {
+                warning.run();
+            }
+        });
     }
 
     @Override
@@ -70,6 +92,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
     @Override
     public void setDefaultHost(String defaultHost) {
         this.defaultHost = defaultHost;
+        configurationChanged();
     }
 
     @Override
@@ -85,6 +108,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
     @Override
     public void setDefaultIndex(String defaultIndex) {
         this.defaultIndex = defaultIndex;
+        configurationChanged();
     }
 
     @Override
@@ -100,6 +124,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
     @Override
     public void setDefaultSource(String defaultSource) {
         this.defaultSource = defaultSource;
+        configurationChanged();
     }
 
     @Override
@@ -115,6 +140,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
     @Override
     public void setDefaultSourcetype(String defaultSourcetype) {
         this.defaultSourcetype = defaultSourcetype;
+        configurationChanged();
     }
 
     /**
@@ -261,7 +287,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      */
     @Override
     public boolean hasTimestamp() {
-        return timestamp != null;
+        return timestamp != null || preciseTimestamp;
     }
 
     /**
@@ -272,6 +298,12 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      */
     @Override
     public Double getTimestamp() {
+        if (preciseTimestamp) {
+            final double nanosecondsPerSecond = 1000000000.0;
+
+            return timestampSeconds + timestampNanos / nanosecondsPerSecond;
+        }
+
         return timestamp;
     }
 
@@ -286,6 +318,112 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
     @Override
     public void setTimestamp(final double epochSeconds) {
         this.timestamp = epochSeconds;
+        this.preciseTimestamp = false;
+    }
+
+    /**
+     * Set the value for the Splunk 'timestamp' default field that will be used on the next invocation of the build()
+     * method.
+     *
+     * @param epochMilliseconds value for the 'timestamp' default field as the number of milliseconds since 1/1/1970 GMT.
+     */
+    @Override
+    public void setTimestamp(final long epochMilliseconds) {
+        final int millisecondsPerSecond = 1000;
+        final int nanosecondsPerMillisecond = 1000000;
+
+        setPreciseTimestamp(Math.floorDiv(epochMilliseconds, millisecondsPerSecond),
+            Math.floorMod(epochMilliseconds, millisecondsPerSecond) * (long) nanosecondsPerMillisecond);
+    }
+
+    /**
+     * Set the value for the Splunk 'timestamp' default field that will be used on the next invocation of the build()
+     * method, preserving the full precision of the Instant.
+     *
+     * @param instant value for the 'timestamp' default field.
+     */
+    @Override
+    public void setTimestamp(final Instant instant) {
+        setPreciseTimestamp(instant.getEpochSecond(), instant.getNano());
+    }
+
+    /**
+     * Set the value for the Splunk 'timestamp' default field that will be used on the next invocation of the build()
+     * method, preserving nanosecond precision.
+     *
+     * @param epochNanoseconds value for the 'timestamp' default field as the number of nanoseconds since 1/1/1970 GMT.
+     */
+    @Override
+    public void setTimestampNanos(final long epochNanoseconds) {
+        final int nanosecondsPerSecond = 1000000000;
+
+        setPreciseTimestamp(Math.floorDiv(epochNanoseconds, nanosecondsPerSecond), Math.floorMod(epochNanoseconds, nanosecondsPerSecond));
+    }
+
+    /**
+     * Set the value for the Splunk 'timestamp' default field that will be used on the next invocation of the build()
+     * method.
+     *
+     * @param date value for the 'timestamp' default field.
+     */
+    @Override
+    public void setTimestamp(final Date date) {
+        setTimestamp(date.getTime());
+    }
+
+    /**
+     * Set the value for the Splunk 'timestamp' default field to the current time.
+     */
+    @Override
+    public void setTimestamp() {
+        setTimestamp(System.currentTimeMillis());
+    }
+
+    void setPreciseTimestamp(long epochSeconds, long nanoAdjustment) {
+        this.timestamp = null;
+        this.preciseTimestamp = true;
+        this.timestampSeconds = epochSeconds;
+        this.timestampNanos = nanoAdjustment;
+    }
+
+    /**
+     * Get the number of fractional digits rendered in the Splunk 'time' field.
+     *
+     * @return the timestamp precision
+     */
+    public TimestampEncoder.Precision getTimestampPrecision() {
+        return timestampPrecision;
+    }
+
+    /**
+     * Set the number of fractional digits rendered in the Splunk 'time' field.  The default is milliseconds.
+     *
+     * @param timestampPrecision the timestamp precision
+     */
+    public void setTimestampPrecision(TimestampEncoder.Precision timestampPrecision) {
+        this.timestampPrecision = timestampPrecision != null ? timestampPrecision : TimestampEncoder.Precision.MILLISECONDS;
+        this.timestampEncoder = null;
+    }
+
+    /**
+     * Determine if the current time is read from the coarse clock (see TimestampEncoder).
+     *
+     * @return true if the coarse clock is enabled; false otherwise
+     */
+    public boolean isCoarseClockEnabled() {
+        return coarseClockEnabled;
+    }
+
+    /**
+     * Enable or disable the coarse clock.  When enabled, the current time is read from a clock updated once per
+     * millisecond by a shared daemon thread, and its rendering is reused for events built in the same millisecond.  This
+     * only applies to events without a timestamp.
+     *
+     * @param coarseClockEnabled true to enable the coarse clock; false otherwise
+     */
+    public void setCoarseClockEnabled(boolean coarseClockEnabled) {
+        this.coarseClockEnabled = coarseClockEnabled;
+        this.timestampEncoder = null;
     }
 
     /**
@@ -452,9 +590,13 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
 
         try (SplunkMDCHelper helper = createMdcHelper()) {
             if (fieldName == null) {
-                log.warn("Null field name - ignoring value(s): {}", fieldValues);
+                try (SplunkMDCHelper warningHelper = createMdcHelper(log.isWarnEnabled())) {
+                    log.warn("Null field name - ignoring value(s): {}", fieldValues);
+                }
             } else if (fieldName.isEmpty()) {
-                log.warn("Empty field name - ignoring value(s): {}", fieldValues);
+                try (SplunkMDCHelper warningHelper = createMdcHelper(log.isWarnEnabled())) {
+                    log.warn("Empty field name - ignoring value(s): {}", fieldValues);
+                }
             } else {
                 if (fieldValues == null) {
                     fields.remove(fieldName);
@@ -537,6 +679,12 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      */
     @Override
     public String build(EventCollectorClient client) {
+        try (SplunkMDCHelper helper = createBuildMdcHelper()) {
+            return buildFromMap(client);
+        }
+    }
+
+    String buildFromMap(EventCollectorClient client) {
         Map<String, Object> eventMap = new LinkedHashMap<>();
 
         addDefaultFieldsToMap(client, eventMap);
@@ -639,6 +787,8 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @param constantFields a Map of Splunk field names and their associated values.
      */
     public void addConstantFields(Map<String, String> constantFields) {
+        configurationChanged();
+
         if (this.constantFields == null) {
             this.constantFields = new TreeMap<>();
         }
@@ -654,6 +804,8 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @param splunkFieldValue the value for the field
      */
     public void addConstantField(String splunkFieldName, String splunkFieldValue) {
+        configurationChanged();
+
         if (this.constantFields == null) {
             this.constantFields = new TreeMap<>();
         }
@@ -667,6 +819,8 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @param splunkFieldName the Splunk field name
      */
     public void removeConstantField(String splunkFieldName) {
+        configurationChanged();
+
         if (this.constantFields != null) {
             this.constantFields.remove(splunkFieldName);
         }
@@ -678,6 +832,8 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @param systemProperties a Map of system property keys and their associated Splunk field names.
      */
     public void addIncludedSystemProperties(Map<String, String> systemProperties) {
+        configurationChanged();
+
         if (includedSystemProperties == null) {
             includedSystemProperties = new TreeMap<>();
         }
@@ -692,6 +848,8 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @param systemProperties a List of system property keys
      */
     public void addIncludedSystemProperties(List<String> systemProperties) {
+        configurationChanged();
+
         if (includedSystemProperties == null) {
             includedSystemProperties = new TreeMap<>();
         }
@@ -709,6 +867,8 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @param splunkFieldName the Splunk field name for the system property
      */
     public void includeSystemProperty(String systemProperty, String splunkFieldName) {
+        configurationChanged();
+
         if (includedSystemProperties == null) {
             includedSystemProperties = new TreeMap<>();
         }
@@ -726,6 +886,8 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @param systemProperty a system property key
      */
     public void includeSystemProperty(String systemProperty) {
+        configurationChanged();
+
         if (includedSystemProperties == null) {
             includedSystemProperties = new TreeMap<>();
         }
@@ -739,6 +901,8 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @param systemProperty a system property key
      */
     public void removeSystemProperty(String systemProperty) {
+        configurationChanged();
+
         if (includedSystemProperties != null) {
             includedSystemProperties.remove(systemProperty);
         }
@@ -750,6 +914,8 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @param environmentVariables a Map of environment variables and their associated Splunk field names.
      */
     public void addIncludedEnvironmentVariables(Map<String, String> environmentVariables) {
+        configurationChanged();
+
         if (includedEnvironmentVariables == null) {
             includedEnvironmentVariables = new TreeMap<>();
         }
@@ -764,6 +930,8 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @param environmentVariables a List of environment variables
      */
     public void addIncludedEnvironmentVariables(List<String> environmentVariables) {
+        configurationChanged();
+
         if (includedEnvironmentVariables == null) {
             includedEnvironmentVariables = new TreeMap<>();
         }
@@ -781,6 +949,8 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @param splunkFieldName     the Splunk field name for the environment variable
      */
     public void includeEnvironmentVariable(String environmentVariable, String splunkFieldName) {
+        configurationChanged();
+
         if (includedEnvironmentVariables == null) {
             includedEnvironmentVariables = new TreeMap<>();
         }
@@ -798,6 +968,8 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @param environmentVariable an environment variable
      */
     public void includeEnvironmentVariable(String environmentVariable) {
+        configurationChanged();
+
         if (includedEnvironmentVariables == null) {
             includedEnvironmentVariables = new TreeMap<>();
         }
@@ -895,16 +1067,30 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      * @return the value for the Splunk timestamp field.
      */
     public String getTimestampFieldValue() {
-        final String timestampFormat = "%.3f";
-        String answer = null;
+        return encodeTimestamp().toString();
+    }
 
-        if (hasTimestamp()) {
-            answer = String.format(String.format(timestampFormat, timestamp));
+    /**
+     * Render the value for the Splunk timestamp field into the TimestampEncoder of the builder.
+     *
+     * @return the TimestampEncoder containing the rendered value
+     */
+    protected TimestampEncoder encodeTimestamp() {
+        TimestampEncoder encoder = timestampEncoder;
+        if (encoder == null) {
+            encoder = new TimestampEncoder(timestampPrecision, coarseClockEnabled);
+            timestampEncoder = encoder;
+        }
+
+        if (preciseTimestamp) {
+            encoder.encode(timestampSeconds, timestampNanos);
+        } else if (timestamp != null) {
+            encoder.encode(timestamp);
         } else {
-            answer = String.format(String.format(timestampFormat, System.currentTimeMillis() / 1000.0));
+            encoder.encodeCurrentTime();
         }
 
-        return answer;
+        return encoder;
     }
 
     /**
@@ -1062,7 +1248,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
             try (SplunkMDCHelper helper = createMdcHelper()) {
                 log.debug("Adding system properties from the event collector client to the event");
 
-                doAddSystemPropertiesToMap(client.getIncludedSystemProperties(false), map);
+                map.putAll(client.getResolvedSystemProperties());
             }
         }
     }
@@ -1078,7 +1264,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
         if (map != null && hasIncludedSystemProperties()) {
             try (SplunkMDCHelper helper = createMdcHelper()) {
                 log.debug("Adding system properties from the event builder to the event");
-                doAddSystemPropertiesToMap(includedSystemProperties, map);
+                map.putAll(getResolvedSystemProperties());
             }
         }
     }
@@ -1093,22 +1279,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
      */
     protected void doAddSystemPropertiesToMap(Map<String, String> systemPropertiesSource, Map<String, Object> target) {
         if (target != null && systemPropertiesSource != null && !systemPropertiesSource.isEmpty()) {
-            for (Map.Entry<String, String> systemPropertyEntry : systemPropertiesSource.entrySet()) {
-                String systemPropertyName = systemPropertyEntry.getKey();
-                if (systemPropertyName != null || !systemPropertyName.isEmpty()) {
-                    String systemPropertyValue = System.getProperty(systemPropertyName, null);
-                    if (systemPropertyValue != null && !systemPropertyValue.isEmpty()) {
-                        String splunkFieldName = systemPropertyEntry.getValue();
-                        if (splunkFieldName == null || splunkFieldName.isEmpty()) {
-                            splunkFieldName = systemPropertyName;
-                            systemPropertyEntry.setValue(systemPropertyName);
-                        }
-                        target.put(splunkFieldName, systemPropertyValue);
-                    } else {
-                        log.warn("System property {} not found - ignoring", systemPropertyName);
-                    }
-                }
-            }
+            resolvedContext.resolveSystemProperties(systemPropertiesSource, target);
         }
     }
 
@@ -1124,7 +1295,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
         if (map != null && client.hasIncludedEnvironmentVariables()) {
             try (SplunkMDCHelper helper = createMdcHelper()) {
                 log.debug("Adding environment variables from the event collector client to the event");
-                doAddEnvironmentVariablesToMap(client.getIncludedEnvironmentVariables(false), map);
+                map.putAll(client.getResolvedEnvironmentVariables());
             }
         }
     }
@@ -1140,7 +1311,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
         if (map != null && hasIncludedEnvironmentVariables()) {
             try (SplunkMDCHelper helper = createMdcHelper()) {
                 log.debug("Adding environment variables from the event builder to the event");
-                doAddEnvironmentVariablesToMap(includedEnvironmentVariables, map);
+                map.putAll(getResolvedEnvironmentVariables());
             }
         }
     }
@@ -1158,22 +1329,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
             log.debug("Adding system properties to the event");
 
             if (target != null && environmentVariblesSource != null && !environmentVariblesSource.isEmpty()) {
-                for (Map.Entry<String, String> environmentVariableEntry : environmentVariblesSource.entrySet()) {
-                    String environmentVariableName = environmentVariableEntry.getKey();
-                    if (environmentVariableName != null || !environmentVariableName.isEmpty()) {
-                        String environmentVariableValue = System.getenv(environmentVariableName);
-                        if (environmentVariableValue != null && !environmentVariableValue.isEmpty()) {
-                            String splunkFieldName = environmentVariableEntry.getValue();
-                            if (splunkFieldName == null || splunkFieldName.isEmpty()) {
-                                splunkFieldName = environmentVariableName;
-                                environmentVariableEntry.setValue(environmentVariableName);
-                            }
-                            target.put(splunkFieldName, environmentVariableValue);
-                        } else {
-                            log.warn("Environment variable {} not found - ignoring", environmentVariableName);
-                        }
-                    }
-                }
+                resolvedContext.resolveEnvironmentVariables(environmentVariblesSource, target);
             }
         }
     }
@@ -1212,11 +1368,17 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
     protected void putIfValueIsNotNull(Map<String, Object> eventObject, final String key, final String value) {
         try (SplunkMDCHelper helper = createMdcHelper()) {
             if (eventObject == null) {
-                log.error("Null eventObject Map - ignoring {} = {}", key, value);
+                try (SplunkMDCHelper errorHelper = createMdcHelper(log.isErrorEnabled())) {
+                    log.error("Null eventObject Map - ignoring {} = {}", key, value);
+                }
             } else if (key == null) {
-                log.warn("Null key - ignoring value: {}", value);
+                try (SplunkMDCHelper warningHelper = createMdcHelper(log.isWarnEnabled())) {
+                    log.warn("Null key - ignoring value: {}", value);
+                }
             } else if (key.isEmpty()) {
-                log.warn("Empty key - ignoring value: {}", value);
+                try (SplunkMDCHelper warningHelper = createMdcHelper(log.isWarnEnabled())) {
+                    log.warn("Empty key - ignoring value: {}", value);
+                }
             } else if (value != null) {
                 eventObject.put(key, value);
             }
@@ -1229,6 +1391,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
         this.source = null;
         this.sourcetype = null;
         this.timestamp = null;
+        this.preciseTimestamp = false;
         this.eventBody = null;
 
         if (hasFields()) {
@@ -1244,6 +1407,11 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
             this.defaultSource = sourceEventBuilder.defaultSource;
             this.defaultSourcetype = sourceEventBuilder.defaultSourcetype;
 
+            this.resolvedContext.setRefreshIntervalMillis(sourceEventBuilder.resolvedContext.getRefreshIntervalMillis());
+            this.timestampPrecision = sourceEventBuilder.timestampPrecision;
+            this.coarseClockEnabled = sourceEventBuilder.coarseClockEnabled;
+            this.mdcMode = sourceEventBuilder.mdcMode;
+
             this.setConstantFields(sourceEventBuilder.constantFields);
             this.setIncludedSystemProperties(sourceEventBuilder.includedSystemProperties);
             this.setIncludedEnvironmentVariables(sourceEventBuilder.includedEnvironmentVariables);
@@ -1280,7 +1448,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
             builder.append(" sourcetype='").append(sourcetype).append('\'');
         }
         if (hasTimestamp()) {
-            builder.append(" timestamp='").append(timestamp).append('\'');
+            builder.append(" timestamp='").append(getTimestamp()).append('\'');
         }
         if (hasIncludedSystemProperties()) {
             builder.append(" includedSystemProperties='").append(includedSystemProperties).append('\'');
@@ -1293,10 +1461,133 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
     }
 
 
+    /**
+     * Get the version of the builder configuration.
+     *
+     * <p>The version changes whenever a default field, constant field, included system property or included environment
+     * variable is changed, or the context refresh interval elapses, so it can be used to detect when anything derived from
+     * the configuration must be recalculated.
+     *
+     * @return the configuration version
+     */
+    public long getConfigurationVersion() {
+        return resolvedContext.getVersion(configurationVersion.get());
+    }
+
+    /**
+     * Get the values of the included system properties, keyed by their Splunk field names.
+     *
+     * <p>The values are resolved once and reused until the configuration changes, the context refresh interval elapses or
+     * refreshContext() is called.
+     *
+     * @return an unmodifiable Map of Splunk field names and system property values
+     */
+    public Map<String, String> getResolvedSystemProperties() {
+        return resolvedContext.getSnapshot(includedSystemProperties, includedEnvironmentVariables, getConfigurationVersion()).getSystemProperties();
+    }
+
+    /**
+     * Get the values of the included environment variables, keyed by their Splunk field names.
+     *
+     * <p>The values are resolved once and reused until the configuration changes, the context refresh interval elapses or
+     * refreshContext() is called.
+     *
+     * @return an unmodifiable Map of Splunk field names and environment variable values
+     */
+    public Map<String, String> getResolvedEnvironmentVariables() {
+        return resolvedContext.getSnapshot(includedSystemProperties, includedEnvironmentVariables, getConfigurationVersion()).getEnvironmentVariables();
+    }
+
+    /**
+     * Get the interval at which the values of included system properties and environment variables are resolved again.
+     *
+     * @return the refresh interval in milliseconds; zero or less if the values are only refreshed on demand
+     */
+    public long getContextRefreshIntervalMillis() {
+        return resolvedContext.getRefreshIntervalMillis();
+    }
+
+    /**
+     * Set the interval at which the values of included system properties and environment variables are resolved again.
+     *
+     * @param contextRefreshIntervalMillis the refresh interval in milliseconds; zero or less to only refresh on demand
+     */
+    public void setContextRefreshIntervalMillis(long contextRefreshIntervalMillis) {
+        resolvedContext.setRefreshIntervalMillis(contextRefreshIntervalMillis);
+    }
+
+    /**
+     * Resolve the values of the included system properties and environment variables again on the next invocation of the
+     * build() method.
+     */
+    public void refreshContext() {
+        configurationChanged();
+    }
+
+    /**
+     * Record a change to the builder configuration.
+     */
+    protected void configurationChanged() {
+        configurationVersion.incrementAndGet();
+    }
+
+    public MdcMode getMdcMode() {
+        return mdcMode;
+    }
+
+    /**
+     * Set how the MDC is populated with the Splunk values of the builder while building events.  The default is
+     * PER_BUILD.
+     *
+     * @param mdcMode the MDC mode
+     */
+    public void setMdcMode(MdcMode mdcMode) {
+        this.mdcMode = mdcMode != null ? mdcMode : MdcMode.PER_BUILD;
+    }
+
     protected SplunkMDCHelper createMdcHelper() {
+        if (mdcScopeDepth > 0 || mdcMode == MdcMode.LAZY && !log.isDebugEnabled()) {
+            return EventBuilderMDCHelper.NO_OP;
+        }
+
         return new EventBuilderMDCHelper(this);
     }
 
+    /**
+     * Create the MDC helper for a log statement above debug level (i.e. a warning or an error).
+     *
+     * <p>In LAZY mode the enclosing helper leaves the MDC untouched when debug logging is disabled, so the MDC is
+     * populated for the statement if its level is enabled.  In the other modes the enclosing helper has already populated
+     * the MDC.
+     *
+     * @param statementEnabled true if the level of the log statement is enabled
+     *
+     * @return the MDC helper for the log statement
+     */
+    protected SplunkMDCHelper createMdcHelper(boolean statementEnabled) {
+        if (statementEnabled && mdcMode == MdcMode.LAZY && !log.isDebugEnabled()) {
+            return new EventBuilderMDCHelper(this);
+        }
+
+        return EventBuilderMDCHelper.NO_OP;
+    }
+
+    /**
+     * Create the MDC helper for a complete invocation of the build() method.
+     *
+     * <p>Unless the MDC mode is EAGER, helpers created by the build path while the returned helper is open leave the MDC
+     * untouched.
+     *
+     * @return the MDC helper for the build
+     */
+    protected SplunkMDCHelper createBuildMdcHelper() {
+        if (mdcMode == MdcMode.EAGER) {
+            return EventBuilderMDCHelper.NO_OP;
+        }
+
+        return new EventBuilderMDCHelper.BuildScope(this, createMdcHelper());
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -1316,7 +1607,7 @@ public abstract class EventBuilderSupport<E> implements EventBuilder<E> {
     }
 
 
-    protected boolean checkMap(Map map) {
+    protected boolean checkMap(Map<?, ?> map) {
         return map != null && !map.isEmpty();
     }
 
@@ -0,0 +1,552 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.eventbuilder;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.pronoia.splunk.eventcollector.EventBuilder;
+import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.eventcollector.EventPayload;
+import com.pronoia.splunk.eventcollector.util.ResolvedContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.pronoia.splunk.eventcollector.eventbuilder.JacksonEventBuilderSupport.EVENT_BODY_FIELD_NAME;
+import static com.pronoia.splunk.eventcollector.eventbuilder.JacksonEventBuilderSupport.HOST_FIELD_NAME;
+import static com.pronoia.splunk.eventcollector.eventbuilder.JacksonEventBuilderSupport.INDEX_FIELD_NAME;
+import static com.pronoia.splunk.eventcollector.eventbuilder.JacksonEventBuilderSupport.SOURCETYPE_FIELD_NAME;
+import static com.pronoia.splunk.eventcollector.eventbuilder.JacksonEventBuilderSupport.SOURCE_FIELD_NAME;
+import static com.pronoia.splunk.eventcollector.eventbuilder.JacksonEventBuilderSupport.TIMESTAMP_FIELD_NAME;
+import static com.pronoia.splunk.eventcollector.eventbuilder.JacksonEventBuilderSupport.createSerializedString;
+import static com.pronoia.splunk.eventcollector.eventbuilder.JacksonEventBuilderSupport.writeEventBodyValue;
+import static com.pronoia.splunk.eventcollector.eventbuilder.JacksonEventBuilderSupport.writeStringField;
+import static com.pronoia.splunk.eventcollector.eventbuilder.JacksonEventBuilderSupport.writeValue;
+
+
+/**
+ * An immutable, thread-safe template for building JSON-formatted events for the Splunk HTTP Event Collector.
+ *
+ * <p>The template captures the configuration of an EventBuilder (the default host, index, source and sourcetype, the
+ * constant fields and the included system properties and environment variables) when it is created.  Per-event data is
+ * supplied to the build methods or collected in a Record, so a single template can be used by any number of threads
+ * concurrently.  Later changes to the source EventBuilder do not affect the template.
+ *
+ * <p>The output of the template is identical to the output of the source EventBuilder with the same per-event data.
+ */
+public final class EventTemplate {
+    static final Logger LOG = LoggerFactory.getLogger(EventTemplate.class);
+
+    final JacksonSerializerRegistry serializerRegistry;
+    final boolean objectBodySerializationEnabled;
+
+    final String defaultHost;
+    final String defaultIndex;
+    final String defaultSource;
+    final String defaultSourcetype;
+
+    final Map<String, String> constantFields;
+    final Map<String, String> includedSystemProperties;
+    final Map<String, String> includedEnvironmentVariables;
+
+    final TimestampEncoder.Precision timestampPrecision;
+    final boolean coarseClockEnabled;
+    final ThreadLocal<TimestampEncoder> timestampEncoder;
+
+    final ResolvedContext resolvedContext = new ResolvedContext();
+    final AtomicLong contextVersion = new AtomicLong();
+
+    volatile JacksonEventBuilderSupport.StaticEventFields staticEventFields;
+
+    EventTemplate(EventBuilder<?> eventBuilder, JacksonSerializerRegistry serializerRegistry, boolean objectBodySerializationEnabled) {
+        this.serializerRegistry = serializerRegistry;
+        this.objectBodySerializationEnabled = objectBodySerializationEnabled;
+
+        this.defaultHost = eventBuilder.getDefaultHost();
+        this.defaultIndex = eventBuilder.getDefaultIndex();
+        this.defaultSource = eventBuilder.getDefaultSource();
+        this.defaultSourcetype = eventBuilder.getDefaultSourcetype();
+
+        this.constantFields = copyOfMap(eventBuilder.getConstantFields());
+        this.includedSystemProperties = copyOfMap(eventBuilder.getIncludedSystemProperties());
+        this.includedEnvironmentVariables = copyOfMap(eventBuilder.getIncludedEnvironmentVariables());
+
+        if (eventBuilder instanceof EventBuilderSupport) {
+            EventBuilderSupport<?> eventBuilderSupport = (EventBuilderSupport<?>) eventBuilder;
+            this.timestampPrecision = eventBuilderSupport.getTimestampPrecision();
+            this.coarseClockEnabled = eventBuilderSupport.isCoarseClockEnabled();
+            this.resolvedContext.setRefreshIntervalMillis(eventBuilderSupport.getContextRefreshIntervalMillis());
+        } else {
+            this.timestampPrecision = TimestampEncoder.Precision.MILLISECONDS;
+            this.coarseClockEnabled = false;
+        }
+        this.timestampEncoder = ThreadLocal.withInitial(() -> new TimestampEncoder(timestampPrecision, coarseClockEnabled));
+    }
+
+    /**
+     * Create a template from the current configuration of an EventBuilder.
+     *
+     * @param eventBuilder the source of the configuration
+     *
+     * @return the new template
+     */
+    public static EventTemplate from(EventBuilder<?> eventBuilder) {
+        if (eventBuilder == null) {
+            throw new IllegalArgumentException("from(EventBuilder) - EventBuilder argument cannot be null");
+        }
+
+        if (eventBuilder instanceof JacksonEventBuilderSupport) {
+            JacksonEventBuilderSupport<?> jacksonEventBuilder = (JacksonEventBuilderSupport<?>) eventBuilder;
+            return new EventTemplate(eventBuilder, jacksonEventBuilder.serializerRegistry, jacksonEventBuilder.objectBodySerializationEnabled);
+        }
+
+        return new EventTemplate(eventBuilder, JacksonSerializerRegistry.getDefault(), false);
+    }
+
+    public String getDefaultHost() {
+        return defaultHost;
+    }
+
+    public String getDefaultIndex() {
+        return defaultIndex;
+    }
+
+    public String getDefaultSource() {
+        return defaultSource;
+    }
+
+    public String getDefaultSourcetype() {
+        return defaultSourcetype;
+    }
+
+    public Map<String, String> getConstantFields() {
+        return constantFields;
+    }
+
+    public TimestampEncoder.Precision getTimestampPrecision() {
+        return timestampPrecision;
+    }
+
+    public boolean isCoarseClockEnabled() {
+        return coarseClockEnabled;
+    }
+
+    public Map<String, String> getIncludedSystemProperties() {
+        return includedSystemProperties;
+    }
+
+    public Map<String, String> getIncludedEnvironmentVariables() {
+        return includedEnvironmentVariables;
+    }
+
+    /**
+     * Build the JSON-formatted event for the body, with optional additional fields.
+     *
+     * @param client              the event collector client
+     * @param eventBody           the body of the event
+     * @param fieldNamesAndValues alternating additional field names and values
+     *
+     * @return the JSON-formatted event
+     */
+    public String build(EventCollectorClient client, Object eventBody, String... fieldNamesAndValues) {
+        Record record = newRecord().eventBody(eventBody);
+
+        if (fieldNamesAndValues != null && fieldNamesAndValues.length > 0) {
+            if (fieldNamesAndValues.length % 2 != 0) {
+                String errorMessage = String.format("build(EventCollectorClient, Object, String...) - field names and values must be supplied in pairs: %s",
+                    Arrays.toString(fieldNamesAndValues));
+                throw new IllegalArgumentException(errorMessage);
+            }
+            for (int i = 0; i < fieldNamesAndValues.length; i += 2) {
+                record.field(fieldNamesAndValues[i], fieldNamesAndValues[i + 1]);
+            }
+        }
+
+        return record.build(client);
+    }
+
+    /**
+     * Create a new Record for collecting the per-event data of a single event.
+     *
+     * <p>Records are not thread-safe and are intended to be used by a single thread to build a single event.
+     *
+     * @return the new Record
+     */
+    public Record newRecord() {
+        return new Record(this);
+    }
+
+    /**
+     * Discard the cached static parts of the event, forcing them (and the values of the included system properties and
+     * environment variables) to be resolved again on the next build.
+     */
+    public void refreshContext() {
+        contextVersion.incrementAndGet();
+        staticEventFields = null;
+    }
+
+    public long getContextRefreshIntervalMillis() {
+        return resolvedContext.getRefreshIntervalMillis();
+    }
+
+    void writeEvent(EventCollectorClient client, Record record, JsonGenerator generator) throws IOException {
+        JacksonEventBuilderSupport.StaticEventFields staticFields = getStaticEventFields(client);
+
+        generator.writeStartObject();
+
+        writeStringField(generator, HOST_FIELD_NAME, record.host, staticFields.host);
+        writeStringField(generator, INDEX_FIELD_NAME, record.index, staticFields.index);
+        writeStringField(generator, SOURCE_FIELD_NAME, record.source, staticFields.source);
+        writeStringField(generator, SOURCETYPE_FIELD_NAME, record.sourcetype, staticFields.sourcetype);
+
+        TimestampEncoder encoder = timestampEncoder.get();
+        if (record.hasTimestamp) {
+            encoder.encode(record.timestampSeconds, record.timestampNanos);
+        } else {
+            encoder.encodeCurrentTime();
+        }
+        generator.writeFieldName(TIMESTAMP_FIELD_NAME);
+        encoder.writeTo(generator);
+
+        staticFields.writeFields(generator, record.fields);
+
+        generator.writeFieldName(EVENT_BODY_FIELD_NAME);
+        Object eventBody = record.eventBody;
+        if (eventBody == null) {
+            generator.writeString("null event body");
+        } else {
+            writeEventBodyValue(generator, serializerRegistry, eventBody, objectBodySerializationEnabled);
+        }
+
+        generator.writeEndObject();
+    }
+
+    /**
+     * Get the static parts of the event for the client.
+     *
+     * <p>The resolved values are cached while the configuration version of the client is unchanged.  Concurrent callers
+     * may resolve the values more than once, but always see a completely initialized instance.
+     *
+     * @param client the event collector client
+     *
+     * @return the static parts of the event
+     */
+    JacksonEventBuilderSupport.StaticEventFields getStaticEventFields(EventCollectorClient client) {
+        long clientConfigurationVersion = client.getConfigurationVersion();
+        long templateContextVersion = resolvedContext.getVersion(contextVersion.get());
+
+        JacksonEventBuilderSupport.StaticEventFields answer = staticEventFields;
+        if (answer == null || answer.client != client || answer.clientConfigurationVersion != clientConfigurationVersion
+            || answer.builderConfigurationVersion != templateContextVersion || clientConfigurationVersion < 0) {
+            answer = createStaticEventFields(client, clientConfigurationVersion, templateContextVersion);
+            if (clientConfigurationVersion >= 0) {
+                staticEventFields = answer;
+            }
+        }
+
+        return answer;
+    }
+
+    JacksonEventBuilderSupport.StaticEventFields createStaticEventFields(EventCollectorClient client, long clientConfigurationVersion, long templateContextVersion) {
+        LOG.debug("Resolving static event fields for client {}", client.getClientId());
+
+        ResolvedContext.Snapshot snapshot = resolvedContext.getSnapshot(includedSystemProperties, includedEnvironmentVariables, templateContextVersion);
+
+        Map<String, Object> leadingFields = new LinkedHashMap<>();
+        if (client.hasIncludedEnvironmentVariables()) {
+            leadingFields.putAll(client.getResolvedEnvironmentVariables());
+        }
+        leadingFields.putAll(snapshot.getEnvironmentVariables());
+        if (client.hasIncludedSystemProperties()) {
+            leadingFields.putAll(client.getResolvedSystemProperties());
+        }
+        leadingFields.putAll(snapshot.getSystemProperties());
+
+        Map<String, Object> trailingFields = new LinkedHashMap<>();
+        if (client.hasConstantFields()) {
+            addConstantFields(client.getConstantFields(), trailingFields);
+        }
+        addConstantFields(constantFields, trailingFields);
+
+        JacksonEventBuilderSupport.StaticEventFields answer = new JacksonEventBuilderSupport.StaticEventFields(client, clientConfigurationVersion, templateContextVersion);
+
+        answer.host = createSerializedString(checkString(defaultHost) ? defaultHost : client.getEventHost());
+        answer.index = createSerializedString(checkString(defaultIndex) ? defaultIndex : client.getEventIndex());
+        answer.source = createSerializedString(checkString(defaultSource) ? defaultSource : client.getEventSource());
+        answer.sourcetype = createSerializedString(checkString(defaultSourcetype) ? defaultSourcetype : client.getEventSourcetype());
+
+        answer.setFields(serializerRegistry, leadingFields, trailingFields);
+
+        return answer;
+    }
+
+    static void addConstantFields(Map<String, String> source, Map<String, Object> target) {
+        if (source != null) {
+            for (Map.Entry<String, String> entry : source.entrySet()) {
+                if (checkString(entry.getKey()) && checkString(entry.getValue())) {
+                    target.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    static boolean checkString(String str) {
+        return str != null && !str.isEmpty();
+    }
+
+    static Map<String, String> copyOfMap(Map<String, String> source) {
+        if (source == null || source.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        return Collections.unmodifiableMap(new TreeMap<>(source));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append(this.getClass().getSimpleName())
+            .append('{');
+
+        if (checkString(defaultHost)) {
+            builder.append(" defaultHost='").append(defaultHost).append('\'');
+        }
+        if (checkString(defaultIndex)) {
+            builder.append(" defaultIndex='").append(defaultIndex).append('\'');
+        }
+        if (checkString(defaultSource)) {
+            builder.append(" defaultSource='").append(defaultSource).append('\'');
+        }
+        if (checkString(defaultSourcetype)) {
+            builder.append(" defaultSourcetype='").append(defaultSourcetype).append('\'');
+        }
+        if (!includedSystemProperties.isEmpty()) {
+            builder.append(" includedSystemProperties='").append(includedSystemProperties).append('\'');
+        }
+        if (!includedEnvironmentVariables.isEmpty()) {
+            builder.append(" includedEnvironmentVariables='").append(includedEnvironmentVariables).append('\'');
+        }
+        if (!constantFields.isEmpty()) {
+            builder.append(" constantFields='").append(constantFields).append('\'');
+        }
+
+        builder.append('}');
+
+        return builder.toString();
+    }
+
+    /**
+     * The per-event data for a single event built from an EventTemplate.
+     */
+    public static class Record {
+        final EventTemplate template;
+
+        String host;
+        String index;
+        String source;
+        String sourcetype;
+        boolean hasTimestamp;
+        long timestampSeconds;
+        long timestampNanos;
+        Map<String, Object> fields;
+        Object eventBody;
+
+        Record(EventTemplate template) {
+            this.template = template;
+        }
+
+        public Record host(String host) {
+            this.host = checkString(host) ? host : null;
+            return this;
+        }
+
+        public Record index(String index) {
+            this.index = checkString(index) ? index : null;
+            return this;
+        }
+
+        public Record source(String source) {
+            this.source = checkString(source) ? source : null;
+            return this;
+        }
+
+        public Record sourcetype(String sourcetype) {
+            this.sourcetype = checkString(sourcetype) ? sourcetype : null;
+            return this;
+        }
+
+        /**
+         * Set the time of the event.
+         *
+         * @param epochSeconds the time of the event as the number of seconds since 1/1/1970 GMT.
+         *
+         * @return this Record
+         */
+        public Record timestamp(double epochSeconds) {
+            double wholeSeconds = Math.floor(epochSeconds);
+
+            return timestamp((long) wholeSeconds, Math.round((epochSeconds - wholeSeconds) * TimestampEncoder.NANOS_PER_SECOND));
+        }
+
+        /**
+         * Set the time of the event.
+         *
+         * @param instant the time of the event
+         *
+         * @return this Record
+         */
+        public Record timestamp(Instant instant) {
+            return timestamp(instant.getEpochSecond(), instant.getNano());
+        }
+
+        /**
+         * Set the time of the event.
+         *
+         * @param epochMillis the time of the event as the number of milliseconds since 1/1/1970 GMT.
+         *
+         * @return this Record
+         */
+        public Record timestampMillis(long epochMillis) {
+            return timestamp(Math.floorDiv(epochMillis, TimestampEncoder.MILLIS_PER_SECOND),
+                Math.floorMod(epochMillis, TimestampEncoder.MILLIS_PER_SECOND) * (long) TimestampEncoder.NANOS_PER_MILLISECOND);
+        }
+
+        /**
+         * Set the time of the event.
+         *
+         * @param epochNanos the time of the event as the number of nanoseconds since 1/1/1970 GMT.
+         *
+         * @return this Record
+         */
+        public Record timestampNanos(long epochNanos) {
+            return timestamp(Math.floorDiv(epochNanos, TimestampEncoder.NANOS_PER_SECOND), Math.floorMod(epochNanos, TimestampEncoder.NANOS_PER_SECOND));
+        }
+
+        Record timestamp(long epochSeconds, long nanoAdjustment) {
+            this.hasTimestamp = true;
+            this.timestampSeconds = epochSeconds;
+            this.timestampNanos = nanoAdjustment;
+            return this;
+        }
+
+        /**
+         * Set the value(s) of an additional indexed field, using the same rules as EventBuilder.setField.
+         *
+         * @param fieldName   the name of the indexed field.
+         * @param fieldValues the value(s) of the indexed field
+         *
+         * @return this Record
+         */
+        public Record field(String fieldName, String... fieldValues) {
+            if (fieldName == null || fieldName.isEmpty()) {
+                LOG.warn("Null or empty field name - ignoring value(s): {}", (Object) fieldValues);
+            } else if (fieldValues == null || fieldValues.length == 0 || fieldValues.length == 1 && !checkString(fieldValues[0])) {
+                if (fields != null) {
+                    fields.remove(fieldName);
+                }
+            } else {
+                if (fields == null) {
+                    fields = new LinkedHashMap<>();
+                }
+                fields.put(fieldName, fieldValues.length == 1 ? fieldValues[0] : Arrays.asList(fieldValues));
+            }
+
+            return this;
+        }
+
+        public Record eventBody(Object eventBody) {
+            this.eventBody = eventBody;
+            return this;
+        }
+
+        /**
+         * Build the JSON-formatted event.
+         *
+         * @param client the event collector client
+         *
+         * @return the JSON-formatted event
+         */
+        public String build(EventCollectorClient client) {
+            StringWriter writer = new StringWriter(JacksonEventBuilderSupport.INITIAL_EVENT_BUFFER_SIZE);
+
+            try (JsonGenerator generator = template.serializerRegistry.getFactory().createGenerator(writer)) {
+                template.writeEvent(client, this, generator);
+            } catch (IOException ioEx) {
+                String errorMessage = String.format("Failed to create JSON for event from template: %s", template);
+                throw new IllegalStateException(errorMessage, ioEx);
+            }
+
+            return writer.toString();
+        }
+
+        /**
+         * Build the JSON-formatted event and write it to the OutputStream as UTF-8 bytes.
+         *
+         * <p>The OutputStream is not closed.
+         *
+         * @param client       the event collector client
+         * @param outputStream the target for the UTF-8 encoded event
+         *
+         * @throws IOException if the event cannot be written to the OutputStream
+         */
+        public void build(EventCollectorClient client, OutputStream outputStream) throws IOException {
+            try (JsonGenerator generator = template.serializerRegistry.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                template.writeEvent(client, this, generator);
+            }
+        }
+
+        /**
+         * Build the JSON-formatted event and append it to a multi-event payload.
+         *
+         * @param client  the event collector client
+         * @param payload the target payload
+         *
+         * @return the payload
+         */
+        public EventPayload appendTo(EventCollectorClient client, EventPayload payload) {
+            final int mark = payload.getLength();
+            boolean appended = false;
+            try {
+                build(client, payload);
+                payload.eventAppended();
+                appended = true;
+            } catch (IOException ioEx) {
+                String errorMessage = String.format("Failed to append JSON for event from template: %s", template);
+                throw new IllegalStateException(errorMessage, ioEx);
+            } finally {
+                if (!appended) {
+                    payload.truncate(mark);
+                }
+            }
+
+            return payload;
+        }
+    }
+}
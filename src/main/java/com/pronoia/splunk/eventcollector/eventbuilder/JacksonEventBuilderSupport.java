@@ -16,20 +16,336 @@
  */
 package com.pronoia.splunk.eventcollector.eventbuilder;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.eventcollector.EventCollectorInfo;
+import com.pronoia.splunk.eventcollector.EventPayload;
 import com.pronoia.splunk.eventcollector.SplunkMDCHelper;
 
 
+/**
+ * Base class for EventBuilders that use Jackson to serialize events.
+ *
+ * <p>Events are written directly to a Jackson JsonGenerator in a single pass, rather than being assembled in an
+ * intermediate Map and converted afterwards.  The writer used by build() and the Map used to resolve the additional
+ * fields are reused between events, so - like the rest of the builder state - they must not be shared across threads.
+ *
+ * <p>The parts of the event that only depend on the configuration of the builder and the client (the default host, index,
+ * source and sourcetype, the included system properties and environment variables and the constant fields) are resolved
+ * and serialized once, and reused until the configuration version of either the builder or the client changes (which
+ * includes a refresh of the included system properties and environment variables).
+ * Clients that do not track their configuration version (see EventCollectorClient.getConfigurationVersion()) are never
+ * cached.
+ *
+ * <p>Event bodies and field values are serialized with the shared JacksonSerializerRegistry unless another registry is
+ * injected, so builders and their duplicates reuse the same warmed serializers.
+ *
+ * <p>Map, List, Jackson JsonNode and RawJson event bodies are always embedded as structured JSON.  Other objects are
+ * serialized by Jackson when object body serialization is enabled (the default for the ObjectEventBuilder), and written
+ * as their String representation otherwise.
+ *
+ * @param <E> The type of the event body
+ */
 public abstract class JacksonEventBuilderSupport<E> extends EventBuilderSupport<E> {
-    ObjectMapper jacksonObjectMapper = new ObjectMapper();
+    static final int INITIAL_EVENT_BUFFER_SIZE = 1024;
+    static final int MAX_RETAINED_EVENT_BUFFER_SIZE = 64 * 1024;
+
+    static final SerializableString HOST_FIELD_NAME = new SerializedString(EventCollectorInfo.HOST_KEY);
+    static final SerializableString INDEX_FIELD_NAME = new SerializedString(EventCollectorInfo.INDEX_KEY);
+    static final SerializableString SOURCE_FIELD_NAME = new SerializedString(EventCollectorInfo.SOURCE_KEY);
+    static final SerializableString SOURCETYPE_FIELD_NAME = new SerializedString(EventCollectorInfo.SOURCETYPE_KEY);
+    static final SerializableString TIMESTAMP_FIELD_NAME = new SerializedString(EventCollectorInfo.TIMESTAMP_KEY);
+    static final SerializableString FIELDS_FIELD_NAME = new SerializedString(EventCollectorInfo.FIELDS_KEY);
+    static final SerializableString EVENT_BODY_FIELD_NAME = new SerializedString(EventCollectorInfo.EVENT_BODY_KEY);
+
+    JacksonSerializerRegistry serializerRegistry = JacksonSerializerRegistry.getDefault();
+
+    StringWriter eventWriter = new StringWriter(INITIAL_EVENT_BUFFER_SIZE);
+    final Map<String, Object> additionalFields = new LinkedHashMap<>();
+
+    boolean objectBodySerializationEnabled;
+    boolean staticFieldCacheEnabled = true;
+    StaticEventFields staticEventFields;
+
+    public JacksonSerializerRegistry getSerializerRegistry() {
+        return serializerRegistry;
+    }
+
+    /**
+     * Set the registry used to serialize event bodies and field values.  If the registry is null, the shared registry is
+     * used.
+     *
+     * @param serializerRegistry the registry used to serialize events
+     */
+    public void setSerializerRegistry(JacksonSerializerRegistry serializerRegistry) {
+        this.serializerRegistry = serializerRegistry != null ? serializerRegistry : JacksonSerializerRegistry.getDefault();
+        this.staticEventFields = null;
+    }
+
+    public boolean isObjectBodySerializationEnabled() {
+        return objectBodySerializationEnabled;
+    }
+
+    /**
+     * Enable or disable serialization of arbitrary object event bodies with Jackson.
+     *
+     * <p>When disabled, event bodies that are not a Map, List, JsonNode or RawJson are written as their String
+     * representation.  Strings, numbers, booleans, characters and enums are always written as JSON strings.
+     *
+     * @param objectBodySerializationEnabled true to serialize object event bodies with Jackson; false otherwise
+     */
+    public void setObjectBodySerializationEnabled(boolean objectBodySerializationEnabled) {
+        this.objectBodySerializationEnabled = objectBodySerializationEnabled;
+    }
+
+    /**
+     * Determine if the serialized static parts of the event are cached.
+     *
+     * @return true if the static parts of the event are cached; false otherwise
+     */
+    public boolean isStaticFieldCacheEnabled() {
+        return staticFieldCacheEnabled;
+    }
+
+    /**
+     * Enable or disable caching of the serialized static parts of the event.
+     *
+     * <p>When disabled, included system properties and environment variables are resolved for every event.
+     *
+     * @param staticFieldCacheEnabled true to cache the static parts of the event; false otherwise
+     */
+    public void setStaticFieldCacheEnabled(boolean staticFieldCacheEnabled) {
+        this.staticFieldCacheEnabled = staticFieldCacheEnabled;
+        this.staticEventFields = null;
+    }
+
+    /**
+     * Discard the cached static parts of the event, forcing them to be resolved again on the next invocation of the
+     * build() method.
+     */
+    public void clearStaticFieldCache() {
+        this.staticEventFields = null;
+    }
+
+    /**
+     * Build the JSON-formatted event suitable for the Splunk HTTP Event Collector.
+     *
+     * @return the JSON-formatted event
+     */
+    @Override
+    public String build(EventCollectorClient client) {
+        String answer;
+
+        try (SplunkMDCHelper helper = createBuildMdcHelper()) {
+            StringWriter writer = eventWriter;
+            writer.getBuffer().setLength(0);
+
+            try (JsonGenerator generator = serializerRegistry.getFactory().createGenerator(writer)) {
+                writeEvent(client, generator);
+            } catch (IOException ioEx) {
+                String errorMessage = String.format("Failed to create JSON for event: %s", this);
+                throw new IllegalStateException(errorMessage, ioEx);
+            }
+
+            answer = writer.toString();
+            log.debug("Built JSON event '{}'", answer);
+
+            // Don't hold on to the buffer of an unusually large event
+            if (writer.getBuffer().capacity() > MAX_RETAINED_EVENT_BUFFER_SIZE) {
+                eventWriter = new StringWriter(INITIAL_EVENT_BUFFER_SIZE);
+            }
+        } finally {
+            resetTransientData();
+        }
+
+        return answer;
+    }
+
+    /**
+     * Build the JSON-formatted event and write it to the OutputStream as UTF-8 bytes.
+     *
+     * <p>The OutputStream is not closed.
+     *
+     * @param client       the event collector client
+     * @param outputStream the target for the UTF-8 encoded event
+     *
+     * @throws IOException if the event cannot be written to the OutputStream
+     */
+    public void build(EventCollectorClient client, OutputStream outputStream) throws IOException {
+        try (SplunkMDCHelper helper = createBuildMdcHelper();
+             JsonGenerator generator = serializerRegistry.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeEvent(client, generator);
+        } finally {
+            resetTransientData();
+        }
+    }
+
+    /**
+     * Build the JSON-formatted event and write it directly to the buffer of a multi-event payload.
+     *
+     * <p>If the event cannot be built, the partially written event is removed from the payload.
+     *
+     * @param client  the event collector client
+     * @param payload the target payload
+     *
+     * @return the payload
+     */
+    @Override
+    public EventPayload appendTo(EventCollectorClient client, EventPayload payload) {
+        final int mark = payload.getLength();
+        boolean appended = false;
+        try {
+            build(client, payload);
+            payload.eventAppended();
+            appended = true;
+        } catch (IOException ioEx) {
+            String errorMessage = String.format("Failed to append JSON for event: %s", this);
+            throw new IllegalStateException(errorMessage, ioEx);
+        } finally {
+            if (!appended) {
+                payload.truncate(mark);
+            }
+        }
+
+        return payload;
+    }
+
+    /**
+     * Write the complete event envelope to the JsonGenerator.
+     *
+     * <p>This method is called by the 'build' methods; the transient data is NOT reset.
+     *
+     * @param client    the event collector client
+     * @param generator the target JsonGenerator
+     *
+     * @throws IOException if the event cannot be written to the JsonGenerator
+     */
+    protected void writeEvent(EventCollectorClient client, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+
+        writeDefaultFields(client, generator);
+        writeAdditionalFields(client, generator);
+        writeEventBody(generator);
+
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write the default Splunk fields to the event.
+     *
+     * @param client    the event collector client
+     * @param generator the target JsonGenerator
+     *
+     * @throws IOException if the fields cannot be written to the JsonGenerator
+     */
+    protected void writeDefaultFields(EventCollectorClient client, JsonGenerator generator) throws IOException {
+        StaticEventFields staticFields = getStaticEventFields(client);
+
+        if (staticFields == null) {
+            writeStringFieldIfNotEmpty(generator, HOST_FIELD_NAME, getHostFieldValue(client));
+            writeStringFieldIfNotEmpty(generator, INDEX_FIELD_NAME, getIndexFieldValue(client));
+            writeStringFieldIfNotEmpty(generator, SOURCE_FIELD_NAME, getSourceFieldValue(client));
+            writeStringFieldIfNotEmpty(generator, SOURCETYPE_FIELD_NAME, getSourcetypeFieldValue(client));
+        } else {
+            writeStringField(generator, HOST_FIELD_NAME, hasHost() ? host : null, staticFields.host);
+            writeStringField(generator, INDEX_FIELD_NAME, hasIndex() ? index : null, staticFields.index);
+            writeStringField(generator, SOURCE_FIELD_NAME, hasSource() ? source : null, staticFields.source);
+            writeStringField(generator, SOURCETYPE_FIELD_NAME, hasSourcetype() ? sourcetype : null, staticFields.sourcetype);
+        }
+
+        generator.writeFieldName(TIMESTAMP_FIELD_NAME);
+        encodeTimestamp().writeTo(generator);
+    }
+
+    /**
+     * Write the additional Splunk fields to the event.
+     *
+     * <p>The precedence of the field sources is the same as addAdditionalFieldsToMap.
+     *
+     * @param client    the event collector client
+     * @param generator the target JsonGenerator
+     *
+     * @throws IOException if the fields cannot be written to the JsonGenerator
+     */
+    protected void writeAdditionalFields(EventCollectorClient client, JsonGenerator generator) throws IOException {
+        StaticEventFields staticFields = getStaticEventFields(client);
+
+        if (staticFields == null) {
+            writeResolvedAdditionalFields(client, generator);
+        } else {
+            staticFields.writeFields(generator, hasFields() ? fields : null);
+        }
+    }
+
+    /**
+     * Resolve the additional Splunk fields with addAdditionalFieldsToMap and write them to the event.
+     *
+     * @param client    the event collector client
+     * @param generator the target JsonGenerator
+     *
+     * @throws IOException if the fields cannot be written to the JsonGenerator
+     */
+    protected void writeResolvedAdditionalFields(EventCollectorClient client, JsonGenerator generator) throws IOException {
+        try {
+            addAdditionalFieldsToMap(client, additionalFields);
+
+            if (!additionalFields.isEmpty()) {
+                generator.writeFieldName(FIELDS_FIELD_NAME);
+                generator.writeStartObject();
+                for (Map.Entry<String, Object> field : additionalFields.entrySet()) {
+                    generator.writeFieldName(field.getKey());
+                    writeValue(generator, field.getValue());
+                }
+                generator.writeEndObject();
+            }
+        } finally {
+            additionalFields.clear();
+        }
+    }
+
+    /**
+     * Write the body to the event.
+     *
+     * @param generator the target JsonGenerator
+     *
+     * @throws IOException if the body cannot be written to the JsonGenerator
+     */
+    protected void writeEventBody(JsonGenerator generator) throws IOException {
+        generator.writeFieldName(EVENT_BODY_FIELD_NAME);
+        if (hasEventBody()) {
+            writeEventBodyValue(generator, serializerRegistry, eventBody, objectBodySerializationEnabled);
+        } else {
+            generator.writeString("null event body");
+        }
+    }
+
+    @Override
+    protected void addEventBodyToMap(Map<String, Object> map) {
+        if (hasEventBody() && isStructuredEventBody(eventBody, objectBodySerializationEnabled)) {
+            map.put(EventCollectorInfo.EVENT_BODY_KEY, eventBody);
+        } else {
+            super.addEventBodyToMap(map);
+        }
+    }
 
     @Override
     protected String convertMapToJson(Map<String, Object> map) {
         try (SplunkMDCHelper helper = createMdcHelper()) {
-            String jsonString = jacksonObjectMapper.writeValueAsString(map);
+            String jsonString = serializerRegistry.writeValueAsString(map);
             log.debug("Converted Map<String, Object> '{}' to JSON '{}'", map, jsonString);
             return jsonString;
         } catch (JsonProcessingException jsonProcessingEx) {
@@ -38,4 +354,304 @@ public abstract class JacksonEventBuilderSupport<E> extends EventBuilderSupport<
         }
     }
 
+    /**
+     * Create an immutable, thread-safe EventTemplate from the current configuration of the builder.
+     *
+     * @return the new EventTemplate
+     */
+    public EventTemplate createTemplate() {
+        return EventTemplate.from(this);
+    }
+
+    @Override
+    protected void copyConfiguration(EventBuilderSupport<E> sourceEventBuilder) {
+        super.copyConfiguration(sourceEventBuilder);
+
+        if (sourceEventBuilder instanceof JacksonEventBuilderSupport) {
+            JacksonEventBuilderSupport<E> sourceJacksonEventBuilder = (JacksonEventBuilderSupport<E>) sourceEventBuilder;
+            this.staticFieldCacheEnabled = sourceJacksonEventBuilder.staticFieldCacheEnabled;
+            this.serializerRegistry = sourceJacksonEventBuilder.serializerRegistry;
+            this.objectBodySerializationEnabled = sourceJacksonEventBuilder.objectBodySerializationEnabled;
+        }
+    }
+
+    /**
+     * Get the cached static parts of the event for the client, resolving them if the configuration of the builder or the
+     * client has changed.
+     *
+     * @param client the event collector client
+     *
+     * @return the static parts of the event, or null if they cannot be cached
+     */
+    StaticEventFields getStaticEventFields(EventCollectorClient client) {
+        if (!staticFieldCacheEnabled) {
+            return null;
+        }
+
+        long clientConfigurationVersion = client.getConfigurationVersion();
+        if (clientConfigurationVersion < 0) {
+            return null;
+        }
+
+        long builderConfigurationVersion = getConfigurationVersion();
+
+        StaticEventFields answer = staticEventFields;
+        if (answer == null || answer.client != client
+            || answer.clientConfigurationVersion != clientConfigurationVersion || answer.builderConfigurationVersion != builderConfigurationVersion) {
+            answer = createStaticEventFields(client, clientConfigurationVersion, builderConfigurationVersion);
+            staticEventFields = answer;
+        }
+
+        return answer;
+    }
+
+    StaticEventFields createStaticEventFields(EventCollectorClient client, long clientConfigurationVersion, long builderConfigurationVersion) {
+        try (SplunkMDCHelper helper = createMdcHelper()) {
+            log.debug("Resolving static event fields for client {}", client.getClientId());
+
+            Map<String, Object> leadingFields = new LinkedHashMap<>();
+            if (client.hasIncludedEnvironmentVariables()) {
+                addEnvironmentVariablesToMap(client, leadingFields);
+            }
+            if (hasIncludedEnvironmentVariables()) {
+                addEnvironmentVariablesToMap(leadingFields);
+            }
+            if (client.hasIncludedSystemProperties()) {
+                addSystemPropertiesToMap(client, leadingFields);
+            }
+            if (hasIncludedSystemProperties()) {
+                addSystemPropertiesToMap(leadingFields);
+            }
+
+            // Constant fields follow the per-event fields - a constant field with the same name as a leading field replaces its value
+            Map<String, Object> trailingFields = new LinkedHashMap<>();
+            if (client.hasConstantFields()) {
+                addConstantFieldsToMap(client, trailingFields);
+            }
+            if (hasConstantFields()) {
+                addConstantFieldsToMap(trailingFields);
+            }
+
+            StaticEventFields answer = new StaticEventFields(client, clientConfigurationVersion, builderConfigurationVersion);
+
+            answer.host = createSerializedString(hasDefaultHost() ? defaultHost : client.getEventHost());
+            answer.index = createSerializedString(hasDefaultIndex() ? defaultIndex : client.getEventIndex());
+            answer.source = createSerializedString(hasDefaultSource() ? defaultSource : client.getEventSource());
+            answer.sourcetype = createSerializedString(hasDefaultSourcetype() ? defaultSourcetype : client.getEventSourcetype());
+
+            answer.setFields(serializerRegistry, leadingFields, trailingFields);
+
+            return answer;
+        }
+    }
+
+    static SerializableString createSerializedString(String value) {
+        return value != null && !value.isEmpty() ? new SerializedString(value) : null;
+    }
+
+    static void writeStringField(JsonGenerator generator, SerializableString fieldName, String value, SerializableString defaultValue) throws IOException {
+        if (value != null) {
+            generator.writeFieldName(fieldName);
+            generator.writeString(value);
+        } else if (defaultValue != null) {
+            generator.writeFieldName(fieldName);
+            generator.writeString(defaultValue);
+        }
+    }
+
+    static void writeStringFieldIfNotEmpty(JsonGenerator generator, SerializableString fieldName, String value) throws IOException {
+        if (value != null && !value.isEmpty()) {
+            generator.writeFieldName(fieldName);
+            generator.writeString(value);
+        }
+    }
+
+    /**
+     * Determine if an event body is embedded in the event as structured JSON, rather than as its String representation.
+     *
+     * @param eventBody                      the event body
+     * @param objectBodySerializationEnabled true if arbitrary objects are serialized with Jackson
+     *
+     * @return true if the event body is embedded as structured JSON
+     */
+    static boolean isStructuredEventBody(Object eventBody, boolean objectBodySerializationEnabled) {
+        if (eventBody instanceof Map || eventBody instanceof List || eventBody instanceof JsonNode || eventBody instanceof RawJson) {
+            return true;
+        }
+        if (eventBody instanceof CharSequence || eventBody instanceof Number || eventBody instanceof Boolean
+                || eventBody instanceof Character || eventBody instanceof Enum) {
+            return false;
+        }
+
+        return objectBodySerializationEnabled;
+    }
+
+    static void writeEventBodyValue(JsonGenerator generator, JacksonSerializerRegistry serializerRegistry, Object eventBody, boolean objectBodySerializationEnabled)
+        throws IOException {
+        if (isStructuredEventBody(eventBody, objectBodySerializationEnabled)) {
+            serializerRegistry.writeValue(generator, eventBody);
+        } else {
+            generator.writeString(eventBody.toString());
+        }
+    }
+
+    static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof List) {
+            generator.writeStartArray();
+            for (Object element : (List<?>) value) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeObject(value);
+        }
+    }
+
+    /**
+     * The serialized parts of the event that only depend on the configuration of the builder and the client.
+     */
+    static class StaticEventFields {
+        final EventCollectorClient client;
+        final long clientConfigurationVersion;
+        final long builderConfigurationVersion;
+
+        SerializableString host;
+        SerializableString index;
+        SerializableString source;
+        SerializableString sourcetype;
+
+        Map<String, Object> leadingFieldValues;
+        Map<String, Object> trailingFieldValues;
+        Set<String> fieldNames;
+        SerializableString leadingFields;
+        SerializableString trailingFields;
+        SerializableString allFields;
+
+        StaticEventFields(EventCollectorClient client, long clientConfigurationVersion, long builderConfigurationVersion) {
+            this.client = client;
+            this.clientConfigurationVersion = clientConfigurationVersion;
+            this.builderConfigurationVersion = builderConfigurationVersion;
+        }
+
+        /**
+         * Set the static fields from the fields that precede the per-event fields and the fields that follow them.
+         *
+         * @param serializerRegistry the registry used to serialize field values
+         * @param leadingFields  the fields that precede the per-event fields
+         * @param trailingFields the fields that follow the per-event fields
+         */
+        void setFields(JacksonSerializerRegistry serializerRegistry, Map<String, Object> leadingFields, Map<String, Object> trailingFields) {
+            Map<String, Object> combinedFields = new LinkedHashMap<>(leadingFields);
+            combinedFields.putAll(trailingFields);
+
+            // A trailing field with the same name as a leading field keeps the position of the leading field
+            Map<String, Object> leading = new LinkedHashMap<>();
+            Map<String, Object> trailing = new LinkedHashMap<>(trailingFields);
+            for (String fieldName : leadingFields.keySet()) {
+                leading.put(fieldName, combinedFields.get(fieldName));
+                trailing.remove(fieldName);
+            }
+
+            this.leadingFieldValues = leadingFields;
+            this.trailingFieldValues = trailingFields;
+            this.fieldNames = combinedFields.keySet();
+            this.leadingFields = serializeFields(serializerRegistry, leading);
+            this.trailingFields = serializeFields(serializerRegistry, trailing);
+            this.allFields = serializeFields(serializerRegistry, combinedFields);
+        }
+
+        /**
+         * Write the "fields" object of the event, combining the static fields with the per-event fields.
+         *
+         * @param generator   the target JsonGenerator
+         * @param eventFields the per-event fields (may be null)
+         *
+         * @throws IOException if the fields cannot be written to the JsonGenerator
+         */
+        void writeFields(JsonGenerator generator, Map<String, Object> eventFields) throws IOException {
+            if (eventFields == null || eventFields.isEmpty()) {
+                if (allFields != null) {
+                    generator.writeFieldName(FIELDS_FIELD_NAME);
+                    generator.writeStartObject();
+                    generator.writeRaw(allFields);
+                    generator.writeEndObject();
+                }
+            } else if (containsAny(eventFields.keySet())) {
+                Map<String, Object> combinedFields = new LinkedHashMap<>(leadingFieldValues);
+                combinedFields.putAll(eventFields);
+                combinedFields.putAll(trailingFieldValues);
+
+                generator.writeFieldName(FIELDS_FIELD_NAME);
+                generator.writeStartObject();
+                for (Map.Entry<String, Object> field : combinedFields.entrySet()) {
+                    generator.writeFieldName(field.getKey());
+                    writeValue(generator, field.getValue());
+                }
+                generator.writeEndObject();
+            } else {
+                // The generator doesn't track raw content, so the separators around the cached fields are written explicitly
+                generator.writeFieldName(FIELDS_FIELD_NAME);
+                generator.writeStartObject();
+                if (leadingFields != null) {
+                    generator.writeRaw(leadingFields);
+                    generator.writeRaw(',');
+                }
+                for (Map.Entry<String, Object> field : eventFields.entrySet()) {
+                    generator.writeFieldName(field.getKey());
+                    writeValue(generator, field.getValue());
+                }
+                if (trailingFields != null) {
+                    generator.writeRaw(',');
+                    generator.writeRaw(trailingFields);
+                }
+                generator.writeEndObject();
+            }
+        }
+
+        boolean containsAny(Set<String> names) {
+            if (fieldNames.isEmpty()) {
+                return false;
+            }
+            for (String name : names) {
+                if (fieldNames.contains(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Serialize the fields as the content of a JSON object (i.e. without the enclosing braces).
+         *
+         * @param serializerRegistry the registry used to serialize field values
+         * @param fieldMap           the fields to serialize
+         *
+         * @return the serialized fields, or null if there are no fields
+         */
+        static SerializableString serializeFields(JacksonSerializerRegistry serializerRegistry, Map<String, Object> fieldMap) {
+            if (fieldMap.isEmpty()) {
+                return null;
+            }
+
+            StringWriter writer = new StringWriter();
+            try (JsonGenerator generator = serializerRegistry.getFactory().createGenerator(writer)) {
+                generator.writeStartObject();
+                for (Map.Entry<String, Object> field : fieldMap.entrySet()) {
+                    generator.writeFieldName(field.getKey());
+                    writeValue(generator, field.getValue());
+                }
+                generator.writeEndObject();
+            } catch (IOException ioEx) {
+                String errorMessage = String.format("Failed to create JSON from fields: %s", fieldMap);
+                throw new IllegalStateException(errorMessage, ioEx);
+            }
+
+            StringBuffer buffer = writer.getBuffer();
+
+            return new SerializedString(buffer.substring(1, buffer.length() - 1));
+        }
+    }
+
 }
@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.eventbuilder;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+
+
+/**
+ * A thread-safe registry of preconfigured Jackson ObjectWriters, shared by JacksonEventBuilderSupport instances.
+ *
+ * <p>Creating an ObjectMapper is expensive, and every ObjectMapper builds its own serializer caches.  By default all
+ * builders (and their duplicates) use the process-wide registry returned by getDefault(), so the serializers are only
+ * created and warmed once.  A registry wrapping a specific ObjectMapper can be injected into a builder with
+ * JacksonEventBuilderSupport.setSerializerRegistry(...).
+ *
+ * <p>Modules should be registered before the registry is used to serialize events.
+ */
+public class JacksonSerializerRegistry {
+    static final JacksonSerializerRegistry DEFAULT = new JacksonSerializerRegistry();
+
+    final ObjectMapper objectMapper;
+    final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Create a registry with a new ObjectMapper.
+     *
+     * <p>The ObjectMapper does not flush the target after writing a value, since event bodies and field values are always
+     * written as part of a larger event.
+     */
+    public JacksonSerializerRegistry() {
+        this(new ObjectMapper().disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE));
+    }
+
+    /**
+     * Create a registry for an existing ObjectMapper.
+     *
+     * @param objectMapper the ObjectMapper used to create the ObjectWriters
+     */
+    public JacksonSerializerRegistry(ObjectMapper objectMapper) {
+        if (objectMapper == null) {
+            throw new IllegalArgumentException("JacksonSerializerRegistry(ObjectMapper) - ObjectMapper argument cannot be null");
+        }
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Get the process-wide registry.
+     *
+     * @return the process-wide registry
+     */
+    public static JacksonSerializerRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    public JsonFactory getFactory() {
+        return objectMapper.getFactory();
+    }
+
+    public int getCachedWriterCount() {
+        return writers.size();
+    }
+
+    /**
+     * Register a Jackson Module with the ObjectMapper, discarding the cached ObjectWriters and serializers.
+     *
+     * @param module the module to register
+     *
+     * @return this registry
+     */
+    public synchronized JacksonSerializerRegistry registerModule(Module module) {
+        objectMapper.registerModule(module);
+        writers.clear();
+        if (objectMapper.getSerializerProvider() instanceof DefaultSerializerProvider) {
+            ((DefaultSerializerProvider) objectMapper.getSerializerProvider()).flushCachedSerializers();
+        }
+
+        return this;
+    }
+
+    /**
+     * Get the cached ObjectWriter for a type, creating it if necessary.
+     *
+     * @param type the type to serialize
+     *
+     * @return the ObjectWriter for the type
+     */
+    public ObjectWriter getWriter(Class<?> type) {
+        ObjectWriter answer = writers.get(type);
+        if (answer == null) {
+            answer = writers.computeIfAbsent(type, objectMapper::writerWithType);
+        }
+
+        return answer;
+    }
+
+    /**
+     * Write a value to the JsonGenerator using the cached ObjectWriter for the type of the value.
+     *
+     * @param generator the target JsonGenerator
+     * @param value     the value to write (may be null)
+     *
+     * @throws IOException if the value cannot be written to the JsonGenerator
+     */
+    public void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            getWriter(value.getClass()).writeValue(generator, value);
+        }
+    }
+
+    /**
+     * Serialize a value to a JSON String using the cached ObjectWriter for the type of the value.
+     *
+     * @param value the value to serialize (may be null)
+     *
+     * @return the JSON String
+     *
+     * @throws JsonProcessingException if the value cannot be serialized
+     */
+    public String writeValueAsString(Object value) throws JsonProcessingException {
+        if (value == null) {
+            return "null";
+        }
+
+        return getWriter(value.getClass()).writeValueAsString(value);
+    }
+
+}
@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.eventbuilder;
+
+
+/**
+ * Controls how an EventBuilder populates the SLF4J MDC with its Splunk values while building events.
+ */
+public enum MdcMode {
+    /**
+     * Every helper method in the build path saves, populates and restores the MDC.
+     */
+    EAGER,
+
+    /**
+     * The MDC is saved, populated and restored once for each invocation of the build() method.
+     */
+    PER_BUILD,
+
+    /**
+     * Like PER_BUILD, but the MDC is only touched when a log statement in the build path is enabled - the debug
+     * statements when debug logging is enabled for the EventBuilder, and each warning or error as it is logged.
+     */
+    LAZY
+}
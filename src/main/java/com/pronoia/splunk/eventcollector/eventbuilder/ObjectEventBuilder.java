@@ -21,9 +21,16 @@ import com.pronoia.splunk.eventcollector.EventBuilder;
 
 /**
  * Simple implementation for using an Object as the event body.
+ *
+ * <p>Object event bodies are serialized as JSON by Jackson, using the cached serializer for the class of the body.
+ * Jackson JsonNode bodies are written without conversion, and pre-serialized JSON can be supplied as a RawJson body.
  */
 public class ObjectEventBuilder extends JacksonEventBuilderSupport<Object> {
 
+    public ObjectEventBuilder() {
+        objectBodySerializationEnabled = true;
+    }
+
     @Override
     public EventBuilder<Object> duplicate() {
         ObjectEventBuilder answer = new ObjectEventBuilder();
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.eventbuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+
+/**
+ * A pre-serialized JSON value that is spliced into the event verbatim, rather than being escaped as a JSON string.
+ *
+ * <p>The JSON is not validated - the caller is responsible for supplying a single, well-formed JSON value.
+ */
+public final class RawJson implements JsonSerializable {
+    final String json;
+
+    RawJson(String json) {
+        this.json = json;
+    }
+
+    /**
+     * Wrap a JSON-formatted String.
+     *
+     * @param json the JSON value
+     *
+     * @return the wrapped JSON value
+     */
+    public static RawJson of(String json) {
+        if (json == null || json.isEmpty()) {
+            throw new IllegalArgumentException("of(String) - JSON argument cannot be null or empty");
+        }
+
+        return new RawJson(json);
+    }
+
+    /**
+     * Wrap a UTF-8 encoded JSON value.
+     *
+     * @param json the UTF-8 encoded JSON value
+     *
+     * @return the wrapped JSON value
+     */
+    public static RawJson of(byte[] json) {
+        if (json == null) {
+            throw new IllegalArgumentException("of(byte[]) - JSON argument cannot be null");
+        }
+
+        return of(json, 0, json.length);
+    }
+
+    /**
+     * Wrap a UTF-8 encoded JSON value.
+     *
+     * @param json   the buffer containing the UTF-8 encoded JSON value
+     * @param offset the offset of the JSON value in the buffer
+     * @param length the length of the JSON value in bytes
+     *
+     * @return the wrapped JSON value
+     */
+    public static RawJson of(byte[] json, int offset, int length) {
+        if (json == null || length <= 0) {
+            throw new IllegalArgumentException("of(byte[], int, int) - JSON argument cannot be null or empty");
+        }
+
+        return new RawJson(new String(json, offset, length, StandardCharsets.UTF_8));
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        generator.writeRawValue(json);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSerializer) throws IOException {
+        serialize(generator, serializers);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof RawJson && json.equals(((RawJson) other).json);
+    }
+
+    @Override
+    public int hashCode() {
+        return json.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return json;
+    }
+
+}
@@ -0,0 +1,283 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.eventbuilder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Renders Splunk 'time' values (seconds since 1/1/1970 GMT with a fractional part) without allocating.
+ *
+ * <p>The value is rendered into a buffer owned by the encoder, which is then written directly to a JsonGenerator.  The
+ * decimal separator is always '.', regardless of the default Locale.  The fractional part is rounded half-up to the
+ * configured precision - for double values, the rounding matches String.format (e.g. "%.3f"), which rounds the shortest
+ * decimal representation of the value rather than its exact binary value.
+ *
+ * <p>When the coarse clock is enabled, the current time is read from a clock that a shared daemon thread updates once
+ * per millisecond, instead of calling System.currentTimeMillis for every event, and the rendering of the current time is
+ * reused for all events in the same millisecond.  The coarse clock may lag the system clock by a tick (or more if the
+ * ticker thread is not scheduled promptly).
+ *
+ * <p>Instances are NOT thread-safe.
+ */
+public final class TimestampEncoder {
+    static final int NANOS_PER_SECOND = 1000000000;
+    static final int NANOS_PER_MILLISECOND = 1000000;
+    static final int MILLIS_PER_SECOND = 1000;
+    static final int BUFFER_SIZE = 32;
+
+    /**
+     * The number of fractional digits rendered in the Splunk 'time' value.
+     */
+    public enum Precision {
+        MILLISECONDS(3),
+        MICROSECONDS(6),
+        NANOSECONDS(9);
+
+        final int digits;
+        final int nanosPerUnit;
+        final int unitsPerSecond;
+
+        Precision(int digits) {
+            this.digits = digits;
+            int unit = 1;
+            for (int i = digits; i < 9; ++i) {
+                unit *= 10;
+            }
+            this.nanosPerUnit = unit;
+            this.unitsPerSecond = NANOS_PER_SECOND / unit;
+        }
+
+        public int getDigits() {
+            return digits;
+        }
+    }
+
+    final Precision precision;
+    final boolean coarseClock;
+
+    final char[] buffer = new char[BUFFER_SIZE];
+    int length;
+
+    long cachedMillis = Long.MIN_VALUE;
+    final char[] cachedBuffer = new char[BUFFER_SIZE];
+    int cachedLength;
+
+    public TimestampEncoder() {
+        this(Precision.MILLISECONDS, false);
+    }
+
+    public TimestampEncoder(Precision precision, boolean coarseClock) {
+        this.precision = precision != null ? precision : Precision.MILLISECONDS;
+        this.coarseClock = coarseClock;
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    public boolean isCoarseClock() {
+        return coarseClock;
+    }
+
+    /**
+     * Render a time expressed as seconds since 1/1/1970 GMT.
+     *
+     * @param epochSeconds the number of seconds since 1/1/1970 GMT
+     *
+     * @return the number of characters rendered
+     */
+    public int encode(double epochSeconds) {
+        double wholeSeconds = Math.floor(epochSeconds);
+        double fraction = epochSeconds - wholeSeconds;
+
+        // Near a rounding tie, the exact binary value and its decimal representation can round differently
+        double scaledFraction = fraction * precision.unitsPerSecond;
+        if (Math.abs(scaledFraction - Math.floor(scaledFraction) - 0.5) <= Math.ulp(epochSeconds) * precision.unitsPerSecond) {
+            return encodeDecimal(epochSeconds);
+        }
+
+        return encode((long) wholeSeconds, Math.round(fraction * NANOS_PER_SECOND));
+    }
+
+    /**
+     * Render a double value by rounding its shortest decimal representation, as String.format does.
+     *
+     * <p>NOTE:  This allocates, so it is only used for values close to a rounding tie.
+     *
+     * @param epochSeconds the number of seconds since 1/1/1970 GMT
+     *
+     * @return the number of characters rendered
+     */
+    int encodeDecimal(double epochSeconds) {
+        long units = new BigDecimal(Double.toString(epochSeconds)).setScale(precision.digits, RoundingMode.HALF_UP).unscaledValue().longValue();
+
+        return encode(Math.floorDiv(units, precision.unitsPerSecond), Math.floorMod(units, precision.unitsPerSecond) * (long) precision.nanosPerUnit);
+    }
+
+    /**
+     * Render a time expressed as whole seconds since 1/1/1970 GMT and a nanosecond adjustment.
+     *
+     * @param epochSeconds   the number of whole seconds since 1/1/1970 GMT
+     * @param nanoAdjustment the nanosecond adjustment to the number of seconds
+     *
+     * @return the number of characters rendered
+     */
+    public int encode(long epochSeconds, long nanoAdjustment) {
+        long seconds = epochSeconds + Math.floorDiv(nanoAdjustment, NANOS_PER_SECOND);
+        long nanos = Math.floorMod(nanoAdjustment, NANOS_PER_SECOND);
+
+        boolean negative = seconds < 0;
+        if (negative && nanos > 0) {
+            // Render the magnitude - i.e. -1 seconds + 999000000 nanos is -0.001
+            seconds = -(seconds + 1);
+            nanos = NANOS_PER_SECOND - nanos;
+        } else if (negative) {
+            seconds = -seconds;
+        }
+
+        long units = (nanos + precision.nanosPerUnit / 2) / precision.nanosPerUnit;
+        if (units >= precision.unitsPerSecond) {
+            ++seconds;
+            units -= precision.unitsPerSecond;
+        }
+
+        int position = BUFFER_SIZE;
+
+        for (int i = 0; i < precision.digits; ++i) {
+            buffer[--position] = (char) ('0' + units % 10);
+            units /= 10;
+        }
+        buffer[--position] = '.';
+        do {
+            buffer[--position] = (char) ('0' + seconds % 10);
+            seconds /= 10;
+        } while (seconds > 0);
+        if (negative) {
+            buffer[--position] = '-';
+        }
+
+        length = BUFFER_SIZE - position;
+        System.arraycopy(buffer, position, buffer, 0, length);
+
+        return length;
+    }
+
+    /**
+     * Render a time expressed as milliseconds since 1/1/1970 GMT.
+     *
+     * @param epochMillis the number of milliseconds since 1/1/1970 GMT
+     *
+     * @return the number of characters rendered
+     */
+    public int encodeMillis(long epochMillis) {
+        return encode(Math.floorDiv(epochMillis, MILLIS_PER_SECOND), Math.floorMod(epochMillis, MILLIS_PER_SECOND) * (long) NANOS_PER_MILLISECOND);
+    }
+
+    /**
+     * Render the current time.
+     *
+     * @return the number of characters rendered
+     */
+    public int encodeCurrentTime() {
+        if (!coarseClock) {
+            return encodeMillis(System.currentTimeMillis());
+        }
+
+        long now = CoarseClock.currentTimeMillis;
+        if (now != cachedMillis) {
+            cachedLength = encodeMillis(now);
+            System.arraycopy(buffer, 0, cachedBuffer, 0, cachedLength);
+            cachedMillis = now;
+        } else {
+            System.arraycopy(cachedBuffer, 0, buffer, 0, cachedLength);
+            length = cachedLength;
+        }
+
+        return length;
+    }
+
+    /**
+     * Get the buffer containing the last rendered value.
+     *
+     * @return the buffer - the rendered value starts at index 0
+     */
+    public char[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Get the length of the last rendered value.
+     *
+     * @return the number of characters in the last rendered value
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Write the last rendered value to the JsonGenerator as a JSON String.
+     *
+     * @param generator the target JsonGenerator
+     *
+     * @throws IOException if the value cannot be written to the JsonGenerator
+     */
+    public void writeTo(JsonGenerator generator) throws IOException {
+        generator.writeString(buffer, 0, length);
+    }
+
+    /**
+     * Get the last rendered value as a String.
+     *
+     * @return the last rendered value
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * A millisecond clock updated by a shared daemon thread, which is started when the coarse clock is first used.
+     */
+    static final class CoarseClock {
+        static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+        static volatile long currentTimeMillis = System.currentTimeMillis();
+
+        static {
+            Thread ticker = new Thread(CoarseClock::tick, "splunk-httpec-coarse-clock");
+            ticker.setDaemon(true);
+            ticker.start();
+        }
+
+        private CoarseClock() {
+        }
+
+        static void tick() {
+            while (true) {
+                LockSupport.parkNanos(TICK_NANOS);
+                currentTimeMillis = System.currentTimeMillis();
+            }
+        }
+    }
+}
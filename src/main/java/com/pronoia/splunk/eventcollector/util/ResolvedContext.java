@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A snapshot of the values of the system properties and environment variables included in events.
+ *
+ * <p>The values are resolved once for a configuration version of the owner (an EventBuilder or EventCollectorClient)
+ * and reused until the version changes.  The owner bumps its configuration version when it is asked to refresh
+ * explicitly, and combines it with the refresh generation (see getVersion(long)) so the version also changes each time
+ * the refresh interval elapses - without the owner having to modify any state when its version is read.
+ *
+ * <p>A missing system property or environment variable is only reported once, until it is found again.
+ *
+ * <p>Instances are thread-safe.
+ */
+public class ResolvedContext {
+    public static final long DEFAULT_REFRESH_INTERVAL_MILLIS = 60000;
+
+    static final Logger LOG = LoggerFactory.getLogger(ResolvedContext.class);
+    static final ResolvedContext SHARED = new ResolvedContext();
+
+    final Set<String> missingSystemProperties = ConcurrentHashMap.newKeySet();
+    final Set<String> missingEnvironmentVariables = ConcurrentHashMap.newKeySet();
+
+    volatile long refreshIntervalMillis = DEFAULT_REFRESH_INTERVAL_MILLIS;
+    volatile long refreshOriginMillis = System.currentTimeMillis();
+    final AtomicLong resolveCount = new AtomicLong();
+
+    volatile Snapshot snapshot;
+
+    volatile Consumer<Runnable> warningScope = Runnable::run;
+
+    /**
+     * Get the shared instance used to resolve values for owners that do not keep their own ResolvedContext.
+     *
+     * @return the shared instance
+     */
+    public static ResolvedContext shared() {
+        return SHARED;
+    }
+
+    /**
+     * Set the scope the missing-value warnings are logged in.  The owner uses this to populate its MDC only when a
+     * warning is actually logged.
+     *
+     * @param warningScope runs the warning it is given (null restores the default, which just runs it)
+     */
+    public void setWarningScope(Consumer<Runnable> warningScope) {
+        this.warningScope = warningScope != null ? warningScope : Runnable::run;
+    }
+
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    /**
+     * Set the interval at which the values are resolved again.  A value less than or equal to zero disables the periodic
+     * refresh.
+     *
+     * @param refreshIntervalMillis the refresh interval in milliseconds
+     */
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        this.refreshOriginMillis = System.currentTimeMillis();
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    /**
+     * Get the number of times the values have been resolved.
+     *
+     * @return the number of times the values have been resolved
+     */
+    public long getResolveCount() {
+        return resolveCount.get();
+    }
+
+    /**
+     * Get the number of refresh intervals that have elapsed since the refresh interval was set.
+     *
+     * @return the refresh generation - always zero if the periodic refresh is disabled
+     */
+    public long getRefreshGeneration() {
+        long interval = refreshIntervalMillis;
+        if (interval <= 0) {
+            return 0;
+        }
+
+        return Math.max(0, (System.currentTimeMillis() - refreshOriginMillis) / interval);
+    }
+
+    /**
+     * Combine the configuration version of the owner with the refresh generation.
+     *
+     * <p>The result changes when either the configuration version changes or the refresh interval elapses, and is never
+     * negative for a non-negative configuration version.
+     *
+     * @param configurationVersion the configuration version of the owner
+     *
+     * @return the version to report for the owner (and to pass to getSnapshot)
+     */
+    public long getVersion(long configurationVersion) {
+        return (configurationVersion << 31) + (getRefreshGeneration() & Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the resolved values for the configuration version of the owner, resolving them if the version has changed.
+     *
+     * @param includedSystemProperties     the included system properties and their Splunk field names (may be null)
+     * @param includedEnvironmentVariables the included environment variables and their Splunk field names (may be null)
+     * @param configurationVersion         the current configuration version of the owner
+     *
+     * @return the resolved values
+     */
+    public Snapshot getSnapshot(Map<String, String> includedSystemProperties, Map<String, String> includedEnvironmentVariables, long configurationVersion) {
+        Snapshot answer = snapshot;
+
+        if (answer == null || answer.configurationVersion != configurationVersion) {
+            answer = new Snapshot(configurationVersion,
+                Collections.unmodifiableMap(resolveSystemProperties(includedSystemProperties, new LinkedHashMap<>())),
+                Collections.unmodifiableMap(resolveEnvironmentVariables(includedEnvironmentVariables, new LinkedHashMap<>())));
+            resolveCount.incrementAndGet();
+            snapshot = answer;
+        }
+
+        return answer;
+    }
+
+    /**
+     * Resolve the values of the included system properties, adding them to the target map keyed by their Splunk field
+     * names.
+     *
+     * @param includedSystemProperties the included system properties and their Splunk field names (may be null)
+     * @param target                   the target Map for the values
+     * @param <M>                      the type of the target Map
+     *
+     * @return the target Map
+     */
+    public <M extends Map<String, ? super String>> M resolveSystemProperties(Map<String, String> includedSystemProperties, M target) {
+        if (includedSystemProperties != null) {
+            for (Map.Entry<String, String> entry : includedSystemProperties.entrySet()) {
+                String systemPropertyName = entry.getKey();
+                if (systemPropertyName != null && !systemPropertyName.isEmpty()) {
+                    String value = System.getProperty(systemPropertyName, null);
+                    if (value != null && !value.isEmpty()) {
+                        target.put(getFieldName(entry), value);
+                        missingSystemProperties.remove(systemPropertyName);
+                    } else if (missingSystemProperties.add(systemPropertyName)) {
+                        warn("System property {} not found - ignoring", systemPropertyName);
+                    }
+                }
+            }
+        }
+
+        return target;
+    }
+
+    /**
+     * Resolve the values of the included environment variables, adding them to the target map keyed by their Splunk
+     * field names.
+     *
+     * @param includedEnvironmentVariables the included environment variables and their Splunk field names (may be null)
+     * @param target                       the target Map for the values
+     * @param <M>                          the type of the target Map
+     *
+     * @return the target Map
+     */
+    public <M extends Map<String, ? super String>> M resolveEnvironmentVariables(Map<String, String> includedEnvironmentVariables, M target) {
+        if (includedEnvironmentVariables != null) {
+            for (Map.Entry<String, String> entry : includedEnvironmentVariables.entrySet()) {
+                String environmentVariableName = entry.getKey();
+                if (environmentVariableName != null && !environmentVariableName.isEmpty()) {
+                    String value = System.getenv(environmentVariableName);
+                    if (value != null && !value.isEmpty()) {
+                        target.put(getFieldName(entry), value);
+                        missingEnvironmentVariables.remove(environmentVariableName);
+                    } else if (missingEnvironmentVariables.add(environmentVariableName)) {
+                        warn("Environment variable {} not found - ignoring", environmentVariableName);
+                    }
+                }
+            }
+        }
+
+        return target;
+    }
+
+    void warn(String format, String name) {
+        if (LOG.isWarnEnabled()) {
+            warningScope.accept(() -> LOG.warn(format, name));
+        }
+    }
+
+    static String getFieldName(Map.Entry<String, String> entry) {
+        String fieldName = entry.getValue();
+
+        return fieldName != null && !fieldName.isEmpty() ? fieldName : entry.getKey();
+    }
+
+    /**
+     * The resolved values for one configuration version.
+     */
+    public static final class Snapshot {
+        final long configurationVersion;
+        final Map<String, String> systemProperties;
+        final Map<String, String> environmentVariables;
+
+        Snapshot(long configurationVersion, Map<String, String> systemProperties, Map<String, String> environmentVariables) {
+            this.configurationVersion = configurationVersion;
+            this.systemProperties = systemProperties;
+            this.environmentVariables = environmentVariables;
+        }
+
+        public long getConfigurationVersion() {
+            return configurationVersion;
+        }
+
+        /**
+         * Get the values of the included system properties keyed by their Splunk field names.
+         *
+         * @return an unmodifiable Map of field names and values
+         */
+        public Map<String, String> getSystemProperties() {
+            return systemProperties;
+        }
+
+        /**
+         * Get the values of the included environment variables keyed by their Splunk field names.
+         *
+         * @return an unmodifiable Map of field names and values
+         */
+        public Map<String, String> getEnvironmentVariables() {
+            return environmentVariables;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector;
+
+import com.pronoia.splunk.eventcollector.stub.EventCollectorClientStub;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Tests for the default methods of the EventCollectorClient interface.
+ */
+public class EventCollectorClientTest {
+    static final String EVENT = "{\"event\":\"dummy \u00e9\"}";
+
+    final List<String> sent = new CopyOnWriteArrayList<>();
+    EventCollectorClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        client = new EventCollectorClientStub() {
+            @Override
+            public void sendEvent(String event) {
+                sent.add(event);
+            }
+        };
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testDefaultSendEventBytes() throws Exception {
+        byte[] buffer = ("xx" + EVENT + "xx").getBytes(StandardCharsets.UTF_8);
+
+        client.sendEvent(buffer, 2, buffer.length - 4);
+
+        assertEquals(1, sent.size());
+        assertEquals(EVENT, sent.get(0));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testDefaultSendEventByteBuffer() throws Exception {
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(64);
+        directBuffer.put(EVENT.getBytes(StandardCharsets.UTF_8)).flip();
+
+        client.sendEvent(directBuffer);
+
+        assertEquals(1, sent.size());
+        assertEquals(EVENT, sent.get(0));
+        assertEquals("Position should not change", 0, directBuffer.position());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testDefaultSendEventWriter() throws Exception {
+        client.sendEvent(outputStream -> outputStream.write(EVENT.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, sent.size());
+        assertEquals(EVENT, sent.get(0));
+    }
+}
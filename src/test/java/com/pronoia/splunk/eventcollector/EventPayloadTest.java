@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector;
+
+import com.pronoia.splunk.eventcollector.eventbuilder.EventTemplate;
+import com.pronoia.splunk.eventcollector.eventbuilder.ObjectEventBuilder;
+import com.pronoia.splunk.eventcollector.eventbuilder.StringEventBuilder;
+import com.pronoia.splunk.eventcollector.stub.EventCollectorClientStub;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Tests for the EventPayload class.
+ */
+public class EventPayloadTest {
+    static final double TIMESTAMP = 1505323567.566;
+
+    EventCollectorClient clientStub = new EventCollectorClientStub();
+    StringEventBuilder eventBuilder;
+
+    @Before
+    public void setUp() throws Exception {
+        eventBuilder = new StringEventBuilder();
+        eventBuilder.setDefaultHost("dummy-host");
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testAppend() throws Exception {
+        EventPayload instance = new EventPayload(4);
+
+        instance.append("{\"event\":\"one\"}");
+        instance.append("x{\"event\":\"two\"}x".getBytes("UTF-8"), 1, 15);
+
+        assertEquals(2, instance.getEventCount());
+        assertEquals(30, instance.getLength());
+        assertEquals("{\"event\":\"one\"}{\"event\":\"two\"}", instance.toString());
+
+        instance.reset();
+        assertTrue(instance.isEmpty());
+        assertEquals(0, instance.getLength());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBuildBatch() throws Exception {
+        EventPayload payload = eventBuilder.timestamp(TIMESTAMP).buildBatch(clientStub, Arrays.asList("one", "two"));
+
+        assertEquals(2, payload.getEventCount());
+        assertTrue(payload.toString().startsWith("{\"host\":\"dummy-host\",\"time\":\"1505323567.566\",\"event\":\"one\"}{\"host\":\"dummy-host\",\"time\":"));
+        assertTrue(payload.toString().endsWith("\"event\":\"two\"}"));
+
+        EventPayload reused = new EventPayload();
+        assertSame(reused, eventBuilder.buildBatch(clientStub, Arrays.asList("three"), reused));
+        assertEquals(1, reused.getEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testAppendBuilderStates() throws Exception {
+        final String expected = "{\"host\":\"dummy-host\",\"index\":\"one\",\"time\":\"1505323567.566\",\"event\":\"first\"}"
+                                + "{\"host\":\"dummy-host\",\"index\":\"two\",\"time\":\"1505323567.566\",\"event\":\"second\"}";
+
+        EventPayload payload = new EventPayload();
+        payload.append(clientStub, eventBuilder.index("one").timestamp(TIMESTAMP).eventBody("first"));
+        payload.append(clientStub, eventBuilder.index("two").timestamp(TIMESTAMP).eventBody("second"));
+
+        assertEquals(expected, payload.toString());
+        assertEquals(2, payload.getEventCount());
+
+        EventTemplate template = eventBuilder.createTemplate();
+        EventPayload templatePayload = new EventPayload();
+        template.newRecord().index("one").timestamp(TIMESTAMP).eventBody("first").appendTo(clientStub, templatePayload);
+        template.newRecord().index("two").timestamp(TIMESTAMP).eventBody("second").appendTo(clientStub, templatePayload);
+
+        assertEquals(expected, templatePayload.toString());
+        assertEquals(2, templatePayload.getEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testFailedEventIsRemoved() throws Exception {
+        ObjectEventBuilder objectEventBuilder = new ObjectEventBuilder();
+        EventPayload payload = new EventPayload();
+        payload.append("{\"event\":\"one\"}");
+
+        try {
+            payload.append(clientStub, objectEventBuilder.eventBody(new Object()));
+            fail("IllegalStateException should have been thrown");
+        } catch (IllegalStateException expectedEx) {
+            assertEquals("{\"event\":\"one\"}", payload.toString());
+            assertEquals(1, payload.getEventCount());
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testDefaultSendEvents() throws Exception {
+        EventPayload payload = new EventPayload().append("{\"event\":\"one\"}").append("{\"event\":\"two\"}");
+
+        final StringBuilder sent = new StringBuilder();
+        EventCollectorClient client = new EventCollectorClientStub() {
+            @Override
+            public void sendEvent(String event) {
+                sent.append(event);
+            }
+        };
+
+        client.sendEvents(payload);
+        assertEquals("{\"event\":\"one\"}{\"event\":\"two\"}", sent.toString());
+
+        sent.setLength(0);
+        client.sendEvents(new EventPayload());
+        assertEquals("An empty payload should not be sent", "", sent.toString());
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.EventPayload;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.util.EntityUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the AcknowledgedEventCollectorClient.
+ */
+public class AcknowledgedEventCollectorClientTest {
+    static final String EVENT = "{\"event\":\"dummy\"}";
+
+    ScriptedClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        client = new ScriptedClient();
+        client.setHost("localhost");
+        client.setPort(8088);
+        client.setAuthorizationToken("dummy-token");
+        // Poll manually
+        client.setAckPollIntervalMillis(60000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (client.isInitialized()) {
+            client.stop();
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testChannelIsGenerated() throws Exception {
+        client.start();
+
+        assertTrue(client.hasChannel());
+        assertEquals(36, client.getChannel().length());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testAcknowledgedEventsAreRemoved() throws Exception {
+        client.sendEvent(EVENT);
+        client.sendEvent(EVENT);
+        client.sendEvent(EVENT);
+
+        assertEquals("Events should be in flight", 3, client.getPendingAckCount());
+
+        client.acknowledged.add(0L);
+        client.acknowledged.add(2L);
+        client.pollAcks();
+
+        assertEquals(1, client.getPendingAckCount());
+        assertEquals(2, client.getAcknowledgedEventCount());
+        assertEquals(1, client.getAckPollCount());
+        assertEquals("{\"acks\":[0,1,2]}", client.ackRequests.get(0));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testUnacknowledgedEventsAreResent() throws Exception {
+        client.setAckTimeoutMillis(0);
+        client.setMaxResendCount(1);
+
+        client.sendEvent(EVENT);
+
+        client.pollAcks();
+        assertEquals(1, client.getResentEventCount());
+        assertEquals("Resent event should have a new ackId", Long.valueOf(1L), client.pendingEvents.keySet().iterator().next());
+
+        client.pollAcks();
+        assertEquals(0, client.getPendingAckCount());
+        assertEquals(1, client.getFailedEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testPayloadIsTrackedWithItsEventCount() throws Exception {
+        client.setAckTimeoutMillis(0);
+
+        EventPayload payload = new EventPayload();
+        payload.append(EVENT).append(EVENT).append(EVENT);
+
+        client.sendEvents(payload);
+        payload.reset();
+
+        assertEquals("Payload should occupy a single pending acknowledgement", 1, client.getPendingAckCount());
+        assertEquals(EVENT + EVENT + EVENT, client.posted.get(0));
+
+        client.pollAcks();
+        assertEquals(3, client.getResentEventCount());
+        assertEquals("Resent payload should not be affected by the reuse of the payload", EVENT + EVENT + EVENT, client.posted.get(1));
+
+        client.acknowledged.add(1L);
+        client.pollAcks();
+        assertEquals(0, client.getPendingAckCount());
+        assertEquals(3, client.getAcknowledgedEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test(expected = EventDeliveryException.class)
+    public void testMissingAckId() throws Exception {
+        client.omitAckId = true;
+
+        client.sendEvent(EVENT);
+    }
+
+    static class ScriptedClient extends AcknowledgedEventCollectorClient {
+        final AtomicLong nextAckId = new AtomicLong();
+        final Set<Long> acknowledged = new ConcurrentSkipListSet<>();
+        final List<String> ackRequests = new CopyOnWriteArrayList<>();
+        final List<String> posted = new CopyOnWriteArrayList<>();
+        volatile boolean omitAckId;
+
+        @Override
+        protected String doPost(String url, HttpEntity entity, String event) throws EventDeliveryException {
+            if (url.equals(getAckUrl())) {
+                ackRequests.add(event);
+                StringBuilder response = new StringBuilder("{\"acks\":{");
+                for (Long ackId : pendingEvents.keySet()) {
+                    if (response.charAt(response.length() - 1) != '{') {
+                        response.append(',');
+                    }
+                    response.append('"').append(ackId).append("\":").append(acknowledged.contains(ackId));
+                }
+                return response.append("}}").toString();
+            }
+
+            try {
+                posted.add(EntityUtils.toString(entity));
+            } catch (IOException ioEx) {
+                throw new EventDeliveryException(event, ioEx);
+            }
+
+            if (omitAckId) {
+                return "{\"text\":\"Success\",\"code\":0}";
+            }
+
+            return String.format("{\"text\":\"Success\",\"code\":0,\"ackId\":%d}", nextAckId.getAndIncrement());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the AdaptiveConcurrencyLimiter.
+ */
+public class AdaptiveConcurrencyLimiterTest {
+    static final long RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    AdaptiveConcurrencyLimiter instance;
+
+    @Before
+    public void setUp() throws Exception {
+        instance = new AdaptiveConcurrencyLimiter();
+        instance.setInitialLimit(4);
+        instance.setAcquireTimeoutMillis(0);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testShedBeyondLimit() throws Exception {
+        for (int i = 0; i < 4; ++i) {
+            assertTrue(instance.acquire());
+        }
+
+        assertFalse("Request beyond the limit should be shed", instance.acquire());
+        assertEquals(1, instance.getShedCount());
+
+        instance.onIgnore();
+        assertTrue(instance.acquire());
+        assertEquals(4, instance.getInFlight());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testAdditiveIncrease() throws Exception {
+        for (int i = 0; i < 4; ++i) {
+            assertTrue(instance.acquire());
+        }
+
+        // Keep the limit in use - each completed request is replaced by a new request
+        for (int i = 0; i < 20; ++i) {
+            instance.onSuccess(RTT_NANOS);
+            assertTrue(instance.acquire());
+        }
+
+        assertEquals("Limit should grow by about one per round of requests", 7, instance.getLimit());
+        assertEquals(3, instance.getLimitChangeCount());
+        assertEquals(10.0, instance.getMinRttMillis(), 0.001);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testNoIncreaseWhenLimitIsNotUsed() throws Exception {
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(instance.acquire());
+            instance.onSuccess(RTT_NANOS);
+        }
+
+        assertEquals(4, instance.getLimit());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testMultiplicativeDecreaseOnLatency() throws Exception {
+        instance.setInitialLimit(100);
+        instance.setBackoffRatio(0.5);
+
+        assertTrue(instance.acquire());
+        instance.onSuccess(RTT_NANOS);
+        assertTrue(instance.acquire());
+        instance.onSuccess(RTT_NANOS * 3);
+
+        assertEquals(50, instance.getLimit());
+        assertEquals(30.0, instance.getLastRttMillis(), 0.001);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testMultiplicativeDecreaseOnOverload() throws Exception {
+        instance.setBackoffRatio(0.5);
+        instance.setMinLimit(2);
+
+        for (int i = 0; i < 3; ++i) {
+            assertTrue(instance.acquire());
+            instance.onOverload(0);
+        }
+
+        assertEquals("Limit should not drop below the minimum", 2, instance.getLimit());
+        assertEquals(3, instance.getOverloadCount());
+        assertEquals(0, instance.getInFlight());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testDecreaseOncePerRoundTrip() throws Exception {
+        instance.setInitialLimit(64);
+
+        for (int i = 0; i < 10; ++i) {
+            assertTrue(instance.acquire());
+        }
+        instance.onSuccess(RTT_NANOS);
+
+        // The slow requests were all in flight together, so only the first one decreases the limit
+        for (int i = 0; i < 9; ++i) {
+            instance.onSuccess(RTT_NANOS * 3);
+        }
+        assertEquals(57, instance.getLimit());
+        assertEquals(1, instance.getLimitChangeCount());
+
+        // A request sent after the decrease can decrease the limit again
+        assertTrue(instance.acquire());
+        instance.onOverload(0);
+        assertEquals(51, instance.getLimit());
+        assertEquals(0, instance.getInFlight());
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.EventPayload;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.util.EntityUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Test of the AsyncBatchingEventCollectorClient.
+ */
+public class AsyncBatchingEventCollectorClientTest {
+    static final String EVENT = "{\"event\":\"dummy\"}";
+
+    RecordingClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        client = new RecordingClient();
+        client.setHost("localhost");
+        client.setPort(8088);
+        client.setAuthorizationToken("dummy-token");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (client.isInitialized()) {
+            client.stop();
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testStartAndStop() throws Exception {
+        assertFalse("Default value should be false", client.isInitialized());
+
+        client.start();
+        assertTrue(client.isInitialized());
+
+        client.stop();
+        assertFalse(client.isInitialized());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEventsAreRejectedOnceStopped() throws Exception {
+        client.sendEvent(EVENT);
+        assertTrue("The first event should start the client", client.isInitialized());
+
+        client.stop();
+
+        try {
+            client.sendEvent(EVENT);
+            fail("EventDeliveryException should have been thrown");
+        } catch (EventDeliveryException expectedEx) {
+            assertFalse("A stopped client should not be restarted by an event", client.isInitialized());
+            assertEquals(1, client.getDroppedEventCount());
+        }
+
+        client.start();
+        client.sendEvent(EVENT);
+        client.stop();
+
+        assertEquals(2, client.getQueuedEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testFlushOnEventCount() throws Exception {
+        client.setMaxBatchEventCount(3);
+        client.setLingerMillis(60000);
+
+        for (int i = 0; i < 3; ++i) {
+            client.sendEvent(EVENT);
+        }
+
+        client.stop();
+
+        assertEquals(1, client.posted.size());
+        assertEquals(EVENT + EVENT + EVENT, client.posted.get(0));
+        assertEquals(AsyncBatchingEventCollectorClient.FLUSH_REASON_COUNT, client.getLastFlushReason());
+        assertEquals(3, client.getLastBatchEventCount());
+        assertEquals(1, client.getCountFlushCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSendEventsCountsPayloadEvents() throws Exception {
+        client.setMaxBatchEventCount(4);
+        client.setLingerMillis(60000);
+
+        EventPayload payload = new EventPayload();
+        payload.append(EVENT).append(EVENT).append(EVENT);
+
+        client.sendEvents(payload);
+        // The payload may be reused once it has been queued
+        payload.reset();
+        payload.append("{\"event\":\"reused\"}");
+        client.sendEvent(EVENT);
+
+        client.stop();
+
+        assertEquals(1, client.posted.size());
+        assertEquals(EVENT + EVENT + EVENT + EVENT, client.posted.get(0));
+        assertEquals(AsyncBatchingEventCollectorClient.FLUSH_REASON_COUNT, client.getLastFlushReason());
+        assertEquals(4, client.getLastBatchEventCount());
+        assertEquals(4, client.getQueuedEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSendEventBytes() throws Exception {
+        client.setMaxBatchEventCount(3);
+        client.setLingerMillis(60000);
+
+        byte[] buffer = ("xx" + EVENT + "xx").getBytes(StandardCharsets.UTF_8);
+        client.sendEvent(buffer, 2, buffer.length - 4);
+        // The buffer may be reused once the event has been queued
+        Arrays.fill(buffer, (byte) 'x');
+
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(64);
+        directBuffer.put(EVENT.getBytes(StandardCharsets.UTF_8)).flip();
+        client.sendEvent(directBuffer);
+        assertEquals("Position should not change", 0, directBuffer.position());
+
+        client.sendEvent(outputStream -> outputStream.write(EVENT.getBytes(StandardCharsets.UTF_8)));
+
+        client.stop();
+
+        assertEquals(1, client.posted.size());
+        assertEquals(EVENT + EVENT + EVENT, client.posted.get(0));
+        assertEquals(3, client.getLastBatchEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testFlushOnSize() throws Exception {
+        client.setMaxBatchSize(EVENT.length() * 2);
+        client.setLingerMillis(60000);
+
+        client.sendEvent(EVENT);
+        client.sendEvent(EVENT);
+
+        client.stop();
+
+        assertEquals(1, client.posted.size());
+        assertEquals(AsyncBatchingEventCollectorClient.FLUSH_REASON_SIZE, client.getLastFlushReason());
+        assertEquals(EVENT.length() * 2, client.getLastBatchSize());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testFlushOnLinger() throws Exception {
+        client.setLingerMillis(10);
+
+        client.sendEvent(EVENT);
+
+        client.stop();
+
+        assertEquals(1, client.posted.size());
+        assertEquals(AsyncBatchingEventCollectorClient.FLUSH_REASON_LINGER, client.getLastFlushReason());
+        assertEquals(1, client.getLastBatchEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testQueueFull() throws Exception {
+        client.setQueueCapacity(1);
+        client.blockPosts = true;
+
+        client.start();
+
+        try {
+            for (int i = 0; i < 10; ++i) {
+                client.sendEvent(EVENT);
+            }
+            fail("EventDeliveryException should have been thrown");
+        } catch (EventDeliveryException expectedEx) {
+            assertTrue(client.getDroppedEventCount() > 0);
+        } finally {
+            client.release();
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testRawMode() throws Exception {
+        client.setRawMode(true);
+        client.setMaxBatchEventCount(2);
+        client.setLingerMillis(60000);
+        client.setEventIndex("main");
+
+        client.sendEvent("first line");
+        client.sendEvent("second line");
+
+        client.stop();
+
+        assertEquals(1, client.posted.size());
+        assertEquals("first line\nsecond line\n", client.posted.get(0));
+        assertEquals("https://localhost:8088/services/collector/raw?index=main", client.postedUrls.get(0));
+        assertTrue("Raw endpoint requires a channel", client.hasChannel());
+    }
+
+    static class RecordingClient extends AsyncBatchingEventCollectorClient {
+        final List<String> posted = new CopyOnWriteArrayList<>();
+        final List<String> postedUrls = new CopyOnWriteArrayList<>();
+        final Object postLock = new Object();
+        volatile boolean blockPosts;
+
+        @Override
+        protected String doPost(String url, HttpEntity entity, String event) throws EventDeliveryException {
+            postedUrls.add(url);
+            try {
+                posted.add(EntityUtils.toString(entity));
+            } catch (IOException ioEx) {
+                throw new EventDeliveryException(event, ioEx);
+            }
+
+            synchronized (postLock) {
+                while (blockPosts) {
+                    try {
+                        postLock.wait();
+                    } catch (InterruptedException interruptedEx) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+
+            return "{\"text\":\"Success\",\"code\":0}";
+        }
+
+        void release() {
+            synchronized (postLock) {
+                blockPosts = false;
+                postLock.notifyAll();
+            }
+        }
+    }
+}
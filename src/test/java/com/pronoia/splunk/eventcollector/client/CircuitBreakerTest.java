@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.EventDeliveryHttpException;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the CircuitBreaker.
+ */
+public class CircuitBreakerTest {
+    CircuitBreaker instance;
+
+    @Before
+    public void setUp() throws Exception {
+        instance = new CircuitBreaker();
+        instance.setWindowSize(4);
+        instance.setMinimumCalls(4);
+        instance.setFailureRateThreshold(0.5);
+        instance.setJitter(0.0);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testClassify() throws Exception {
+        assertEquals(CircuitBreaker.FailureType.SERVER_BUSY, instance.classify(httpException(503, "{\"text\":\"Server is busy\",\"code\":9}")));
+        assertEquals(CircuitBreaker.FailureType.FAILURE, instance.classify(httpException(503, "{\"text\":\"Internal server error\",\"code\":8}")));
+        assertEquals(CircuitBreaker.FailureType.FAILURE, instance.classify(httpException(429, "{}")));
+        assertEquals(CircuitBreaker.FailureType.IGNORED, instance.classify(httpException(403, "{\"text\":\"Invalid token\",\"code\":4}")));
+        assertEquals(CircuitBreaker.FailureType.FAILURE, instance.classify(new EventDeliveryException("event", "Connection refused")));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testOpensAtFailureRate() throws Exception {
+        EventDeliveryException failure = new EventDeliveryException("event", "Connection refused");
+
+        instance.onSuccess(instance.tryAcquire());
+        instance.onFailure(instance.tryAcquire(), failure);
+        instance.onSuccess(instance.tryAcquire());
+        assertEquals(CircuitBreaker.State.CLOSED, instance.getState());
+
+        instance.onFailure(instance.tryAcquire(), failure);
+        assertEquals(CircuitBreaker.State.OPEN, instance.getState());
+        assertEquals(CircuitBreaker.NO_PERMIT, instance.tryAcquire());
+        assertEquals(1, instance.getRejectedCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testClientErrorsAreNotCounted() throws Exception {
+        EventDeliveryHttpException failure = httpException(400, "{\"text\":\"Invalid data format\",\"code\":6}");
+
+        for (int i = 0; i < 10; ++i) {
+            instance.onFailure(instance.tryAcquire(), failure);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, instance.getState());
+        assertEquals(0.0, instance.getFailureRate(), 0.0);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testServerBusyOpensImmediately() throws Exception {
+        instance.onFailure(instance.tryAcquire(), httpException(503, "{\"text\":\"Server is busy\",\"code\":9}"));
+
+        assertEquals(CircuitBreaker.State.OPEN, instance.getState());
+        assertEquals("HTTP Event Collector is busy", instance.getLastTransitionReason());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testHalfOpenProbe() throws Exception {
+        instance.setInitialBackoffMillis(0);
+        instance.onFailure(instance.tryAcquire(), httpException(503, "{\"text\":\"Server is busy\",\"code\":9}"));
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, instance.getState());
+        long probePermit = instance.tryAcquire();
+        assertNotEquals("Probe should be allowed", CircuitBreaker.NO_PERMIT, probePermit);
+        assertEquals("Only one probe should be allowed", CircuitBreaker.NO_PERMIT, instance.tryAcquire());
+
+        instance.onSuccess(probePermit);
+        assertEquals(CircuitBreaker.State.CLOSED, instance.getState());
+        assertNotEquals(CircuitBreaker.NO_PERMIT, instance.tryAcquire());
+        assertEquals(3, instance.getTransitionCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testExponentialBackoff() throws Exception {
+        instance.setInitialBackoffMillis(1000);
+        instance.setMaxBackoffMillis(3000);
+
+        instance.consecutiveOpenCount = 1;
+        assertEquals(1000, instance.calculateBackoffMillis());
+        instance.consecutiveOpenCount = 2;
+        assertEquals(2000, instance.calculateBackoffMillis());
+        instance.consecutiveOpenCount = 3;
+        assertEquals("Backoff should be limited", 3000, instance.calculateBackoffMillis());
+
+        instance.setJitter(0.5);
+        for (int i = 0; i < 100; ++i) {
+            long backoff = instance.calculateBackoffMillis();
+            assertTrue("Backoff with jitter out of range: " + backoff, backoff >= 1500 && backoff <= 4500);
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testFailedProbeReopens() throws Exception {
+        instance.setInitialBackoffMillis(0);
+        instance.onFailure(instance.tryAcquire(), httpException(503, "{\"text\":\"Server is busy\",\"code\":9}"));
+
+        long probePermit = instance.tryAcquire();
+        assertNotEquals(CircuitBreaker.NO_PERMIT, probePermit);
+        instance.setInitialBackoffMillis(60000);
+        instance.setMaxBackoffMillis(600000);
+        instance.onFailure(probePermit, new EventDeliveryException("event", "Connection refused"));
+
+        assertEquals(CircuitBreaker.State.OPEN, instance.getState());
+        assertEquals(2, instance.getOpenCount());
+        assertTrue("Backoff should have increased", instance.getRetryAfterMillis() > 60000);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testStaleOutcomesDoNotCloseHalfOpenBreaker() throws Exception {
+        instance.setInitialBackoffMillis(0);
+        long stalePermit = instance.tryAcquire();
+        long otherStalePermit = instance.tryAcquire();
+        instance.onFailure(instance.tryAcquire(), httpException(503, "{\"text\":\"Server is busy\",\"code\":9}"));
+
+        long probePermit = instance.tryAcquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, instance.getState());
+
+        instance.onSuccess(stalePermit);
+        assertEquals("A success admitted while closed should not close the breaker", CircuitBreaker.State.HALF_OPEN, instance.getState());
+        instance.onFailure(otherStalePermit, httpException(400, "{\"text\":\"Invalid data format\",\"code\":6}"));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, instance.getState());
+        instance.release(stalePermit);
+        assertEquals("The probe should still be in flight", CircuitBreaker.NO_PERMIT, instance.tryAcquire());
+
+        instance.onSuccess(probePermit);
+        assertEquals(CircuitBreaker.State.CLOSED, instance.getState());
+    }
+
+    static EventDeliveryHttpException httpException(int httpStatusCode, String responseBody) {
+        return new EventDeliveryHttpException("event", new BasicHttpResponse(HttpVersion.HTTP_1_1, httpStatusCode, "reason"), responseBody);
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.stub.EmbeddedHecServer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.openmbean.CompositeData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Test of the ClientStatistics.
+ */
+public class ClientStatisticsTest {
+    static final String EVENT = "{\"event\":\"dummy\"}";
+
+    EmbeddedHecServer server;
+    SimpleEventCollectorClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new EmbeddedHecServer();
+        server.start();
+
+        client = new SimpleEventCollectorClient();
+        server.configure(client);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (client.isInitialized()) {
+            client.stop();
+        }
+        server.stop();
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testDeliveryStatistics() throws Exception {
+        assertNull(client.getLastEventTime());
+
+        for (int i = 0; i < 10; ++i) {
+            client.sendEvent(EVENT);
+        }
+
+        assertEquals(10, client.getEventCount());
+        assertEquals(10, client.getRequestCount());
+        assertEquals(0, client.getFailedRequestCount());
+        assertEquals(10L * EVENT.length(), client.getPayloadBytes());
+        assertNotNull(client.getLastEventTime());
+        assertTrue(client.getEventRate() > 0.0);
+        assertTrue(client.getSendLatencyP50Millis() > 0.0);
+        assertTrue(client.getSendLatencyP999Millis() >= client.getSendLatencyP99Millis());
+        assertEquals(10, client.getClientStatistics().getSerializationLatency().getCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testFailuresByStatusCode() throws Exception {
+        server.injectServerBusy(2);
+
+        for (int i = 0; i < 2; ++i) {
+            try {
+                client.sendEvent(EVENT);
+                fail("EventDeliveryException should have been thrown");
+            } catch (EventDeliveryException expectedEx) {
+                // expected
+            }
+        }
+        client.sendEvent(EVENT);
+
+        assertEquals(3, client.getRequestCount());
+        assertEquals(2, client.getFailedRequestCount());
+        assertEquals(Long.valueOf(2), client.getHttpStatusFailureCounts().get("503"));
+        assertEquals(Long.valueOf(2), client.getSplunkStatusFailureCounts().get("9"));
+        assertTrue(client.getFailureRate() > 0.0);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testRetriesAreCounted() throws Exception {
+        server.injectConnectionReset(1);
+
+        client.sendEvent(EVENT);
+
+        assertEquals(1, client.getRetryCount());
+        assertEquals(1, client.getRequestCount());
+        assertEquals(0, client.getFailedRequestCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testCompositeData() throws Exception {
+        client.sendEvent(EVENT);
+
+        CompositeData statistics = client.getStatistics();
+        assertEquals(1L, statistics.get("eventCount"));
+        assertEquals(1L, statistics.get("requestCount"));
+        assertEquals(60000L, statistics.get("windowMillis"));
+        assertTrue((Double) statistics.get("sendLatencyP99Millis") > 0.0);
+
+        client.resetStatistics();
+        assertEquals(0L, client.getStatistics().get("eventCount"));
+        assertNull(client.getLastEventTime());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testRateOverWindow() throws Exception {
+        AtomicLong now = new AtomicLong();
+        SlidingWindowCounter counter = new SlidingWindowCounter(10000, 10);
+        counter.nanoClock = now::get;
+
+        counter.add(50);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(5000));
+        counter.add(50);
+        assertEquals(10.0, counter.getRatePerSecond(), 0.0);
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(6000));
+        assertEquals(50, counter.getSum());
+
+        counter.reset();
+        assertEquals(0, counter.getSum());
+    }
+}
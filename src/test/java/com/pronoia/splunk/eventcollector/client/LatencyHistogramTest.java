@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Test of the LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+    final AtomicLong now = new AtomicLong();
+
+    LatencyHistogram instance;
+
+    @Before
+    public void setUp() throws Exception {
+        instance = new LatencyHistogram(10000, 10);
+        instance.nanoClock = now::get;
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBucketBounds() throws Exception {
+        for (long value = 0; value < 100000; ++value) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upperBound = LatencyHistogram.bucketUpperBound(index);
+            assertEquals("Value " + value + " should be within its bucket", true, value <= upperBound);
+            assertEquals("Relative error for " + value, true, upperBound - value <= Math.max(value / 8, 0));
+        }
+
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testPercentiles() throws Exception {
+        for (int i = 1; i <= 1000; ++i) {
+            instance.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        LatencyHistogram.Snapshot snapshot = instance.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500.0, snapshot.getPercentileMillis(50.0), 500.0 / 8);
+        assertEquals(990.0, snapshot.getPercentileMillis(99.0), 990.0 / 8);
+        assertEquals(1000.0, snapshot.getPercentileMillis(99.9), 1000.0 / 8);
+        assertEquals(1000.0, snapshot.getMaxMillis(), 0.0);
+        assertEquals(500.5, snapshot.getMeanMillis(), 0.001);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEmptySnapshot() throws Exception {
+        LatencyHistogram.Snapshot snapshot = instance.snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0.0, snapshot.getPercentileMillis(99.0), 0.0);
+        assertEquals(0.0, snapshot.getMeanMillis(), 0.0);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testWindowSlides() throws Exception {
+        instance.record(TimeUnit.MILLISECONDS.toNanos(500));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(5000));
+        instance.record(TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(2, instance.snapshot().getCount());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(6000));
+        LatencyHistogram.Snapshot snapshot = instance.snapshot();
+        assertEquals("The first latency should have left the window", 1, snapshot.getCount());
+        assertEquals(10.0, snapshot.getMaxMillis(), 0.0);
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(10000));
+        assertEquals(0, instance.snapshot().getCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testRecycledSliceIsCleared() throws Exception {
+        instance.record(TimeUnit.MILLISECONDS.toNanos(500));
+
+        // The same slice is reused one window later
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(10000));
+        instance.record(TimeUnit.MILLISECONDS.toNanos(10));
+
+        LatencyHistogram.Snapshot snapshot = instance.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(10.0, snapshot.getMaxMillis(), 0.0);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testReset() throws Exception {
+        instance.record(TimeUnit.MILLISECONDS.toNanos(500));
+        instance.reset();
+
+        assertEquals(0, instance.snapshot().getCount());
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Test of the LoadBalancingEventCollectorClient.
+ */
+public class LoadBalancingEventCollectorClientTest {
+    LoadBalancingEventCollectorClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        client = new LoadBalancingEventCollectorClient();
+        client.setAuthorizationToken("dummy-token");
+        client.setUseSSL(false);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (client.isInitialized()) {
+            client.stop();
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testStartAndStop() throws Exception {
+        client.addEventCollector("localhost", 8088);
+
+        assertFalse("Default value should be false", client.isInitialized());
+
+        client.start();
+        assertTrue(client.isInitialized());
+        assertTrue(client.endpoints.get(0).client.isInitialized());
+
+        client.stop();
+        assertFalse(client.isInitialized());
+        assertFalse(client.endpoints.get(0).client.isInitialized());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testAddEventCollectorUsesClientDefaults() throws Exception {
+        client.addEventCollector("splunk-one", 8088);
+
+        assertEquals("http://splunk-one:8088/services/collector", client.getEventCollectors().get(0).getPostUrl());
+        assertEquals("Splunk dummy-token", client.getEventCollectors().get(0).getAuthorizationHeaderValue());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testRoundRobinSelection() throws Exception {
+        client.addEventCollector("splunk-one", 8088, 3);
+        client.addEventCollector("splunk-two", 8088, 1);
+
+        LoadBalancingEventCollectorClient.Endpoint first = client.selectEndpoint();
+        LoadBalancingEventCollectorClient.Endpoint second = client.selectEndpoint();
+
+        assertSame(client.endpoints.get(0), first);
+        assertSame(client.endpoints.get(1), second);
+        assertSame(first, client.selectEndpoint());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testWeightedSelection() throws Exception {
+        client.setSelectionPolicy("weighted");
+        client.addEventCollector("splunk-one", 8088, 3);
+        client.addEventCollector("splunk-two", 8088, 1);
+
+        Map<String, Integer> selections = new HashMap<>();
+        for (int i = 0; i < 40; ++i) {
+            selections.merge(client.selectEndpoint().info.getHost(), 1, Integer::sum);
+        }
+
+        assertEquals(Integer.valueOf(30), selections.get("splunk-one"));
+        assertEquals(Integer.valueOf(10), selections.get("splunk-two"));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEvictionOfUnreachableCollectors() throws Exception {
+        client.addEventCollector("localhost", getUnusedPort());
+        client.addEventCollector("localhost", getUnusedPort());
+
+        try {
+            client.sendEvent("{\"event\":\"dummy\"}");
+            fail("EventDeliveryException should have been thrown");
+        } catch (EventDeliveryException expectedEx) {
+            assertEquals(0, client.getAvailableEventCollectorCount());
+            assertEquals(2, client.getEvictionCount());
+        }
+
+        assertNull("No collectors should be selected", client.selectEndpoint());
+
+        client.setEvictionMillis(0);
+        client.probeEvictedEventCollectors();
+        assertEquals("Unreachable collectors should not be re-admitted", 0, client.getAvailableEventCollectorCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEndpointClientFactory() throws Exception {
+        client.addEventCollector("splunk-one", 8088);
+
+        client.setEndpointClientFactory(() -> {
+            SimpleEventCollectorClient endpointClient = new SimpleEventCollectorClient();
+            endpointClient.setGzipEnabled(true);
+            return endpointClient;
+        });
+        client.addEventCollector("splunk-two", 8088);
+
+        assertEquals(2, client.endpoints.size());
+        for (LoadBalancingEventCollectorClient.Endpoint endpoint : client.endpoints) {
+            assertTrue("Existing and new collectors should use the factory", endpoint.client.isGzipEnabled());
+            assertSame(endpoint.info, endpoint.client.eventCollectorInfo);
+        }
+        assertEquals("splunk-one", client.endpoints.get(0).info.getHost());
+        assertEquals(client.getClientId() + "-2", client.endpoints.get(1).client.getClientId());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testConcurrentFailuresEvictOnce() throws Exception {
+        client.addEventCollector("splunk-one", 8088);
+        final LoadBalancingEventCollectorClient.Endpoint endpoint = client.endpoints.get(0);
+        final EventDeliveryException failure = new EventDeliveryException("dummy", "dummy failure");
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread(() -> client.recordFailure(endpoint, failure));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, client.getEvictionCount());
+        assertEquals(0, client.getAvailableEventCollectorCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testLocalRejectionsFailOverWithoutEviction() throws Exception {
+        client.setFailureThreshold(1);
+        client.addEventCollector("splunk-one", 8088);
+        client.addEventCollector("splunk-two", 8088);
+        final SimpleEventCollectorClient rejectingClient = client.endpoints.get(0).client;
+
+        for (int i = 0; i < 4; ++i) {
+            final boolean limited = i % 2 == 0;
+            client.deliver(endpointClient -> {
+                if (endpointClient == rejectingClient) {
+                    throw limited ? new ConcurrencyLimitExceededException("dummy", 1) : new CircuitBreakerOpenException("dummy", 1000);
+                }
+            }, 1, "dummy");
+        }
+
+        assertEquals(0, client.getEvictionCount());
+        assertEquals(2, client.getAvailableEventCollectorCount());
+        assertEquals("Each delivery should fail over from the rejecting collector", 4, client.getFailoverCount());
+        assertEquals(4, client.endpoints.get(1).eventCount.sum());
+    }
+
+    static int getUnusedPort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+}
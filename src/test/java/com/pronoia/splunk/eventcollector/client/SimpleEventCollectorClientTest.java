@@ -16,15 +16,45 @@
  */
 package com.pronoia.splunk.eventcollector.client;
 
+import com.pronoia.splunk.eventcollector.DeliveryResult;
+import com.pronoia.splunk.eventcollector.EventDeliveryHttpException;
+import com.pronoia.splunk.eventcollector.EventPayload;
+import com.pronoia.splunk.eventcollector.EventWriter;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.HttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 
 /**
@@ -32,12 +62,28 @@ import static org.junit.Assert.assertTrue;
  */
 public class SimpleEventCollectorClientTest {
     SimpleEventCollectorClient client;
+    HttpServer server;
+
+    volatile String requestUri;
+    volatile String requestChannel;
+    volatile String requestEncoding;
+    volatile byte[] requestBody;
 
     @Before
     public void setUp() throws Exception {
         client = new SimpleEventCollectorClient();
     }
 
+    @After
+    public void tearDown() throws Exception {
+        if (client.isInitialized()) {
+            client.stop();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
     /**
      * @throws Exception in the event of a test error.
      */
@@ -76,4 +122,334 @@ public class SimpleEventCollectorClientTest {
         assertNull(client.httpClient);
     }
 
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testConnectionPool() throws Exception {
+        client.setMaxConnectionsTotal(8);
+        client.setMaxConnectionsPerRoute(4);
+
+        assertEquals(0, client.getAvailableConnectionCount());
+
+        client.start();
+
+        assertNotNull(client.connectionManager);
+        assertEquals(8, client.connectionManager.getMaxTotal());
+        assertEquals(4, client.connectionManager.getDefaultMaxPerRoute());
+        assertEquals(0, client.getLeasedConnectionCount());
+        assertEquals(0, client.getPendingConnectionCount());
+
+        client.stop();
+        assertNull(client.connectionManager);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testKeepAliveDuration() throws Exception {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        assertEquals(SimpleEventCollectorClient.DEFAULT_KEEP_ALIVE_MILLIS, client.getKeepAliveDuration(response, new BasicHttpContext()));
+
+        response.setHeader("Keep-Alive", "timeout=5, max=100");
+        assertEquals(5000, client.getKeepAliveDuration(response, new BasicHttpContext()));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEntityIsNotCompressedByDefault() throws Exception {
+        String event = createEvent(4096);
+
+        HttpEntity entity = client.createEntity(event);
+
+        assertNull(entity.getContentEncoding());
+        assertEquals(event, EntityUtils.toString(entity));
+        assertEquals(4096, client.getPayloadBytes());
+        assertEquals(4096, client.getWireBytes());
+        assertEquals(0, client.getCompressedRequestCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testCompressedEntity() throws Exception {
+        client.setGzipEnabled(true);
+        String event = createEvent(4096);
+
+        HttpEntity entity = client.createEntity(event);
+
+        assertEquals("gzip", entity.getContentEncoding().getValue());
+        assertEquals(event, gunzip(EntityUtils.toByteArray(entity)));
+        assertEquals(4096, client.getPayloadBytes());
+        assertTrue("Compressed payload should be smaller", client.getWireBytes() < client.getPayloadBytes());
+        assertEquals(entity.getContentLength(), client.getWireBytes());
+        assertEquals(1, client.getCompressedRequestCount());
+        assertTrue(client.getCompressionRatio() > 1.0);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSmallEntityIsNotCompressed() throws Exception {
+        client.setGzipEnabled(true);
+        String event = createEvent(client.getGzipMinimumSize() - 1);
+
+        HttpEntity entity = client.createEntity(event);
+
+        assertNull(entity.getContentEncoding());
+        assertEquals(event, EntityUtils.toString(entity));
+        assertEquals(0, client.getCompressedRequestCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCompressionLevel() throws Exception {
+        client.setGzipCompressionLevel(10);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSendEventAsync() throws Exception {
+        startServer(200, "{\"text\":\"Success\",\"code\":0}");
+
+        CompletableFuture<DeliveryResult> future = client.sendEventAsync("{\"event\":\"dummy\"}");
+        DeliveryResult result = future.get(10, TimeUnit.SECONDS);
+
+        assertEquals(200, result.getHttpStatusCode());
+        assertEquals(0, result.getSplunkStatusCode());
+        assertEquals("Success", result.getSplunkStatusMessage());
+        assertEquals(1, client.getEventCount());
+        assertEquals(0, client.getInFlightAsyncEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSendEventAsyncHttpError() throws Exception {
+        startServer(403, "{\"text\":\"Invalid token\",\"code\":4}");
+
+        CompletableFuture<DeliveryResult> future = client.sendEventAsync("{\"event\":\"dummy\"}");
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("ExecutionException should have been thrown");
+        } catch (ExecutionException expectedEx) {
+            assertTrue(expectedEx.getCause() instanceof EventDeliveryHttpException);
+            EventDeliveryHttpException httpEx = (EventDeliveryHttpException) expectedEx.getCause();
+            assertEquals(403, httpEx.getHttpStatusCode());
+            assertEquals(4, httpEx.getSplunkStatusCode());
+            assertEquals("Invalid token", httpEx.getSplunkStatusMessage());
+        }
+
+        assertEquals(0, client.getEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSendRawEvents() throws Exception {
+        startServer(200, "{\"text\":\"Success\",\"code\":0}");
+        client.setEventIndex("main");
+        client.setEventSourcetype("my:sourcetype");
+
+        client.sendRawEvents(Arrays.asList("first line", "second line"));
+
+        assertEquals("/services/collector/raw?index=main&sourcetype=my%3Asourcetype", requestUri);
+        assertEquals(client.getChannel(), requestChannel);
+        assertNull(requestEncoding);
+        assertEquals("first line\nsecond line\n", new String(requestBody, StandardCharsets.UTF_8));
+        assertEquals(2, client.getEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSendCompressedRawEvents() throws Exception {
+        startServer(200, "{\"text\":\"Success\",\"code\":0}");
+        client.setGzipEnabled(true);
+
+        client.sendRawEvents(Arrays.asList("first line", "second line"));
+
+        assertEquals("/services/collector/raw", requestUri);
+        assertEquals("gzip", requestEncoding);
+        assertEquals("first line\nsecond line\n", gunzip(requestBody));
+        assertEquals(23, client.getPayloadBytes());
+        assertEquals(requestBody.length, client.getWireBytes());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testCircuitBreakerRejectsWhenServerIsBusy() throws Exception {
+        startServer(503, "{\"text\":\"Server is busy\",\"code\":9}");
+        client.setCircuitBreakerEnabled(true);
+
+        try {
+            client.sendEvent("{\"event\":\"dummy\"}");
+            fail("EventDeliveryHttpException should have been thrown");
+        } catch (EventDeliveryHttpException expectedEx) {
+            assertEquals(9, expectedEx.getSplunkStatusCode());
+        }
+
+        assertEquals("OPEN", client.getCircuitBreakerState());
+        requestUri = null;
+
+        try {
+            client.sendEvent("{\"event\":\"dummy\"}");
+            fail("CircuitBreakerOpenException should have been thrown");
+        } catch (CircuitBreakerOpenException expectedEx) {
+            assertTrue(expectedEx.getRetryAfterMillis() > 0);
+        }
+
+        assertNull("Request should not have been sent", requestUri);
+        assertEquals(1, client.getCircuitBreakerRejectedCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSendEventsPostsPayload() throws Exception {
+        startServer(200, "{\"text\":\"Success\",\"code\":0}");
+
+        EventPayload payload = new EventPayload()
+            .append("{\"event\":\"one\"}")
+            .append("{\"event\":\"two\"}");
+
+        client.sendEvents(payload);
+
+        assertEquals("/services/collector", requestUri);
+        assertEquals("{\"event\":\"one\"}{\"event\":\"two\"}", new String(requestBody, StandardCharsets.UTF_8));
+        assertEquals(2, client.getEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSendEventBytes() throws Exception {
+        startServer(200, "{\"text\":\"Success\",\"code\":0}");
+
+        byte[] buffer = "xx{\"event\":\"bytes\"}xx".getBytes(StandardCharsets.UTF_8);
+        client.sendEvent(buffer, 2, buffer.length - 4);
+        assertEquals("{\"event\":\"bytes\"}", new String(requestBody, StandardCharsets.UTF_8));
+
+        ByteBuffer heapBuffer = ByteBuffer.wrap(buffer, 2, buffer.length - 4).slice();
+        client.sendEvent(heapBuffer);
+        assertEquals("{\"event\":\"bytes\"}", new String(requestBody, StandardCharsets.UTF_8));
+
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(64);
+        directBuffer.put("{\"event\":\"direct\"}".getBytes(StandardCharsets.UTF_8)).flip();
+        client.sendEvent(directBuffer);
+        assertEquals("{\"event\":\"direct\"}", new String(requestBody, StandardCharsets.UTF_8));
+        assertEquals("Position should not change", 0, directBuffer.position());
+
+        assertEquals(3, client.getEventCount());
+        assertEquals(client.getPayloadBytes(), client.getWireBytes());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSendEventWriter() throws Exception {
+        startServer(200, "{\"text\":\"Success\",\"code\":0}");
+        client.setGzipEnabled(true);
+
+        final String event = createEvent(4096);
+        client.sendEvent(outputStream -> outputStream.write(event.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("gzip", requestEncoding);
+        assertEquals(event, gunzip(requestBody));
+        assertEquals(4096, client.getPayloadBytes());
+        assertTrue(client.getWireBytes() < client.getPayloadBytes());
+        assertEquals(1, client.getEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEventWriterEntityIsOnlyRepeatableWhenDeclared() throws Exception {
+        EventWriter eventWriter = outputStream -> outputStream.write("{\"event\":\"once\"}".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(client.new EventWriterEntity(eventWriter, -1, true).isRepeatable());
+        assertTrue(client.new EventWriterEntity(EventWriter.repeatable(eventWriter), -1, true).isRepeatable());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEventWriterEntityWriteFailure() throws Exception {
+        final IOException writeEx = new IOException("Dummy write failure");
+        EventWriter eventWriter = outputStream -> {
+            outputStream.write('{');
+            throw writeEx;
+        };
+
+        try {
+            client.new EventWriterEntity(eventWriter, -1, true).writeTo(new ByteArrayOutputStream());
+            fail("IOException should have been thrown");
+        } catch (IOException expectedEx) {
+            assertSame(writeEx, expectedEx);
+        }
+    }
+
+    void startServer(final int statusCode, final String responseBody) throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/services/collector", exchange -> {
+            requestUri = exchange.getRequestURI().toString();
+            requestChannel = exchange.getRequestHeaders().getFirst("X-Splunk-Request-Channel");
+            requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            requestBody = readFully(exchange.getRequestBody());
+
+            byte[] response = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(statusCode, response.length);
+            try (OutputStream responseStream = exchange.getResponseBody()) {
+                responseStream.write(response);
+            }
+        });
+        server.start();
+
+        client.setHost("localhost");
+        client.setPort(server.getAddress().getPort());
+        client.setUseSSL(false);
+        client.setAuthorizationToken("dummy-token");
+    }
+
+    static String createEvent(int length) {
+        StringBuilder builder = new StringBuilder("{\"event\":\"");
+        while (builder.length() < length - 2) {
+            builder.append('x');
+        }
+        return builder.append("\"}").toString();
+    }
+
+    static String gunzip(byte[] compressed) throws Exception {
+        try (InputStream gzipStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(readFully(gzipStream), StandardCharsets.UTF_8);
+        }
+    }
+
+    static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream answer = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int count = inputStream.read(buffer); count > 0; count = inputStream.read(buffer)) {
+            answer.write(buffer, 0, count);
+        }
+        return answer.toByteArray();
+    }
 }
@@ -0,0 +1,312 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.client;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.EventPayload;
+import com.pronoia.splunk.eventcollector.stub.EventCollectorClientStub;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Test of the SpoolingEventCollectorClient.
+ */
+public class SpoolingEventCollectorClientTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    File spoolDirectory;
+    FlakyClient flakyClient;
+    SpoolingEventCollectorClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        spoolDirectory = temporaryFolder.newFolder("spool");
+        flakyClient = new FlakyClient();
+        client = createClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (client.isInitialized()) {
+            client.stop();
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testDeliveryWithoutSpooling() throws Exception {
+        List<String> expected = sendEvents(0, 5);
+
+        waitFor(() -> flakyClient.delivered.size() == 5);
+
+        assertEquals(expected, flakyClient.delivered);
+        assertFalse(client.isSpooling());
+        assertEquals(0, client.getSpooledEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSpoolWhileCollectorIsUnavailable() throws Exception {
+        flakyClient.available = false;
+
+        List<String> expected = sendEvents(0, 10);
+
+        waitFor(() -> client.isSpooling() && client.getSpoolDepth() == 10);
+        assertTrue(client.getSpoolDiskUsage() >= client.getSegmentSize());
+        assertEquals(1, client.getSpoolSegmentCount());
+
+        flakyClient.available = true;
+
+        waitFor(() -> !client.isSpooling());
+        assertEquals(expected, flakyClient.delivered);
+        assertEquals(10, client.getDrainedEventCount());
+        assertEquals(0, client.getSpoolDiskUsage());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSpoolPayloadsAndEncodedEvents() throws Exception {
+        flakyClient.available = false;
+
+        EventPayload payload = new EventPayload().append("{\"event\":\"one\"}").append("{\"event\":\"two\"}");
+        client.sendEvents(payload);
+        payload.reset();
+
+        byte[] buffer = "xx{\"event\":\"bytes\"}xx".getBytes(StandardCharsets.UTF_8);
+        client.sendEvent(buffer, 2, buffer.length - 4);
+
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(64);
+        directBuffer.put("{\"event\":\"direct\"}".getBytes(StandardCharsets.UTF_8)).flip();
+        client.sendEvent(directBuffer);
+
+        client.sendEvent(outputStream -> outputStream.write("{\"event\":\"written\"}".getBytes(StandardCharsets.UTF_8)));
+
+        waitFor(() -> client.isSpooling() && client.getSpoolDepth() == 4);
+
+        flakyClient.available = true;
+
+        waitFor(() -> !client.isSpooling());
+        assertEquals(Arrays.asList("{\"event\":\"one\"}{\"event\":\"two\"}", "{\"event\":\"bytes\"}", "{\"event\":\"direct\"}", "{\"event\":\"written\"}"),
+            flakyClient.delivered);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSpoolWhenMemoryQueueIsFull() throws Exception {
+        client.setMemoryQueueCapacity(2);
+        client.setSegmentSize(64);
+        flakyClient.blocked = true;
+
+        List<String> expected = sendEvents(0, 10);
+
+        assertTrue(client.isSpooling());
+        assertTrue("Small segments should be rolled", client.getSpoolSegmentCount() > 1);
+
+        flakyClient.release();
+
+        waitFor(() -> flakyClient.delivered.size() >= 10 && !client.isSpooling());
+        assertEquals(expected, flakyClient.delivered.subList(flakyClient.delivered.size() - 10, flakyClient.delivered.size()));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSpoolIsReplayedAfterRestart() throws Exception {
+        flakyClient.available = false;
+
+        List<String> expected = sendEvents(0, 5);
+        waitFor(() -> client.getSpoolDepth() == 5);
+        client.stop();
+
+        assertEquals(1, spoolDirectory.listFiles().length);
+
+        flakyClient = new FlakyClient();
+        client = createClient();
+        client.start();
+
+        waitFor(() -> flakyClient.delivered.size() == 5);
+        assertEquals(expected, flakyClient.delivered);
+
+        waitFor(() -> !client.isSpooling());
+        assertEquals(0, spoolDirectory.listFiles().length);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSpoolIsFull() throws Exception {
+        client.setMemoryQueueCapacity(0);
+        client.setSegmentSize(64);
+        client.setMaxSpoolSize(64);
+        flakyClient.available = false;
+
+        try {
+            sendEvents(0, 10);
+            fail("EventDeliveryException should have been thrown");
+        } catch (EventDeliveryException expectedEx) {
+            assertEquals(1, client.getDroppedEventCount());
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testCorruptSpoolSegmentIsQuarantined() throws Exception {
+        flakyClient.available = false;
+
+        sendEvents(0, 5);
+        waitFor(() -> client.getSpoolDepth() == 5);
+        client.stop();
+
+        File[] segmentFiles = spoolDirectory.listFiles();
+        assertEquals(1, segmentFiles.length);
+        try (RandomAccessFile segmentFile = new RandomAccessFile(segmentFiles[0], "rw")) {
+            segmentFile.seek(SpoolSegment.HEADER_SIZE);
+            segmentFile.writeInt(-SpoolSegment.RECORD_OVERHEAD);
+        }
+
+        flakyClient = new FlakyClient();
+        client = createClient();
+        client.start();
+
+        assertEquals(0, client.getSpoolDepth());
+        assertFalse(segmentFiles[0].exists());
+        assertTrue(new File(spoolDirectory, segmentFiles[0].getName() + SpoolingEventCollectorClient.QUARANTINE_FILE_SUFFIX).exists());
+
+        List<String> expected = sendEvents(5, 2);
+        waitFor(() -> flakyClient.delivered.size() == 2);
+        assertEquals(expected, flakyClient.delivered);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testDeliveryContinuesAfterUnexpectedException() throws Exception {
+        final AtomicBoolean failed = new AtomicBoolean();
+        client = new SpoolingEventCollectorClient(flakyClient) {
+            @Override
+            void drainNext() throws InterruptedException {
+                if (failed.compareAndSet(false, true)) {
+                    throw new IllegalStateException("dummy failure");
+                }
+                super.drainNext();
+            }
+        };
+        client.setSpoolDirectory(spoolDirectory.getPath());
+        client.setRetryIntervalMillis(10);
+
+        List<String> expected = sendEvents(0, 5);
+
+        waitFor(() -> flakyClient.delivered.size() == 5);
+        assertTrue(failed.get());
+        assertEquals(expected, flakyClient.delivered);
+    }
+
+    SpoolingEventCollectorClient createClient() {
+        SpoolingEventCollectorClient answer = new SpoolingEventCollectorClient(flakyClient);
+        answer.setSpoolDirectory(spoolDirectory.getPath());
+        answer.setRetryIntervalMillis(10);
+        return answer;
+    }
+
+    List<String> sendEvents(int first, int count) throws EventDeliveryException {
+        List<String> answer = new ArrayList<>();
+        for (int i = first; i < first + count; ++i) {
+            String event = String.format("{\"event\":\"event-%d\"}", i);
+            client.sendEvent(event);
+            answer.add(event);
+        }
+        return answer;
+    }
+
+    static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition was not satisfied within 10 seconds");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    static class FlakyClient extends EventCollectorClientStub {
+        final List<String> delivered = new CopyOnWriteArrayList<>();
+        final Object blockLock = new Object();
+        volatile boolean available = true;
+        volatile boolean blocked;
+
+        @Override
+        public void sendEvent(String event) throws EventDeliveryException {
+            synchronized (blockLock) {
+                while (blocked) {
+                    try {
+                        blockLock.wait();
+                    } catch (InterruptedException interruptedEx) {
+                        Thread.currentThread().interrupt();
+                        throw new EventDeliveryException(event, interruptedEx);
+                    }
+                }
+            }
+
+            if (!available) {
+                throw new EventDeliveryException(event, "Collector is unavailable");
+            }
+            delivered.add(event);
+        }
+
+        void release() {
+            synchronized (blockLock) {
+                blocked = false;
+                blockLock.notifyAll();
+            }
+        }
+    }
+}
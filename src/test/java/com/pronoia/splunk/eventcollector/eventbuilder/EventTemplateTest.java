@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.eventbuilder;
+
+import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.eventcollector.stub.EventCollectorClientStub;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Test the EventTemplate.
+ */
+public class EventTemplateTest {
+    static final double TEST_TIMESTAMP = 1491346209.382;
+
+    EventCollectorClient clientStub = new EventCollectorClientStub();
+    ObjectEventBuilder builder;
+
+    @Before
+    public void setUp() throws Exception {
+        builder = new ObjectEventBuilder();
+        builder.setDefaultHost("dummy-host");
+        builder.setDefaultIndex("dummy-index");
+        builder.addConstantField("constantField", "constantValue");
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testOutputMatchesBuilder() throws Exception {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("keyOne", "valueOne");
+
+        EventTemplate template = builder.createTemplate();
+
+        String expected = builder.source("dummy-source").timestamp(TEST_TIMESTAMP)
+            .field("fieldOne", "fieldOneValue").field("fieldTwo", "valueOne", "valueTwo").eventBody(body).build(clientStub);
+
+        String actual = template.newRecord().source("dummy-source").timestamp(TEST_TIMESTAMP)
+            .field("fieldOne", "fieldOneValue").field("fieldTwo", "valueOne", "valueTwo").eventBody(body).build(clientStub);
+
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBuildWithFieldPairs() throws Exception {
+        final String expected = "{"
+                                + "\"host\":\"dummy-host\","
+                                + "\"index\":\"dummy-index\","
+                                + "\"time\":\"1491346209.382\","
+                                + "\"fields\":{\"fieldOne\":\"fieldOneValue\",\"constantField\":\"constantValue\"},"
+                                + "\"event\":\"Dummy Event Body\""
+                                + "}";
+
+        EventTemplate template = builder.createTemplate();
+
+        String actual = template.build(clientStub, "Dummy Event Body", "fieldOne", "fieldOneValue");
+
+        // The time is the only part of the event that differs
+        assertEquals(expected, actual.replaceFirst("\"time\":\"[0-9.]+\"", "\"time\":\"1491346209.382\""));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildWithUnpairedFields() throws Exception {
+        builder.createTemplate().build(clientStub, "Dummy Event Body", "fieldOne");
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testTemplateIsNotAffectedByBuilderChanges() throws Exception {
+        EventTemplate template = builder.createTemplate();
+
+        builder.setDefaultIndex("other-index");
+        builder.removeConstantField("constantField");
+
+        assertEquals("{"
+                     + "\"host\":\"dummy-host\","
+                     + "\"index\":\"dummy-index\","
+                     + "\"time\":\"1491346209.382\","
+                     + "\"fields\":{\"constantField\":\"constantValue\"},"
+                     + "\"event\":\"Dummy Event Body\""
+                     + "}",
+            template.newRecord().timestamp(TEST_TIMESTAMP).eventBody("Dummy Event Body").build(clientStub));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testConcurrentBuild() throws Exception {
+        final int threadCount = 8;
+        final int eventsPerThread = 500;
+
+        final EventTemplate template = builder.createTemplate();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < threadCount; ++i) {
+                final String threadField = "thread-" + i;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        int matches = 0;
+                        for (int j = 0; j < eventsPerThread; ++j) {
+                            String expected = "{"
+                                              + "\"host\":\"dummy-host\","
+                                              + "\"index\":\"dummy-index\","
+                                              + "\"time\":\"1491346209.382\","
+                                              + "\"fields\":{\"thread\":\"" + threadField + "\",\"constantField\":\"constantValue\"},"
+                                              + "\"event\":\"event-" + j + "\""
+                                              + "}";
+                            String actual = template.newRecord().timestamp(TEST_TIMESTAMP).field("thread", threadField).eventBody("event-" + j).build(clientStub);
+                            if (expected.equals(actual)) {
+                                ++matches;
+                            }
+                        }
+                        return matches;
+                    }
+                }));
+            }
+
+            for (Future<Integer> result : results) {
+                assertEquals(Integer.valueOf(eventsPerThread), result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -16,16 +16,29 @@
  */
 package com.pronoia.splunk.eventcollector.eventbuilder;
 
+import com.pronoia.splunk.eventcollector.EventBuilder;
 import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.eventcollector.SplunkMDCHelper;
+import com.pronoia.splunk.eventcollector.client.SimpleEventCollectorClient;
 import com.pronoia.splunk.eventcollector.stub.EventCollectorClientStub;
 import com.pronoia.splunk.eventcollector.stub.JacksonEventBuilderSupportStub;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.json.simple.JSONObject;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 
 /**
@@ -337,4 +350,236 @@ public class JacksonEventBuilderSupportTest {
         assertEquals(expected, instance.build(clientStub));
     }
 
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBuildMatchesMapSerialization() throws Exception {
+        System.setProperty("jackson-test-property", "property-value");
+        try {
+            instance
+                .index("dummy-index")
+                .field("fieldOne", "fieldOneValue")
+                .field("fieldTwo", "fieldTwoValueOne", "fieldTwoValueTwo")
+                .eventBody("Dummy \"Event\" Body");
+            instance.includeSystemProperty("jackson-test-property", "fieldTwo");
+            instance.addConstantField("fieldOne", "constantValue");
+            instance.addConstantField("fieldThree", "fieldThreeValue");
+
+            Map<String, Object> eventMap = new LinkedHashMap<>();
+            instance.addDefaultFieldsToMap(clientStub, eventMap);
+            Map<String, Object> additionalFields = new LinkedHashMap<>();
+            instance.addAdditionalFieldsToMap(clientStub, additionalFields);
+            eventMap.put("fields", additionalFields);
+            instance.addEventBodyToMap(eventMap);
+            final String expected = instance.convertMapToJson(eventMap);
+
+            instance.timestamp(timestamp)
+                .index("dummy-index")
+                .field("fieldOne", "fieldOneValue")
+                .field("fieldTwo", "fieldTwoValueOne", "fieldTwoValueTwo")
+                .eventBody("Dummy \"Event\" Body");
+
+            assertEquals(expected, instance.build(clientStub));
+        } finally {
+            System.clearProperty("jackson-test-property");
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBuildToOutputStream() throws Exception {
+        final String expected = "{"
+                                + "\"host\":\"dummy-host\","
+                                + "\"time\":\"1505323567.566\","
+                                + "\"event\":\"D\u00fcmmy Event Body\""
+                                + "}";
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        instance
+            .host("dummy-host")
+            .eventBody("D\u00fcmmy Event Body");
+
+        instance.build(clientStub, outputStream);
+
+        assertEquals(expected, new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals("Transient data should be reset", null, instance.getHost());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testStaticFieldsAreCached() throws Exception {
+        System.setProperty("jackson-test-property", "property-value");
+        try {
+            instance.setDefaultHost("dummy-host");
+            instance.includeSystemProperty("jackson-test-property");
+            instance.addConstantField("constantField", "constantValue");
+
+            final String expected = "{"
+                                    + "\"host\":\"dummy-host\","
+                                    + "\"time\":\"1505323567.566\","
+                                    + "\"fields\":{\"jackson-test-property\":\"property-value\",\"fieldOne\":\"fieldOneValue\",\"constantField\":\"constantValue\"},"
+                                    + "\"event\":\"null event body\""
+                                    + "}";
+
+            assertEquals(expected, instance.timestamp(timestamp).field("fieldOne", "fieldOneValue").build(clientStub));
+
+            System.setProperty("jackson-test-property", "changed-value");
+            assertEquals("Cached value should be used", expected, instance.timestamp(timestamp).field("fieldOne", "fieldOneValue").build(clientStub));
+
+            instance.setDefaultIndex("dummy-index");
+            assertEquals("{"
+                         + "\"host\":\"dummy-host\","
+                         + "\"index\":\"dummy-index\","
+                         + "\"time\":\"1505323567.566\","
+                         + "\"fields\":{\"jackson-test-property\":\"changed-value\",\"constantField\":\"constantValue\"},"
+                         + "\"event\":\"null event body\""
+                         + "}",
+                instance.timestamp(timestamp).build(clientStub));
+        } finally {
+            System.clearProperty("jackson-test-property");
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testStaticFieldCacheInvalidatedByClientConfiguration() throws Exception {
+        SimpleEventCollectorClient client = new SimpleEventCollectorClient();
+        System.setProperty("jackson-test-property", "property-value");
+        try {
+            instance.setDefaultHost("dummy-host");
+            assertEquals("{\"host\":\"dummy-host\",\"time\":\"1505323567.566\",\"event\":\"null event body\"}",
+                instance.timestamp(timestamp).build(client));
+
+            client.includeSystemProperty("jackson-test-property", "clientField");
+            assertEquals("{\"host\":\"dummy-host\",\"time\":\"1505323567.566\",\"fields\":{\"clientField\":\"property-value\"},\"event\":\"null event body\"}",
+                instance.timestamp(timestamp).build(client));
+
+            client.setEventIndex("client-index");
+            assertEquals("{\"host\":\"dummy-host\",\"index\":\"client-index\",\"time\":\"1505323567.566\",\"fields\":{\"clientField\":\"property-value\"},\"event\":\"null event body\"}",
+                instance.timestamp(timestamp).build(client));
+        } finally {
+            System.clearProperty("jackson-test-property");
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testStaticFieldsOverlappingEventFields() throws Exception {
+        instance.setDefaultHost("dummy-host");
+        instance.addConstantField("fieldOne", "constantValue");
+        instance.addConstantField("fieldTwo", "fieldTwoValue");
+
+        assertEquals("{"
+                     + "\"host\":\"dummy-host\","
+                     + "\"time\":\"1505323567.566\","
+                     + "\"fields\":{\"fieldOne\":\"constantValue\",\"fieldTwo\":\"fieldTwoValue\"},"
+                     + "\"event\":\"null event body\""
+                     + "}",
+            instance.timestamp(timestamp).field("fieldOne", "eventValue").build(clientStub));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testMdcPopulatedOncePerBuild() throws Exception {
+        MdcCapturingEventBuilder eventBuilder = new MdcCapturingEventBuilder();
+        eventBuilder.setDefaultIndex("dummy-index");
+
+        eventBuilder.build(clientStub);
+        assertSame("Helpers inside build() should not touch the MDC", EventBuilderMDCHelper.NO_OP, eventBuilder.capturedHelper);
+        assertEquals(0, eventBuilder.mdcScopeDepth);
+
+        eventBuilder.build(clientStub, new ByteArrayOutputStream());
+        assertSame("Helpers inside build() should not touch the MDC", EventBuilderMDCHelper.NO_OP, eventBuilder.capturedHelper);
+        assertEquals(0, eventBuilder.mdcScopeDepth);
+
+        eventBuilder.setMdcMode(MdcMode.EAGER);
+        eventBuilder.build(clientStub);
+        assertNotSame(EventBuilderMDCHelper.NO_OP, eventBuilder.capturedHelper);
+        assertEquals(0, eventBuilder.mdcScopeDepth);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testLazyMdcIsPopulatedForWarnings() throws Exception {
+        MdcCapturingEventBuilder eventBuilder = new MdcCapturingEventBuilder();
+        eventBuilder.setDefaultIndex("dummy-index");
+
+        eventBuilder.setMdcMode(MdcMode.LAZY);
+        eventBuilder.setField(null, "dummy-value");
+        assertNotSame("The MDC should be populated for the warning", EventBuilderMDCHelper.NO_OP, eventBuilder.capturedWarningHelper);
+
+        eventBuilder.setMdcMode(MdcMode.PER_BUILD);
+        eventBuilder.setField("", "dummy-value");
+        assertSame("The enclosing helper has already populated the MDC", EventBuilderMDCHelper.NO_OP, eventBuilder.capturedWarningHelper);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testLazyMdcIsPopulatedForMissingPropertyWarnings() throws Exception {
+        MdcCapturingEventBuilder eventBuilder = new MdcCapturingEventBuilder();
+        eventBuilder.setDefaultIndex("dummy-index");
+        eventBuilder.setMdcMode(MdcMode.LAZY);
+        eventBuilder.includeSystemProperty("dummy.missing.system.property");
+
+        eventBuilder.build(clientStub);
+        assertNotSame("The MDC should be populated for the warning", EventBuilderMDCHelper.NO_OP, eventBuilder.capturedWarningHelper);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testMdcModeIsCopied() throws Exception {
+        instance.setMdcMode(MdcMode.LAZY);
+
+        assertEquals(MdcMode.LAZY, ((JacksonEventBuilderSupport<String>) instance.duplicate()).getMdcMode());
+
+        instance.setMdcMode(null);
+        assertEquals(MdcMode.PER_BUILD, instance.getMdcMode());
+    }
+
+    static class MdcCapturingEventBuilder extends JacksonEventBuilderSupport<String> {
+        SplunkMDCHelper capturedHelper;
+        SplunkMDCHelper capturedWarningHelper;
+
+        @Override
+        public EventBuilder<String> duplicate() {
+            MdcCapturingEventBuilder answer = new MdcCapturingEventBuilder();
+
+            answer.copyConfiguration(this);
+
+            return answer;
+        }
+
+        @Override
+        protected SplunkMDCHelper createMdcHelper(boolean statementEnabled) {
+            capturedWarningHelper = super.createMdcHelper(statementEnabled);
+            return capturedWarningHelper;
+        }
+
+        @Override
+        protected void writeEventBody(JsonGenerator generator) throws IOException {
+            try (SplunkMDCHelper helper = createMdcHelper()) {
+                capturedHelper = helper;
+            }
+            super.writeEventBody(generator);
+        }
+    }
+
 }
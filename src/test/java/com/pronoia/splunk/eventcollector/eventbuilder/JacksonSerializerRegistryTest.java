@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.eventbuilder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.pronoia.splunk.eventcollector.stub.EventCollectorClientStub;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+
+/**
+ * Tests for the JacksonSerializerRegistry class.
+ */
+public class JacksonSerializerRegistryTest {
+    JacksonSerializerRegistry instance;
+
+    @Before
+    public void setUp() throws Exception {
+        instance = new JacksonSerializerRegistry();
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testWritersAreCached() throws Exception {
+        assertSame(instance.getWriter(LinkedHashMap.class), instance.getWriter(LinkedHashMap.class));
+        assertEquals(1, instance.getCachedWriterCount());
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("key", "value");
+        assertEquals("{\"key\":\"value\"}", instance.writeValueAsString(map));
+        assertEquals("null", instance.writeValueAsString(null));
+        assertEquals(1, instance.getCachedWriterCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testRegisterModule() throws Exception {
+        instance.getWriter(Marker.class);
+
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(Marker.class, new MarkerSerializer());
+        instance.registerModule(module);
+
+        assertEquals("Cached writers should be discarded", 0, instance.getCachedWriterCount());
+        assertEquals("\"marker\"", instance.writeValueAsString(new Marker()));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBuildersShareTheDefaultRegistry() throws Exception {
+        StringEventBuilder eventBuilder = new StringEventBuilder();
+
+        assertSame(JacksonSerializerRegistry.getDefault(), eventBuilder.getSerializerRegistry());
+        assertSame(JacksonSerializerRegistry.getDefault(), ((StringEventBuilder) eventBuilder.duplicate()).getSerializerRegistry());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testInjectedRegistry() throws Exception {
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(Marker.class, new MarkerSerializer());
+        JacksonSerializerRegistry registry = new JacksonSerializerRegistry(new ObjectMapper()).registerModule(module);
+
+        ObjectEventBuilder eventBuilder = new ObjectEventBuilder();
+        eventBuilder.setSerializerRegistry(registry);
+        eventBuilder.setDefaultHost("dummy-host");
+
+        ObjectEventBuilder duplicate = (ObjectEventBuilder) eventBuilder.duplicate();
+        assertSame(registry, duplicate.getSerializerRegistry());
+
+        assertEquals("{\"host\":\"dummy-host\",\"time\":\"1505323567.566\",\"event\":{\"value\":\"marker\"}}",
+            duplicate.timestamp(1505323567.566).eventBody(Collections.singletonMap("value", new Marker())).build(new EventCollectorClientStub()));
+
+        eventBuilder.setSerializerRegistry(null);
+        assertSame(JacksonSerializerRegistry.getDefault(), eventBuilder.getSerializerRegistry());
+    }
+
+    static class Marker {
+    }
+
+    static class MarkerSerializer extends JsonSerializer<Marker> {
+        @Override
+        public void serialize(Marker value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeString("marker");
+        }
+    }
+}
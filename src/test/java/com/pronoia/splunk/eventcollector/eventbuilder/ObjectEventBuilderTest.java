@@ -16,9 +16,12 @@
  */
 package com.pronoia.splunk.eventcollector.eventbuilder;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.pronoia.splunk.eventcollector.EventCollectorClient;
 import com.pronoia.splunk.eventcollector.stub.EventCollectorClientStub;
 
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -120,4 +123,115 @@ public class ObjectEventBuilderTest {
 
         assertEquals(expected, instance.build(clientStub));
     }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBuildPojo() throws Exception {
+        final String expected = "{\"host\":\"dummy-host\",\"time\":\"1491346209.382\",\"event\":{\"name\":\"dummy-name\",\"count\":3}}";
+
+        instance
+            .host("dummy-host")
+            .timestamp(TEST_TIMESTAMP_IN_MILLISECONDS / MILLISECONDS_PER_SECOND)
+            .eventBody(new DummyPojo("dummy-name", 3));
+
+        assertEquals(expected, instance.build(clientStub));
+        assertEquals(expected, EventTemplate.from(instance).newRecord()
+            .host("dummy-host")
+            .timestamp(TEST_TIMESTAMP_IN_MILLISECONDS / MILLISECONDS_PER_SECOND)
+            .eventBody(new DummyPojo("dummy-name", 3))
+            .build(clientStub));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBuildPojoWithSerializationDisabled() throws Exception {
+        instance.setObjectBodySerializationEnabled(false);
+
+        instance
+            .host("dummy-host")
+            .timestamp(TEST_TIMESTAMP_IN_MILLISECONDS / MILLISECONDS_PER_SECOND)
+            .eventBody(new DummyPojo("dummy-name", 3));
+
+        assertEquals("{\"host\":\"dummy-host\",\"time\":\"1491346209.382\",\"event\":\"dummy-name=3\"}", instance.build(clientStub));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBuildScalarBodies() throws Exception {
+        instance.host("dummy-host").timestamp(TEST_TIMESTAMP_IN_MILLISECONDS / MILLISECONDS_PER_SECOND).eventBody(42);
+
+        assertEquals("{\"host\":\"dummy-host\",\"time\":\"1491346209.382\",\"event\":\"42\"}", instance.build(clientStub));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBuildJsonNode() throws Exception {
+        ObjectNode body = new ObjectMapper().createObjectNode();
+        body.put("keyOne", "valueOne");
+        body.putArray("keyTwo").add(1).add(2);
+
+        instance.host("dummy-host").timestamp(TEST_TIMESTAMP_IN_MILLISECONDS / MILLISECONDS_PER_SECOND).eventBody(body);
+
+        assertEquals("{\"host\":\"dummy-host\",\"time\":\"1491346209.382\",\"event\":{\"keyOne\":\"valueOne\",\"keyTwo\":[1,2]}}",
+            instance.build(clientStub));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBuildRawJson() throws Exception {
+        final String expected = "{\"host\":\"dummy-host\",\"time\":\"1491346209.382\",\"event\":{\"keyOne\":[1,2,{\"nested\":\"value\"}]}}";
+        final String rawJson = "{\"keyOne\":[1,2,{\"nested\":\"value\"}]}";
+
+        instance.host("dummy-host").timestamp(TEST_TIMESTAMP_IN_MILLISECONDS / MILLISECONDS_PER_SECOND).eventBody(RawJson.of(rawJson));
+        assertEquals(expected, instance.build(clientStub));
+
+        instance.host("dummy-host").timestamp(TEST_TIMESTAMP_IN_MILLISECONDS / MILLISECONDS_PER_SECOND).eventBody(RawJson.of(rawJson.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(expected, instance.build(clientStub));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("raw", RawJson.of("[1,2]"));
+        instance.host("dummy-host").timestamp(TEST_TIMESTAMP_IN_MILLISECONDS / MILLISECONDS_PER_SECOND).eventBody(body);
+        assertEquals("{\"host\":\"dummy-host\",\"time\":\"1491346209.382\",\"event\":{\"raw\":[1,2]}}", instance.build(clientStub));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyRawJson() throws Exception {
+        RawJson.of("");
+    }
+
+    public static class DummyPojo {
+        final String name;
+        final int count;
+
+        DummyPojo(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + count;
+        }
+    }
 }
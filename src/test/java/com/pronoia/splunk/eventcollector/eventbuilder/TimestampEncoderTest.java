@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.eventbuilder;
+
+import com.pronoia.splunk.eventcollector.stub.EventCollectorClientStub;
+
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test the TimestampEncoder.
+ */
+public class TimestampEncoderTest {
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEncodeMatchesStringFormat() throws Exception {
+        TimestampEncoder encoder = new TimestampEncoder();
+
+        double[] values = {1505323567.566, 1491346209.382, 0.0, 0.001, 1.9995, 1505323567.0, 1505323567.9999};
+        for (double value : values) {
+            encoder.encode(value);
+            assertEquals(String.format(Locale.ROOT, "%.3f", value), encoder.toString());
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testEncodeMatchesStringFormatAtRoundingTies() throws Exception {
+        TimestampEncoder encoder = new TimestampEncoder();
+
+        double[] values = {1.0005, 1.0015, 1.0025, 0.0005, 0.1235, 2.675, -1.0005, 1505323567.5665, 1505323567.0005, 1491346209.3825};
+        for (double value : values) {
+            encoder.encode(value);
+            assertEquals(String.format(Locale.ROOT, "%.3f", value), encoder.toString());
+        }
+
+        Random random = new Random(1505323567L);
+        for (int i = 0; i < 10000; ++i) {
+            double value = (1500000000000L + random.nextInt(100000000)) / 1000.0 + (random.nextInt(10) / 10000.0);
+            encoder.encode(value);
+            assertEquals(String.format(Locale.ROOT, "%.3f", value), encoder.toString());
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testCoarseClockTicks() throws Exception {
+        TimestampEncoder encoder = new TimestampEncoder(TimestampEncoder.Precision.MILLISECONDS, true);
+        encoder.encodeCurrentTime();
+
+        long first = TimestampEncoder.CoarseClock.currentTimeMillis;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (TimestampEncoder.CoarseClock.currentTimeMillis == first && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertTrue("The coarse clock should be updated by the ticker", TimestampEncoder.CoarseClock.currentTimeMillis > first);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testPrecision() throws Exception {
+        final long seconds = 1505323567L;
+        final int nanos = 566123789;
+
+        assertEquals("1505323567.566", encode(TimestampEncoder.Precision.MILLISECONDS, seconds, nanos));
+        assertEquals("1505323567.566124", encode(TimestampEncoder.Precision.MICROSECONDS, seconds, nanos));
+        assertEquals("1505323567.566123789", encode(TimestampEncoder.Precision.NANOSECONDS, seconds, nanos));
+        assertEquals("Rounding should carry into the seconds", "1505323568.000", encode(TimestampEncoder.Precision.MILLISECONDS, seconds, 999999999));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testNegativeTimestamp() throws Exception {
+        TimestampEncoder encoder = new TimestampEncoder();
+
+        encoder.encodeMillis(-1L);
+        assertEquals("-0.001", encoder.toString());
+
+        encoder.encodeMillis(-1500L);
+        assertEquals("-1.500", encoder.toString());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testCoarseClock() throws Exception {
+        TimestampEncoder encoder = new TimestampEncoder(TimestampEncoder.Precision.MILLISECONDS, true);
+
+        long before = System.currentTimeMillis();
+        encoder.encodeCurrentTime();
+        long after = System.currentTimeMillis();
+
+        // The ticker may lag the system clock
+        double rendered = Double.parseDouble(encoder.toString()) * 1000;
+        assertTrue(rendered >= before - 1000 && rendered <= after + 1);
+        assertEquals(encoder.getLength(), encoder.cachedLength);
+
+        encoder.encode(0.0);
+        encoder.cachedMillis = System.currentTimeMillis() + 60000;
+        encoder.encodeCurrentTime();
+        assertTrue("Current time should be rendered again", !"0.000".equals(encoder.toString()));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBuilderWithInstantTimestamp() throws Exception {
+        StringEventBuilder builder = new StringEventBuilder();
+        builder.setDefaultHost("dummy-host");
+        builder.setTimestampPrecision(TimestampEncoder.Precision.MICROSECONDS);
+
+        String event = builder.timestamp(Instant.ofEpochSecond(1505323567L, 566123789)).eventBody("Dummy Event Body").build(new EventCollectorClientStub());
+
+        assertEquals("{\"host\":\"dummy-host\",\"time\":\"1505323567.566124\",\"event\":\"Dummy Event Body\"}", event);
+
+        event = builder.timestampNanos(1505323567566123789L).eventBody("Dummy Event Body").build(new EventCollectorClientStub());
+
+        assertEquals("{\"host\":\"dummy-host\",\"time\":\"1505323567.566124\",\"event\":\"Dummy Event Body\"}", event);
+    }
+
+    static String encode(TimestampEncoder.Precision precision, long seconds, int nanos) {
+        TimestampEncoder encoder = new TimestampEncoder(precision, false);
+
+        encoder.encode(seconds, nanos);
+
+        return encoder.toString();
+    }
+}
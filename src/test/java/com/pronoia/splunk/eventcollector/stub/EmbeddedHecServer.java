@@ -0,0 +1,505 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.stub;
+
+import com.pronoia.splunk.eventcollector.client.SimpleEventCollectorClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * An embedded, HTTP Event Collector compatible server for testing clients without a Splunk instance.
+ *
+ * <p>The server handles the event (/services/collector and /services/collector/event), raw, ack and health endpoints
+ * with the JSON responses returned by Splunk, and accepts gzip-encoded request bodies.  Latency, a throughput cap, "server
+ * busy" (503) responses and connection resets can be injected to load and fault test clients offline.
+ *
+ * <p>A connection reset is simulated by closing the connection without sending a response, which clients see as a
+ * server that failed to respond.
+ */
+public class EmbeddedHecServer {
+    public static final String DEFAULT_TOKEN = "embedded-hec-token";
+
+    static final String COLLECTOR_PATH = "/services/collector";
+    static final String CHANNEL_HEADER = "X-Splunk-Request-Channel";
+    static final Pattern ACK_ID_PATTERN = Pattern.compile("\\d+");
+
+    static final String SUCCESS_RESPONSE = "{\"text\":\"Success\",\"code\":0}";
+    static final String TOKEN_REQUIRED_RESPONSE = "{\"text\":\"Token is required\",\"code\":2}";
+    static final String INVALID_TOKEN_RESPONSE = "{\"text\":\"Invalid token\",\"code\":4}";
+    static final String NO_DATA_RESPONSE = "{\"text\":\"No data\",\"code\":5}";
+    static final String INVALID_DATA_RESPONSE = "{\"text\":\"Invalid data format\",\"code\":6,\"invalid-event-number\":%d}";
+    static final String SERVER_BUSY_RESPONSE = "{\"text\":\"Server is busy\",\"code\":9}";
+    static final String CHANNEL_MISSING_RESPONSE = "{\"text\":\"Data channel is missing\",\"code\":10}";
+    static final String HEALTHY_RESPONSE = "{\"text\":\"HEC is healthy\",\"code\":17}";
+    static final String NOT_FOUND_RESPONSE = "{\"text\":\"The requested URL was not found on this server.\",\"code\":404}";
+
+    String authorizationToken = DEFAULT_TOKEN;
+    int threadCount = 4;
+    boolean recordingEnabled = true;
+
+    volatile long latencyMillis;
+    volatile int maxRequestsPerSecond;
+    volatile double serverBusyRate;
+
+    final AtomicInteger injectedServerBusyCount = new AtomicInteger();
+    final AtomicInteger injectedResetCount = new AtomicInteger();
+    final AtomicLong nextRequestSlotNanos = new AtomicLong();
+
+    final AtomicLong nextAckId = new AtomicLong();
+
+    final AtomicLong requestCount = new AtomicLong();
+    final AtomicLong eventCount = new AtomicLong();
+    final AtomicLong rawEventCount = new AtomicLong();
+    final AtomicLong payloadBytes = new AtomicLong();
+    final AtomicLong gzipRequestCount = new AtomicLong();
+    final AtomicLong ackRequestCount = new AtomicLong();
+    final AtomicLong healthRequestCount = new AtomicLong();
+    final AtomicLong serverBusyCount = new AtomicLong();
+    final AtomicLong resetCount = new AtomicLong();
+
+    final Queue<String> receivedEvents = new ConcurrentLinkedQueue<>();
+    final Queue<String> receivedRawEvents = new ConcurrentLinkedQueue<>();
+
+    HttpServer server;
+    ExecutorService executor;
+
+    public String getAuthorizationToken() {
+        return authorizationToken;
+    }
+
+    /**
+     * Set the token expected in the Authorization header.  If the token is null, requests are not authorized.
+     *
+     * @param authorizationToken the expected token
+     */
+    public void setAuthorizationToken(String authorizationToken) {
+        this.authorizationToken = authorizationToken;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Enable or disable recording of the received events.  Recording should be disabled for load tests.
+     *
+     * @param recordingEnabled true to record the received events; false otherwise
+     */
+    public void setRecordingEnabled(boolean recordingEnabled) {
+        this.recordingEnabled = recordingEnabled;
+    }
+
+    /**
+     * Set the time the server waits before responding to each request.
+     *
+     * @param latencyMillis the latency in milliseconds
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Cap the rate at which requests are handled - requests that exceed the rate are delayed.  A value less than or equal
+     * to zero disables the cap.
+     *
+     * @param maxRequestsPerSecond the maximum number of requests handled per second
+     */
+    public void setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * Set the fraction of the event, raw and health requests that are answered with a 503 "Server is busy" response.
+     *
+     * @param serverBusyRate the fraction of the requests (between 0.0 and 1.0)
+     */
+    public void setServerBusyRate(double serverBusyRate) {
+        this.serverBusyRate = serverBusyRate;
+    }
+
+    /**
+     * Answer the next event, raw and health requests with a 503 "Server is busy" response.
+     *
+     * @param requestCount the number of requests
+     */
+    public void injectServerBusy(int requestCount) {
+        injectedServerBusyCount.addAndGet(requestCount);
+    }
+
+    /**
+     * Close the connection of the next requests without responding.
+     *
+     * @param requestCount the number of requests
+     */
+    public void injectConnectionReset(int requestCount) {
+        injectedResetCount.addAndGet(requestCount);
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+
+        executor = Executors.newFixedThreadPool(threadCount);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(COLLECTOR_PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Configure a client to send events to this server.
+     *
+     * @param client the client to configure
+     */
+    public void configure(SimpleEventCollectorClient client) {
+        client.setHost("localhost");
+        client.setPort(getPort());
+        client.setUseSSL(false);
+        client.setAuthorizationToken(authorizationToken != null ? authorizationToken : DEFAULT_TOKEN);
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    public long getRawEventCount() {
+        return rawEventCount.get();
+    }
+
+    public long getPayloadBytes() {
+        return payloadBytes.get();
+    }
+
+    public long getGzipRequestCount() {
+        return gzipRequestCount.get();
+    }
+
+    public long getAckRequestCount() {
+        return ackRequestCount.get();
+    }
+
+    public long getHealthRequestCount() {
+        return healthRequestCount.get();
+    }
+
+    public long getServerBusyCount() {
+        return serverBusyCount.get();
+    }
+
+    public long getResetCount() {
+        return resetCount.get();
+    }
+
+    public List<String> getReceivedEvents() {
+        return new ArrayList<>(receivedEvents);
+    }
+
+    public List<String> getReceivedRawEvents() {
+        return new ArrayList<>(receivedRawEvents);
+    }
+
+    void handle(HttpExchange exchange) throws IOException {
+        try {
+            requestCount.incrementAndGet();
+
+            throttle();
+
+            if (decrementIfPositive(injectedResetCount)) {
+                resetCount.incrementAndGet();
+                return;
+            }
+
+            byte[] body = readBody(exchange);
+            payloadBytes.addAndGet(body.length);
+
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+
+            if (!isAuthorized(exchange)) {
+                return;
+            }
+
+            switch (path) {
+            case COLLECTOR_PATH:
+            case COLLECTOR_PATH + "/event":
+                if (!isServerBusy(exchange)) {
+                    handleEvents(exchange, new String(body, StandardCharsets.UTF_8));
+                }
+                break;
+            case COLLECTOR_PATH + "/raw":
+                if (!isServerBusy(exchange)) {
+                    handleRawEvents(exchange, new String(body, StandardCharsets.UTF_8));
+                }
+                break;
+            case COLLECTOR_PATH + "/ack":
+                ackRequestCount.incrementAndGet();
+                handleAcks(exchange, new String(body, StandardCharsets.UTF_8));
+                break;
+            case COLLECTOR_PATH + "/health":
+                healthRequestCount.incrementAndGet();
+                if (!isServerBusy(exchange)) {
+                    respond(exchange, 200, HEALTHY_RESPONSE);
+                }
+                break;
+            default:
+                respond(exchange, 404, NOT_FOUND_RESPONSE);
+            }
+        } catch (InterruptedException interruptedEx) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    void handleEvents(HttpExchange exchange, String body) throws IOException {
+        List<String> events = new ArrayList<>();
+        int invalidEventNumber = splitEvents(body, events);
+        if (invalidEventNumber >= 0) {
+            respond(exchange, 400, String.format(INVALID_DATA_RESPONSE, invalidEventNumber));
+            return;
+        }
+        if (events.isEmpty()) {
+            respond(exchange, 400, NO_DATA_RESPONSE);
+            return;
+        }
+
+        eventCount.addAndGet(events.size());
+        if (recordingEnabled) {
+            receivedEvents.addAll(events);
+        }
+
+        if (exchange.getRequestHeaders().containsKey(CHANNEL_HEADER)) {
+            respond(exchange, 200, String.format("{\"text\":\"Success\",\"code\":0,\"ackId\":%d}", nextAckId.getAndIncrement()));
+        } else {
+            respond(exchange, 200, SUCCESS_RESPONSE);
+        }
+    }
+
+    void handleRawEvents(HttpExchange exchange, String body) throws IOException {
+        if (!exchange.getRequestHeaders().containsKey(CHANNEL_HEADER)) {
+            respond(exchange, 400, CHANNEL_MISSING_RESPONSE);
+            return;
+        }
+
+        int count = 0;
+        for (String line : body.split("\n")) {
+            if (!line.isEmpty()) {
+                ++count;
+                if (recordingEnabled) {
+                    receivedRawEvents.add(line);
+                }
+            }
+        }
+        if (count == 0) {
+            respond(exchange, 400, NO_DATA_RESPONSE);
+            return;
+        }
+
+        rawEventCount.addAndGet(count);
+        respond(exchange, 200, SUCCESS_RESPONSE);
+    }
+
+    /**
+     * Acknowledge every ackId that has been issued by the server.
+     */
+    void handleAcks(HttpExchange exchange, String body) throws IOException {
+        StringBuilder response = new StringBuilder("{\"acks\":{");
+        Matcher matcher = ACK_ID_PATTERN.matcher(body);
+        boolean first = true;
+        while (matcher.find()) {
+            if (!first) {
+                response.append(',');
+            }
+            long ackId = Long.parseLong(matcher.group());
+            response.append('"').append(ackId).append("\":").append(ackId < nextAckId.get());
+            first = false;
+        }
+        respond(exchange, 200, response.append("}}").toString());
+    }
+
+    boolean isAuthorized(HttpExchange exchange) throws IOException {
+        if (authorizationToken == null) {
+            return true;
+        }
+
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || authorization.isEmpty()) {
+            respond(exchange, 401, TOKEN_REQUIRED_RESPONSE);
+            return false;
+        }
+        if (!authorization.equals("Splunk " + authorizationToken)) {
+            respond(exchange, 403, INVALID_TOKEN_RESPONSE);
+            return false;
+        }
+
+        return true;
+    }
+
+    boolean isServerBusy(HttpExchange exchange) throws IOException {
+        double tmpServerBusyRate = serverBusyRate;
+        if (decrementIfPositive(injectedServerBusyCount) || tmpServerBusyRate > 0 && ThreadLocalRandom.current().nextDouble() < tmpServerBusyRate) {
+            serverBusyCount.incrementAndGet();
+            respond(exchange, 503, SERVER_BUSY_RESPONSE);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Delay the request until the next slot permitted by the throughput cap.
+     */
+    void throttle() throws InterruptedException {
+        int tmpMaxRequestsPerSecond = maxRequestsPerSecond;
+        if (tmpMaxRequestsPerSecond <= 0) {
+            return;
+        }
+
+        long interval = TimeUnit.SECONDS.toNanos(1) / tmpMaxRequestsPerSecond;
+        long now = System.nanoTime();
+        long slot = nextRequestSlotNanos.getAndAccumulate(now, (next, current) -> Math.max(next, current) + interval);
+        long delay = slot - now;
+        if (delay > 0) {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        }
+    }
+
+    byte[] readBody(HttpExchange exchange) throws IOException {
+        InputStream bodyStream = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            gzipRequestCount.incrementAndGet();
+            bodyStream = new GZIPInputStream(bodyStream);
+        }
+
+        try (InputStream tmpStream = bodyStream) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int count = tmpStream.read(buffer); count >= 0; count = tmpStream.read(buffer)) {
+                body.write(buffer, 0, count);
+            }
+            return body.toByteArray();
+        }
+    }
+
+    static void respond(HttpExchange exchange, int statusCode, String responseBody) throws IOException {
+        byte[] response = responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(statusCode, response.length);
+        try (OutputStream responseStream = exchange.getResponseBody()) {
+            responseStream.write(response);
+        }
+    }
+
+    static boolean decrementIfPositive(AtomicInteger counter) {
+        for (int current = counter.get(); current > 0; current = counter.get()) {
+            if (counter.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Split a request body in the concatenated JSON format into the individual events.
+     *
+     * @param body   the request body
+     * @param events the target for the events
+     *
+     * @return the (zero-based) number of the first invalid event, or -1 if all the events are valid
+     */
+    static int splitEvents(String body, List<String> events) {
+        int depth = 0;
+        int start = -1;
+        boolean inString = false;
+
+        for (int i = 0; i < body.length(); ++i) {
+            char c = body.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    ++i;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                if (depth == 0) {
+                    return events.size();
+                }
+                inString = true;
+            } else if (c == '{') {
+                if (depth++ == 0) {
+                    start = i;
+                }
+            } else if (c == '}') {
+                if (depth == 0) {
+                    return events.size();
+                }
+                if (--depth == 0) {
+                    events.add(body.substring(start, i + 1));
+                }
+            } else if (depth == 0 && !Character.isWhitespace(c)) {
+                return events.size();
+            }
+        }
+
+        return depth == 0 && !inString ? -1 : events.size();
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.stub;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.EventDeliveryHttpException;
+import com.pronoia.splunk.eventcollector.client.SimpleEventCollectorClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Test of the EmbeddedHecServer.
+ */
+public class EmbeddedHecServerTest {
+    static final String EVENT = "{\"event\":\"dummy {value}\"}";
+
+    EmbeddedHecServer server;
+    SimpleEventCollectorClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new EmbeddedHecServer();
+        server.start();
+
+        client = new SimpleEventCollectorClient();
+        server.configure(client);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (client.isInitialized()) {
+            client.stop();
+        }
+        server.stop();
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSendEvents() throws Exception {
+        client.sendEvent(EVENT);
+        client.sendEvent(EVENT + "\n" + EVENT);
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(3, server.getEventCount());
+        assertEquals(Arrays.asList(EVENT, EVENT, EVENT), server.getReceivedEvents());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testGzipEncodedEvents() throws Exception {
+        client.setGzipEnabled(true);
+        client.setGzipMinimumSize(0);
+
+        client.sendEvent(EVENT);
+
+        assertEquals(1, server.getGzipRequestCount());
+        assertEquals(Arrays.asList(EVENT), server.getReceivedEvents());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testRawEvents() throws Exception {
+        client.sendRawEvents(Arrays.asList("first line", "second line"));
+
+        assertEquals(2, server.getRawEventCount());
+        assertEquals(Arrays.asList("first line", "second line"), server.getReceivedRawEvents());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testMalformedEvent() throws Exception {
+        try {
+            client.sendEvent(EVENT + "{\"event\":");
+            fail("EventDeliveryHttpException should have been thrown");
+        } catch (EventDeliveryHttpException expectedEx) {
+            assertEquals(400, expectedEx.getHttpStatusCode());
+            assertEquals(6, expectedEx.getSplunkStatusCode());
+        }
+
+        assertEquals(0, server.getEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testInvalidToken() throws Exception {
+        client.setAuthorizationToken("wrong-token");
+
+        try {
+            client.sendEvent(EVENT);
+            fail("EventDeliveryHttpException should have been thrown");
+        } catch (EventDeliveryHttpException expectedEx) {
+            assertEquals(403, expectedEx.getHttpStatusCode());
+            assertEquals(4, expectedEx.getSplunkStatusCode());
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testHealth() throws Exception {
+        assertTrue(client.checkHealth());
+
+        server.injectServerBusy(1);
+        assertFalse(client.checkHealth());
+        assertTrue(client.checkHealth());
+
+        assertEquals(3, server.getHealthRequestCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testServerBusy() throws Exception {
+        server.injectServerBusy(1);
+
+        try {
+            client.sendEvent(EVENT);
+            fail("EventDeliveryHttpException should have been thrown");
+        } catch (EventDeliveryHttpException expectedEx) {
+            assertEquals(503, expectedEx.getHttpStatusCode());
+            assertEquals(9, expectedEx.getSplunkStatusCode());
+        }
+
+        client.sendEvent(EVENT);
+        assertEquals(1, server.getServerBusyCount());
+        assertEquals(1, server.getEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testConnectionResetIsRetried() throws Exception {
+        server.injectConnectionReset(1);
+
+        client.sendEvent(EVENT);
+
+        assertEquals(1, server.getResetCount());
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, server.getEventCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test(expected = EventDeliveryException.class)
+    public void testPersistentConnectionReset() throws Exception {
+        server.injectConnectionReset(10);
+
+        client.sendEvent(EVENT);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testLatency() throws Exception {
+        server.setLatencyMillis(200);
+
+        long start = System.nanoTime();
+        client.sendEvent(EVENT);
+
+        assertTrue("The response should have been delayed", System.nanoTime() - start >= 200000000L);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testThroughputCap() throws Exception {
+        server.setMaxRequestsPerSecond(20);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; ++i) {
+            client.sendEvent(EVENT);
+        }
+
+        assertTrue("The requests should have been throttled", System.nanoTime() - start >= 200000000L);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSplitEvents() throws Exception {
+        List<String> events = new ArrayList<>();
+
+        assertEquals(-1, EmbeddedHecServer.splitEvents("{\"a\":\"}\\\"\"} {\"b\":{\"c\":1}}", events));
+        assertEquals(Arrays.asList("{\"a\":\"}\\\"\"}", "{\"b\":{\"c\":1}}"), events);
+
+        events.clear();
+        assertEquals(1, EmbeddedHecServer.splitEvents("{\"a\":1} garbage", events));
+    }
+}
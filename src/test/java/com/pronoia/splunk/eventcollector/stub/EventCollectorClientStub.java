@@ -11,6 +11,7 @@ public class EventCollectorClientStub implements EventCollectorClient {
     public Map<String, String> constantFields = new TreeMap<>();
     public Map<String, String> includedSystemProperties = new TreeMap<>();
     public Map<String, String> includedEnvironmentVariables = new TreeMap<>();
+    public long configurationVersion;
 
     @Override
     public String getClientId() {
@@ -102,6 +103,11 @@ public class EventCollectorClientStub implements EventCollectorClient {
         return null;
     }
 
+    @Override
+    public long getConfigurationVersion() {
+        return configurationVersion;
+    }
+
     @Override
     public void start() {
 
@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.eventcollector.util;
+
+import com.pronoia.splunk.eventcollector.client.SimpleEventCollectorClient;
+import com.pronoia.splunk.eventcollector.eventbuilder.StringEventBuilder;
+import com.pronoia.splunk.eventcollector.stub.EventCollectorClientStub;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test the ResolvedContext.
+ */
+public class ResolvedContextTest {
+    static final String PROPERTY_NAME = "resolved-context-test-property";
+    static final String MISSING_PROPERTY_NAME = "resolved-context-test-missing-property";
+
+    ResolvedContext instance;
+    Map<String, String> includedSystemProperties;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty(PROPERTY_NAME, "initial-value");
+
+        instance = new ResolvedContext();
+        includedSystemProperties = new TreeMap<>();
+        includedSystemProperties.put(PROPERTY_NAME, "propertyField");
+        includedSystemProperties.put(MISSING_PROPERTY_NAME, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(PROPERTY_NAME);
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testSnapshotIsReusedUntilVersionChanges() throws Exception {
+        ResolvedContext.Snapshot snapshot = instance.getSnapshot(includedSystemProperties, null, 1);
+        assertEquals(Collections.singletonMap("propertyField", "initial-value"), snapshot.getSystemProperties());
+        assertTrue(snapshot.getEnvironmentVariables().isEmpty());
+
+        System.setProperty(PROPERTY_NAME, "changed-value");
+        assertSame(snapshot, instance.getSnapshot(includedSystemProperties, null, 1));
+
+        assertEquals("changed-value", instance.getSnapshot(includedSystemProperties, null, 2).getSystemProperties().get("propertyField"));
+        assertEquals(2, instance.getResolveCount());
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testMissingValuesAreReportedOnce() throws Exception {
+        instance.getSnapshot(includedSystemProperties, null, 1);
+        instance.getSnapshot(includedSystemProperties, null, 2);
+
+        assertEquals(Collections.singleton(MISSING_PROPERTY_NAME), instance.missingSystemProperties);
+
+        System.setProperty(MISSING_PROPERTY_NAME, "found");
+        try {
+            instance.getSnapshot(includedSystemProperties, null, 3);
+            assertTrue("Found values should be reported again if they go missing", instance.missingSystemProperties.isEmpty());
+        } finally {
+            System.clearProperty(MISSING_PROPERTY_NAME);
+        }
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testRefreshInterval() throws Exception {
+        instance.setRefreshIntervalMillis(0);
+        instance.refreshOriginMillis = System.currentTimeMillis() - 60000;
+        assertEquals(0, instance.getRefreshGeneration());
+
+        instance.setRefreshIntervalMillis(500);
+        long version = instance.getVersion(1);
+        assertEquals("Reading the version should not change it", version, instance.getVersion(1));
+        assertNotEquals(version, instance.getVersion(2));
+
+        instance.refreshOriginMillis = System.currentTimeMillis() - 1250;
+        assertEquals(2, instance.getRefreshGeneration());
+        assertNotEquals("The version should change when the refresh interval elapses", version, instance.getVersion(1));
+        assertEquals(instance.getVersion(1), instance.getVersion(1));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testBuilderRefreshContext() throws Exception {
+        StringEventBuilder builder = new StringEventBuilder();
+        builder.setContextRefreshIntervalMillis(0);
+        builder.includeSystemProperty(PROPERTY_NAME, "propertyField");
+
+        EventCollectorClientStub client = new EventCollectorClientStub();
+
+        assertTrue(builder.eventBody("one").build(client).contains("\"propertyField\":\"initial-value\""));
+
+        System.setProperty(PROPERTY_NAME, "changed-value");
+        assertTrue(builder.eventBody("two").build(client).contains("\"propertyField\":\"initial-value\""));
+
+        builder.refreshContext();
+        assertTrue(builder.eventBody("three").build(client).contains("\"propertyField\":\"changed-value\""));
+    }
+
+    /**
+     * @throws Exception in the event of a test error.
+     */
+    @Test
+    public void testClientRefreshContext() throws Exception {
+        SimpleEventCollectorClient client = new SimpleEventCollectorClient();
+        client.setContextRefreshIntervalMillis(0);
+        client.includeSystemProperty(PROPERTY_NAME, "clientField");
+
+        assertEquals(Collections.singletonMap("clientField", "initial-value"), client.getResolvedSystemProperties());
+
+        long version = client.getConfigurationVersion();
+        assertEquals("Reading the version should not change it", version, client.getConfigurationVersion());
+        System.setProperty(PROPERTY_NAME, "changed-value");
+        assertEquals("initial-value", client.getResolvedSystemProperties().get("clientField"));
+
+        client.refreshContext();
+        assertNotEquals(version, client.getConfigurationVersion());
+        assertEquals("changed-value", client.getResolvedSystemProperties().get("clientField"));
+        assertEquals(2, client.getContextResolveCount());
+    }
+}